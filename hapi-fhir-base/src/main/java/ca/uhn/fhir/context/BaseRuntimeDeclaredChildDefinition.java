@@ -33,6 +33,7 @@ import org.apache.commons.lang3.text.WordUtils;
 import org.hl7.fhir.instance.model.IBase;
 
 import ca.uhn.fhir.model.api.IElement;
+import ca.uhn.fhir.model.api.IModelAccessor;
 import ca.uhn.fhir.model.api.annotation.Child;
 import ca.uhn.fhir.model.api.annotation.Description;
 import ca.uhn.fhir.util.BeanUtils;
@@ -89,7 +90,18 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 			}
 		}
 
-		if (ourUseMethodAccessors == false) {
+		IModelAccessor modelAccessor = ModelScanner.findModelAccessor(myField.getDeclaringClass());
+		int fieldIndex = modelAccessor != null ? modelAccessor.getFieldIndex(myField.getName()) : -1;
+
+		if (fieldIndex != -1) {
+			if (List.class.equals(myField.getType())) {
+				myAccessor = new GeneratedListAccessor(modelAccessor, fieldIndex);
+				myMutator = new GeneratedListMutator(modelAccessor, fieldIndex);
+			} else {
+				myAccessor = new GeneratedPlainAccessor(modelAccessor, fieldIndex);
+				myMutator = new GeneratedPlainMutator(modelAccessor, fieldIndex);
+			}
+		} else if (ourUseMethodAccessors == false) {
 			if (List.class.equals(myField.getType())) {
 				// TODO: verify that generic type is IElement
 				myAccessor = new FieldListAccessor();
@@ -184,6 +196,81 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		}
 	}
 
+	private static final class GeneratedListAccessor implements IAccessor {
+		private final int myFieldIndex;
+		private final IModelAccessor myModelAccessor;
+
+		private GeneratedListAccessor(IModelAccessor theModelAccessor, int theFieldIndex) {
+			myModelAccessor = theModelAccessor;
+			myFieldIndex = theFieldIndex;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public List<? extends IElement> getValues(Object theTarget) {
+			List<? extends IElement> retVal = (List<? extends IElement>) myModelAccessor.getFieldValue(theTarget, myFieldIndex);
+			if (retVal == null) {
+				retVal = Collections.emptyList();
+			}
+			return retVal;
+		}
+	}
+
+	private static final class GeneratedListMutator implements IMutator {
+		private final int myFieldIndex;
+		private final IModelAccessor myModelAccessor;
+
+		private GeneratedListMutator(IModelAccessor theModelAccessor, int theFieldIndex) {
+			myModelAccessor = theModelAccessor;
+			myFieldIndex = theFieldIndex;
+		}
+
+		@Override
+		public void addValue(Object theTarget, IBase theValue) {
+			@SuppressWarnings("unchecked")
+			List<IBase> existingList = (List<IBase>) myModelAccessor.getFieldValue(theTarget, myFieldIndex);
+			if (existingList == null) {
+				existingList = new ArrayList<IBase>(2);
+				myModelAccessor.setFieldValue(theTarget, myFieldIndex, existingList);
+			}
+			existingList.add(theValue);
+		}
+	}
+
+	private static final class GeneratedPlainAccessor implements IAccessor {
+		private final int myFieldIndex;
+		private final IModelAccessor myModelAccessor;
+
+		private GeneratedPlainAccessor(IModelAccessor theModelAccessor, int theFieldIndex) {
+			myModelAccessor = theModelAccessor;
+			myFieldIndex = theFieldIndex;
+		}
+
+		@Override
+		public List<? extends IElement> getValues(Object theTarget) {
+			Object value = myModelAccessor.getFieldValue(theTarget, myFieldIndex);
+			if (value == null) {
+				return Collections.emptyList();
+			}
+			return Collections.singletonList((IElement) value);
+		}
+	}
+
+	private static final class GeneratedPlainMutator implements IMutator {
+		private final int myFieldIndex;
+		private final IModelAccessor myModelAccessor;
+
+		private GeneratedPlainMutator(IModelAccessor theModelAccessor, int theFieldIndex) {
+			myModelAccessor = theModelAccessor;
+			myFieldIndex = theFieldIndex;
+		}
+
+		@Override
+		public void addValue(Object theTarget, IBase theValue) {
+			myModelAccessor.setFieldValue(theTarget, myFieldIndex, theValue);
+		}
+	}
+
 	private final class FieldPlainMutator implements IMutator {
 		@Override
 		public void addValue(Object theTarget, IBase theValue) {
@@ -30,6 +30,7 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.IBase;
 
+import ca.uhn.fhir.model.api.IModelAccessor;
 import ca.uhn.fhir.model.api.IValueSetEnumBinder;
 
 public abstract class BaseRuntimeElementDefinition<T extends IBase> {
@@ -40,6 +41,7 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 	private Map<String, RuntimeChildDeclaredExtensionDefinition> myUrlToExtension = new HashMap<String, RuntimeChildDeclaredExtensionDefinition>();
 	private List<RuntimeChildDeclaredExtensionDefinition> myExtensionsModifier = new ArrayList<RuntimeChildDeclaredExtensionDefinition>();
 	private List<RuntimeChildDeclaredExtensionDefinition> myExtensionsNonModifier = new ArrayList<RuntimeChildDeclaredExtensionDefinition>();
+	private final IModelAccessor myModelAccessor;
 
 	public BaseRuntimeElementDefinition(String theName, Class<? extends T> theImplementingClass) {
 		assert StringUtils.isNotBlank(theName);
@@ -54,6 +56,7 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 			
 		
 		myImplementingClass = theImplementingClass;
+		myModelAccessor = ModelScanner.findModelAccessor(theImplementingClass);
 	}
 
 	@Override
@@ -99,9 +102,13 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 		return newInstance(null);
 	}
 
+	@SuppressWarnings("unchecked")
 	public T newInstance(Object theArgument) {
 		try {
 			if (theArgument == null) {
+				if (myModelAccessor != null) {
+					return (T) myModelAccessor.newInstance();
+				}
 				return getImplementingClass().newInstance();
 			} else {
 				return getImplementingClass().getConstructor(IValueSetEnumBinder.class).newInstance(theArgument);
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.text.WordUtils;
@@ -40,6 +41,7 @@ import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.dstu.resource.Binary;
 import ca.uhn.fhir.model.view.ViewGenerator;
 import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.parser.CborParser;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.JsonParser;
@@ -73,8 +75,15 @@ import ca.uhn.fhir.validation.FhirValidator;
 public class FhirContext {
 
 	private static final List<Class<? extends IBaseResource>> EMPTY_LIST = Collections.emptyList();
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<FhirContext, Map> ourClassToElementDefinitionUpdater = AtomicReferenceFieldUpdater.newUpdater(FhirContext.class, Map.class, "myClassToElementDefinition");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<FhirContext, Map> ourIdToResourceDefinitionUpdater = AtomicReferenceFieldUpdater.newUpdater(FhirContext.class, Map.class, "myIdToResourceDefinition");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<FhirContext, Map> ourNameToElementDefinitionUpdater = AtomicReferenceFieldUpdater.newUpdater(FhirContext.class, Map.class, "myNameToElementDefinition");
 	private volatile Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> myClassToElementDefinition = Collections.emptyMap();
 	private volatile Map<String, RuntimeResourceDefinition> myIdToResourceDefinition = Collections.emptyMap();
+	private volatile boolean myLazyModelScanning;
 	private HapiLocalizer myLocalizer = new HapiLocalizer();
 	private volatile Map<String, RuntimeResourceDefinition> myNameToElementDefinition = Collections.emptyMap();
 	private Map<String, String> myNameToResourceType;
@@ -166,6 +175,15 @@ public class FhirContext {
 		return myLocalizer;
 	}
 
+	/**
+	 * Returns <code>true</code> if lazy model scanning is enabled
+	 * 
+	 * @see #setLazyModelScanning(boolean)
+	 */
+	public boolean isLazyModelScanning() {
+		return myLazyModelScanning;
+	}
+
 	public INarrativeGenerator getNarrativeGenerator() {
 		return myNarrativeGenerator;
 	}
@@ -231,7 +249,7 @@ public class FhirContext {
 				}
 				Class<?> clazz = Class.forName(className);
 				if (IResource.class.isAssignableFrom(clazz)) {
-					retVal = scanResourceType((Class<? extends IResource>) clazz);
+					retVal = getResourceDefinition((Class<? extends IResource>) clazz);
 				}
 			} catch (ClassNotFoundException e) {
 				throw new DataFormatException("Unknown resource name[" + resourceName + "]");
@@ -272,12 +290,29 @@ public class FhirContext {
 		return myVersion;
 	}
 
+	/**
+	 * Create and return a new CBOR parser. CBOR is a compact binary form of the JSON encoding, see {@link CborParser}
+	 * for details.
+	 * 
+	 * <p>
+	 * Thread safety: Once it has been configured, <b>a parser instance may be shared between threads</b>.
+	 * </p>
+	 * <p>
+	 * Performance Note: <b>This method is cheap</b> to call, and may be called once for every message being processed
+	 * without incurring any performance penalty
+	 * </p>
+	 */
+	public IParser newCborParser() {
+		return new CborParser(this);
+	}
+
 	/**
 	 * Create and return a new JSON parser.
 	 * 
 	 * <p>
-	 * Thread safety: <b>Parsers are not guaranteed to be thread safe</b>. Create a new parser instance for every thread
-	 * or every message being parsed/encoded.
+	 * Thread safety: Once it has been configured, <b>a parser instance may be shared between threads</b> (any
+	 * per-message state is held per thread). Changing the configuration of a parser while it is in use by other
+	 * threads is not recommended, since those threads may or may not see the change part way through a message.
 	 * </p>
 	 * <p>
 	 * Performance Note: <b>This method is cheap</b> to call, and may be called once for every message being processed
@@ -346,8 +381,9 @@ public class FhirContext {
 	 * Create and return a new XML parser.
 	 * 
 	 * <p>
-	 * Thread safety: <b>Parsers are not guaranteed to be thread safe</b>. Create a new parser instance for every thread
-	 * or every message being parsed/encoded.
+	 * Thread safety: Once it has been configured, <b>a parser instance may be shared between threads</b> (any
+	 * per-message state is held per thread). Changing the configuration of a parser while it is in use by other
+	 * threads is not recommended, since those threads may or may not see the change part way through a message.
 	 * </p>
 	 * <p>
 	 * Performance Note: <b>This method is cheap</b> to call, and may be called once for every message being processed
@@ -372,33 +408,55 @@ public class FhirContext {
 		return defs.get(theResourceType);
 	}
 
+	/**
+	 * Scanning doesn't take any locks. Each scan builds on a snapshot of the current definitions, and its results are
+	 * only published if no other thread has published new definitions in the meantime. Otherwise the scan is repeated
+	 * on top of the newer definitions, so that there is only ever one definition for any given class.
+	 */
 	private Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> scanResourceTypes(Collection<Class<? extends IElement>> theResourceTypes) {
-		ModelScanner scanner = new ModelScanner(this, myClassToElementDefinition, theResourceTypes);
+		Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> existing;
+		Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> classToElementDefinition;
+		ModelScanner scanner;
+		do {
+			existing = myClassToElementDefinition;
+			scanner = new ModelScanner(this, existing, theResourceTypes);
+			classToElementDefinition = scanner.getClassToElementDefinitions();
+			if (classToElementDefinition.size() == existing.size() && myRuntimeChildUndeclaredExtensionDefinition != null) {
+				return existing;
+			}
+		} while (!ourClassToElementDefinitionUpdater.compareAndSet(this, existing, classToElementDefinition));
+
 		if (myRuntimeChildUndeclaredExtensionDefinition == null) {
 			myRuntimeChildUndeclaredExtensionDefinition = scanner.getRuntimeChildUndeclaredExtensionDefinition();
 		}
+		if (myNameToResourceType == null) {
+			myNameToResourceType = scanner.getNameToResourceType();
+		}
 
-		Map<String, RuntimeResourceDefinition> nameToElementDefinition = new HashMap<String, RuntimeResourceDefinition>();
-		nameToElementDefinition.putAll(myNameToElementDefinition);
-		nameToElementDefinition.putAll(scanner.getNameToResourceDefinitions());
-
-		Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> classToElementDefinition = new HashMap<Class<? extends IBase>, BaseRuntimeElementDefinition<?>>();
-		classToElementDefinition.putAll(myClassToElementDefinition);
-		classToElementDefinition.putAll(scanner.getClassToElementDefinitions());
-
-		Map<String, RuntimeResourceDefinition> idToElementDefinition = new HashMap<String, RuntimeResourceDefinition>();
-		idToElementDefinition.putAll(myIdToResourceDefinition);
-		idToElementDefinition.putAll(scanner.getIdToResourceDefinition());
-
-		myNameToElementDefinition = nameToElementDefinition;
-		myClassToElementDefinition = classToElementDefinition;
-		myIdToResourceDefinition = idToElementDefinition;
-
-		myNameToResourceType = scanner.getNameToResourceType();
+		publish(ourNameToElementDefinitionUpdater, scanner.getNameToResourceDefinitions());
+		publish(ourIdToResourceDefinitionUpdater, scanner.getIdToResourceDefinition());
 
 		return classToElementDefinition;
 	}
 
+	/**
+	 * Adds entries to one of the definition maps. These maps are never modified once they have been published, so a
+	 * copy containing the new entries replaces the existing map.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private <K, V> void publish(AtomicReferenceFieldUpdater<FhirContext, Map> theUpdater, Map<K, V> theNewEntries) {
+		if (theNewEntries.isEmpty()) {
+			return;
+		}
+		Map<K, V> existing;
+		Map<K, V> updated;
+		do {
+			existing = theUpdater.get(this);
+			updated = new HashMap<K, V>(existing);
+			updated.putAll(theNewEntries);
+		} while (!theUpdater.compareAndSet(this, existing, updated));
+	}
+
 	/**
 	 * This feature is not yet in its final state and should be considered an internal part of HAPI for now - use with
 	 * caution
@@ -407,6 +465,20 @@ public class FhirContext {
 		myLocalizer = theMessages;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), scanning a resource type does not also scan the
+	 * resource types which it references. Those types are instead scanned the first time that they are actually used,
+	 * which means that an application which only ever works with a few resource types never pays to scan the rest of the
+	 * model. Definitions are built and published without locking, so it is safe for many threads to request
+	 * definitions concurrently.
+	 * <p>
+	 * Note that {@link #getResourceDefinitions()} only returns the resource types which have been scanned so far.
+	 * </p>
+	 */
+	public void setLazyModelScanning(boolean theLazyModelScanning) {
+		myLazyModelScanning = theLazyModelScanning;
+	}
+
 	public void setNarrativeGenerator(INarrativeGenerator theNarrativeGenerator) {
 		if (theNarrativeGenerator != null) {
 			theNarrativeGenerator.setFhirContext(this);
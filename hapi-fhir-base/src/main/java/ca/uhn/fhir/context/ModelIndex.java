@@ -0,0 +1,211 @@
+package ca.uhn.fhir.context;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.commons.lang3.StringUtils.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+
+import ca.uhn.fhir.model.api.IElement;
+import ca.uhn.fhir.model.api.IFhirVersion;
+import ca.uhn.fhir.model.api.annotation.Block;
+import ca.uhn.fhir.model.api.annotation.DatatypeDef;
+import ca.uhn.fhir.model.api.annotation.ResourceDef;
+
+/**
+ * The contents of a structure version's <code>fhirversion.properties</code> file, which is generated by the Tinder
+ * plugin at the same time as the structure classes themselves. In addition to the names of the built-in resource and
+ * datatype classes, this file contains an index of the annotated fields of each generated class, which allows
+ * {@link ModelScanner} to go straight to those fields instead of discovering them reflectively.
+ * <p>
+ * The file is only read once per version. Classes which are not listed in the index (e.g. custom types supplied by the
+ * user) are scanned reflectively.
+ * </p>
+ */
+final class ModelIndex {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ModelIndex.class);
+	private static final Map<Class<? extends IFhirVersion>, ModelIndex> ourVersionToIndex = new ConcurrentHashMap<Class<? extends IFhirVersion>, ModelIndex>();
+	private static volatile boolean ourEnabled = true;
+
+	private final Map<String, String[]> myClassToChildFields = new HashMap<String, String[]>();
+	private final Map<String, Class<? extends Annotation>> myClassToDefinitionType = new HashMap<String, Class<? extends Annotation>>();
+	private final Map<String, String[]> myClassToSearchParamFields = new HashMap<String, String[]>();
+	private final List<Class<? extends IElement>> myDatatypes = new ArrayList<Class<? extends IElement>>();
+	private final Map<String, String> myNameToResourceType = new HashMap<String, String>();
+
+	private ModelIndex(IFhirVersion theVersion, boolean theUseIndex) {
+		InputStream str = theVersion.getFhirVersionPropertiesFile();
+		Properties prop = new Properties();
+		try {
+			prop.load(str);
+		} catch (IOException e) {
+			throw new ConfigurationException("Failed to load model property file from classpath: " + "/ca/uhn/fhir/model/dstu/model.properties");
+		} finally {
+			IOUtils.closeQuietly(str);
+		}
+
+		for (Entry<Object, Object> nextEntry : prop.entrySet()) {
+			String nextKey = nextEntry.getKey().toString();
+			String nextValue = nextEntry.getValue().toString();
+
+			if (nextKey.startsWith("resource.")) {
+				String resName = nextKey.substring("resource.".length()).toLowerCase();
+				myNameToResourceType.put(resName, nextValue);
+			} else if (nextKey.startsWith("datatype.")) {
+				try {
+					@SuppressWarnings("unchecked")
+					Class<? extends IElement> nextClass = (Class<? extends IElement>) Class.forName((String) nextValue);
+					if (!IElement.class.isAssignableFrom(nextClass)) {
+						ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + ": " + nextValue);
+						continue;
+					}
+
+					myDatatypes.add(nextClass);
+				} catch (ClassNotFoundException e) {
+					ourLog.warn("Unknown class exception: " + nextValue, e);
+				}
+			} else if (theUseIndex && nextKey.startsWith("index.")) {
+				addIndexEntry(nextKey.substring("index.".length()), nextValue);
+			}
+		}
+	}
+
+	private void addIndexEntry(String theKey, String theValue) {
+		int idx = theKey.indexOf('.');
+		if (idx == -1) {
+			return;
+		}
+		String type = theKey.substring(0, idx);
+		String className = theKey.substring(idx + 1);
+		String[] fields = split(theValue, ',');
+
+		if ("searchparams".equals(type)) {
+			myClassToSearchParamFields.put(className, fields);
+			return;
+		}
+
+		Class<? extends Annotation> definitionType;
+		if ("resource".equals(type)) {
+			definitionType = ResourceDef.class;
+		} else if ("datatype".equals(type)) {
+			definitionType = DatatypeDef.class;
+		} else if ("block".equals(type)) {
+			definitionType = Block.class;
+		} else {
+			ourLog.debug("Ignoring unknown model index entry: {}", theKey);
+			return;
+		}
+		myClassToDefinitionType.put(className, definitionType);
+		myClassToChildFields.put(className, fields);
+	}
+
+	/**
+	 * Returns the fields of the given class which are annotated with {@link ca.uhn.fhir.model.api.annotation.Child}
+	 * (only fields declared by the class itself are included, not those of its superclasses), or <code>null</code> if
+	 * the class is not in the index
+	 */
+	public Field[] getChildFields(Class<?> theClass) {
+		return resolveFields(theClass, myClassToChildFields.get(theClass.getName()), false);
+	}
+
+	public List<Class<? extends IElement>> getDatatypes() {
+		return Collections.unmodifiableList(myDatatypes);
+	}
+
+	/**
+	 * Returns the definition annotation type ({@link ResourceDef}, {@link DatatypeDef} or {@link Block}) which is
+	 * present on the given class, or <code>null</code> if the class is not in the index
+	 */
+	public Class<? extends Annotation> getDefinitionType(Class<?> theClass) {
+		return myClassToDefinitionType.get(theClass.getName());
+	}
+
+	/**
+	 * Returns a map of lowercase resource names to the names of the built-in classes for those resources
+	 */
+	public Map<String, String> getNameToResourceType() {
+		return Collections.unmodifiableMap(myNameToResourceType);
+	}
+
+	/**
+	 * Returns the fields of the given resource class which are annotated with
+	 * {@link ca.uhn.fhir.model.api.annotation.SearchParamDefinition}, or <code>null</code> if the class is not in the
+	 * index
+	 */
+	public Field[] getSearchParamFields(Class<?> theClass) {
+		return resolveFields(theClass, myClassToSearchParamFields.get(theClass.getName()), true);
+	}
+
+	private Field[] resolveFields(Class<?> theClass, String[] theFieldNames, boolean thePublic) {
+		if (theFieldNames == null) {
+			return null;
+		}
+		Field[] retVal = new Field[theFieldNames.length];
+		for (int i = 0; i < theFieldNames.length; i++) {
+			try {
+				retVal[i] = thePublic ? theClass.getField(theFieldNames[i]) : theClass.getDeclaredField(theFieldNames[i]);
+			} catch (NoSuchFieldException e) {
+				ourLog.warn("Model index lists field {} which does not exist on type {}, scanning type reflectively instead", theFieldNames[i], theClass.getName());
+				return null;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the index for the given structure version, loading it the first time it is requested
+	 */
+	static ModelIndex forVersion(IFhirVersion theVersion) {
+		if (!ourEnabled) {
+			return new ModelIndex(theVersion, false);
+		}
+		Class<? extends IFhirVersion> key = theVersion.getClass();
+		ModelIndex retVal = ourVersionToIndex.get(key);
+		if (retVal == null) {
+			retVal = new ModelIndex(theVersion, true);
+			ourVersionToIndex.put(key, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * For unit tests only - If set to <code>false</code>, the properties file is re-read for every scan and all types
+	 * are scanned reflectively
+	 */
+	static void setEnabled(boolean theEnabled) {
+		ourEnabled = theEnabled;
+	}
+
+}
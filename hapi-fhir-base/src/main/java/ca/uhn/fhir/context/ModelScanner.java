@@ -22,8 +22,6 @@ package ca.uhn.fhir.context;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
@@ -43,11 +41,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.hl7.fhir.instance.model.BackboneElement;
 import org.hl7.fhir.instance.model.DomainResource;
 import org.hl7.fhir.instance.model.IBase;
@@ -64,6 +62,7 @@ import ca.uhn.fhir.model.api.ICodeEnum;
 import ca.uhn.fhir.model.api.ICompositeElement;
 import ca.uhn.fhir.model.api.IDatatype;
 import ca.uhn.fhir.model.api.IElement;
+import ca.uhn.fhir.model.api.IModelAccessor;
 import ca.uhn.fhir.model.api.IPrimitiveDatatype;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.IResourceBlock;
@@ -105,6 +104,13 @@ class ModelScanner {
 
 	private FhirContext myContext;
 
+	private ModelIndex myIndex;
+
+	/**
+	 * If true, resource types which are only referenced by the scanned types are not scanned
+	 */
+	private boolean myLazy;
+
 	ModelScanner(FhirContext theContext, Class<? extends IBaseResource> theResourceTypes) throws ConfigurationException {
 		myContext = theContext;
 		Set<Class<? extends IBase>> singleton = new HashSet<Class<? extends IBase>>();
@@ -191,41 +197,14 @@ class ModelScanner {
 			myClassToElementDefinitions.putAll(theExistingDefinitions);
 		}
 
+		myLazy = myContext.isLazyModelScanning();
+
 		int startSize = myClassToElementDefinitions.size();
 		long start = System.currentTimeMillis();
 
-		InputStream str = myContext.getVersion().getFhirVersionPropertiesFile();
-		Properties prop = new Properties();
-		try {
-			prop.load(str);
-			for (Entry<Object, Object> nextEntry : prop.entrySet()) {
-				String nextKey = nextEntry.getKey().toString();
-				String nextValue = nextEntry.getValue().toString();
-
-				if (!nextKey.startsWith("datatype.")) {
-					if (nextKey.startsWith("resource.")) {
-						String resName = nextKey.substring("resource.".length()).toLowerCase();
-						myNameToResourceType.put(resName, nextValue);
-					}
-					continue;
-				}
-
-				try {
-					@SuppressWarnings("unchecked")
-					Class<? extends IElement> nextClass = (Class<? extends IElement>) Class.forName((String) nextValue);
-					if (!IElement.class.isAssignableFrom(nextClass)) {
-						ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + ": " + nextValue);
-						continue;
-					}
-
-					toScan.add(nextClass);
-				} catch (ClassNotFoundException e) {
-					ourLog.warn("Unknown class exception: " + nextValue, e);
-				}
-			}
-		} catch (IOException e) {
-			throw new ConfigurationException("Failed to load model property file from classpath: " + "/ca/uhn/fhir/model/dstu/model.properties");
-		}
+		myIndex = ModelIndex.forVersion(myContext.getVersion());
+		myNameToResourceType.putAll(myIndex.getNameToResourceType());
+		toScan.addAll(myIndex.getDatatypes());
 
 		// toScan.add(DateDt.class);
 		// toScan.add(CodeDt.class);
@@ -270,7 +249,9 @@ class ModelScanner {
 			return;
 		}
 
-		ResourceDef resourceDefinition = pullAnnotation(theClass, ResourceDef.class);
+		Class<? extends Annotation> indexedDefinitionType = myIndex.getDefinitionType(theClass);
+
+		ResourceDef resourceDefinition = pullDefinitionAnnotation(theClass, indexedDefinitionType, ResourceDef.class);
 		if (resourceDefinition != null) {
 			if (!IResource.class.isAssignableFrom(theClass)) {
 				throw new ConfigurationException("Resource type contains a @" + ResourceDef.class.getSimpleName() + " annotation but does not implement " + IResource.class.getCanonicalName() + ": " + theClass.getCanonicalName());
@@ -280,7 +261,7 @@ class ModelScanner {
 			scanResource(resClass, resourceDefinition);
 		}
 
-		DatatypeDef datatypeDefinition = pullAnnotation(theClass, DatatypeDef.class);
+		DatatypeDef datatypeDefinition = pullDefinitionAnnotation(theClass, indexedDefinitionType, DatatypeDef.class);
 		if (datatypeDefinition != null) {
 			if (ICompositeType.class.isAssignableFrom(theClass)) {
 				@SuppressWarnings("unchecked")
@@ -295,7 +276,7 @@ class ModelScanner {
 			}
 		}
 
-		Block blockDefinition = pullAnnotation(theClass, Block.class);
+		Block blockDefinition = pullDefinitionAnnotation(theClass, indexedDefinitionType, Block.class);
 		if (blockDefinition != null) {
 			if (IResourceBlock.class.isAssignableFrom(theClass)) {
 				@SuppressWarnings("unchecked")
@@ -396,23 +377,29 @@ class ModelScanner {
 	private void scanCompositeElementForChildren(Class<? extends IBase> theClass, Set<String> elementNames, TreeMap<Integer, BaseRuntimeDeclaredChildDefinition> theOrderToElementDef, TreeMap<Integer, BaseRuntimeDeclaredChildDefinition> theOrderToExtensionDef) {
 		int baseElementOrder = theOrderToElementDef.isEmpty() ? 0 : theOrderToElementDef.lastEntry().getKey() + 1;
 
-		for (Field next : theClass.getDeclaredFields()) {
+		Field[] fields = myIndex.getChildFields(theClass);
+		boolean indexed = fields != null;
+		if (!indexed) {
+			fields = theClass.getDeclaredFields();
+		}
+
+		for (Field next : fields) {
 
 			if (Modifier.isFinal(next.getModifiers())) {
 				ourLog.trace("Ignoring constant {} on target type {}", next.getName(), theClass);
 				continue;
 			}
 
-			Child childAnnotation = pullAnnotation(next, Child.class);
+			Child childAnnotation = pullAnnotation(next, Child.class, indexed);
 			if (childAnnotation == null) {
 				ourLog.trace("Ignoring non @Child field {} on target type {}", next.getName(), theClass);
 				continue;
 			}
 
-			Description descriptionAnnotation = pullAnnotation(next, Description.class);
+			Description descriptionAnnotation = pullAnnotation(next, Description.class, indexed);
 
 			TreeMap<Integer, BaseRuntimeDeclaredChildDefinition> orderMap = theOrderToElementDef;
-			Extension extensionAttr = pullAnnotation(next, Extension.class);
+			Extension extensionAttr = pullAnnotation(next, Extension.class, indexed);
 			if (extensionAttr != null) {
 				orderMap = theOrderToExtensionDef;
 			}
@@ -505,9 +492,12 @@ class ModelScanner {
 				 * Child is a choice element
 				 */
 				for (Class<? extends IBase> nextType : choiceTypes) {
+					if (myLazy && IBaseResource.class.isAssignableFrom(nextType)) {
+						continue;
+					}
 					addScanAlso(nextType);
 				}
-				RuntimeChildChoiceDefinition def = new RuntimeChildChoiceDefinition(next, elementName, childAnnotation, descriptionAnnotation, choiceTypes);
+				RuntimeChildChoiceDefinition def = new RuntimeChildChoiceDefinition(next, elementName, childAnnotation, descriptionAnnotation, choiceTypes, myLazy ? myContext : null);
 				orderMap.put(order, def);
 
 			} else if (next.getType().equals(ExtensionDt.class)) {
@@ -538,9 +528,11 @@ class ModelScanner {
 						throw new ConfigurationException("Field '" + next.getName() + "' in class '" + next.getDeclaringClass().getCanonicalName() + "' is of type " + BaseResourceReferenceDt.class + " but contains a non-resource type: " + nextType.getCanonicalName());
 					}
 					refTypesList.add((Class<? extends IBaseResource>) nextType);
-					addScanAlso(nextType);
+					if (!myLazy) {
+						addScanAlso(nextType);
+					}
 				}
-				RuntimeChildResourceDefinition def = new RuntimeChildResourceDefinition(next, elementName, childAnnotation, descriptionAnnotation, refTypesList);
+				RuntimeChildResourceDefinition def = new RuntimeChildResourceDefinition(next, elementName, childAnnotation, descriptionAnnotation, refTypesList, myLazy ? myContext : null);
 				orderMap.put(order, def);
 
 			} else if (IResourceBlock.class.isAssignableFrom(nextElementType) || BackboneElement.class.isAssignableFrom(nextElementType)) {
@@ -582,7 +574,7 @@ class ModelScanner {
 					}
 				}
 
-				CodeableConceptElement concept = pullAnnotation(next, CodeableConceptElement.class);
+				CodeableConceptElement concept = pullAnnotation(next, CodeableConceptElement.class, indexed);
 				if (concept != null) {
 					if (!ICodedDatatype.class.isAssignableFrom(nextDatatype)) {
 						throw new ConfigurationException("Field '" + elementName + "' in type '" + theClass.getCanonicalName() + "' is marked as @" + CodeableConceptElement.class.getCanonicalName() + " but type is not a subtype of " + ICodedDatatype.class.getName());
@@ -644,6 +636,27 @@ class ModelScanner {
 		return retVal;
 	}
 
+	/**
+	 * Fields listed in the generated model index are known to carry the HAPI annotations, so they don't need the
+	 * HL7.org fallback performed by {@link #pullAnnotation(AnnotatedElement, Class)}
+	 */
+	private <T extends Annotation> T pullAnnotation(AnnotatedElement theTarget, Class<T> theAnnotationType, boolean theIndexed) {
+		if (theIndexed) {
+			return theTarget.getAnnotation(theAnnotationType);
+		}
+		return pullAnnotation(theTarget, theAnnotationType);
+	}
+
+	private <T extends Annotation> T pullDefinitionAnnotation(Class<?> theClass, Class<? extends Annotation> theIndexedDefinitionType, Class<T> theAnnotationType) {
+		if (theIndexedDefinitionType == null) {
+			return pullAnnotation(theClass, theAnnotationType);
+		}
+		if (theIndexedDefinitionType.equals(theAnnotationType)) {
+			return theClass.getAnnotation(theAnnotationType);
+		}
+		return null;
+	}
+
 	private String scanPrimitiveDatatype(Class<? extends IPrimitiveType> theClass, DatatypeDef theDatatypeDefinition) {
 		ourLog.debug("Scanning resource class: {}", theClass.getName());
 
@@ -732,8 +745,17 @@ class ModelScanner {
 		Map<String, RuntimeSearchParam> nameToParam = new HashMap<String, RuntimeSearchParam>();
 		Map<Field, SearchParamDefinition> compositeFields = new LinkedHashMap<Field, SearchParamDefinition>();
 
-		for (Field nextField : theClass.getFields()) {
-			SearchParamDefinition searchParam = pullAnnotation(nextField, SearchParamDefinition.class);
+		Field[] fields = myIndex.getSearchParamFields(theClass);
+		boolean indexed = fields != null;
+		if (indexed) {
+			// The index only lists the parameters declared by the generated class itself
+			fields = ArrayUtils.addAll(fields, theClass.getSuperclass().getFields());
+		} else {
+			fields = theClass.getFields();
+		}
+
+		for (Field nextField : fields) {
+			SearchParamDefinition searchParam = pullAnnotation(nextField, SearchParamDefinition.class, indexed);
 			if (searchParam != null) {
 				SearchParamTypeEnum paramType = SearchParamTypeEnum.valueOf(searchParam.type().toUpperCase());
 				if (paramType == null) {
@@ -767,6 +789,39 @@ class ModelScanner {
 		}
 	}
 
+	/**
+	 * Returns the generated {@link IModelAccessor} for the given model class, or <code>null</code> if the class does not
+	 * have one (in which case its fields must be accessed reflectively). Only the exact class is checked, since an
+	 * accessor generated for a superclass does not know how to instantiate a subclass.
+	 */
+	static IModelAccessor findModelAccessor(Class<?> theClass) {
+		if (theClass.isInterface() || Modifier.isAbstract(theClass.getModifiers())) {
+			return null;
+		}
+
+		Class<?> accessorClass;
+		try {
+			accessorClass = Class.forName(theClass.getName() + "$ModelAccessor", true, theClass.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (LinkageError e) {
+			ourLog.debug("Failed to load model accessor for {}", theClass.getName(), e);
+			return null;
+		}
+
+		if (!IModelAccessor.class.isAssignableFrom(accessorClass) || accessorClass.getDeclaringClass() != theClass) {
+			return null;
+		}
+
+		try {
+			return (IModelAccessor) accessorClass.newInstance();
+		} catch (InstantiationException e) {
+			throw new ConfigurationException("Failed to instantiate model accessor " + accessorClass.getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ConfigurationException("Failed to instantiate model accessor " + accessorClass.getName(), e);
+		}
+	}
+
 	private static Class<?> getGenericCollectionTypeOfCodedField(Field next) {
 		Class<?> type;
 		ParameterizedType collectionType = (ParameterizedType) next.getGenericType();
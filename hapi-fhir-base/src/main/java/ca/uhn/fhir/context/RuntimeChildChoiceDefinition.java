@@ -39,14 +39,25 @@ import ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt;
 public class RuntimeChildChoiceDefinition extends BaseRuntimeDeclaredChildDefinition {
 
 	private List<Class<? extends IBase>> myChoiceTypes;
+	private FhirContext myContext;
 	private Map<String, BaseRuntimeElementDefinition<?>> myNameToChildDefinition;
 	private Map<Class<? extends IBase>, String> myDatatypeToElementName;
 	private Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> myDatatypeToElementDefinition;
 
 	public RuntimeChildChoiceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBase>> theChoiceTypes) {
+		this(theField, theElementName, theChildAnnotation, theDescriptionAnnotation, theChoiceTypes, null);
+	}
+
+	/**
+	 * @param theContext
+	 *            If not <code>null</code>, resource types among the choices do not need to have been scanned when this
+	 *            definition is sealed (see {@link FhirContext#setLazyModelScanning(boolean)})
+	 */
+	RuntimeChildChoiceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBase>> theChoiceTypes, FhirContext theContext) {
 		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 
 		myChoiceTypes = Collections.unmodifiableList(theChoiceTypes);
+		myContext = theContext;
 	}
 
 	/**
@@ -93,7 +104,7 @@ public class RuntimeChildChoiceDefinition extends BaseRuntimeDeclaredChildDefini
 				alternateElementName = getElementName() + "Resource";
 				List<Class<? extends IBaseResource>> types = new ArrayList<Class<? extends IBaseResource>>();
 				types.add((Class<? extends IBaseResource>) next);
-				nextDef = new RuntimeResourceReferenceDefinition(elementName, types);
+				nextDef = new RuntimeResourceReferenceDefinition(elementName, types, myContext);
 				nextDef.sealAndInitialize(theClassToElementDefinitions);
 			} else {
 				nextDef = theClassToElementDefinitions.get(next);
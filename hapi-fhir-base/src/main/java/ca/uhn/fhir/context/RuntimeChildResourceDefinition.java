@@ -38,13 +38,24 @@ import ca.uhn.fhir.model.base.composite.BaseResourceReferenceDt;
 
 public class RuntimeChildResourceDefinition extends BaseRuntimeDeclaredChildDefinition {
 
+	private final FhirContext myContext;
 	private BaseRuntimeElementDefinition<?> myRuntimeDef;
 	private List<Class<? extends IBaseResource>> myResourceTypes;
 	private Set<String> myValidChildNames;
 
 	public RuntimeChildResourceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBaseResource>> theResourceTypes) {
+		this(theField, theElementName, theChildAnnotation, theDescriptionAnnotation, theResourceTypes, null);
+	}
+
+	/**
+	 * @param theContext
+	 *            If not <code>null</code>, the target resource types do not need to have been scanned when this
+	 *            definition is sealed (see {@link FhirContext#setLazyModelScanning(boolean)})
+	 */
+	RuntimeChildResourceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBaseResource>> theResourceTypes, FhirContext theContext) {
 		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 		myResourceTypes = theResourceTypes;
+		myContext = theContext;
 
 		if (theResourceTypes == null || theResourceTypes.isEmpty()) {
 			throw new ConfigurationException("Field '" + theField.getName() + "' on type '" + theField.getDeclaringClass().getCanonicalName() + "' has no resource types noted");
@@ -79,7 +90,7 @@ public class RuntimeChildResourceDefinition extends BaseRuntimeDeclaredChildDefi
 
 	@Override
 	void sealAndInitialize(Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theClassToElementDefinitions) {
-		myRuntimeDef = new RuntimeResourceReferenceDefinition(getElementName(), myResourceTypes);
+		myRuntimeDef = new RuntimeResourceReferenceDefinition(getElementName(), myResourceTypes, myContext);
 		myRuntimeDef.sealAndInitialize(theClassToElementDefinitions);
 
 		myValidChildNames = new HashSet<String>();
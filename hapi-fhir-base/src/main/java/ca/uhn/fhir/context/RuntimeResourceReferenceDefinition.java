@@ -33,15 +33,26 @@ import ca.uhn.fhir.model.base.composite.BaseResourceReferenceDt;
 
 public class RuntimeResourceReferenceDefinition extends BaseRuntimeElementDefinition<BaseResourceReferenceDt> {
 
+	private final FhirContext myContext;
 	private final List<Class<? extends IBaseResource>> myResourceTypes;
 	private HashMap<Class<? extends IBaseResource>, RuntimeResourceDefinition> myResourceTypeToDefinition;
 
 	public RuntimeResourceReferenceDefinition(String theName, List<Class<? extends IBaseResource>> theResourceTypes) {
+		this(theName, theResourceTypes, null);
+	}
+
+	/**
+	 * @param theContext
+	 *            If not <code>null</code>, target resource types which have not been scanned yet when this definition
+	 *            is sealed are looked up from this context the first time they are needed
+	 */
+	RuntimeResourceReferenceDefinition(String theName, List<Class<? extends IBaseResource>> theResourceTypes, FhirContext theContext) {
 		super(theName, BaseResourceReferenceDt.class);
 		if (theResourceTypes == null || theResourceTypes.isEmpty()) {
 			throw new ConfigurationException("Element '" + theName + "' has no resource types noted");
 		}
 		myResourceTypes = theResourceTypes;
+		myContext = theContext;
 	}
 
 	public List<Class<? extends IBaseResource>> getResourceTypes() {
@@ -57,6 +68,9 @@ public class RuntimeResourceReferenceDefinition extends BaseRuntimeElementDefini
 			}
 			RuntimeResourceDefinition definition = (RuntimeResourceDefinition) theClassToElementDefinitions.get(next);
 			if (definition == null) {
+				if (myContext != null) {
+					continue;
+				}
 				throw new ConfigurationException("Couldn't find definition for: " + next.getCanonicalName());
 			}
 			myResourceTypeToDefinition.put(next, definition);
@@ -70,6 +84,9 @@ public class RuntimeResourceReferenceDefinition extends BaseRuntimeElementDefini
 
 	public RuntimeResourceDefinition getDefinitionForResourceType(Class<? extends IResource> theType) {
 		RuntimeResourceDefinition retVal = myResourceTypeToDefinition.get(theType);
+		if (retVal == null && myContext != null && myResourceTypes.contains(theType)) {
+			retVal = myContext.getResourceDefinition(theType);
+		}
 		if (retVal == null) {
 			throw new ConfigurationException("Unknown type:  " + theType.getCanonicalName());
 		}
@@ -110,7 +110,21 @@ public class Bundle extends BaseBundle /* implements IElement */{
 	 * @return Returns the newly created bundle entry that was added to the bundle
 	 */
 	public BundleEntry addResource(IResource theResource, FhirContext theContext, String theServerBase) {
-		BundleEntry entry = addEntry();
+		BundleEntry entry = createEntry(theResource, theContext, theServerBase);
+		addEntry(entry);
+		return entry;
+	}
+
+	/**
+	 * Creates a new entry using the given resource and populates it the same way {@link #addResource(IResource, FhirContext, String)}
+	 * does, but without adding it to any bundle
+	 * 
+	 * @param theResource
+	 *            The resource
+	 * @return Returns the newly created bundle entry
+	 */
+	public static BundleEntry createEntry(IResource theResource, FhirContext theContext, String theServerBase) {
+		BundleEntry entry = new BundleEntry();
 		entry.setResource(theResource);
 
 		RuntimeResourceDefinition def = theContext.getResourceDefinition(theResource);
@@ -0,0 +1,56 @@
+package ca.uhn.fhir.model.api;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Provides access to the child fields of a model class without using reflection. Implementations are generated by the
+ * Tinder plugin as a nested class called <code>ModelAccessor</code> within each generated resource, resource block and
+ * composite datatype, and are picked up automatically when the model is scanned. Model classes which do not provide one
+ * (e.g. user defined types) are accessed reflectively instead.
+ * <p>
+ * This interface is not intended to be implemented or called by user code.
+ * </p>
+ */
+public interface IModelAccessor {
+
+	/**
+	 * Returns the index of the field with the given name, as used by {@link #getFieldValue(Object, int)} and
+	 * {@link #setFieldValue(Object, int, Object)}, or <code>-1</code> if this accessor does not provide access to the
+	 * field
+	 */
+	int getFieldIndex(String theFieldName);
+
+	/**
+	 * Returns the current value of the given field
+	 */
+	Object getFieldValue(Object theTarget, int theFieldIndex);
+
+	/**
+	 * Creates a new instance of the model class
+	 */
+	Object newInstance();
+
+	/**
+	 * Replaces the value of the given field
+	 */
+	void setFieldValue(Object theTarget, int theFieldIndex, Object theValue);
+
+}
@@ -38,9 +38,23 @@ import ca.uhn.fhir.model.api.annotation.SimpleSetter;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.util.XmlUtil;
 
+/**
+ * XHTML content, such as the DIV of a resource narrative.
+ * <p>
+ * The content is kept in whichever form it was supplied in (a string, e.g. when parsed from JSON, or a list of XML
+ * events, e.g. when parsed from XML) and is only converted to the other form the first time that form is requested. A
+ * narrative which is parsed and then encoded in the same format is therefore passed through as-is, without being
+ * parsed into events or re-serialized.
+ * </p>
+ */
 @DatatypeDef(name = "xhtml")
 public class XhtmlDt extends BasePrimitive<List<XMLEvent>> {
 
+	private List<XMLEvent> myValue;
+	private String myValueAsString;
+	private volatile boolean myValueEncoded = true;
+	private volatile boolean myValueParsed = true;
+
 	/**
 	 * Constructor
 	 */
@@ -71,21 +85,77 @@ public class XhtmlDt extends BasePrimitive<List<XMLEvent>> {
 	 */
 	@Override
 	public void setValueAsString(String theValue) throws DataFormatException {
-		if (theValue == null || theValue.isEmpty()) {
-			super.setValueAsString(null);
-		} else {
-			String value = theValue.trim();
+		String value = null;
+		if (theValue != null && !theValue.isEmpty()) {
+			value = theValue.trim();
 			if (value.charAt(0) != '<') {
 				value = "<div>" + value + "</div>";
 			}
-			super.setValueAsString(value);
 		}
+
+		myValueAsString = value;
+		myValueEncoded = true;
+		myValue = null;
+		myValueParsed = value == null;
+	}
+
+	/**
+	 * Sets the value as a list of XML events. The events are not encoded into a string until
+	 * {@link #getValueAsString()} is called.
+	 */
+	@Override
+	public XhtmlDt setValue(List<XMLEvent> theValue) throws DataFormatException {
+		myValue = theValue;
+		myValueParsed = true;
+		myValueAsString = null;
+		myValueEncoded = theValue == null;
+		return this;
+	}
+
+	/**
+	 * Returns the value as a list of XML events. If the value was supplied as a string (including when it was parsed
+	 * from JSON), it is parsed into events the first time this method is called.
+	 * 
+	 * @throws DataFormatException
+	 *             If the string value is not valid XHTML
+	 */
+	@Override
+	public List<XMLEvent> getValue() {
+		if (!myValueParsed) {
+			myValue = parse(myValueAsString);
+			myValueParsed = true;
+		}
+		return myValue;
+	}
+
+	/**
+	 * Returns the value as a string. If the value was supplied as a list of XML events (including when it was parsed
+	 * from XML), the events are encoded the first time this method is called.
+	 */
+	@Override
+	public String getValueAsString() throws DataFormatException {
+		if (!myValueEncoded) {
+			myValueAsString = encode(myValue);
+			myValueEncoded = true;
+		}
+		return myValueAsString;
 	}
 
 	public boolean hasContent() {
 		return getValue() != null && getValue().size() > 0;
 	}
 
+	@Override
+	public boolean isEmpty() {
+		if (!isBaseEmpty()) {
+			return false;
+		}
+		if (myValueParsed) {
+			return myValue == null;
+		}
+		return myValueAsString == null;
+	}
+
 	@Override
 	protected List<XMLEvent> parse(String theValue) {
 		String val = theValue.trim();
@@ -126,7 +196,7 @@ public class XhtmlDt extends BasePrimitive<List<XMLEvent>> {
 		try {
 			StringWriter w = new StringWriter();
 			XMLEventWriter ew = XmlUtil.createXmlWriter(w);
-			for (XMLEvent next : getValue()) {
+			for (XMLEvent next : theValue) {
 				if (next.isCharacters()) {
 					ew.add(next);
 				} else {
@@ -23,10 +23,13 @@ package ca.uhn.fhir.parser;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,9 +59,20 @@ import ca.uhn.fhir.model.primitive.IdDt;
 
 public abstract class BaseParser implements IParser {
 
-	private ContainedResources myContainedResources;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/*
+	 * Each thread that encodes with this parser gets its own instance, so that a single parser can be shared between
+	 * threads. The instance is cleared and reused for each resource being encoded.
+	 */
+	private final ThreadLocal<ContainedResources> myContainedResources = new ThreadLocal<ContainedResources>() {
+		@Override
+		protected ContainedResources initialValue() {
+			return new ContainedResources();
+		}
+	};
 	private FhirContext myContext;
-	private boolean mySuppressNarratives;
+	private volatile boolean mySuppressNarratives;
 
 	public BaseParser(FhirContext theContext) {
 		myContext = theContext;
@@ -170,9 +184,17 @@ public abstract class BaseParser implements IParser {
 	}
 
 	public void containResourcesForEncoding(IBaseResource theResource) {
-		ContainedResources contained = new ContainedResources();
+		ContainedResources contained = myContainedResources.get();
+		contained.clear();
 		containResourcesForEncoding(contained, theResource, theResource);
-		myContainedResources = contained;
+	}
+
+	/**
+	 * Releases the contained resources found by {@link #containResourcesForEncoding(IBaseResource)} once the resource
+	 * has been encoded, so that the reused holder doesn't keep them reachable
+	 */
+	void clearContainedResources() {
+		myContainedResources.get().clear();
 	}
 
 	@Override
@@ -213,7 +235,7 @@ public abstract class BaseParser implements IParser {
 	}
 
 	ContainedResources getContainedResources() {
-		return myContainedResources;
+		return myContainedResources.get();
 	}
 
 	/**
@@ -224,6 +246,11 @@ public abstract class BaseParser implements IParser {
 		return mySuppressNarratives;
 	}
 
+	@Override
+	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, InputStream theInputStream) {
+		return parseBundle(theResourceType, new InputStreamReader(theInputStream, UTF8));
+	}
+
 	@Override
 	public Bundle parseBundle(Reader theReader) {
 		return parseBundle(null, theReader);
@@ -242,6 +269,11 @@ public abstract class BaseParser implements IParser {
 		return (T) parseResource(theResourceType, reader);
 	}
 
+	@Override
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, InputStream theInputStream) {
+		return parseResource(theResourceType, new InputStreamReader(theInputStream, UTF8));
+	}
+
 	@Override
 	public IResource parseResource(Reader theReader) throws ConfigurationException, DataFormatException {
 		return parseResource(null, theReader);
@@ -324,6 +356,15 @@ public abstract class BaseParser implements IParser {
 			myResources.add(theResource);
 		}
 
+		public void clear() {
+			if (myResources.isEmpty()) {
+				return;
+			}
+			myNextContainedId = 1;
+			myResourceToId.clear();
+			myResources.clear();
+		}
+
 		public List<IBaseResource> getContainedResources() {
 			return myResources;
 		}
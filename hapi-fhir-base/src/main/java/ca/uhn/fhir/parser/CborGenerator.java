@@ -0,0 +1,424 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map.Entry;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * A {@link JsonGenerator} which writes the JSON data model as <a href="http://tools.ietf.org/html/rfc7049">CBOR</a>
+ * instead of as text. Objects and arrays are written with indefinite lengths so that nothing needs to be held back
+ * until the end of a container, and decimals are written as decimal fractions so that their precision is preserved
+ * exactly.
+ * <p>
+ * Output is collected in a fixed size buffer which is written to the underlying stream whenever it fills up, and when
+ * {@link #flush()} is called.
+ * </p>
+ */
+class CborGenerator implements JsonGenerator {
+
+	static final int MAJOR_ARRAY = 4;
+	static final int MAJOR_BYTES = 2;
+	static final int MAJOR_MAP = 5;
+	static final int MAJOR_NEGATIVE = 1;
+	static final int MAJOR_SIMPLE = 7;
+	static final int MAJOR_TAG = 6;
+	static final int MAJOR_TEXT = 3;
+	static final int MAJOR_UNSIGNED = 0;
+
+	static final int INFO_INDEFINITE = 31;
+	static final int SIMPLE_BREAK = 0xFF;
+	static final int SIMPLE_FALSE = 0xF4;
+	static final int SIMPLE_FLOAT64 = 0xFB;
+	static final int SIMPLE_NULL = 0xF6;
+	static final int SIMPLE_TRUE = 0xF5;
+
+	static final int TAG_DECIMAL_FRACTION = 4;
+	static final int TAG_NEGATIVE_BIGNUM = 3;
+	static final int TAG_POSITIVE_BIGNUM = 2;
+
+	private final byte[] myBuffer = new byte[8192];
+	private int myCount;
+	private final OutputStream myOutputStream;
+
+	CborGenerator(OutputStream theOutputStream) {
+		myOutputStream = theOutputStream;
+	}
+
+	@Override
+	public void close() {
+		flush();
+		try {
+			myOutputStream.close();
+		} catch (IOException e) {
+			throw new JsonException("Failed to close CBOR output", e);
+		}
+	}
+
+	private void ensureCapacity(int theBytes) {
+		if (myCount + theBytes > myBuffer.length) {
+			writeBuffer();
+		}
+	}
+
+	@Override
+	public void flush() {
+		writeBuffer();
+		try {
+			myOutputStream.flush();
+		} catch (IOException e) {
+			throw new JsonException("Failed to write CBOR output", e);
+		}
+	}
+
+	@Override
+	public JsonGenerator write(BigDecimal theValue) {
+		if (theValue.scale() == 0) {
+			writeInteger(theValue.unscaledValue());
+		} else {
+			writeHead(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+			writeHead(MAJOR_ARRAY, 2);
+			writeLong(-theValue.scale());
+			writeInteger(theValue.unscaledValue());
+		}
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(BigInteger theValue) {
+		writeInteger(theValue);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(boolean theValue) {
+		writeByte(theValue ? SIMPLE_TRUE : SIMPLE_FALSE);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(double theValue) {
+		ensureCapacity(9);
+		myBuffer[myCount++] = (byte) SIMPLE_FLOAT64;
+		writeRaw(Double.doubleToLongBits(theValue), 8);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(int theValue) {
+		writeLong(theValue);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(JsonValue theValue) {
+		switch (theValue.getValueType()) {
+		case ARRAY:
+			writeStartArray();
+			for (JsonValue next : (JsonArray) theValue) {
+				write(next);
+			}
+			writeEnd();
+			break;
+		case OBJECT:
+			writeStartObject();
+			for (Entry<String, JsonValue> next : ((JsonObject) theValue).entrySet()) {
+				write(next.getKey(), next.getValue());
+			}
+			writeEnd();
+			break;
+		case STRING:
+			writeText(((JsonString) theValue).getString());
+			break;
+		case NUMBER:
+			write(((JsonNumber) theValue).bigDecimalValue());
+			break;
+		case TRUE:
+			write(true);
+			break;
+		case FALSE:
+			write(false);
+			break;
+		case NULL:
+			writeNull();
+			break;
+		}
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(long theValue) {
+		writeLong(theValue);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(String theValue) {
+		writeText(theValue);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(String theName, BigDecimal theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, BigInteger theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, boolean theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, double theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, int theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, JsonValue theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, long theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, String theValue) {
+		writeText(theName);
+		return write(theValue);
+	}
+
+	private void writeBuffer() {
+		if (myCount > 0) {
+			try {
+				myOutputStream.write(myBuffer, 0, myCount);
+			} catch (IOException e) {
+				throw new JsonException("Failed to write CBOR output", e);
+			}
+			myCount = 0;
+		}
+	}
+
+	private void writeByte(int theByte) {
+		ensureCapacity(1);
+		myBuffer[myCount++] = (byte) theByte;
+	}
+
+	@Override
+	public JsonGenerator writeEnd() {
+		writeByte(SIMPLE_BREAK);
+		return this;
+	}
+
+	/**
+	 * Writes the initial byte of an item, followed by its argument in the smallest form which can hold it. The value
+	 * is treated as unsigned.
+	 */
+	private void writeHead(int theMajorType, long theValue) {
+		ensureCapacity(9);
+		int major = theMajorType << 5;
+		if (theValue >= 0 && theValue < 24) {
+			myBuffer[myCount++] = (byte) (major | (int) theValue);
+		} else if (theValue >= 0 && theValue < 0x100L) {
+			myBuffer[myCount++] = (byte) (major | 24);
+			writeRaw(theValue, 1);
+		} else if (theValue >= 0 && theValue < 0x10000L) {
+			myBuffer[myCount++] = (byte) (major | 25);
+			writeRaw(theValue, 2);
+		} else if (theValue >= 0 && theValue < 0x100000000L) {
+			myBuffer[myCount++] = (byte) (major | 26);
+			writeRaw(theValue, 4);
+		} else {
+			myBuffer[myCount++] = (byte) (major | 27);
+			writeRaw(theValue, 8);
+		}
+	}
+
+	private void writeInteger(BigInteger theValue) {
+		if (theValue.bitLength() < 64) {
+			writeLong(theValue.longValue());
+			return;
+		}
+
+		int majorType;
+		long tag;
+		BigInteger magnitude;
+		if (theValue.signum() >= 0) {
+			majorType = MAJOR_UNSIGNED;
+			tag = TAG_POSITIVE_BIGNUM;
+			magnitude = theValue;
+		} else {
+			majorType = MAJOR_NEGATIVE;
+			tag = TAG_NEGATIVE_BIGNUM;
+			magnitude = theValue.negate().subtract(BigInteger.ONE);
+		}
+
+		// Plain integers have an unsigned 64 bit argument, so only larger values need a bignum
+		if (magnitude.bitLength() <= 64) {
+			writeHead(majorType, magnitude.longValue());
+			return;
+		}
+
+		writeHead(MAJOR_TAG, tag);
+		byte[] bytes = magnitude.toByteArray();
+		int offset = bytes[0] == 0 ? 1 : 0;
+		writeHead(MAJOR_BYTES, bytes.length - offset);
+		for (int i = offset; i < bytes.length; i++) {
+			writeByte(bytes[i]);
+		}
+	}
+
+	private void writeLong(long theValue) {
+		if (theValue >= 0) {
+			writeHead(MAJOR_UNSIGNED, theValue);
+		} else {
+			writeHead(MAJOR_NEGATIVE, -1 - theValue);
+		}
+	}
+
+	@Override
+	public JsonGenerator writeNull() {
+		writeByte(SIMPLE_NULL);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator writeNull(String theName) {
+		writeText(theName);
+		return writeNull();
+	}
+
+	/**
+	 * Writes the lowest <code>theLength</code> bytes of the given value in network byte order. Callers must have
+	 * ensured that there is room in the buffer.
+	 */
+	private void writeRaw(long theValue, int theLength) {
+		for (int shift = (theLength - 1) * 8; shift >= 0; shift -= 8) {
+			myBuffer[myCount++] = (byte) (theValue >>> shift);
+		}
+	}
+
+	@Override
+	public JsonGenerator writeStartArray() {
+		writeByte((MAJOR_ARRAY << 5) | INFO_INDEFINITE);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator writeStartArray(String theName) {
+		writeText(theName);
+		return writeStartArray();
+	}
+
+	@Override
+	public JsonGenerator writeStartObject() {
+		writeByte((MAJOR_MAP << 5) | INFO_INDEFINITE);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator writeStartObject(String theName) {
+		writeText(theName);
+		return writeStartObject();
+	}
+
+	/**
+	 * Writes a text string. The UTF-8 length is needed up front, so the string is measured first and then encoded
+	 * straight into the output buffer. Unpaired surrogates are written as '?', as {@link String#getBytes(String)} does.
+	 */
+	private void writeText(String theValue) {
+		int length = theValue.length();
+		long byteLength = 0;
+		for (int i = 0; i < length; i++) {
+			char next = theValue.charAt(i);
+			if (next < 0x80) {
+				byteLength += 1;
+			} else if (next < 0x800) {
+				byteLength += 2;
+			} else if (Character.isHighSurrogate(next) && i + 1 < length && Character.isLowSurrogate(theValue.charAt(i + 1))) {
+				byteLength += 4;
+				i++;
+			} else if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+				byteLength += 1;
+			} else {
+				byteLength += 3;
+			}
+		}
+
+		writeHead(MAJOR_TEXT, byteLength);
+
+		byte[] buffer = myBuffer;
+		for (int i = 0; i < length; i++) {
+			if (myCount + 4 > buffer.length) {
+				writeBuffer();
+			}
+			char next = theValue.charAt(i);
+			if (next < 0x80) {
+				buffer[myCount++] = (byte) next;
+			} else if (next < 0x800) {
+				buffer[myCount++] = (byte) (0xC0 | (next >> 6));
+				buffer[myCount++] = (byte) (0x80 | (next & 0x3F));
+			} else if (Character.isHighSurrogate(next) && i + 1 < length && Character.isLowSurrogate(theValue.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(next, theValue.charAt(++i));
+				buffer[myCount++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[myCount++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[myCount++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[myCount++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+				buffer[myCount++] = '?';
+			} else {
+				buffer[myCount++] = (byte) (0xE0 | (next >> 12));
+				buffer[myCount++] = (byte) (0x80 | ((next >> 6) & 0x3F));
+				buffer[myCount++] = (byte) (0x80 | (next & 0x3F));
+			}
+		}
+	}
+
+}
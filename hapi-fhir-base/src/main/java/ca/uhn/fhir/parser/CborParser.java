@@ -0,0 +1,168 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+import javax.json.stream.JsonGenerator;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.instance.model.IBaseResource;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.TagList;
+import ca.uhn.fhir.rest.server.EncodingEnum;
+
+/**
+ * Encodes and parses resources and bundles as <a href="http://tools.ietf.org/html/rfc7049">CBOR</a>, a binary
+ * representation of the same structure that the {@link JsonParser JSON parser} uses. Because every string is prefixed
+ * with its length, CBOR can be read without scanning for delimiters or unescaping text, so it is considerably cheaper
+ * to parse than JSON or XML, and it is somewhat more compact. This makes it a good choice for traffic between servers
+ * which both use HAPI, and for storage. It is not part of the FHIR specification, so it should not be used with
+ * clients or servers which may not support it.
+ * <p>
+ * CBOR content is binary, so the methods which accept an {@link InputStream} or an {@link OutputStream} should be
+ * preferred. Methods which work with characters (i.e. with a {@link Reader}, a {@link Writer} or a String) read and
+ * write the <a href="http://tools.ietf.org/html/rfc4648#section-4">base64</a> form of the same CBOR content, which is
+ * about a third larger. HAPI only uses this parser where content is read from or written to a byte stream (see
+ * {@link EncodingEnum#isBinary()}), and {@link EncodingEnum#forContentType(String)} never returns the CBOR encoding.
+ * The pretty print setting has no effect.
+ * </p>
+ */
+public class CborParser extends BaseParser {
+
+	private final JsonParser myJsonParser;
+
+	/**
+	 * Do not use this constructor, the recommended way to obtain a new instance of the CBOR parser is to invoke
+	 * {@link FhirContext#newCborParser()}.
+	 */
+	public CborParser(FhirContext theContext) {
+		super(theContext);
+
+		// The JSON parser does the work, this just swaps the syntax it reads and writes
+		myJsonParser = new JsonParser(theContext) {
+			@Override
+			JsonGenerator createJsonGenerator(OutputStream theOutputStream) {
+				return new CborGenerator(theOutputStream);
+			}
+		};
+	}
+
+	@Override
+	public void encodeBundleToOutputStream(Bundle theBundle, OutputStream theOutputStream) throws IOException, DataFormatException {
+		myJsonParser.encodeBundleToOutputStream(theBundle, theOutputStream);
+	}
+
+	@Override
+	public void encodeBundleToWriter(Bundle theBundle, Writer theWriter) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		myJsonParser.encodeBundleToOutputStream(theBundle, bytes);
+		writeBase64(bytes, theWriter);
+	}
+
+	@Override
+	public void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException, DataFormatException {
+		myJsonParser.encodeResourceToOutputStream(theResource, theOutputStream);
+	}
+
+	@Override
+	public void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		myJsonParser.encodeResourceToOutputStream(theResource, bytes);
+		writeBase64(bytes, theWriter);
+	}
+
+	@Override
+	public void encodeTagListToWriter(TagList theTagList, Writer theWriter) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		myJsonParser.encodeTagListToOutputStream(theTagList, bytes);
+		writeBase64(bytes, theWriter);
+	}
+
+	@Override
+	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, InputStream theInputStream) {
+		return myJsonParser.parseBundleStreaming(theResourceType, new CborStreamParser(theInputStream), null);
+	}
+
+	@Override
+	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader) {
+		return parseBundle(theResourceType, theReader, null);
+	}
+
+	@Override
+	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader, IBundleEntryHandler theEntryHandler) {
+		return myJsonParser.parseBundleStreaming(theResourceType, new CborStreamParser(readBase64(theReader)), theEntryHandler);
+	}
+
+	@Override
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, InputStream theInputStream) {
+		return myJsonParser.parseResourceStreaming(theResourceType, new CborStreamParser(theInputStream));
+	}
+
+	@Override
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, Reader theReader) {
+		return myJsonParser.parseResourceStreaming(theResourceType, new CborStreamParser(readBase64(theReader)));
+	}
+
+	@Override
+	public TagList parseTagList(Reader theReader) {
+		return myJsonParser.parseTagListStreaming(new CborStreamParser(readBase64(theReader)));
+	}
+
+	@Override
+	public IParser setPrettyPrint(boolean thePrettyPrint) {
+		return this;
+	}
+
+	@Override
+	public IParser setSuppressNarratives(boolean theSuppressNarratives) {
+		myJsonParser.setSuppressNarratives(theSuppressNarratives);
+		return super.setSuppressNarratives(theSuppressNarratives);
+	}
+
+	private static InputStream readBase64(Reader theReader) {
+		String text;
+		try {
+			text = IOUtils.toString(theReader);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to read CBOR content: " + e.getMessage(), e);
+		}
+		if (!Base64.isBase64(text)) {
+			throw new DataFormatException("Invalid CBOR content detected, text content must be base64 encoded");
+		}
+		return new ByteArrayInputStream(Base64.decodeBase64(text));
+	}
+
+	private static void writeBase64(ByteArrayOutputStream theBytes, Writer theWriter) throws IOException {
+		theWriter.write(Base64.encodeBase64String(theBytes.toByteArray()));
+		theWriter.flush();
+	}
+
+}
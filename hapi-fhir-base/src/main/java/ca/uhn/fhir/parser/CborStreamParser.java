@@ -0,0 +1,466 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static ca.uhn.fhir.parser.CborGenerator.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParser;
+
+/**
+ * A {@link JsonParser} which reads content written by {@link CborGenerator} (or any other CBOR encoder which restricts
+ * itself to the JSON data model) and produces the same events that a JSON parser would produce for the equivalent
+ * text. Both definite and indefinite length items are accepted. Tags other than bignums and decimal fractions are
+ * ignored, and the tagged item is read as if it were untagged.
+ */
+class CborStreamParser implements JsonParser {
+
+	private static final int MAX_DEPTH = 1000;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte[] myBuffer = new byte[8192];
+	private int myDepth;
+	private boolean[] myExpectKey = new boolean[16];
+	private final InputStream myInputStream;
+	private boolean[] myIsMap = new boolean[16];
+	private int myLimit;
+	private BigDecimal myNumber;
+	private long myOffset;
+	private int myPos;
+	private long[] myRemaining = new long[16];
+	private boolean myStarted;
+	private String myString;
+
+	CborStreamParser(InputStream theInputStream) {
+		myInputStream = theInputStream;
+	}
+
+	@Override
+	public void close() {
+		try {
+			myInputStream.close();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to close CBOR input", e);
+		}
+	}
+
+	private DataFormatException error(String theMessage) {
+		return new DataFormatException("Invalid CBOR content at offset " + (myOffset + myPos) + ": " + theMessage);
+	}
+
+	/**
+	 * Ensures that at least the given number of bytes are available in the buffer
+	 */
+	private void fill(int theBytes) {
+		if (myLimit - myPos >= theBytes) {
+			return;
+		}
+		int remaining = myLimit - myPos;
+		System.arraycopy(myBuffer, myPos, myBuffer, 0, remaining);
+		myOffset += myPos;
+		myPos = 0;
+		myLimit = remaining;
+		try {
+			while (myLimit < theBytes) {
+				int count = myInputStream.read(myBuffer, myLimit, myBuffer.length - myLimit);
+				if (count == -1) {
+					throw error("unexpected end of content");
+				}
+				myLimit += count;
+			}
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to read CBOR content", e);
+		}
+	}
+
+	@Override
+	public BigDecimal getBigDecimal() {
+		if (myNumber == null) {
+			throw new IllegalStateException("Current event is not a number");
+		}
+		return myNumber;
+	}
+
+	@Override
+	public int getInt() {
+		return getBigDecimal().intValue();
+	}
+
+	@Override
+	public JsonLocation getLocation() {
+		final long offset = myOffset + myPos;
+		return new JsonLocation() {
+			@Override
+			public long getColumnNumber() {
+				return -1;
+			}
+
+			@Override
+			public long getLineNumber() {
+				return -1;
+			}
+
+			@Override
+			public long getStreamOffset() {
+				return offset;
+			}
+
+			@Override
+			public String toString() {
+				return "(offset " + offset + ")";
+			}
+		};
+	}
+
+	@Override
+	public long getLong() {
+		return getBigDecimal().longValue();
+	}
+
+	@Override
+	public String getString() {
+		if (myString != null) {
+			return myString;
+		}
+		if (myNumber != null) {
+			return myNumber.toString();
+		}
+		throw new IllegalStateException("Current event is not a string, key or number");
+	}
+
+	@Override
+	public boolean hasNext() {
+		return myDepth > 0 || !myStarted;
+	}
+
+	@Override
+	public boolean isIntegralNumber() {
+		return getBigDecimal().scale() == 0;
+	}
+
+	@Override
+	public Event next() {
+		myString = null;
+		myNumber = null;
+
+		if (myDepth > 0) {
+			int idx = myDepth - 1;
+			if (myRemaining[idx] == 0) {
+				return popContainer();
+			}
+			if (myRemaining[idx] == -1 && peekByte() == SIMPLE_BREAK) {
+				myPos++;
+				return popContainer();
+			}
+			if (myRemaining[idx] > 0) {
+				myRemaining[idx]--;
+			}
+			if (myIsMap[idx]) {
+				if (myExpectKey[idx]) {
+					myExpectKey[idx] = false;
+					int initial = readByte();
+					if ((initial >>> 5) != MAJOR_TEXT) {
+						throw error("object keys must be text strings");
+					}
+					myString = readText(initial & 0x1F);
+					return Event.KEY_NAME;
+				}
+				myExpectKey[idx] = true;
+			}
+		} else if (myStarted) {
+			throw new NoSuchElementException();
+		}
+
+		myStarted = true;
+		return readItem(readByte());
+	}
+
+	private int peekByte() {
+		fill(1);
+		return myBuffer[myPos] & 0xFF;
+	}
+
+	private Event popContainer() {
+		myDepth--;
+		return myIsMap[myDepth] ? Event.END_OBJECT : Event.END_ARRAY;
+	}
+
+	private Event pushContainer(boolean theMap, long theCount) {
+		if (myDepth == MAX_DEPTH) {
+			throw error("content is nested too deeply");
+		}
+		if (myDepth == myIsMap.length) {
+			int newLength = myDepth * 2;
+			myIsMap = Arrays.copyOf(myIsMap, newLength);
+			myExpectKey = Arrays.copyOf(myExpectKey, newLength);
+			myRemaining = Arrays.copyOf(myRemaining, newLength);
+		}
+		myIsMap[myDepth] = theMap;
+		myExpectKey[myDepth] = theMap;
+		myRemaining[myDepth] = theCount;
+		myDepth++;
+		return theMap ? Event.START_OBJECT : Event.START_ARRAY;
+	}
+
+	/**
+	 * Reads the argument which follows an initial byte with the given additional information. Callers must check for
+	 * an indefinite length themselves where one is allowed. Values which do not fit in a signed long come back
+	 * negative, so callers which accept the full unsigned range must check for this.
+	 */
+	private long readArgument(int theInfo) {
+		if (theInfo < 24) {
+			return theInfo;
+		}
+		switch (theInfo) {
+		case 24:
+			return readRaw(1);
+		case 25:
+			return readRaw(2);
+		case 26:
+			return readRaw(4);
+		case 27:
+			return readRaw(8);
+		case INFO_INDEFINITE:
+			throw error("unexpected indefinite length");
+		default:
+			throw error("reserved additional information value " + theInfo);
+		}
+	}
+
+	/**
+	 * Reads the length of a definite length string or container
+	 */
+	private int readLength(int theInfo) {
+		long retVal = readArgument(theInfo);
+		if (retVal < 0 || retVal > Integer.MAX_VALUE) {
+			throw error("unsupported length " + retVal);
+		}
+		return (int) retVal;
+	}
+
+	private int readByte() {
+		fill(1);
+		return myBuffer[myPos++] & 0xFF;
+	}
+
+	/**
+	 * Reads the given number of bytes. The result grows as data arrives, so a corrupt length can't cause a huge
+	 * allocation up front.
+	 */
+	private byte[] readBytes(int theLength) {
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream(Math.min(theLength, myBuffer.length));
+		int remaining = theLength;
+		while (remaining > 0) {
+			fill(1);
+			int count = Math.min(remaining, myLimit - myPos);
+			retVal.write(myBuffer, myPos, count);
+			myPos += count;
+			remaining -= count;
+		}
+		return retVal.toByteArray();
+	}
+
+	/**
+	 * Reads an integer item (a plain integer or a bignum), as found inside a decimal fraction
+	 */
+	private BigInteger readInteger() {
+		int initial = readByte();
+		int major = initial >>> 5;
+		int info = initial & 0x1F;
+		switch (major) {
+		case MAJOR_UNSIGNED:
+			return toUnsigned(readArgument(info));
+		case MAJOR_NEGATIVE:
+			return BigInteger.ONE.negate().subtract(toUnsigned(readArgument(info)));
+		case MAJOR_TAG:
+			long tag = readArgument(info);
+			if (tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+				return readBignum(tag);
+			}
+			throw error("expected an integer but found tag " + tag);
+		default:
+			throw error("expected an integer but found major type " + major);
+		}
+	}
+
+	private BigInteger readBignum(long theTag) {
+		int initial = readByte();
+		if ((initial >>> 5) != MAJOR_BYTES) {
+			throw error("bignum content must be a byte string");
+		}
+		BigInteger magnitude = new BigInteger(1, readBytes(readLength(initial & 0x1F)));
+		return theTag == TAG_POSITIVE_BIGNUM ? magnitude : BigInteger.ONE.negate().subtract(magnitude);
+	}
+
+	private Event readItem(int theInitial) {
+		int major = theInitial >>> 5;
+		int info = theInitial & 0x1F;
+		switch (major) {
+		case MAJOR_UNSIGNED: {
+			long value = readArgument(info);
+			myNumber = value >= 0 ? BigDecimal.valueOf(value) : new BigDecimal(toUnsigned(value));
+			return Event.VALUE_NUMBER;
+		}
+		case MAJOR_NEGATIVE: {
+			long value = readArgument(info);
+			myNumber = value >= 0 ? BigDecimal.valueOf(-1 - value) : new BigDecimal(BigInteger.ONE.negate().subtract(toUnsigned(value)));
+			return Event.VALUE_NUMBER;
+		}
+		case MAJOR_TEXT:
+			myString = readText(info);
+			return Event.VALUE_STRING;
+		case MAJOR_ARRAY:
+			return pushContainer(false, info == INFO_INDEFINITE ? -1 : readLength(info));
+		case MAJOR_MAP:
+			return pushContainer(true, info == INFO_INDEFINITE ? -1 : readLength(info) * 2L);
+		case MAJOR_TAG:
+			return readTagged(readArgument(info));
+		case MAJOR_SIMPLE:
+			return readSimple(theInitial, info);
+		default:
+			throw error("byte strings are not supported outside of bignums");
+		}
+	}
+
+	/**
+	 * Reads the given number of bytes as an unsigned big-endian value
+	 */
+	private long readRaw(int theLength) {
+		fill(theLength);
+		long retVal = 0;
+		for (int i = 0; i < theLength; i++) {
+			retVal = (retVal << 8) | (myBuffer[myPos++] & 0xFF);
+		}
+		return retVal;
+	}
+
+	private Event readSimple(int theInitial, int theInfo) {
+		switch (theInitial) {
+		case SIMPLE_FALSE:
+			return Event.VALUE_FALSE;
+		case SIMPLE_TRUE:
+			return Event.VALUE_TRUE;
+		case SIMPLE_NULL:
+		case SIMPLE_NULL + 1: // undefined
+			return Event.VALUE_NULL;
+		default:
+			break;
+		}
+
+		double value;
+		switch (theInfo) {
+		case 25:
+			value = toDouble((int) readRaw(2));
+			break;
+		case 26:
+			value = Float.intBitsToFloat((int) readRaw(4));
+			break;
+		case 27:
+			value = Double.longBitsToDouble(readRaw(8));
+			break;
+		default:
+			throw error("unsupported simple value " + theInitial);
+		}
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw error("numbers must be finite");
+		}
+		myNumber = BigDecimal.valueOf(value);
+		return Event.VALUE_NUMBER;
+	}
+
+	private Event readTagged(long theTag) {
+		if (theTag == TAG_POSITIVE_BIGNUM || theTag == TAG_NEGATIVE_BIGNUM) {
+			myNumber = new BigDecimal(readBignum(theTag));
+			return Event.VALUE_NUMBER;
+		}
+		if (theTag == TAG_DECIMAL_FRACTION) {
+			if (readByte() != ((MAJOR_ARRAY << 5) | 2)) {
+				throw error("decimal fraction must be an array of two integers");
+			}
+			BigInteger exponent = readInteger();
+			BigInteger mantissa = readInteger();
+			if (exponent.bitLength() > 31) {
+				throw error("decimal fraction exponent is out of range");
+			}
+			myNumber = new BigDecimal(mantissa, -exponent.intValue());
+			return Event.VALUE_NUMBER;
+		}
+
+		// Any other tag (e.g. self-describe CBOR) doesn't change how the item is represented as JSON
+		return readItem(readByte());
+	}
+
+	private String readText(int theInfo) {
+		if (theInfo == INFO_INDEFINITE) {
+			StringBuilder b = new StringBuilder();
+			for (int initial = readByte(); initial != SIMPLE_BREAK; initial = readByte()) {
+				if ((initial >>> 5) != MAJOR_TEXT || (initial & 0x1F) == INFO_INDEFINITE) {
+					throw error("indefinite length text may only contain definite length text");
+				}
+				b.append(readText(initial & 0x1F));
+			}
+			return b.toString();
+		}
+
+		int length = readLength(theInfo);
+		if (length <= myBuffer.length) {
+			fill(length);
+			String retVal = new String(myBuffer, myPos, length, UTF8);
+			myPos += length;
+			return retVal;
+		}
+		return new String(readBytes(length), UTF8);
+	}
+
+	/**
+	 * Converts a IEEE 754 half precision value
+	 */
+	private static double toDouble(int theHalf) {
+		int exponent = (theHalf >> 10) & 0x1F;
+		int mantissa = theHalf & 0x3FF;
+		double value;
+		if (exponent == 0) {
+			value = mantissa * Math.pow(2, -24);
+		} else if (exponent != 31) {
+			value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+		} else {
+			value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+		}
+		return (theHalf & 0x8000) != 0 ? -value : value;
+	}
+
+	private static BigInteger toUnsigned(long theValue) {
+		if (theValue >= 0) {
+			return BigInteger.valueOf(theValue);
+		}
+		return BigInteger.valueOf(theValue & Long.MAX_VALUE).setBit(63);
+	}
+
+}
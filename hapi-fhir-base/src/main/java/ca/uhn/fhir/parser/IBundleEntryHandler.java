@@ -0,0 +1,42 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.BundleEntry;
+
+/**
+ * Callback which receives bundle entries one at a time as they are parsed, for use with
+ * {@link IParser#parseBundle(Class, java.io.Reader, IBundleEntryHandler)}
+ */
+public interface IBundleEntryHandler {
+
+	/**
+	 * Invoked once for each entry in the bundle, in document order, as soon as the entry has been completely parsed. The
+	 * entry is not added to the {@link Bundle} returned by the parser, so it may be discarded once this method returns.
+	 * 
+	 * @param theEntry
+	 *            The parsed entry
+	 */
+	void handleEntry(BundleEntry theEntry);
+
+}
@@ -21,6 +21,8 @@ package ca.uhn.fhir.parser;
  */
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 
@@ -34,15 +36,40 @@ import ca.uhn.fhir.model.api.TagList;
 /**
  * 
  * <p>
- * Thread safety: <b>Parsers are not guaranteed to be thread safe</b>. Create a new parser instance for every thread or every message being parsed/encoded.
+ * Thread safety: Once it has been configured, a parser instance may be shared between threads. Changing the
+ * configuration of a parser while it is in use by other threads is not recommended.
  * </p>
  */
 public interface IParser {
 
+	/**
+	 * Encodes a bundle as UTF-8 directly to the given stream. This is more efficient than wrapping the stream in a
+	 * {@link java.io.OutputStreamWriter} and calling {@link #encodeBundleToWriter(Bundle, Writer)}. The stream is
+	 * flushed but not closed.
+	 * 
+	 * @param theBundle
+	 *            The bundle to encode. Must not be null.
+	 * @param theOutputStream
+	 *            The stream to write to
+	 */
+	void encodeBundleToOutputStream(Bundle theBundle, OutputStream theOutputStream) throws IOException, DataFormatException;
+
 	String encodeBundleToString(Bundle theBundle) throws DataFormatException;
 
 	void encodeBundleToWriter(Bundle theBundle, Writer theWriter) throws IOException, DataFormatException;
 
+	/**
+	 * Encodes a resource as UTF-8 directly to the given stream. This is more efficient than wrapping the stream in a
+	 * {@link java.io.OutputStreamWriter} and calling {@link #encodeResourceToWriter(IBaseResource, Writer)}. The
+	 * stream is flushed but not closed.
+	 * 
+	 * @param theResource
+	 *            The resource to encode. Must not be null.
+	 * @param theOutputStream
+	 *            The stream to write to
+	 */
+	void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException, DataFormatException;
+
 	String encodeResourceToString(IBaseResource theResource) throws DataFormatException;
 
 	void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException;
@@ -66,12 +93,48 @@ public interface IParser {
 	 */
 	void encodeTagListToWriter(TagList theTagList, Writer theWriter) throws IOException;
 
+	/**
+	 * Parses a bundle from a stream containing UTF-8 encoded content (or, for a binary encoding such as CBOR, the
+	 * encoded bytes)
+	 * 
+	 * @param theResourceType
+	 *            The resource type to use for entries, or <code>null</code> to determine it from the content
+	 * @param theInputStream
+	 *            The stream to parse input from
+	 */
+	<T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, InputStream theInputStream);
+
 	<T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader);
 
 	Bundle parseBundle(Reader theReader);
 
 	Bundle parseBundle(String theMessageString) throws ConfigurationException, DataFormatException;
 
+	/**
+	 * Parses a bundle incrementally, passing each entry to the given handler as soon as it has been parsed instead of
+	 * collecting all of the entries in memory. This is useful for very large bundles, as memory use is bounded by the size
+	 * of the largest single entry rather than by the size of the bundle.
+	 * <p>
+	 * Note that because entries are not retained, references between resources in different entries are not resolved
+	 * (i.e. {@link ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt#getResource()} will not be populated for them).
+	 * </p>
+	 * <p>
+	 * For DSTU2 bundles, entry resource IDs are qualified with the bundle <code>base</code> only if it appears before the
+	 * entries (which is always the case for valid XML, and for JSON encoded by HAPI). If a JSON bundle has its
+	 * <code>base</code> after its entries, the IDs passed to the handler are left unqualified, and callers may use
+	 * {@link Bundle#getLinkBase()} of the returned bundle to qualify them.
+	 * </p>
+	 * 
+	 * @param theResourceType
+	 *            The resource type to use for entries, or <code>null</code> to determine it from the content
+	 * @param theReader
+	 *            The reader to parse input from
+	 * @param theEntryHandler
+	 *            The handler which will be invoked for each entry
+	 * @return The bundle, populated with everything except its entries
+	 */
+	<T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader, IBundleEntryHandler theEntryHandler);
+
 	/**
 	 * Parses a resource
 	 * 
@@ -85,6 +148,20 @@ public interface IParser {
 	 */
 	<T extends IBaseResource> T parseResource(Class<T> theResourceType, Reader theReader) throws DataFormatException;
 
+	/**
+	 * Parses a resource from a stream containing UTF-8 encoded content (or, for a binary encoding such as CBOR, the
+	 * encoded bytes)
+	 * 
+	 * @param theResourceType
+	 *            The resource type to use, or <code>null</code> to determine it from the content
+	 * @param theInputStream
+	 *            The stream to parse input from
+	 * @return A parsed resource
+	 * @throws DataFormatException
+	 *             If the resource can not be parsed because the data is not recognized or invalid for any reason
+	 */
+	<T extends IBaseResource> T parseResource(Class<T> theResourceType, InputStream theInputStream) throws DataFormatException;
+
 	/**
 	 * Parses a resource
 	 * 
@@ -23,14 +23,19 @@ package ca.uhn.fhir.parser;
 import static org.apache.commons.lang3.StringUtils.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -38,14 +43,19 @@ import java.util.Set;
 
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonString;
 import javax.json.JsonValue;
 import javax.json.JsonValue.ValueType;
 import javax.json.stream.JsonGenerator;
 import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
 import javax.json.stream.JsonParsingException;
 
 import org.apache.commons.lang3.StringUtils;
@@ -97,6 +107,15 @@ public class JsonParser extends BaseParser implements IParser {
 	private static final Set<String> BUNDLE_TEXTNODE_CHILDREN_DSTU1;
 	private static final Set<String> BUNDLE_TEXTNODE_CHILDREN_DSTU2;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(JsonParser.HeldExtension.class);
+	private static final JsonBuilderFactory ourBuilderFactory = Json.createBuilderFactory(null);
+	private static final JsonParserFactory ourParserFactory = Json.createParserFactory(null);
+	private static final JsonObject EMPTY_OBJECT = ourBuilderFactory.createObjectBuilder().build();
+
+	/**
+	 * The most content (in characters, or bytes for binary encodings) which will be buffered while looking for the
+	 * <code>resourceType</code> of a resource or bundle which doesn't begin with it
+	 */
+	static final int MAX_RESOURCE_TYPE_LOOKAHEAD = 1024 * 1024;
 
 	static {
 		HashSet<String> hashSetDstu1 = new HashSet<String>();
@@ -113,8 +132,12 @@ public class JsonParser extends BaseParser implements IParser {
 		BUNDLE_TEXTNODE_CHILDREN_DSTU2 = Collections.unmodifiableSet(hashSetDstu2);
 	}
 
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final JsonGeneratorFactory ourGeneratorFactory = Json.createGeneratorFactory(null);
+	private static final JsonGeneratorFactory ourPrettyPrintGeneratorFactory = Json.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+
 	private FhirContext myContext;
-	private boolean myPrettyPrint;
+	private volatile boolean myPrettyPrint;
 
 	/**
 	 * Do not use this constructor, the recommended way to obtain a new instance of the JSON parser is to invoke {@link FhirContext#newJsonParser()}.
@@ -124,8 +147,16 @@ public class JsonParser extends BaseParser implements IParser {
 		myContext = theContext;
 	}
 
-	private void addToHeldExtensions(int valueIdx, List<ExtensionDt> ext, ArrayList<ArrayList<HeldExtension>> list) {
+	/**
+	 * Adds the given extensions to the list of extensions being held for the value at the given index. The list is only
+	 * created once there is something to add to it, since the vast majority of values have no extensions.
+	 */
+	private ArrayList<ArrayList<HeldExtension>> addToHeldExtensions(int valueIdx, List<ExtensionDt> ext, ArrayList<ArrayList<HeldExtension>> theList) {
+		ArrayList<ArrayList<HeldExtension>> list = theList;
 		if (ext.size() > 0) {
+			if (list == null) {
+				list = new ArrayList<ArrayList<HeldExtension>>(valueIdx + 1);
+			}
 			list.ensureCapacity(valueIdx);
 			while (list.size() <= valueIdx) {
 				list.add(null);
@@ -137,6 +168,7 @@ public class JsonParser extends BaseParser implements IParser {
 				list.get(valueIdx).add(new HeldExtension(next));
 			}
 		}
+		return list;
 	}
 
 	private void assertObjectOfType(JsonValue theResourceTypeObj, ValueType theValueType, String thePosition) {
@@ -149,19 +181,33 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 	}
 
+	/**
+	 * Creates the generator used to encode to a stream. Subclasses which write the same data model in a different
+	 * (e.g. binary) syntax override this method.
+	 */
+	JsonGenerator createJsonGenerator(OutputStream theOutputStream) {
+		JsonGeneratorFactory jgf = myPrettyPrint ? ourPrettyPrintGeneratorFactory : ourGeneratorFactory;
+		JsonGenerator eventWriter = jgf.createGenerator(theOutputStream, UTF8);
+		return eventWriter;
+	}
+
 	private JsonGenerator createJsonGenerator(Writer theWriter) {
-		Map<String, Object> properties = new HashMap<String, Object>(1);
-		if (myPrettyPrint) {
-			properties.put(JsonGenerator.PRETTY_PRINTING, myPrettyPrint);
-		}
-		JsonGeneratorFactory jgf = Json.createGeneratorFactory(properties);
+		JsonGeneratorFactory jgf = myPrettyPrint ? ourPrettyPrintGeneratorFactory : ourGeneratorFactory;
 		JsonGenerator eventWriter = jgf.createGenerator(theWriter);
 		return eventWriter;
 	}
 
+	@Override
+	public void encodeBundleToOutputStream(Bundle theBundle, OutputStream theOutputStream) throws IOException {
+		encodeBundleToJsonGenerator(theBundle, createJsonGenerator(theOutputStream));
+	}
+
 	@Override
 	public void encodeBundleToWriter(Bundle theBundle, Writer theWriter) throws IOException {
-		JsonGenerator eventWriter = createJsonGenerator(theWriter);
+		encodeBundleToJsonGenerator(theBundle, createJsonGenerator(theWriter));
+	}
+
+	private void encodeBundleToJsonGenerator(Bundle theBundle, JsonGenerator eventWriter) throws IOException {
 		if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
 			encodeBundleToWriterInDstu2Format(theBundle, eventWriter);
 		} else {
@@ -474,8 +520,8 @@ public class JsonParser extends BaseParser implements IParser {
 			String currentChildName = null;
 			boolean inArray = false;
 
-			ArrayList<ArrayList<HeldExtension>> extensions = new ArrayList<ArrayList<HeldExtension>>(0);
-			ArrayList<ArrayList<HeldExtension>> modifierExtensions = new ArrayList<ArrayList<HeldExtension>>(0);
+			ArrayList<ArrayList<HeldExtension>> extensions = null;
+			ArrayList<ArrayList<HeldExtension>> modifierExtensions = null;
 
 			int valueIdx = 0;
 			for (IBase nextValue : values) {
@@ -532,10 +578,10 @@ public class JsonParser extends BaseParser implements IParser {
 
 					if (nextValue instanceof ISupportsUndeclaredExtensions && primitive) {
 						List<ExtensionDt> ext = ((ISupportsUndeclaredExtensions) nextValue).getUndeclaredExtensions();
-						addToHeldExtensions(valueIdx, ext, extensions);
+						extensions = addToHeldExtensions(valueIdx, ext, extensions);
 
 						ext = ((ISupportsUndeclaredExtensions) nextValue).getUndeclaredModifierExtensions();
-						addToHeldExtensions(valueIdx, ext, modifierExtensions);
+						modifierExtensions = addToHeldExtensions(valueIdx, ext, modifierExtensions);
 					}
 
 				}
@@ -547,7 +593,7 @@ public class JsonParser extends BaseParser implements IParser {
 				theEventWriter.writeEnd();
 			}
 
-			if (extensions.size() > 0 || modifierExtensions.size() > 0) {
+			if (extensions != null || modifierExtensions != null) {
 				if (inArray) {
 					// If this is a repeatable field, the extensions go in an array too
 					theEventWriter.writeStartArray('_' + currentChildName);
@@ -560,12 +606,12 @@ public class JsonParser extends BaseParser implements IParser {
 
 					List<HeldExtension> heldExts = Collections.emptyList();
 					List<HeldExtension> heldModExts = Collections.emptyList();
-					if (extensions.size() > i && extensions.get(i) != null && extensions.get(i).isEmpty() == false) {
+					if (extensions != null && extensions.size() > i && extensions.get(i) != null && extensions.get(i).isEmpty() == false) {
 						haveContent = true;
 						heldExts = extensions.get(i);
 					}
 
-					if (modifierExtensions.size() > i && modifierExtensions.get(i) != null && modifierExtensions.get(i).isEmpty() == false) {
+					if (modifierExtensions != null && modifierExtensions.size() > i && modifierExtensions.get(i) != null && modifierExtensions.get(i).isEmpty() == false) {
 						haveContent = true;
 						heldModExts = modifierExtensions.get(i);
 					}
@@ -654,23 +700,44 @@ public class JsonParser extends BaseParser implements IParser {
 			encodeCompositeElementToStreamWriter(theResDef, theResource, theResource, theEventWriter, resDef, theIsSubElementWithinResource);
 		}
 		theEventWriter.writeEnd();
+
+		if (!theIsSubElementWithinResource) {
+			clearContainedResources();
+		}
 	}
 
 	@Override
-	public void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException {
+	public void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException {
 		Validate.notNull(theResource, "Resource can not be null");
+		encodeResourceToJsonGenerator(theResource, createJsonGenerator(theOutputStream));
+	}
 
-		JsonGenerator eventWriter = createJsonGenerator(theWriter);
+	@Override
+	public void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException {
+		Validate.notNull(theResource, "Resource can not be null");
+		encodeResourceToJsonGenerator(theResource, createJsonGenerator(theWriter));
+	}
 
+	private void encodeResourceToJsonGenerator(IBaseResource theResource, JsonGenerator eventWriter) throws IOException {
 		RuntimeResourceDefinition resDef = myContext.getResourceDefinition(theResource);
 		encodeResourceToJsonStreamWriter(resDef, theResource, eventWriter, null, false);
 		eventWriter.flush();
 	}
 
+	/**
+	 * Encodes a tag list to a stream. This is not part of {@link IParser}, but lets subclasses which override
+	 * {@link #createJsonGenerator(OutputStream)} encode tag lists in their own syntax.
+	 */
+	void encodeTagListToOutputStream(TagList theTagList, OutputStream theOutputStream) {
+		encodeTagListToJsonGenerator(theTagList, createJsonGenerator(theOutputStream));
+	}
+
 	@Override
 	public void encodeTagListToWriter(TagList theTagList, Writer theWriter) throws IOException {
-		JsonGenerator eventWriter = createJsonGenerator(theWriter);
+		encodeTagListToJsonGenerator(theTagList, createJsonGenerator(theWriter));
+	}
 
+	private void encodeTagListToJsonGenerator(TagList theTagList, JsonGenerator eventWriter) {
 		eventWriter.writeStartObject();
 
 		eventWriter.write("resourceType", TagList.ELEMENT_NAME);
@@ -702,6 +769,10 @@ public class JsonParser extends BaseParser implements IParser {
 	 */
 	private void extractAndWriteExtensionsAsDirectChild(IBase theElement, JsonGenerator theEventWriter, BaseRuntimeElementDefinition<?> theElementDef, RuntimeResourceDefinition theResDef,
 			IBaseResource theResource, String theParentExtensionUrl) throws IOException {
+		if (!hasExtensions(theElement, theElementDef)) {
+			return;
+		}
+
 		List<HeldExtension> extensions = new ArrayList<HeldExtension>(0);
 		List<HeldExtension> modifierExtensions = new ArrayList<HeldExtension>(0);
 
@@ -717,6 +788,19 @@ public class JsonParser extends BaseParser implements IParser {
 		writeExtensionsAsDirectChild(theResource, theEventWriter, theResDef, extensions, modifierExtensions, theParentExtensionUrl);
 	}
 
+	private static boolean hasExtensions(IBase theElement, BaseRuntimeElementDefinition<?> theElementDef) {
+		if (theElement instanceof ISupportsUndeclaredExtensions) {
+			ISupportsUndeclaredExtensions element = (ISupportsUndeclaredExtensions) theElement;
+			if (!element.getUndeclaredExtensions().isEmpty() || !element.getUndeclaredModifierExtensions().isEmpty()) {
+				return true;
+			}
+		}
+		if (theElementDef != null) {
+			return !theElementDef.getExtensionsNonModifier().isEmpty() || !theElementDef.getExtensionsModifier().isEmpty();
+		}
+		return false;
+	}
+
 	private void extractDeclaredExtensions(IBase theResource, BaseRuntimeElementDefinition<?> resDef, List<HeldExtension> extensions, List<HeldExtension> modifierExtensions) {
 		for (RuntimeChildDeclaredExtensionDefinition nextDef : resDef.getExtensionsNonModifier()) {
 			for (IBase nextValue : nextDef.getAccessor().getValues(theResource)) {
@@ -812,114 +896,178 @@ public class JsonParser extends BaseParser implements IParser {
 
 	@Override
 	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader) {
-		JsonReader reader;
-		JsonObject object;
+		return parseBundleStreaming(theResourceType, ourParserFactory.createParser(theReader), null);
+	}
 
+	@Override
+	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader, IBundleEntryHandler theEntryHandler) {
+		Validate.notNull(theEntryHandler, "theEntryHandler must not be null");
+		return parseBundleStreaming(theResourceType, ourParserFactory.createParser(theReader), theEntryHandler);
+	}
+
+	/**
+	 * Parses a bundle from parser events. Members of the bundle other than its entries are small and are handled by the
+	 * tree-based helpers, but each entry is streamed into the parser state so that only one entry is ever being built
+	 * at a time.
+	 */
+	Bundle parseBundleStreaming(Class<? extends IBaseResource> theResourceType, javax.json.stream.JsonParser theParser, IBundleEntryHandler theEntryHandler) {
+		javax.json.stream.JsonParser parser = theParser;
 		try {
-			reader = Json.createReader(theReader);
-			object = reader.readObject();
+			if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+				throw new DataFormatException("Invalid JSON content detected, expected a JSON object");
+			}
+
+			JsonObjectBuilder precedingMembers = ourBuilderFactory.createObjectBuilder();
+			JsonValue resourceTypeObj = readUntilResourceType(parser, precedingMembers);
+			assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
+			String resourceType = ((JsonString) resourceTypeObj).getString();
+			if (!"Bundle".equals(resourceType)) {
+				throw new DataFormatException("Trying to parse bundle but found resourceType other than 'Bundle'. Found: '" + resourceType + "'");
+			}
+
+			ParserState<Bundle> state = ParserState.getPreAtomInstance(myContext, theResourceType, true, theEntryHandler);
+			if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
+				state.enteringNewElement(null, "Bundle");
+			} else {
+				state.enteringNewElement(null, "feed");
+			}
+
+			for (Entry<String, JsonValue> nextEntry : precedingMembers.build().entrySet()) {
+				parseBundleChild(nextEntry.getKey(), nextEntry.getValue(), state);
+			}
+			for (Event event = parser.next(); event != Event.END_OBJECT; event = parser.next()) {
+				String nextName = parser.getString();
+				Event valueEvent = parser.next();
+				if ("entry".equals(nextName) && valueEvent == Event.START_ARRAY) {
+					for (Event entryEvent = parser.next(); entryEvent != Event.END_ARRAY; entryEvent = parser.next()) {
+						if (entryEvent != Event.START_OBJECT) {
+							throw new DataFormatException("Unexpected JSON event " + entryEvent + " in bundle entries at " + parser.getLocation());
+						}
+						state.enteringNewElement(null, "entry");
+						parseBundleChildren(parser, state);
+						state.endingElement();
+					}
+				} else {
+					parseBundleChild(nextName, readValue(parser, valueEvent), state);
+				}
+			}
+
+			state.endingElement();
+
+			Bundle retVal = state.getObject();
+
+			return retVal;
 		} catch (JsonParsingException e) {
 			if (e.getMessage().startsWith("Unexpected char 39")) {
 				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage()
 						+ " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
 			}
 			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		} finally {
+			parser.close();
 		}
-		JsonValue resourceTypeObj = object.get("resourceType");
-		assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
-		String resourceType = ((JsonString) resourceTypeObj).getString();
-		if (!"Bundle".equals(resourceType)) {
-			throw new DataFormatException("Trying to parse bundle but found resourceType other than 'Bundle'. Found: '" + resourceType + "'");
-		}
+	}
 
-		ParserState<Bundle> state = ParserState.getPreAtomInstance(myContext, theResourceType, true);
-		if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
-			state.enteringNewElement(null, "Bundle");
-		} else {
-			state.enteringNewElement(null, "feed");
+	private void parseBundleChildren(JsonObject theObject, ParserState<?> theState) {
+		for (Entry<String, JsonValue> nextEntry : theObject.entrySet()) {
+			parseBundleChild(nextEntry.getKey(), nextEntry.getValue(), theState);
 		}
+	}
 
-		parseBundleChildren(object, state);
-
-		state.endingElement();
-
-		Bundle retVal = state.getObject();
+	/**
+	 * Streaming counterpart to {@link #parseBundleChildren(JsonObject, ParserState)}, used for bundle entries. Complex
+	 * children (such as the entry's resource) are streamed, and everything else is handed to the tree-based helpers.
+	 */
+	private void parseBundleChildren(javax.json.stream.JsonParser theParser, ParserState<?> theState) {
+		for (Event event = theParser.next(); event != Event.END_OBJECT; event = theParser.next()) {
+			String nextName = theParser.getString();
+			Event valueEvent = theParser.next();
+			if (valueEvent == Event.START_OBJECT && !isBundleSpecificChild(nextName)) {
+				parseObject(theParser, theState, nextName, null, null);
+			} else {
+				parseBundleChild(nextName, readValue(theParser, valueEvent), theState);
+			}
+		}
+	}
 
-		return retVal;
+	private boolean isBundleSpecificChild(String theName) {
+		if ("resourceType".equals(theName) || "entry".equals(theName) || "link".equals(theName)) {
+			return true;
+		}
+		if (myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
+			return BUNDLE_TEXTNODE_CHILDREN_DSTU1.contains(theName);
+		}
+		return BUNDLE_TEXTNODE_CHILDREN_DSTU2.contains(theName);
 	}
 
-	private void parseBundleChildren(JsonObject theObject, ParserState<?> theState) {
-		for (String nextName : theObject.keySet()) {
-			if ("resourceType".equals(nextName)) {
-				continue;
-			} else if ("entry".equals(nextName)) {
-				JsonArray entries = theObject.getJsonArray(nextName);
+	private void parseBundleChild(String theName, JsonValue theValue, ParserState<?> theState) {
+		String nextName = theName;
+		if ("resourceType".equals(nextName)) {
+			return;
+		} else if ("entry".equals(nextName)) {
+			JsonArray entries = (JsonArray) theValue;
+			for (JsonValue jsonValue : entries) {
+				theState.enteringNewElement(null, "entry");
+				parseBundleChildren((JsonObject) jsonValue, theState);
+				theState.endingElement();
+			}
+			return;
+		} else if (myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
+			if ("link".equals(nextName)) {
+				JsonArray entries = (JsonArray) theValue;
 				for (JsonValue jsonValue : entries) {
-					theState.enteringNewElement(null, "entry");
-					parseBundleChildren((JsonObject) jsonValue, theState);
+					theState.enteringNewElement(null, "link");
+					JsonObject linkObj = (JsonObject) jsonValue;
+					String rel = linkObj.getString("rel", null);
+					String href = linkObj.getString("href", null);
+					theState.attributeValue("rel", rel);
+					theState.attributeValue("href", href);
 					theState.endingElement();
 				}
-				continue;
-			} else if (myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
-				if ("link".equals(nextName)) {
-					JsonArray entries = theObject.getJsonArray(nextName);
-					for (JsonValue jsonValue : entries) {
-						theState.enteringNewElement(null, "link");
-						JsonObject linkObj = (JsonObject) jsonValue;
-						String rel = linkObj.getString("rel", null);
-						String href = linkObj.getString("href", null);
-						theState.attributeValue("rel", rel);
-						theState.attributeValue("href", href);
-						theState.endingElement();
-					}
-					continue;
-				} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU1.contains(nextName)) {
-					theState.enteringNewElement(null, nextName);
-					theState.string(theObject.getString(nextName, null));
+				return;
+			} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU1.contains(nextName)) {
+				theState.enteringNewElement(null, nextName);
+				theState.string(theValue instanceof JsonString ? ((JsonString) theValue).getString() : null);
+				theState.endingElement();
+				return;
+			}
+		} else {
+			if ("link".equals(nextName)) {
+				JsonArray entries = (JsonArray) theValue;
+				for (JsonValue jsonValue : entries) {
+					theState.enteringNewElement(null, "link");
+					JsonObject linkObj = (JsonObject) jsonValue;
+					String rel = linkObj.getString("relation", null);
+					String href = linkObj.getString("url", null);
+					theState.enteringNewElement(null, "relation");
+					theState.attributeValue("value", rel);
+					theState.endingElement();
+					theState.enteringNewElement(null, "url");
+					theState.attributeValue("value", href);
 					theState.endingElement();
-					continue;
-				}
-			} else {
-				if ("link".equals(nextName)) {
-					JsonArray entries = theObject.getJsonArray(nextName);
-					for (JsonValue jsonValue : entries) {
-						theState.enteringNewElement(null, "link");
-						JsonObject linkObj = (JsonObject) jsonValue;
-						String rel = linkObj.getString("relation", null);
-						String href = linkObj.getString("url", null);
-						theState.enteringNewElement(null, "relation");
-						theState.attributeValue("value", rel);
-						theState.endingElement();
-						theState.enteringNewElement(null, "url");
-						theState.attributeValue("value", href);
-						theState.endingElement();
-						theState.endingElement();
-					}
-					continue;
-				} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU2.contains(nextName)) {
-					theState.enteringNewElement(null, nextName);
-					// String obj = theObject.getString(nextName, null);
-
-					JsonValue obj = theObject.get(nextName);
-					if (obj == null) {
-						theState.attributeValue("value", null);
-					} else if (obj instanceof JsonString) {
-						theState.attributeValue("value", theObject.getString(nextName, null));
-					} else if (obj instanceof JsonNumber) {
-						theState.attributeValue("value", obj.toString());
-					} else {
-						throw new DataFormatException("Unexpected JSON object for entry '" + nextName + "'");
-					}
-
 					theState.endingElement();
-					continue;
 				}
-			}
-
-			JsonValue nextVal = theObject.get(nextName);
-			parseChildren(theState, nextName, nextVal, null, null);
+				return;
+			} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU2.contains(nextName)) {
+				theState.enteringNewElement(null, nextName);
+
+				JsonValue obj = theValue;
+				if (obj == null) {
+					theState.attributeValue("value", null);
+				} else if (obj instanceof JsonString) {
+					theState.attributeValue("value", ((JsonString) obj).getString());
+				} else if (obj instanceof JsonNumber) {
+					theState.attributeValue("value", obj.toString());
+				} else {
+					throw new DataFormatException("Unexpected JSON object for entry '" + nextName + "'");
+				}
 
+				theState.endingElement();
+				return;
+			}
 		}
+
+		parseChildren(theState, nextName, theValue, null, null);
 	}
 
 	private void parseChildren(JsonObject theObject, ParserState<?> theState) {
@@ -1087,31 +1235,348 @@ public class JsonParser extends BaseParser implements IParser {
 
 	@Override
 	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, Reader theReader) {
-		JsonReader reader = Json.createReader(theReader);
-		JsonObject object = reader.readObject();
+		return parseResourceStreaming(theResourceType, ourParserFactory.createParser(theReader));
+	}
 
-		JsonValue resourceTypeObj = object.get("resourceType");
-		assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
-		String resourceType = ((JsonString) resourceTypeObj).getString();
+	/**
+	 * Parses a resource from parser events. The parser is closed once the resource has been read.
+	 */
+	<T extends IBaseResource> T parseResourceStreaming(Class<T> theResourceType, javax.json.stream.JsonParser theParser) {
+		javax.json.stream.JsonParser parser = theParser;
+		try {
+			if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+				throw new DataFormatException("Invalid JSON content detected, expected a JSON object");
+			}
 
-		RuntimeResourceDefinition def;
-		if (theResourceType != null) {
-			def = myContext.getResourceDefinition(theResourceType);
-		} else {
-			def = myContext.getResourceDefinition(resourceType);
+			/*
+			 * If the caller has told us what type to expect, there's no need to buffer anything while looking for the
+			 * resourceType member. It is checked against the expected type once the object has been read instead.
+			 */
+			RuntimeResourceDefinition def;
+			JsonObject precedingMembers = EMPTY_OBJECT;
+			if (theResourceType != null) {
+				def = myContext.getResourceDefinition(theResourceType);
+			} else {
+				JsonObjectBuilder preceding = ourBuilderFactory.createObjectBuilder();
+				JsonValue resourceTypeObj = readUntilResourceType(parser, preceding);
+				assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
+				def = myContext.getResourceDefinition(((JsonString) resourceTypeObj).getString());
+				precedingMembers = preceding.build();
+			}
+
+			ParserState<? extends IBaseResource> state = (ParserState<? extends IBaseResource>) ParserState.getPreResourceInstance(def.getImplementingClass(), myContext, true);
+			state.enteringNewElement(null, def.getName());
+
+			JsonValue resourceTypeObj = parseChildren(parser, precedingMembers, state);
+			if (theResourceType != null) {
+				assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
+				String resourceType = ((JsonString) resourceTypeObj).getString();
+				if (!def.getName().equals(resourceType)) {
+					throw new DataFormatException("Trying to parse resource of type '" + def.getName() + "' but found resourceType '" + resourceType + "'");
+				}
+			}
+
+			state.endingElement();
+
+			@SuppressWarnings("unchecked")
+			T retVal = (T) state.getObject();
+
+			return retVal;
+		} finally {
+			parser.close();
 		}
+	}
 
-		ParserState<? extends IBaseResource> state = (ParserState<? extends IBaseResource>) ParserState.getPreResourceInstance(def.getImplementingClass(), myContext, true);
-		state.enteringNewElement(null, def.getName());
+	/**
+	 * Streaming counterpart to {@link #parseChildren(JsonObject, ParserState)}, which drives the parser state directly from
+	 * parser events instead of from a fully built object tree. The parser must be positioned just inside the object (any
+	 * members which were already consumed, e.g. while searching for <code>resourceType</code>, are supplied in
+	 * <code>thePrecedingMembers</code>), and this method consumes everything up to and including the closing brace.
+	 * <p>
+	 * Complex children are streamed as soon as they are encountered. Primitive children are held back until either their
+	 * <code>_name</code> sibling (which carries the primitive's id and extensions) has been seen, or the end of the
+	 * enclosing object is reached, so the amount of content buffered is bounded by the primitive members of a single
+	 * object.
+	 * </p>
+	 * 
+	 * @return The value of the object's <code>resourceType</code> member if it was read by this method, or
+	 *         <code>null</code>
+	 */
+	private JsonValue parseChildren(javax.json.stream.JsonParser theParser, JsonObject thePrecedingMembers, ParserState<?> theState) {
+		StreamingObject object = new StreamingObject();
+		for (Entry<String, JsonValue> nextEntry : thePrecedingMembers.entrySet()) {
+			parseMember(theParser, object, theState, nextEntry.getKey(), nextEntry.getValue(), null);
+		}
 
-		parseChildren(object, state);
+		for (Event event = theParser.next(); event != Event.END_OBJECT; event = theParser.next()) {
+			if (event != Event.KEY_NAME) {
+				throw new DataFormatException("Unexpected JSON event " + event + " at " + theParser.getLocation());
+			}
+			String nextName = theParser.getString();
+			parseMember(theParser, object, theState, nextName, null, theParser.next());
+		}
 
-		state.endingElement();
+		for (Entry<String, JsonValue> nextEntry : object.myPending.entrySet()) {
+			parseChildren(theState, nextEntry.getKey(), nextEntry.getValue(), null, null);
+		}
 
-		@SuppressWarnings("unchecked")
-		T retVal = (T) state.getObject();
+		if (object.myElementId != null) {
+			IElement element = (IElement) theState.getObject();
+			if (element instanceof IIdentifiableElement) {
+				((IIdentifiableElement) element).setElementSpecificId(object.myElementId);
+			} else if (element instanceof IResource) {
+				((IResource) element).setId(new IdDt(object.myElementId));
+			}
+		}
 
-		return retVal;
+		return object.myResourceType;
+	}
+
+	/**
+	 * Handles a single member of an object being streamed. Exactly one of <code>theValue</code> (a member which has
+	 * already been read) and <code>theValueEvent</code> (the first parser event of a member which has not) is non-null.
+	 */
+	private void parseMember(javax.json.stream.JsonParser theParser, StreamingObject theObject, ParserState<?> theState, String theName, JsonValue theValue, Event theValueEvent) {
+		boolean newerThanDstu1 = myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1);
+		JsonValue value = theValue;
+
+		if ("resourceType".equals(theName)) {
+			if (value == null) {
+				value = readValue(theParser, theValueEvent);
+			}
+			theObject.myResourceType = value;
+			return;
+		}
+
+		boolean special = "id".equals(theName) || theName.charAt(0) == '_' || (newerThanDstu1 && ("modifier".equals(theName) || theName.indexOf(':') > -1))
+				|| (!newerThanDstu1 && ("extension".equals(theName) || "modifierExtension".equals(theName)));
+		if (value == null && (special || (theValueEvent != Event.START_OBJECT && theValueEvent != Event.START_ARRAY))) {
+			value = readValue(theParser, theValueEvent);
+		}
+
+		if ("id".equals(theName)) {
+			theObject.myElementId = ((JsonString) value).getString();
+			if (!newerThanDstu1) {
+				return;
+			}
+		} else if ("_id".equals(theName)) {
+			// _id is incorrect, but some early examples in the FHIR spec used it
+			theObject.myElementId = ((JsonString) value).getString();
+			return;
+		} else if (!newerThanDstu1 && "extension".equals(theName)) {
+			parseExtension(theState, (JsonArray) value, false);
+			return;
+		} else if (!newerThanDstu1 && "modifierExtension".equals(theName)) {
+			parseExtension(theState, (JsonArray) value, true);
+			return;
+		} else if (newerThanDstu1 && "modifier".equals(theName)) {
+			JsonObject obj = (JsonObject) value;
+			for (String nextUrl : obj.keySet()) {
+				JsonArray array = obj.getJsonArray(nextUrl);
+				parseExtensionInDstu2Style(true, theState, null, nextUrl, array);
+			}
+			return;
+		} else if (theName.charAt(0) == '_') {
+			String baseName = theName.substring(1);
+			JsonValue pending = theObject.myPending.remove(baseName);
+			if (pending != null) {
+				parseChildren(theState, baseName, pending, value, theName);
+			} else if (theObject.myStreamed.contains(baseName)) {
+				ourLog.warn("Ignoring '{}' because it appears after the complex element it applies to", theName);
+			} else {
+				theObject.myAlternates.put(theName, value);
+			}
+			return;
+		} else if (newerThanDstu1 && theName.indexOf(':') > -1) {
+			parseExtensionInDstu2Style(false, theState, null, theName, (JsonArray) value);
+			return;
+		}
+
+		String alternateName = '_' + theName;
+		JsonValue alternateVal = theObject.myAlternates.remove(alternateName);
+
+		if (value != null) {
+			if (alternateVal == null && !containsObject(value)) {
+				theObject.myPending.put(theName, value);
+			} else {
+				parseChildren(theState, theName, value, alternateVal, alternateName);
+				theObject.myStreamed.add(theName);
+			}
+			return;
+		}
+
+		if (theValueEvent == Event.START_OBJECT) {
+			parseObject(theParser, theState, theName, alternateVal, alternateName);
+			theObject.myStreamed.add(theName);
+			return;
+		}
+
+		// An array whose contents have not yet been read
+		Event event = theParser.next();
+		if (alternateVal == null && event != Event.START_OBJECT && event != Event.END_ARRAY) {
+			// An array of primitives, whose alternates may still follow
+			JsonArrayBuilder builder = ourBuilderFactory.createArrayBuilder();
+			for (; event != Event.END_ARRAY; event = theParser.next()) {
+				addValue(builder, theParser, event);
+			}
+			theObject.myPending.put(theName, builder.build());
+			return;
+		}
+
+		JsonArray alternateArray = (JsonArray) alternateVal;
+		for (int i = 0; event != Event.END_ARRAY; event = theParser.next(), i++) {
+			JsonValue nextAlternate = null;
+			if (alternateArray != null && i < alternateArray.size()) {
+				nextAlternate = alternateArray.get(i);
+			}
+			if (event == Event.START_OBJECT) {
+				parseObject(theParser, theState, theName, nextAlternate, alternateName);
+			} else {
+				parseChildren(theState, theName, readValue(theParser, event), nextAlternate, alternateName);
+			}
+		}
+		theObject.myStreamed.add(theName);
+	}
+
+	/**
+	 * Streaming counterpart to the <code>OBJECT</code> case in {@link #parseChildren(ParserState, String, JsonValue, JsonValue, String)}
+	 */
+	private void parseObject(javax.json.stream.JsonParser theParser, ParserState<?> theState, String theName, JsonValue theAlternateVal, String theAlternateName) {
+		theState.enteringNewElement(null, theName);
+		parseAlternates(theAlternateVal, theState, theAlternateName);
+
+		JsonObject precedingMembers = EMPTY_OBJECT;
+		boolean preResource = false;
+		if (theState.isPreResource()) {
+			JsonObjectBuilder preceding = ourBuilderFactory.createObjectBuilder();
+			JsonValue resType = readUntilResourceType(theParser, preceding);
+			if (!(resType instanceof JsonString) || isBlank(((JsonString) resType).getString())) {
+				throw new DataFormatException("Missing 'resourceType' from resource");
+			}
+			theState.enteringNewElement(null, ((JsonString) resType).getString());
+			precedingMembers = preceding.build();
+			preResource = true;
+		}
+
+		parseChildren(theParser, precedingMembers, theState);
+
+		if (preResource) {
+			theState.endingElement();
+		}
+		theState.endingElement();
+	}
+
+	/**
+	 * Reads members of the current object until <code>resourceType</code> is found, and returns its value. Any members
+	 * which appear before it are added to <code>thePrecedingMembers</code>. If the object ends without a
+	 * <code>resourceType</code>, returns <code>null</code> and leaves the parser positioned after the closing brace, so
+	 * callers must treat this as an error.
+	 * 
+	 * @throws DataFormatException
+	 *             If more than {@link #MAX_RESOURCE_TYPE_LOOKAHEAD} of content precedes the <code>resourceType</code>
+	 */
+	private static JsonValue readUntilResourceType(javax.json.stream.JsonParser theParser, JsonObjectBuilder thePrecedingMembers) {
+		long start = theParser.getLocation().getStreamOffset();
+		for (Event event = theParser.next(); event != Event.END_OBJECT; event = theParser.next()) {
+			String nextName = theParser.getString();
+			Event valueEvent = theParser.next();
+			if ("resourceType".equals(nextName)) {
+				return readValue(theParser, valueEvent);
+			}
+			thePrecedingMembers.add(nextName, readValue(theParser, valueEvent));
+
+			long offset = theParser.getLocation().getStreamOffset();
+			if (start != -1 && offset != -1 && offset - start > MAX_RESOURCE_TYPE_LOOKAHEAD) {
+				throw new DataFormatException("Found more than " + MAX_RESOURCE_TYPE_LOOKAHEAD + " characters of content before 'resourceType' at " + theParser.getLocation()
+						+ " - 'resourceType' should be the first member of each resource");
+			}
+		}
+		return null;
+	}
+
+	private static boolean containsObject(JsonValue theValue) {
+		switch (theValue.getValueType()) {
+		case OBJECT:
+			return true;
+		case ARRAY:
+			for (JsonValue next : (JsonArray) theValue) {
+				if (next.getValueType() == ValueType.OBJECT) {
+					return true;
+				}
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private static void addValue(JsonArrayBuilder theBuilder, javax.json.stream.JsonParser theParser, Event theEvent) {
+		switch (theEvent) {
+		case START_OBJECT:
+			theBuilder.add(readObject(theParser));
+			break;
+		case START_ARRAY:
+			theBuilder.add(readArray(theParser));
+			break;
+		case VALUE_STRING:
+			theBuilder.add(theParser.getString());
+			break;
+		case VALUE_NUMBER:
+			theBuilder.add(theParser.getBigDecimal());
+			break;
+		case VALUE_TRUE:
+			theBuilder.add(true);
+			break;
+		case VALUE_FALSE:
+			theBuilder.add(false);
+			break;
+		case VALUE_NULL:
+			theBuilder.addNull();
+			break;
+		default:
+			throw new DataFormatException("Unexpected JSON event " + theEvent + " at " + theParser.getLocation());
+		}
+	}
+
+	private static JsonArray readArray(javax.json.stream.JsonParser theParser) {
+		JsonArrayBuilder builder = ourBuilderFactory.createArrayBuilder();
+		for (Event event = theParser.next(); event != Event.END_ARRAY; event = theParser.next()) {
+			addValue(builder, theParser, event);
+		}
+		return builder.build();
+	}
+
+	private static JsonObject readObject(javax.json.stream.JsonParser theParser) {
+		JsonObjectBuilder builder = ourBuilderFactory.createObjectBuilder();
+		for (Event event = theParser.next(); event != Event.END_OBJECT; event = theParser.next()) {
+			String nextName = theParser.getString();
+			builder.add(nextName, readValue(theParser, theParser.next()));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads the value which begins with the given event into a {@link JsonValue}
+	 */
+	private static JsonValue readValue(javax.json.stream.JsonParser theParser, Event theEvent) {
+		switch (theEvent) {
+		case START_OBJECT:
+			return readObject(theParser);
+		case START_ARRAY:
+			return readArray(theParser);
+		case VALUE_TRUE:
+			return JsonValue.TRUE;
+		case VALUE_FALSE:
+			return JsonValue.FALSE;
+		case VALUE_NULL:
+			return JsonValue.NULL;
+		case VALUE_STRING:
+			return new StringValue(theParser.getString());
+		case VALUE_NUMBER:
+			return new NumberValue(theParser.getBigDecimal());
+		default:
+			throw new DataFormatException("Unexpected JSON event " + theEvent + " at " + theParser.getLocation());
+		}
 	}
 
 	@Override
@@ -1122,8 +1587,24 @@ public class JsonParser extends BaseParser implements IParser {
 	@Override
 	public TagList parseTagList(Reader theReader) {
 		JsonReader reader = Json.createReader(theReader);
-		JsonObject object = reader.readObject();
+		return parseTagList(reader.readObject());
+	}
 
+	/**
+	 * Parses a tag list from parser events. The parser is closed once the tag list has been read.
+	 */
+	TagList parseTagListStreaming(javax.json.stream.JsonParser theParser) {
+		try {
+			if (!theParser.hasNext() || theParser.next() != Event.START_OBJECT) {
+				throw new DataFormatException("Invalid JSON content detected, expected a JSON object");
+			}
+			return parseTagList(readObject(theParser));
+		} finally {
+			theParser.close();
+		}
+	}
+
+	private TagList parseTagList(JsonObject object) {
 		JsonValue resourceTypeObj = object.get("resourceType");
 		assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
 		String resourceType = ((JsonString) resourceTypeObj).getString();
@@ -1452,4 +1933,149 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 
 	}
+	/**
+	 * Per-object bookkeeping for the streaming parse path
+	 */
+	private static class StreamingObject {
+
+		/**
+		 * <code>_name</code> members which have been seen before the member they apply to
+		 */
+		private final Map<String, JsonValue> myAlternates = new HashMap<String, JsonValue>();
+		private String myElementId;
+		/**
+		 * Primitive members which are being held until their <code>_name</code> sibling (or the end of the object) is seen
+		 */
+		private final Map<String, JsonValue> myPending = new LinkedHashMap<String, JsonValue>();
+		private JsonValue myResourceType;
+		/**
+		 * Members which have already been passed to the parser state
+		 */
+		private final Set<String> myStreamed = new HashSet<String>();
+
+	}
+
+	/**
+	 * A number read by the streaming parse path. The JSON-P API only creates numbers as part of an array or object, so
+	 * this avoids building a throwaway array for every primitive that is read.
+	 */
+	private static final class NumberValue implements JsonNumber {
+
+		private final BigDecimal myValue;
+
+		NumberValue(BigDecimal theValue) {
+			myValue = theValue;
+		}
+
+		@Override
+		public BigDecimal bigDecimalValue() {
+			return myValue;
+		}
+
+		@Override
+		public BigInteger bigIntegerValue() {
+			return myValue.toBigInteger();
+		}
+
+		@Override
+		public BigInteger bigIntegerValueExact() {
+			return myValue.toBigIntegerExact();
+		}
+
+		@Override
+		public double doubleValue() {
+			return myValue.doubleValue();
+		}
+
+		@Override
+		public boolean equals(Object theObj) {
+			return theObj instanceof JsonNumber && myValue.equals(((JsonNumber) theObj).bigDecimalValue());
+		}
+
+		@Override
+		public ValueType getValueType() {
+			return ValueType.NUMBER;
+		}
+
+		@Override
+		public int hashCode() {
+			return myValue.hashCode();
+		}
+
+		@Override
+		public int intValue() {
+			return myValue.intValue();
+		}
+
+		@Override
+		public int intValueExact() {
+			return myValue.intValueExact();
+		}
+
+		@Override
+		public boolean isIntegral() {
+			return myValue.scale() == 0;
+		}
+
+		@Override
+		public long longValue() {
+			return myValue.longValue();
+		}
+
+		@Override
+		public long longValueExact() {
+			return myValue.longValueExact();
+		}
+
+		@Override
+		public String toString() {
+			return myValue.toString();
+		}
+
+	}
+
+	/**
+	 * A string read by the streaming parse path (see {@link NumberValue})
+	 */
+	private static final class StringValue implements JsonString {
+
+		private final String myValue;
+
+		StringValue(String theValue) {
+			myValue = theValue;
+		}
+
+		@Override
+		public boolean equals(Object theObj) {
+			return theObj instanceof JsonString && myValue.equals(((JsonString) theObj).getString());
+		}
+
+		@Override
+		public CharSequence getChars() {
+			return myValue;
+		}
+
+		@Override
+		public String getString() {
+			return myValue;
+		}
+
+		@Override
+		public ValueType getValueType() {
+			return ValueType.STRING;
+		}
+
+		@Override
+		public int hashCode() {
+			return myValue.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			// Only used for diagnostics, so let the JSON-P implementation take care of the escaping
+			return ourBuilderFactory.createArrayBuilder().add(myValue).build().get(0).toString();
+		}
+
+	}
+
 }
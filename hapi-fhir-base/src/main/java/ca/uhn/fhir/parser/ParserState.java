@@ -79,6 +79,7 @@ class ParserState<T> {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ParserState.class);
 	private FhirContext myContext;
+	private IBundleEntryHandler myEntryHandler;
 	private boolean myJsonMode;
 	private T myObject;
 	private BaseState myState;
@@ -117,6 +118,29 @@ class ParserState<T> {
 		return myState.isPreResource();
 	}
 
+	/**
+	 * Qualifies the ID of an entry's resource with the entry base URL (or the bundle base URL if the entry has none)
+	 */
+	private void populateEntryResourceId(Bundle theBundle, BundleEntry theEntry) {
+		IResource resource = theEntry.getResource();
+		if (resource == null) {
+			return;
+		}
+
+		String bundleBaseUrl = theBundle.getLinkBase().getValue();
+		String entryBaseUrl = theEntry.getLinkBase().getValue();
+		String version = ResourceMetadataKeyEnum.VERSION.get(resource);
+		String resourceName = myContext.getResourceDefinition(resource).getName();
+		String bundleIdPart = resource.getId().getIdPart();
+		if (isNotBlank(bundleIdPart)) {
+			if (isNotBlank(entryBaseUrl)) {
+				resource.setId(new IdDt(entryBaseUrl, resourceName, bundleIdPart, version));
+			} else {
+				resource.setId(new IdDt(bundleBaseUrl, resourceName, bundleIdPart, version));
+			}
+		}
+	}
+
 	private void pop() {
 		myState = myState.myStack;
 		myState.wereBack();
@@ -173,7 +197,16 @@ class ParserState<T> {
 	}
 
 	public static ParserState<Bundle> getPreAtomInstance(FhirContext theContext, Class<? extends IBaseResource> theResourceType, boolean theJsonMode) throws DataFormatException {
+		return getPreAtomInstance(theContext, theResourceType, theJsonMode, null);
+	}
+
+	/**
+	 * @param theEntryHandler
+	 *            If not null, entries are passed to this handler as they are parsed instead of being added to the bundle
+	 */
+	public static ParserState<Bundle> getPreAtomInstance(FhirContext theContext, Class<? extends IBaseResource> theResourceType, boolean theJsonMode, IBundleEntryHandler theEntryHandler) throws DataFormatException {
 		ParserState<Bundle> retVal = new ParserState<Bundle>(theContext, theJsonMode);
+		retVal.myEntryHandler = theEntryHandler;
 		if (theContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
 			retVal.push(retVal.new PreAtomState(theResourceType));
 		} else {
@@ -407,7 +440,9 @@ class ParserState<T> {
 			super(null);
 			myEntry = new BundleEntry();
 			myResourceType = theResourceType;
-			theInstance.getEntries().add(myEntry);
+			if (myEntryHandler == null) {
+				theInstance.getEntries().add(myEntry);
+			}
 		}
 
 		@Override
@@ -418,6 +453,10 @@ class ParserState<T> {
 			if (myDeleted) {
 				putPlacerResourceInDeletedEntry(myEntry);
 			}
+
+			if (myEntryHandler != null) {
+				myEntryHandler.handleEntry(myEntry);
+			}
 		}
 
 		@Override
@@ -931,19 +970,29 @@ class ParserState<T> {
 	public class BundleEntryState extends BaseState {
 
 		private BundleEntry myEntry;
+		private Bundle myInstance;
 		private Class<? extends IBaseResource> myResourceType;
 
 		public BundleEntryState(Bundle theInstance, Class<? extends IBaseResource> theResourceType) {
 			super(null);
 			myEntry = new BundleEntry();
+			myInstance = theInstance;
 			myResourceType = theResourceType;
-			theInstance.getEntries().add(myEntry);
+			if (myEntryHandler == null) {
+				theInstance.getEntries().add(myEntry);
+			}
 		}
 
 		@Override
 		public void endingElement() throws DataFormatException {
 			populateResourceMetadata();
 			pop();
+
+			if (myEntryHandler != null) {
+				// Uses the bundle base if it has been seen yet (see IParser#parseBundle(Class, Reader, IBundleEntryHandler))
+				populateEntryResourceId(myInstance, myEntry);
+				myEntryHandler.handleEntry(myEntry);
+			}
 		}
 
 		@Override
@@ -1177,20 +1226,7 @@ class ParserState<T> {
 		@Override
 		public void wereBack() {
 			for (BundleEntry nextEntry : myInstance.getEntries()) {
-				IResource nextResource = nextEntry.getResource();
-				
-				String bundleBaseUrl = myInstance.getLinkBase().getValue();
-				String entryBaseUrl = nextEntry.getLinkBase().getValue();
-				String version = ResourceMetadataKeyEnum.VERSION.get(nextResource);
-				String resourceName = myContext.getResourceDefinition(nextResource).getName();
-				String bundleIdPart = nextResource.getId().getIdPart();
-				if (isNotBlank(bundleIdPart)) {
-					if (isNotBlank(entryBaseUrl)) {
-						nextResource.setId(new IdDt(entryBaseUrl, resourceName, bundleIdPart, version));
-					} else {
-						nextResource.setId(new IdDt(bundleBaseUrl, resourceName, bundleIdPart, version));
-					}
-				}
+				populateEntryResourceId(myInstance, nextEntry);
 			}
 			
 			String bundleVersion = (String) myInstance.getResourceMetadata().get(ResourceMetadataKeyEnum.VERSION);
@@ -23,6 +23,7 @@ package ca.uhn.fhir.parser;
 import static org.apache.commons.lang3.StringUtils.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -45,6 +46,7 @@ import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.DomainResource;
 import org.hl7.fhir.instance.model.IBase;
 import org.hl7.fhir.instance.model.IBaseResource;
@@ -98,7 +100,7 @@ public class XmlParser extends BaseParser implements IParser {
 	// private static final Set<String> RESOURCE_NAMESPACES;
 
 	private FhirContext myContext;
-	private boolean myPrettyPrint;
+	private volatile boolean myPrettyPrint;
 
 	/**
 	 * Do not use this constructor, the recommended way to obtain a new instance of the XML parser is to invoke
@@ -129,6 +131,13 @@ public class XmlParser extends BaseParser implements IParser {
 		// return streamReader;
 	}
 
+	private XMLStreamWriter createXmlWriter(OutputStream theOutputStream) throws XMLStreamException {
+		XMLStreamWriter eventWriter;
+		eventWriter = XmlUtil.createXmlStreamWriter(theOutputStream);
+		eventWriter = decorateStreamWriter(eventWriter);
+		return eventWriter;
+	}
+
 	private XMLStreamWriter createXmlWriter(Writer theWriter) throws XMLStreamException {
 		XMLStreamWriter eventWriter;
 		eventWriter = XmlUtil.createXmlStreamWriter(theWriter);
@@ -220,20 +229,32 @@ public class XmlParser extends BaseParser implements IParser {
 		return stringWriter.toString();
 	}
 
+	@Override
+	public void encodeBundleToOutputStream(Bundle theBundle, OutputStream theOutputStream) throws DataFormatException {
+		try {
+			encodeBundleToXmlStreamWriter(theBundle, createXmlWriter(theOutputStream));
+		} catch (XMLStreamException e) {
+			throw new ConfigurationException("Failed to initialize STaX event factory", e);
+		}
+	}
+
 	@Override
 	public void encodeBundleToWriter(Bundle theBundle, Writer theWriter) throws DataFormatException {
 		try {
-			XMLStreamWriter eventWriter = createXmlWriter(theWriter);
-			if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
-				encodeBundleToWriterDstu2(theBundle, eventWriter);
-			} else {
-				encodeBundleToWriterDstu1(theBundle, eventWriter);
-			}
+			encodeBundleToXmlStreamWriter(theBundle, createXmlWriter(theWriter));
 		} catch (XMLStreamException e) {
 			throw new ConfigurationException("Failed to initialize STaX event factory", e);
 		}
 	}
 
+	private void encodeBundleToXmlStreamWriter(Bundle theBundle, XMLStreamWriter eventWriter) throws XMLStreamException {
+		if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
+			encodeBundleToWriterDstu2(theBundle, eventWriter);
+		} else {
+			encodeBundleToWriterDstu1(theBundle, eventWriter);
+		}
+	}
+
 	private void encodeBundleToWriterDstu1(Bundle theBundle, XMLStreamWriter eventWriter) throws XMLStreamException {
 		eventWriter.writeStartElement("feed");
 		eventWriter.writeDefaultNamespace(ATOM_NS);
@@ -647,6 +668,19 @@ public class XmlParser extends BaseParser implements IParser {
 		return stringWriter.toString();
 	}
 
+	@Override
+	public void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws DataFormatException {
+		XMLStreamWriter eventWriter;
+		try {
+			eventWriter = createXmlWriter(theOutputStream);
+
+			encodeResourceToXmlStreamWriter(theResource, eventWriter, false);
+			eventWriter.flush();
+		} catch (XMLStreamException e) {
+			throw new ConfigurationException("Failed to initialize STaX event factory", e);
+		}
+	}
+
 	@Override
 	public void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws DataFormatException {
 		XMLStreamWriter eventWriter;
@@ -741,6 +775,10 @@ public class XmlParser extends BaseParser implements IParser {
 		}
 
 		theEventWriter.writeEndElement();
+
+		if (!theContainedResource) {
+			clearContainedResources();
+		}
 	}
 
 	@Override
@@ -912,11 +950,19 @@ public class XmlParser extends BaseParser implements IParser {
 	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader) {
 		XMLEventReader streamReader = createStreamReader(theReader);
 
-		return parseBundle(streamReader, theResourceType);
+		return parseBundle(streamReader, theResourceType, null);
+	}
+
+	@Override
+	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader, IBundleEntryHandler theEntryHandler) {
+		Validate.notNull(theEntryHandler, "theEntryHandler must not be null");
+		XMLEventReader streamReader = createStreamReader(theReader);
+
+		return parseBundle(streamReader, theResourceType, theEntryHandler);
 	}
 
-	private Bundle parseBundle(XMLEventReader theStreamReader, Class<? extends IBaseResource> theResourceType) {
-		ParserState<Bundle> parserState = ParserState.getPreAtomInstance(myContext, theResourceType, false);
+	private Bundle parseBundle(XMLEventReader theStreamReader, Class<? extends IBaseResource> theResourceType, IBundleEntryHandler theEntryHandler) {
+		ParserState<Bundle> parserState = ParserState.getPreAtomInstance(myContext, theResourceType, false, theEntryHandler);
 		return doXmlLoop(theStreamReader, parserState);
 	}
 
@@ -0,0 +1,311 @@
+package ca.uhn.fhir.rest.client;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Runs client requests in the background for
+ * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync() executeAsync()}. One executor is shared by all of
+ * the clients created by a {@link RestfulClientFactory}.
+ * <p>
+ * Requests are limited in the same way as the connection pool of the HTTP client:
+ * </p>
+ * <ul>
+ * <li>At most <code>theMaxConcurrentRequests</code> requests run at once, and at most
+ * <code>theMaxConcurrentRequestsPerRoute</code> of those go to the same server (scheme, host and port). Requests over
+ * the per-route limit wait in a queue for their route, so they don't tie up a thread which could be used for another
+ * server.</li>
+ * <li>At most <code>theMaxQueuedRequests</code> requests may be waiting. Beyond that, {@link #submit(String, Callable)}
+ * blocks the calling thread until a request completes, so a caller submitting a large number of requests is slowed to
+ * the rate at which they can be processed instead of filling up memory.</li>
+ * <li>Cancelling a returned future with <code>mayInterruptIfRunning</code> set to <code>true</code> aborts the HTTP
+ * request which is in progress, if any. A request which is cancelled before it starts is never sent, and gives up its
+ * place straight away. A request which has already started keeps its place until its thread has actually finished
+ * with it, so cancelling requests never lets more than the configured number run at once.</li>
+ * </ul>
+ * <p>
+ * Threads are created as needed and stop once they have been idle for a minute, so an executor which is not being used
+ * holds no threads.
+ * </p>
+ */
+public class AsyncRequestExecutor {
+
+	private static final ThreadLocal<RequestFuture<?>> ourCurrentFuture = new ThreadLocal<RequestFuture<?>>();
+	private static final AtomicInteger ourExecutorCount = new AtomicInteger();
+
+	private final ThreadPoolExecutor myExecutor;
+	private final int myMaxConcurrentRequestsPerRoute;
+	private final Semaphore myPermits;
+	private final Map<String, RouteQueue> myRoutes = new HashMap<String, RouteQueue>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMaxConcurrentRequests
+	 *            The maximum number of requests which may run at the same time
+	 * @param theMaxConcurrentRequestsPerRoute
+	 *            The maximum number of requests to the same server which may run at the same time
+	 * @param theMaxQueuedRequests
+	 *            The maximum number of requests which may be waiting to run before further submissions block
+	 */
+	public AsyncRequestExecutor(int theMaxConcurrentRequests, int theMaxConcurrentRequestsPerRoute, int theMaxQueuedRequests) {
+		Validate.isTrue(theMaxConcurrentRequests > 0, "theMaxConcurrentRequests must be positive");
+		Validate.isTrue(theMaxConcurrentRequestsPerRoute > 0, "theMaxConcurrentRequestsPerRoute must be positive");
+		Validate.isTrue(theMaxQueuedRequests >= 0, "theMaxQueuedRequests must not be negative");
+
+		myMaxConcurrentRequestsPerRoute = theMaxConcurrentRequestsPerRoute;
+		myPermits = new Semaphore(theMaxConcurrentRequests + theMaxQueuedRequests);
+
+		final String threadNamePrefix = "hapi-fhir-client-" + ourExecutorCount.incrementAndGet() + "-";
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger myThreadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable theRunnable) {
+				Thread retVal = new Thread(theRunnable, threadNamePrefix + myThreadCount.incrementAndGet());
+				retVal.setDaemon(true);
+				return retVal;
+			}
+		};
+
+		/*
+		 * The queue is unbounded, but only requests which are within their route's limit are ever handed to the
+		 * executor, and the total number of requests is bounded by myPermits
+		 */
+		myExecutor = new ThreadPoolExecutor(theMaxConcurrentRequests, theMaxConcurrentRequests, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+		myExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Stops the threads of this executor. Requests which have not yet started are cancelled, and requests in progress
+	 * are aborted.
+	 */
+	public void shutdown() {
+		List<RequestFuture<?>> notStarted = new ArrayList<RequestFuture<?>>();
+		for (Runnable next : myExecutor.shutdownNow()) {
+			notStarted.add((RequestFuture<?>) next);
+		}
+		synchronized (myRoutes) {
+			for (RouteQueue next : myRoutes.values()) {
+				notStarted.addAll(next.myWaiting);
+			}
+		}
+		for (RequestFuture<?> next : notStarted) {
+			next.cancel(false);
+		}
+	}
+
+	/**
+	 * Submits a request to be run in the background. If the maximum number of queued requests has been reached, this
+	 * method blocks until there is room for the request.
+	 *
+	 * @param theServerBase
+	 *            The base URL of the server the request will be sent to, which is used to apply the per-route limit
+	 * @param theRequest
+	 *            The request
+	 * @throws RejectedExecutionException
+	 *             If the calling thread is interrupted while waiting for room, or if the executor has been shut down
+	 */
+	public <T> Future<T> submit(String theServerBase, Callable<T> theRequest) {
+		Validate.notNull(theRequest, "theRequest must not be null");
+		if (myExecutor.isShutdown()) {
+			throw new RejectedExecutionException("Executor has been shut down");
+		}
+
+		try {
+			myPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting to queue request", e);
+		}
+
+		RequestFuture<T> retVal = new RequestFuture<T>(theRequest, toRouteKey(theServerBase));
+		boolean start;
+		synchronized (myRoutes) {
+			RouteQueue route = myRoutes.get(retVal.myRoute);
+			if (route == null) {
+				route = new RouteQueue();
+				myRoutes.put(retVal.myRoute, route);
+			}
+			start = route.myActive < myMaxConcurrentRequestsPerRoute;
+			if (start) {
+				route.myActive++;
+				retVal.myStarted = true;
+			} else {
+				route.myWaiting.add(retVal);
+			}
+		}
+		if (start) {
+			start(retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Called when a request completes (normally or not). A request which was still waiting for its route gives up its
+	 * place here. One which has been handed to the executor keeps it until {@link #requestFinished(RequestFuture)}.
+	 */
+	private void requestDone(RequestFuture<?> theFuture) {
+		synchronized (myRoutes) {
+			if (theFuture.myStarted) {
+				return;
+			}
+			RouteQueue route = myRoutes.get(theFuture.myRoute);
+			route.myWaiting.remove(theFuture);
+			removeIfIdle(theFuture.myRoute, route);
+		}
+		myPermits.release();
+	}
+
+	/**
+	 * Called once a request which was handed to the executor will no longer use its thread
+	 */
+	private void requestFinished(RequestFuture<?> theFuture) {
+		RequestFuture<?> next;
+		synchronized (myRoutes) {
+			RouteQueue route = myRoutes.get(theFuture.myRoute);
+			route.myActive--;
+			next = route.myWaiting.poll();
+			if (next != null) {
+				route.myActive++;
+				next.myStarted = true;
+			}
+			removeIfIdle(theFuture.myRoute, route);
+		}
+		myPermits.release();
+		if (next != null) {
+			start(next);
+		}
+	}
+
+	private void removeIfIdle(String theRouteKey, RouteQueue theRoute) {
+		if (theRoute.myActive == 0 && theRoute.myWaiting.isEmpty()) {
+			myRoutes.remove(theRouteKey);
+		}
+	}
+
+	private void start(RequestFuture<?> theFuture) {
+		try {
+			myExecutor.execute(theFuture);
+		} catch (RejectedExecutionException e) {
+			theFuture.setFailure(e);
+			requestFinished(theFuture);
+		}
+	}
+
+	/**
+	 * Called by the client once it has created the HTTP request, so that cancelling the future which is running on
+	 * the current thread (if any) can abort the request
+	 */
+	static void registerRequest(HttpRequestBase theRequest) {
+		RequestFuture<?> future = ourCurrentFuture.get();
+		if (future != null) {
+			future.myRequest = theRequest;
+			if (future.isCancelled()) {
+				theRequest.abort();
+			}
+		}
+	}
+
+	private static String toRouteKey(String theServerBase) {
+		try {
+			URI uri = URI.create(theServerBase);
+			if (uri.getHost() != null) {
+				return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+			}
+		} catch (IllegalArgumentException e) {
+			// fall through
+		}
+		return String.valueOf(theServerBase);
+	}
+
+	private class RequestFuture<T> extends FutureTask<T> {
+
+		private volatile HttpRequestBase myRequest;
+		private final String myRoute;
+		// Guarded by myRoutes
+		private boolean myStarted;
+
+		RequestFuture(Callable<T> theCallable, String theRoute) {
+			super(theCallable);
+			myRoute = theRoute;
+		}
+
+		@Override
+		public boolean cancel(boolean theMayInterruptIfRunning) {
+			boolean retVal = super.cancel(theMayInterruptIfRunning);
+			if (retVal && theMayInterruptIfRunning) {
+				HttpRequestBase request = myRequest;
+				if (request != null) {
+					request.abort();
+				}
+			}
+			return retVal;
+		}
+
+		@Override
+		protected void done() {
+			requestDone(this);
+		}
+
+		@Override
+		public void run() {
+			ourCurrentFuture.set(this);
+			try {
+				super.run();
+			} finally {
+				ourCurrentFuture.remove();
+				myRequest = null;
+				requestFinished(this);
+			}
+		}
+
+		void setFailure(Throwable theThrowable) {
+			setException(theThrowable);
+		}
+
+	}
+
+	private static class RouteQueue {
+		private int myActive;
+		private final LinkedList<RequestFuture<?>> myWaiting = new LinkedList<RequestFuture<?>>();
+	}
+
+}
@@ -20,7 +20,6 @@ package ca.uhn.fhir.rest.client;
  * #L%
  */
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -42,6 +41,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.ContentType;
@@ -60,6 +60,7 @@ import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 public abstract class BaseClient {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseClient.class);
 
+	private AsyncRequestExecutor myAsyncExecutor;
 	private final HttpClient myClient;
 	private EncodingEnum myEncoding = null; // default unspecified (will be XML)
 	private List<IClientInterceptor> myInterceptors = new ArrayList<IClientInterceptor>();
@@ -92,6 +93,19 @@ public abstract class BaseClient {
 		return retVal;
 	}
 
+	/**
+	 * Returns the executor which runs requests submitted with
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync() executeAsync()}. Clients created by a
+	 * {@link RestfulClientFactory} share the factory's executor. If none has been set, one is created with the factory's
+	 * default limits.
+	 */
+	public synchronized AsyncRequestExecutor getAsyncExecutor() {
+		if (myAsyncExecutor == null) {
+			myAsyncExecutor = new AsyncRequestExecutor(IRestfulClientFactory.DEFAULT_POOL_MAX_TOTAL, IRestfulClientFactory.DEFAULT_POOL_MAX_PER_ROUTE, IRestfulClientFactory.DEFAULT_MAX_QUEUED_ASYNC_REQUESTS);
+		}
+		return myAsyncExecutor;
+	}
+
 	/**
 	 * Returns the encoding that will be used on requests. Default is <code>null</code>, which means the client will not explicitly request an encoding. (This is standard behaviour according to the
 	 * FHIR specification)
@@ -109,6 +123,10 @@ public abstract class BaseClient {
 
 	/**
 	 * For now, this is a part of the internal API of HAPI - Use with caution as this method may change!
+	 * <p>
+	 * If {@link #setKeepResponses(boolean) keepResponses} is enabled, this is the complete body of the last response
+	 * (or <code>null</code> for binary responses).
+	 * </p>
 	 */
 	public String getLastResponseBody() {
 		return myLastResponseBody;
@@ -153,6 +171,10 @@ public abstract class BaseClient {
 			}
 			
 			httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding);
+			if (!httpRequest.containsHeader(Constants.HEADER_ACCEPT_ENCODING)) {
+				httpRequest.addHeader(Constants.HEADER_ACCEPT_ENCODING, Constants.ENCODING_GZIP);
+			}
+			AsyncRequestExecutor.registerRequest(httpRequest);
 
 			if (theLogRequestAndResponse) {
 				ourLog.info("Client invoking: {}", httpRequest);
@@ -170,6 +192,7 @@ public abstract class BaseClient {
 			}
 
 			response = myClient.execute(httpRequest);
+			decompressResponse(response);
 
 			for (IClientInterceptor nextInterceptor : myInterceptors) {
 				nextInterceptor.interceptResponse(response);
@@ -244,43 +267,54 @@ public abstract class BaseClient {
 			if (binding instanceof IClientResponseHandlerHandlesBinary) {
 				IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
 				if (handlesBinary.isBinary()) {
-					InputStream reader = response.getEntity().getContent();
+					// Binary bodies aren't logged, so only count the bytes
+					TeeHttpEntity tee = null;
+					if ((ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) && response.getEntity() != null) {
+						tee = new TeeHttpEntity(response.getEntity(), 0);
+					}
+					InputStream reader = tee != null ? tee.getContent() : response.getEntity().getContent();
 					try {
-
-						if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
-							byte[] responseBytes = IOUtils.toByteArray(reader);
+						return handlesBinary.invokeClient(mimeType, reader, response.getStatusLine().getStatusCode(), headers);
+					} finally {
+						IOUtils.closeQuietly(reader);
+						if (tee != null) {
 							if (myKeepResponses) {
 								myLastResponse = response;
 								myLastResponseBody = null;
 							}
 							String message = "HTTP " + response.getStatusLine().getStatusCode() + " " + response.getStatusLine().getReasonPhrase();
 							if (theLogRequestAndResponse) {
-								ourLog.info("Client response: {} - {} bytes", message, responseBytes.length);
+								ourLog.info("Client response: {} - {} bytes", message, tee.getTotalBytes());
 							} else {
-								ourLog.trace("Client response: {} - {} bytes", message, responseBytes.length);
+								ourLog.trace("Client response: {} - {} bytes", message, tee.getTotalBytes());
 							}
-							reader = new ByteArrayInputStream(responseBytes);
 						}
-
-						return handlesBinary.invokeClient(mimeType, reader, response.getStatusLine().getStatusCode(), headers);
-					} finally {
-						IOUtils.closeQuietly(reader);
 					}
 				}
 			}
 
-			Reader reader = createReaderFromResponse(response);
-
-			if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
-				String responseString = IOUtils.toString(reader);
-				keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
-				reader = new StringReader(responseString);
+			/*
+			 * The handler parses straight from the response stream. If the body is to be logged or kept, a copy is
+			 * taken as the handler reads it, instead of reading the whole body into a string first. Kept bodies are
+			 * copied in full, but a body which is only logged is cut off once it reaches a bounded size.
+			 */
+			TeeHttpEntity tee = null;
+			if ((ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) && response.getEntity() != null) {
+				tee = new TeeHttpEntity(response.getEntity(), myKeepResponses ? Integer.MAX_VALUE : TeeHttpEntity.DEFAULT_MAX_BYTES);
 			}
+			Reader reader = tee != null ? createReaderFromEntity(tee) : createReaderFromResponse(response);
 
 			try {
 				return binding.invokeClient(mimeType, reader, response.getStatusLine().getStatusCode(), headers);
 			} finally {
 				IOUtils.closeQuietly(reader);
+				if (tee != null) {
+					String responseString = tee.getCapturedString();
+					if (tee.isTruncated()) {
+						responseString = responseString + "\n... (truncated, " + tee.getTotalBytes() + " bytes in total)";
+					}
+					keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
+				}
 			}
 
 		} catch (IllegalStateException e) {
@@ -343,6 +377,14 @@ public abstract class BaseClient {
 		myInterceptors.add(theInterceptor);
 	}
 
+	/**
+	 * Sets the executor which runs requests submitted with
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync() executeAsync()}
+	 */
+	public synchronized void setAsyncExecutor(AsyncRequestExecutor theAsyncExecutor) {
+		myAsyncExecutor = theAsyncExecutor;
+	}
+
 	/**
 	 * Sets the encoding that will be used on requests. Default is <code>null</code>, which means the client will not explicitly request an encoding. (This is standard behaviour according to the FHIR
 	 * specification)
@@ -388,13 +430,16 @@ public abstract class BaseClient {
 	}
 
 	public static Reader createReaderFromResponse(HttpResponse theResponse) throws IllegalStateException, IOException {
-		HttpEntity entity = theResponse.getEntity();
-		if (entity == null) {
+		return createReaderFromEntity(theResponse.getEntity());
+	}
+
+	private static Reader createReaderFromEntity(HttpEntity theEntity) throws IllegalStateException, IOException {
+		if (theEntity == null) {
 			return new StringReader("");
 		}
 		Charset charset = null;
-		if (entity.getContentType() != null && entity.getContentType().getElements() != null && entity.getContentType().getElements().length > 0) {
-			ContentType ct = ContentType.get(entity);
+		if (theEntity.getContentType() != null && theEntity.getContentType().getElements() != null && theEntity.getContentType().getElements().length > 0) {
+			ContentType ct = ContentType.get(theEntity);
 			charset = ct.getCharset();
 		}
 		if (charset == null) {
@@ -402,8 +447,23 @@ public abstract class BaseClient {
 			charset = Charset.forName("UTF-8");
 		}
 
-		Reader reader = new InputStreamReader(theResponse.getEntity().getContent(), charset);
+		Reader reader = new InputStreamReader(theEntity.getContent(), charset);
 		return reader;
 	}
 
+	/**
+	 * We ask for gzip compressed responses. The default HttpClient decompresses these itself, but a client supplied by
+	 * the user might not, so decompress here if the response is still compressed. This happens before the interceptors
+	 * are called so that they see the decompressed body.
+	 */
+	private static void decompressResponse(HttpResponse theResponse) {
+		HttpEntity entity = theResponse.getEntity();
+		Header contentEncoding = theResponse.getFirstHeader(Constants.HEADER_CONTENT_ENCODING);
+		if (entity != null && contentEncoding != null && Constants.ENCODING_GZIP.equalsIgnoreCase(StringUtils.trim(contentEncoding.getValue()))) {
+			theResponse.setEntity(new GzipDecompressingEntity(entity));
+			theResponse.removeHeaders(Constants.HEADER_CONTENT_ENCODING);
+			theResponse.removeHeaders("Content-Length");
+		}
+	}
+
 }
@@ -37,6 +37,21 @@ public interface IRestfulClientFactory {
 	 */
 	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10000;
 
+	/**
+	 * Default value for {@link #getMaxQueuedAsyncRequests()}
+	 */
+	public static final int DEFAULT_MAX_QUEUED_ASYNC_REQUESTS = 1000;
+
+	/**
+	 * Default value for {@link #getPoolMaxTotal()}
+	 */
+	public static final int DEFAULT_POOL_MAX_TOTAL = 20;
+
+	/**
+	 * Default value for {@link #getPoolMaxPerRoute()}
+	 */
+	public static final int DEFAULT_POOL_MAX_PER_ROUTE = DEFAULT_POOL_MAX_TOTAL;
+
 	/**
 	 * Default value for {@link #getServerValidationModeEnum()}
 	 */
@@ -72,6 +87,34 @@ public interface IRestfulClientFactory {
 	 */
 	HttpClient getHttpClient();
 
+	/**
+	 * Returns the maximum number of requests submitted with
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync() executeAsync()} which may be waiting to run. Once
+	 * this many requests are waiting, further submissions block until a request completes.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_MAX_QUEUED_ASYNC_REQUESTS}
+	 * </p>
+	 */
+	int getMaxQueuedAsyncRequests();
+
+	/**
+	 * Returns the maximum number of connections allowed in the pool, which is also the maximum number of asynchronous
+	 * requests which may run at once.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_POOL_MAX_TOTAL}
+	 * </p>
+	 */
+	int getPoolMaxTotal();
+
+	/**
+	 * Returns the maximum number of connections per route (i.e. per server) allowed in the pool, which is also the
+	 * maximum number of asynchronous requests to the same server which may run at once.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_POOL_MAX_PER_ROUTE}
+	 * </p>
+	 */
+	int getPoolMaxPerRoute();
+
 	/**
 	 * Gets the server validation mode for any clients created from this factory. Server 
 	 * validation involves the client requesting the server's conformance statement
@@ -140,6 +183,27 @@ public interface IRestfulClientFactory {
 	 */
 	void setHttpClient(HttpClient theHttpClient);
 
+	/**
+	 * Sets the maximum number of asynchronous requests which may be waiting to run
+	 * 
+	 * @see #getMaxQueuedAsyncRequests()
+	 */
+	void setMaxQueuedAsyncRequests(int theMaxQueuedAsyncRequests);
+
+	/**
+	 * Sets the maximum number of connections allowed in the pool
+	 * 
+	 * @see #getPoolMaxTotal()
+	 */
+	void setPoolMaxTotal(int thePoolMaxTotal);
+
+	/**
+	 * Sets the maximum number of connections per route allowed in the pool
+	 * 
+	 * @see #getPoolMaxPerRoute()
+	 */
+	void setPoolMaxPerRoute(int thePoolMaxPerRoute);
+
 	/**
 	 * Sets the HTTP proxy to use for outgoing connections
 	 * 
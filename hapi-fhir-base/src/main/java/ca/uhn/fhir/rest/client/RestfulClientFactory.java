@@ -49,11 +49,15 @@ import ca.uhn.fhir.rest.server.Constants;
 public class RestfulClientFactory implements IRestfulClientFactory {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(RestfulClientFactory.class);
+	private AsyncRequestExecutor myAsyncExecutor;
 	private int myConnectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
 	private int myConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
 	private FhirContext myContext;
 	private HttpClient myHttpClient;
 	private Map<Class<? extends IRestfulClient>, ClientInvocationHandlerFactory> myInvocationHandlers = new HashMap<Class<? extends IRestfulClient>, ClientInvocationHandlerFactory>();
+	private int myMaxQueuedAsyncRequests = DEFAULT_MAX_QUEUED_ASYNC_REQUESTS;
+	private int myPoolMaxPerRoute = DEFAULT_POOL_MAX_PER_ROUTE;
+	private int myPoolMaxTotal = DEFAULT_POOL_MAX_TOTAL;
 	private HttpHost myProxy;
 	private ServerValidationModeEnum myServerValidationMode = DEFAULT_SERVER_VALIDATION_MODE;
 
@@ -77,6 +81,16 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		myContext = theFhirContext;
 	}
 
+	/**
+	 * Returns the executor shared by the clients created by this factory for asynchronous requests
+	 */
+	public synchronized AsyncRequestExecutor getAsyncExecutor() {
+		if (myAsyncExecutor == null) {
+			myAsyncExecutor = new AsyncRequestExecutor(myPoolMaxTotal, myPoolMaxPerRoute, myMaxQueuedAsyncRequests);
+		}
+		return myAsyncExecutor;
+	}
+
 	public int getConnectionRequestTimeout() {
 		return myConnectionRequestTimeout;
 	}
@@ -90,6 +104,8 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		if (myHttpClient == null) {
 
 			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+			connectionManager.setMaxTotal(myPoolMaxTotal);
+			connectionManager.setDefaultMaxPerRoute(myPoolMaxPerRoute);
 
 			//@formatter:off
 			RequestConfig defaultRequestConfig = RequestConfig.custom()
@@ -117,6 +133,21 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		return myServerValidationMode;
 	}
 
+	@Override
+	public int getMaxQueuedAsyncRequests() {
+		return myMaxQueuedAsyncRequests;
+	}
+
+	@Override
+	public int getPoolMaxPerRoute() {
+		return myPoolMaxPerRoute;
+	}
+
+	@Override
+	public int getPoolMaxTotal() {
+		return myPoolMaxTotal;
+	}
+
 	@Override
 	public int getSocketTimeout() {
 		return mySocketTimeout;
@@ -167,7 +198,9 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 	public synchronized IGenericClient newGenericClient(String theServerBase) {
 		HttpClient httpClient = getHttpClient();
 		maybeValidateServerBase(theServerBase, httpClient);
-		return new GenericClient(myContext, httpClient, theServerBase);
+		GenericClient retVal = new GenericClient(myContext, httpClient, theServerBase);
+		retVal.setAsyncExecutor(getAsyncExecutor());
+		return retVal;
 	}
 
 	private void maybeValidateServerBase(String theServerBase, HttpClient theHttpClient) {
@@ -223,6 +256,26 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		myHttpClient = theHttpClient;
 	}
 
+	@Override
+	public synchronized void setMaxQueuedAsyncRequests(int theMaxQueuedAsyncRequests) {
+		myMaxQueuedAsyncRequests = theMaxQueuedAsyncRequests;
+		myAsyncExecutor = null;
+	}
+
+	@Override
+	public synchronized void setPoolMaxPerRoute(int thePoolMaxPerRoute) {
+		myPoolMaxPerRoute = thePoolMaxPerRoute;
+		myHttpClient = null;
+		myAsyncExecutor = null;
+	}
+
+	@Override
+	public synchronized void setPoolMaxTotal(int thePoolMaxTotal) {
+		myPoolMaxTotal = thePoolMaxTotal;
+		myHttpClient = null;
+		myAsyncExecutor = null;
+	}
+
 	@Override
 	public void setProxy(String theHost, Integer thePort) {
 		if (theHost != null) {
@@ -0,0 +1,257 @@
+package ca.uhn.fhir.rest.client;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Wraps a response entity so that a copy of the body is kept as it is read by the client. This allows an
+ * {@link IClientInterceptor} (or the client itself) to log the body of a response without reading it into memory
+ * before it is parsed. Only the first <code>theMaxBytes</code> bytes are kept, so the memory used is bounded even for
+ * very large responses.
+ * <p>
+ * The content may only be read once. Subclasses may override {@link #contentClosed()}, which is called once the
+ * client has finished reading the body, to do something with the copy. An interceptor may use this class by replacing
+ * the entity of the response in {@link IClientInterceptor#interceptResponse(org.apache.http.HttpResponse)}:
+ * </p>
+ *
+ * <pre>
+ * theResponse.setEntity(new TeeHttpEntity(theResponse.getEntity(), TeeHttpEntity.DEFAULT_MAX_BYTES) {
+ * 	protected void contentClosed() {
+ * 		ourLog.info(&quot;Response body: {}&quot;, getCapturedString());
+ * 	}
+ * });
+ * </pre>
+ */
+public class TeeHttpEntity extends HttpEntityWrapper {
+
+	/**
+	 * The default number of bytes to keep (1 MB)
+	 */
+	public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteArrayOutputStream myCaptured;
+	private boolean myClosed;
+	private InputStream myContent;
+	private final int myMaxBytes;
+	private long myTotalBytes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theWrappedEntity
+	 *            The entity to read from
+	 * @param theMaxBytes
+	 *            The maximum number of bytes to keep. Bytes past this point are counted but not kept.
+	 */
+	public TeeHttpEntity(HttpEntity theWrappedEntity, int theMaxBytes) {
+		super(theWrappedEntity);
+		Validate.isTrue(theMaxBytes >= 0, "theMaxBytes must not be negative");
+		myMaxBytes = theMaxBytes;
+		myCaptured = new ByteArrayOutputStream(Math.min(theMaxBytes, 8192));
+	}
+
+	/**
+	 * Called once, when the stream returned by {@link #getContent()} is closed. The default implementation does
+	 * nothing.
+	 */
+	protected void contentClosed() {
+		// nothing
+	}
+
+	/**
+	 * Returns the bytes which have been read so far, up to the maximum given in the constructor
+	 */
+	public byte[] getCapturedBytes() {
+		return myCaptured.toByteArray();
+	}
+
+	/**
+	 * Returns the bytes which have been read so far (up to the maximum given in the constructor) as a string, using
+	 * the charset of the entity's content type, or UTF-8 if none is specified. If the copy was truncated part way
+	 * through a multi-byte character, that character is left out.
+	 */
+	public String getCapturedString() {
+		Charset charset = null;
+		Header contentType = getContentType();
+		if (contentType != null && contentType.getElements() != null && contentType.getElements().length > 0) {
+			charset = ContentType.get(this).getCharset();
+		}
+		if (charset == null) {
+			charset = UTF8;
+		}
+
+		byte[] captured = getCapturedBytes();
+		if (!isTruncated()) {
+			return new String(captured, charset);
+		}
+
+		/*
+		 * Decoding without marking the end of the input leaves any incomplete character at the end of the copy
+		 * undecoded, instead of turning it into a replacement character
+		 */
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer retVal = CharBuffer.allocate((int) Math.ceil(captured.length * (double) decoder.maxCharsPerByte()));
+		decoder.decode(ByteBuffer.wrap(captured), retVal, false);
+		retVal.flip();
+		return retVal.toString();
+	}
+
+	@Override
+	public synchronized InputStream getContent() throws IOException {
+		if (myContent == null) {
+			myContent = new TeeInputStream(wrappedEntity.getContent());
+		}
+		return myContent;
+	}
+
+	/**
+	 * Returns the total number of bytes which have been read so far, including those which were not kept
+	 */
+	public long getTotalBytes() {
+		return myTotalBytes;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return false;
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return !myClosed;
+	}
+
+	/**
+	 * Returns <code>true</code> if more bytes were read than could be kept
+	 */
+	public boolean isTruncated() {
+		return myTotalBytes > myMaxBytes;
+	}
+
+	@Override
+	public void writeTo(OutputStream theOutputStream) throws IOException {
+		InputStream content = getContent();
+		try {
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = content.read(buffer)) != -1) {
+				theOutputStream.write(buffer, 0, count);
+			}
+		} finally {
+			content.close();
+		}
+	}
+
+	private void capture(byte[] theBytes, int theOffset, int theCount) {
+		if (theCount <= 0) {
+			return;
+		}
+		long remaining = myMaxBytes - myTotalBytes;
+		if (remaining > 0) {
+			myCaptured.write(theBytes, theOffset, (int) Math.min(remaining, theCount));
+		}
+		myTotalBytes += theCount;
+	}
+
+	private class TeeInputStream extends FilterInputStream {
+
+		private final byte[] mySingleByte = new byte[1];
+
+		TeeInputStream(InputStream theInputStream) {
+			super(theInputStream);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (myClosed) {
+				return;
+			}
+			myClosed = true;
+			try {
+				super.close();
+			} finally {
+				contentClosed();
+			}
+		}
+
+		@Override
+		public void mark(int theReadlimit) {
+			// not supported
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int retVal = super.read();
+			if (retVal != -1) {
+				mySingleByte[0] = (byte) retVal;
+				capture(mySingleByte, 0, 1);
+			}
+			return retVal;
+		}
+
+		@Override
+		public int read(byte[] theBuffer, int theOffset, int theLength) throws IOException {
+			int retVal = super.read(theBuffer, theOffset, theLength);
+			capture(theBuffer, theOffset, retVal);
+			return retVal;
+		}
+
+		@Override
+		public void reset() throws IOException {
+			throw new IOException("mark/reset not supported");
+		}
+
+		@Override
+		public long skip(long theCount) throws IOException {
+			if (theCount <= 0) {
+				return 0;
+			}
+			byte[] buffer = new byte[(int) Math.min(theCount, 8192)];
+			int read = read(buffer, 0, buffer.length);
+			return read == -1 ? 0 : read;
+		}
+
+	}
+
+}
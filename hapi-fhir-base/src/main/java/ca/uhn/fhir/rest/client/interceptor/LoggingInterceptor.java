@@ -20,10 +20,7 @@ package ca.uhn.fhir.rest.client.interceptor;
  * #L%
  */
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.Validate;
@@ -32,11 +29,10 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.entity.HttpEntityWrapper;
 import org.slf4j.Logger;
 
 import ca.uhn.fhir.rest.client.IClientInterceptor;
-import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.client.TeeHttpEntity;
 
 public class LoggingInterceptor implements IClientInterceptor {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(LoggingInterceptor.class);
@@ -145,15 +141,17 @@ public class LoggingInterceptor implements IClientInterceptor {
 		if (myLogResponseBody) {
 			HttpEntity respEntity = theResponse.getEntity();
 			if (respEntity != null) {
-			final byte[] bytes;
-			try {
-				bytes = IOUtils.toByteArray(respEntity.getContent());
-			} catch (IllegalStateException e) {
-				throw new InternalErrorException(e);
-			}
-
-			myLog.info("Client response body:\n{}", new String(bytes));
-			theResponse.setEntity(new MyEntityWrapper(respEntity, bytes));
+				// The body is logged once the client has read it, so it is not held in memory before being parsed
+				theResponse.setEntity(new TeeHttpEntity(respEntity, TeeHttpEntity.DEFAULT_MAX_BYTES) {
+					@Override
+					protected void contentClosed() {
+						if (isTruncated()) {
+							myLog.info("Client response body (first {} of {} bytes):\n{}", new Object[] { getCapturedBytes().length, getTotalBytes(), getCapturedString() });
+						} else {
+							myLog.info("Client response body:\n{}", getCapturedString());
+						}
+					}
+				});
 			} else {
 				myLog.info("Client response body: (none)");
 			}
@@ -214,25 +212,4 @@ public class LoggingInterceptor implements IClientInterceptor {
 		myLogResponseSummary = theValue;
 	}
 
-	private static class MyEntityWrapper extends HttpEntityWrapper {
-
-		private byte[] myBytes;
-
-		public MyEntityWrapper(HttpEntity theWrappedEntity, byte[] theBytes) {
-			super(theWrappedEntity);
-			myBytes = theBytes;
-		}
-
-		@Override
-		public InputStream getContent() throws IOException {
-			return new ByteArrayInputStream(myBytes);
-		}
-
-		@Override
-		public void writeTo(OutputStream theOutstream) throws IOException {
-			theOutstream.write(myBytes);
-		}
-
-	}
-
 }
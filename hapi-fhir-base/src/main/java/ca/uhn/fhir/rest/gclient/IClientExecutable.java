@@ -20,11 +20,24 @@ package ca.uhn.fhir.rest.gclient;
  * #L%
  */
 
+import java.util.concurrent.Future;
 
 public interface IClientExecutable<T extends IClientExecutable<?,?>, Y> {
 
 	Y execute();
 
+	/**
+	 * Executes the request in the background, and returns a future which holds the result (or the exception which
+	 * {@link #execute()} would have thrown, wrapped in an {@link java.util.concurrent.ExecutionException}).
+	 * <p>
+	 * Requests are run by the client's {@link ca.uhn.fhir.rest.client.AsyncRequestExecutor}, which limits the number of
+	 * requests running at once (in total and per server) in the same way as the HTTP connection pool. If too many
+	 * requests are already waiting, this method blocks until there is room. Cancelling the returned future aborts the
+	 * request if it is in progress. Interceptors and logging apply exactly as they do for {@link #execute()}.
+	 * </p>
+	 */
+	Future<Y> executeAsync();
+
 	T encodedJson();
 
 	T encodedXml();
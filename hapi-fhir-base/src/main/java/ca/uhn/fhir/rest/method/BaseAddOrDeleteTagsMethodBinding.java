@@ -185,6 +185,10 @@ abstract class BaseAddOrDeleteTagsMethodBinding extends BaseMethodBinding<Void>
 		}
 
 		EncodingEnum responseEncoding = RestfulServer.determineResponseEncoding(theRequest.getServletRequest());
+		if (responseEncoding.isBinary()) {
+			// As for GetTagsMethodBinding, binary encodings don't define a form for tag lists
+			responseEncoding = EncodingEnum.JSON;
+		}
 
 		HttpServletResponse response = theRequest.getServletResponse();
 		response.setContentType(responseEncoding.getResourceContentType());
@@ -197,6 +201,15 @@ abstract class BaseAddOrDeleteTagsMethodBinding extends BaseMethodBinding<Void>
 		writer.close();
 	}
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		RequestDispatchCriteria retVal = new RequestDispatchCriteria();
+		retVal.setRequestTypes(RequestType.POST);
+		retVal.setOperations(Constants.PARAM_TAGS);
+		retVal.setHasId(true);
+		return retVal;
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		if (theRequest.getRequestType() != RequestType.POST) {
@@ -66,6 +66,7 @@ import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionNotSpecifiedException;
 import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
+import ca.uhn.fhir.rest.server.exceptions.UnsupportedMediaTypeException;
 import ca.uhn.fhir.util.ReflectionUtil;
 
 public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T> {
@@ -104,6 +105,15 @@ public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T>
 		return retVal;
 	}
 
+	/**
+	 * Returns conditions which every request handled by this method meets. The server uses these to index the methods
+	 * of each resource, so that {@link #incomingServerRequestMatchesMethod(Request)} is only called for methods which
+	 * may match the request. The default implementation places no restriction on requests.
+	 */
+	public RequestDispatchCriteria getDispatchCriteria() {
+		return new RequestDispatchCriteria();
+	}
+
 	public Method getMethod() {
 		return myMethod;
 	}
@@ -167,6 +177,11 @@ public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T>
 		}
 
 		if (encoding == null) {
+			EncodingEnum binaryEncoding = Constants.FORMAT_VAL_TO_ENCODING.get(contentTypeHeader);
+			if (binaryEncoding != null && binaryEncoding.isBinary()) {
+				// Only methods which read the request body as a stream accept binary encodings
+				throw new UnsupportedMediaTypeException("Content-type " + contentTypeHeader + " is not supported for this operation");
+			}
 			throw new InvalidRequestException("Request contins non-FHIR conent-type header value: " + contentTypeHeader);
 		}
 
@@ -22,6 +22,7 @@ package ca.uhn.fhir.rest.method;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Method;
@@ -104,6 +105,18 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding<Metho
 	 */
 	protected abstract String getMatchingOperation();
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		RequestDispatchCriteria retVal = new RequestDispatchCriteria();
+		retVal.setRequestTypes(provideAllowableRequestTypes());
+		if (getMatchingOperation() == null) {
+			retVal.setOperations(RequestDispatchCriteria.NO_OPERATION);
+		} else {
+			retVal.setOperations(getMatchingOperation());
+		}
+		return retVal;
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		Set<RequestType> allowableRequestTypes = provideAllowableRequestTypes();
@@ -236,13 +249,22 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding<Metho
 		if (outcome != null) {
 			EncodingEnum encoding = RestfulServer.determineResponseEncoding(theRequest.getServletRequest());
 			servletResponse.setContentType(encoding.getResourceContentType());
-			Writer writer = servletResponse.getWriter();
 			IParser parser = encoding.newParser(getContext());
 			parser.setPrettyPrint(RestfulServer.prettyPrintResponse(theRequest));
-			try {
-				parser.encodeResourceToWriter(response.getOperationOutcome(), writer);
-			} finally {
-				writer.close();
+			if (encoding.isBinary()) {
+				OutputStream outputStream = servletResponse.getOutputStream();
+				try {
+					parser.encodeResourceToOutputStream(response.getOperationOutcome(), outputStream);
+				} finally {
+					outputStream.close();
+				}
+			} else {
+				Writer writer = servletResponse.getWriter();
+				try {
+					parser.encodeResourceToWriter(response.getOperationOutcome(), writer);
+				} finally {
+					writer.close();
+				}
 			}
 		} else {
 			servletResponse.setContentType(Constants.CT_TEXT_WITH_UTF8);
@@ -270,9 +292,12 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding<Metho
 	protected IResource parseIncomingServerResource(Request theRequest) throws IOException {
 		EncodingEnum encoding = RestfulServer.determineRequestEncoding(theRequest);
 		IParser parser = encoding.newParser(getContext());
-		BufferedReader requestReader = theRequest.getServletRequest().getReader();
-		
 		Class<? extends IBaseResource> wantedResourceType = requestContainsResourceType();
+		if (encoding.isBinary()) {
+			return (IResource) parser.parseResource(wantedResourceType, theRequest.getServletRequest().getInputStream());
+		}
+
+		BufferedReader requestReader = theRequest.getServletRequest().getReader();
 		if (wantedResourceType != null) {
 			return (IResource) parser.parseResource(wantedResourceType, requestReader);
 		} else {
@@ -306,11 +331,20 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding<Metho
 			theResponse.setContentType(theEncoding.getResourceContentType());
 			IParser parser = theEncoding.newParser(theServer.getFhirContext());
 			parser.setPrettyPrint(RestfulServer.prettyPrintResponse(theRequest));
-			Writer writer = theResponse.getWriter();
-			try {
-				parser.encodeResourceToWriter(theE.getOperationOutcome(), writer);
-			} finally {
-				writer.close();
+			if (theEncoding.isBinary()) {
+				OutputStream outputStream = theResponse.getOutputStream();
+				try {
+					parser.encodeResourceToOutputStream(theE.getOperationOutcome(), outputStream);
+				} finally {
+					outputStream.close();
+				}
+			} else {
+				Writer writer = theResponse.getWriter();
+				try {
+					parser.encodeResourceToWriter(theE.getOperationOutcome(), writer);
+				} finally {
+					writer.close();
+				}
 			}
 		} else {
 			theResponse.setContentType(Constants.CT_TEXT);
@@ -106,6 +106,18 @@ public class DynamicSearchMethodBinding extends BaseResourceReturningMethodBindi
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(DynamicSearchMethodBinding.class);
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		RequestDispatchCriteria retVal = new RequestDispatchCriteria();
+		retVal.setRequestTypes(RequestType.GET, RequestType.POST);
+		retVal.setOperations(RequestDispatchCriteria.NO_OPERATION, Constants.PARAM_SEARCH);
+		if (myIdParamIndex == null) {
+			retVal.setHasId(false);
+		}
+		retVal.setCompartmentName(null);
+		return retVal;
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		if (!theRequest.getResourceName().equals(getResourceName())) {
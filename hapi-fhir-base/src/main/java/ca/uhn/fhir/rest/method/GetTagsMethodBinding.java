@@ -165,6 +165,10 @@ public class GetTagsMethodBinding extends BaseMethodBinding<TagList> {
 		}
 		
 		EncodingEnum responseEncoding = RestfulServer.determineResponseEncoding(theRequest.getServletRequest());
+		if (responseEncoding.isBinary()) {
+			// Tag lists are small, so binary encodings don't define a form for them
+			responseEncoding = EncodingEnum.JSON;
+		}
 
 		HttpServletResponse response = theRequest.getServletResponse();
 		response.setContentType(responseEncoding.getResourceContentType());
@@ -183,6 +187,15 @@ public class GetTagsMethodBinding extends BaseMethodBinding<TagList> {
 		}
 	}
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		RequestDispatchCriteria retVal = new RequestDispatchCriteria();
+		retVal.setRequestTypes(RequestType.GET);
+		retVal.setOperations(Constants.PARAM_TAGS);
+		retVal.setHasId(myIdParamIndex != null);
+		return retVal;
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		if (theRequest.getRequestType()!=RequestType.GET) {
@@ -206,6 +206,11 @@ public class HistoryMethodBinding extends BaseResourceReturningMethodBinding {
 		};
 	}
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		return new RequestDispatchCriteria().setOperations(Constants.PARAM_HISTORY);
+	}
+
 	// ObjectUtils.equals is replaced by a JDK7 method..
 	@SuppressWarnings("deprecation")
 	@Override
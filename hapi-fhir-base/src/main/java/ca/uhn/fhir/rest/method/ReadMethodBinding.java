@@ -104,6 +104,18 @@ public class ReadMethodBinding extends BaseResourceReturningMethodBinding implem
 		return null;
 	}
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		RequestDispatchCriteria retVal = new RequestDispatchCriteria();
+		retVal.setRequestTypes(RequestType.GET);
+		retVal.setOperations(RequestDispatchCriteria.NO_OPERATION, Constants.PARAM_HISTORY);
+		retVal.setHasId(true);
+		if (mySupportsVersion == false) {
+			retVal.setHasVersion(false);
+		}
+		return retVal;
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		if (!theRequest.getResourceName().equals(getResourceName())) {
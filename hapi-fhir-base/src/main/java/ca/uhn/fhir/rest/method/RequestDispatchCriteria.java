@@ -0,0 +1,185 @@
+package ca.uhn.fhir.rest.method;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.rest.method.SearchMethodBinding.RequestType;
+
+/**
+ * Conditions which a request must meet in order to possibly be handled by a method binding, used by the server to
+ * index the methods of each resource so that only a few of them need to be checked for each request.
+ * <p>
+ * These conditions are necessary but not sufficient: a request which meets them is still checked with
+ * {@link BaseMethodBinding#incomingServerRequestMatchesMethod(Request)}. A binding must therefore never declare a
+ * condition which a request it would accept doesn't meet. Each condition which has not been set places no restriction
+ * on the request.
+ * </p>
+ */
+public class RequestDispatchCriteria {
+
+	/**
+	 * Value for {@link #setOperations(String...)} which stands for a request with no operation (e.g. a read, as opposed
+	 * to a <code>_history</code> request)
+	 */
+	public static final String NO_OPERATION = "";
+
+	private String myCompartmentName;
+	private boolean myCompartmentRestricted;
+	private Boolean myHasId;
+	private Boolean myHasVersion;
+	private Set<String> myOperations;
+	private String[] myRequiredParameterNames = new String[0];
+	private Set<RequestType> myRequestTypes;
+
+	/**
+	 * Returns the compartment name requests must have (<code>null</code> meaning no compartment). Only meaningful if
+	 * {@link #isCompartmentRestricted()} returns <code>true</code>.
+	 */
+	public String getCompartmentName() {
+		return myCompartmentName;
+	}
+
+	/**
+	 * Returns the operations requests may have, or <code>null</code> if any operation is allowed
+	 */
+	public Set<String> getOperations() {
+		return myOperations;
+	}
+
+	/**
+	 * Returns <code>true</code> if the request has all of the parameters which are required by this method, either as
+	 * given or with a qualifier (e.g. <code>name:exact</code> for a required parameter <code>name</code>)
+	 */
+	public boolean hasRequiredParameters(Request theRequest) {
+		if (myRequiredParameterNames.length == 0) {
+			return true;
+		}
+		Map<String, String[]> parameters = theRequest.getParameters();
+		Map<String, List<String>> unqualifiedNames = theRequest.getUnqualifiedToQualifiedNames();
+		for (String next : myRequiredParameterNames) {
+			if (parameters != null && parameters.containsKey(next)) {
+				continue;
+			}
+			if (unqualifiedNames != null && unqualifiedNames.containsKey(next)) {
+				continue;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	public boolean isCompartmentRestricted() {
+		return myCompartmentRestricted;
+	}
+
+	/**
+	 * Returns <code>true</code> if a request with the given properties meets the conditions on request type,
+	 * operation, ID, version and compartment
+	 *
+	 * @param theOperation
+	 *            The operation, which must be {@link #NO_OPERATION} for a request without one
+	 */
+	public boolean matches(RequestType theRequestType, String theOperation, boolean theHasId, boolean theHasVersion, String theCompartmentName) {
+		if (myRequestTypes != null && !myRequestTypes.contains(theRequestType)) {
+			return false;
+		}
+		if (myOperations != null && !myOperations.contains(theOperation)) {
+			return false;
+		}
+		if (myHasId != null && myHasId.booleanValue() != theHasId) {
+			return false;
+		}
+		if (myHasVersion != null && myHasVersion.booleanValue() != theHasVersion) {
+			return false;
+		}
+		if (myCompartmentRestricted) {
+			if (myCompartmentName == null ? theCompartmentName != null : !myCompartmentName.equals(theCompartmentName)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Requests must be for the given compartment, or must not be for a compartment if <code>null</code>
+	 */
+	public RequestDispatchCriteria setCompartmentName(String theCompartmentName) {
+		myCompartmentName = theCompartmentName;
+		myCompartmentRestricted = true;
+		return this;
+	}
+
+	/**
+	 * Requests must (<code>true</code>) or must not (<code>false</code>) have an ID
+	 */
+	public RequestDispatchCriteria setHasId(boolean theHasId) {
+		myHasId = theHasId;
+		return this;
+	}
+
+	/**
+	 * Requests must (<code>true</code>) or must not (<code>false</code>) have an ID with a version
+	 */
+	public RequestDispatchCriteria setHasVersion(boolean theHasVersion) {
+		myHasVersion = theHasVersion;
+		return this;
+	}
+
+	/**
+	 * Requests must have one of the given operations. Use {@link #NO_OPERATION} to allow requests with no operation.
+	 */
+	public RequestDispatchCriteria setOperations(String... theOperations) {
+		myOperations = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(theOperations)));
+		return this;
+	}
+
+	/**
+	 * Requests must have all of the given parameters (with or without a qualifier)
+	 */
+	public RequestDispatchCriteria setRequiredParameterNames(Set<String> theRequiredParameterNames) {
+		myRequiredParameterNames = theRequiredParameterNames.toArray(new String[theRequiredParameterNames.size()]);
+		return this;
+	}
+
+	/**
+	 * Requests must be of one of the given types
+	 */
+	public RequestDispatchCriteria setRequestTypes(Set<RequestType> theRequestTypes) {
+		myRequestTypes = EnumSet.copyOf(theRequestTypes);
+		return this;
+	}
+
+	/**
+	 * Requests must be of one of the given types
+	 */
+	public RequestDispatchCriteria setRequestTypes(RequestType theFirst, RequestType... theRest) {
+		myRequestTypes = EnumSet.of(theFirst, theRest);
+		return this;
+	}
+
+}
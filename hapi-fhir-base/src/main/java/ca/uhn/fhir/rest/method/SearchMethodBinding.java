@@ -141,6 +141,26 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 		return null;
 	}
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		RequestDispatchCriteria retVal = new RequestDispatchCriteria();
+		retVal.setRequestTypes(RequestType.GET, RequestType.POST);
+		retVal.setOperations(RequestDispatchCriteria.NO_OPERATION, Constants.PARAM_SEARCH);
+		if (myIdParamIndex == null) {
+			retVal.setHasId(false);
+		}
+		retVal.setCompartmentName(myCompartmentName);
+
+		Set<String> requiredNames = new HashSet<String>();
+		for (IParameter next : getParameters()) {
+			if (next instanceof BaseQueryParameter && ((BaseQueryParameter) next).isRequired()) {
+				requiredNames.add(((BaseQueryParameter) next).getName());
+			}
+		}
+		retVal.setRequiredParameterNames(requiredNames);
+		return retVal;
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		if (!theRequest.getResourceName().equals(getResourceName())) {
@@ -73,6 +73,11 @@ public class TransactionMethodBinding extends BaseResourceReturningMethodBinding
 		return RestfulOperationSystemEnum.TRANSACTION;
 	}
 
+	@Override
+	public RequestDispatchCriteria getDispatchCriteria() {
+		return new RequestDispatchCriteria().setRequestTypes(RequestType.POST).setOperations(RequestDispatchCriteria.NO_OPERATION);
+	}
+
 	@Override
 	public boolean incomingServerRequestMatchesMethod(Request theRequest) {
 		if (theRequest.getRequestType() != RequestType.POST) {
@@ -150,7 +155,12 @@ public class TransactionMethodBinding extends BaseResourceReturningMethodBinding
 	protected Object parseRequestObject(Request theRequest) throws IOException {
 		EncodingEnum encoding = RestfulServer.determineResponseEncoding(theRequest.getServletRequest());
 		IParser parser = encoding.newParser(getContext());
-		Bundle bundle = parser.parseBundle(theRequest.getServletRequest().getReader());
+		Bundle bundle;
+		if (encoding.isBinary()) {
+			bundle = parser.parseBundle(null, theRequest.getServletRequest().getInputStream());
+		} else {
+			bundle = parser.parseBundle(theRequest.getServletRequest().getReader());
+		}
 		return bundle;
 	}
 
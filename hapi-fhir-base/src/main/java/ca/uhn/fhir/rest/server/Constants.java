@@ -30,6 +30,8 @@ public class Constants {
 
 	public static final String CHARSET_UTF_8 = "UTF-8";
 	public static final String CT_ATOM_XML = "application/atom+xml";
+	public static final String CT_CBOR = "application/cbor";
+	public static final String CT_FHIR_CBOR = "application/cbor+fhir";
 	public static final String CT_FHIR_JSON = "application/json+fhir";
 
 	public static final String CT_FHIR_XML = "application/xml+fhir";
@@ -40,6 +42,7 @@ public class Constants {
 	public static final String CT_TEXT_WITH_UTF8 = CT_TEXT + "; charset=UTF-8";
 	public static final String CT_XML = "application/xml";
 	public static final String ENCODING_GZIP = "gzip";
+	public static final String FORMAT_CBOR = "cbor";
 	public static final String FORMAT_JSON = "json";
 	public static final Set<String> FORMAT_VAL_JSON;
 	public static final Map<String, EncodingEnum> FORMAT_VAL_TO_ENCODING;
@@ -106,6 +109,7 @@ public class Constants {
 	public static final int STATUS_HTTP_409_CONFLICT = 409;
 	public static final int STATUS_HTTP_410_GONE = 410;
 	public static final int STATUS_HTTP_412_PRECONDITION_FAILED = 412;
+	public static final int STATUS_HTTP_415_UNSUPPORTED_MEDIA_TYPE = 415;
 	public static final int STATUS_HTTP_422_UNPROCESSABLE_ENTITY = 422;
 	public static final int STATUS_HTTP_500_INTERNAL_ERROR = 500;
 	public static final int STATUS_HTTP_501_NOT_IMPLEMENTED = 501;
@@ -133,6 +137,10 @@ public class Constants {
 			valToEncoding.put(string, EncodingEnum.JSON);
 		}
 
+		valToEncoding.put(CT_FHIR_CBOR, EncodingEnum.CBOR);
+		valToEncoding.put(CT_CBOR, EncodingEnum.CBOR);
+		valToEncoding.put(FORMAT_CBOR, EncodingEnum.CBOR);
+
 		FORMAT_VAL_TO_ENCODING = Collections.unmodifiableMap(valToEncoding);
 	}
 
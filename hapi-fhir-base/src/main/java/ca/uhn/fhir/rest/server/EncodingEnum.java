@@ -39,6 +39,22 @@ public enum EncodingEnum {
 		public IParser newParser(FhirContext theContext) {
 			return theContext.newJsonParser();
 		}
+	},
+
+	/**
+	 * CBOR, a compact binary form of the JSON encoding. This is not part of the FHIR specification, and is intended
+	 * for use between servers and clients which are both based on HAPI.
+	 */
+	CBOR(Constants.CT_FHIR_CBOR, Constants.CT_FHIR_CBOR, Constants.CT_FHIR_CBOR, Constants.FORMAT_CBOR) {
+		@Override
+		public boolean isBinary() {
+			return true;
+		}
+
+		@Override
+		public IParser newParser(FhirContext theContext) {
+			return theContext.newCborParser();
+		}
 	}
 
 	;
@@ -48,6 +64,10 @@ public enum EncodingEnum {
 	static {
 		ourContentTypeToEncoding = new HashMap<String, EncodingEnum>();
 		for (EncodingEnum next : values()) {
+			if (next.isBinary()) {
+				// Callers of forContentType(String) read content through a Reader
+				continue;
+			}
 			ourContentTypeToEncoding.put(next.getBundleContentType(), next);
 			ourContentTypeToEncoding.put(next.getResourceContentType(), next);
 			ourContentTypeToEncoding.put(next.getBrowserFriendlyBundleContentType(), next);
@@ -80,6 +100,14 @@ public enum EncodingEnum {
 		return myFormatContentType;
 	}
 
+	/**
+	 * Returns <code>true</code> if this encoding produces binary content, which must be read from an
+	 * {@link java.io.InputStream} and written to an {@link java.io.OutputStream} instead of a Reader or Writer
+	 */
+	public boolean isBinary() {
+		return false;
+	}
+
 	public abstract IParser newParser(FhirContext theContext);
 
 	public String getBundleContentType() {
@@ -94,6 +122,11 @@ public enum EncodingEnum {
 		return myBrowserFriendlyContentType;
 	}
 
+	/**
+	 * Returns the encoding for the given content type, or <code>null</code> if it isn't a FHIR content type which can
+	 * be read from a Reader. Binary encodings (see {@link #isBinary()}) are never returned, so content of one of those
+	 * types is treated the same way as non-FHIR content.
+	 */
 	public static EncodingEnum forContentType(String theContentType) {
 		return ourContentTypeToEncoding.get(theContentType);
 	}
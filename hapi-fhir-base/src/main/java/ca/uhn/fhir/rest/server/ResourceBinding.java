@@ -20,11 +20,21 @@ package ca.uhn.fhir.rest.server;
  * #L%
  */
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.method.BaseMethodBinding;
 import ca.uhn.fhir.rest.method.Request;
+import ca.uhn.fhir.rest.method.RequestDispatchCriteria;
+import ca.uhn.fhir.rest.method.SearchMethodBinding.RequestType;
 
 /**
  * Created by dsotnikov on 2/25/2014.
@@ -35,6 +45,7 @@ public class ResourceBinding {
 
 	private String resourceName;
 	private List<BaseMethodBinding<?>> methods = new ArrayList<BaseMethodBinding<?>>();
+	private volatile DispatchIndex dispatchIndex;
 
 	public ResourceBinding() {
 	}
@@ -44,15 +55,33 @@ public class ResourceBinding {
 		this.methods = methods;
 	}
 
+	/**
+	 * Builds the index which {@link #getMethod(Request)} uses to find the methods which may handle a request. This is
+	 * called by the server once all methods have been added, and is otherwise built the first time a request is
+	 * dispatched.
+	 */
+	public void buildIndex() {
+		if (methods != null) {
+			dispatchIndex = new DispatchIndex(methods);
+		}
+	}
+
 	public BaseMethodBinding<?> getMethod(Request theRequest) throws Exception {
 		if (null == methods) {
 			ourLog.warn("No methods exist for resource: {}", resourceName);
 			return null;
 		}
 
+		DispatchIndex index = dispatchIndex;
+		if (index == null) {
+			index = new DispatchIndex(methods);
+			dispatchIndex = index;
+		}
+
 		ourLog.debug("Looking for a handler for {}", theRequest);
-		for (BaseMethodBinding<?> rm : methods) {
-			if (rm.incomingServerRequestMatchesMethod(theRequest)) {
+		for (Candidate next : index.getCandidates(theRequest)) {
+			BaseMethodBinding<?> rm = next.myMethod;
+			if (next.myCriteria.hasRequiredParameters(theRequest) && rm.incomingServerRequestMatchesMethod(theRequest)) {
 				ourLog.debug("Handler {} matches", rm);
 				return rm;
 			} else {
@@ -76,10 +105,12 @@ public class ResourceBinding {
 
 	public void setMethods(List<BaseMethodBinding<?>> methods) {
 		this.methods = methods;
+		this.dispatchIndex = null;
 	}
 
 	public void addMethod(BaseMethodBinding<?> method) {
 		this.methods.add(method);
+		this.dispatchIndex = null;
 	}
 
 	@Override
@@ -94,4 +125,107 @@ public class ResourceBinding {
 		return 0;
 	}
 
+	private static class Candidate {
+		private final RequestDispatchCriteria myCriteria;
+		private final BaseMethodBinding<?> myMethod;
+
+		Candidate(BaseMethodBinding<?> theMethod, RequestDispatchCriteria theCriteria) {
+			myMethod = theMethod;
+			myCriteria = theCriteria;
+		}
+	}
+
+	/**
+	 * The methods of a resource, grouped ahead of time by the properties of the requests they may handle: request type,
+	 * operation, whether the request has an ID and a version, and compartment. Only operations and compartments which
+	 * some method asks for are kept apart, all others share a single group. Within each group the methods are kept in
+	 * the order they were added, so the first matching method is the same one a scan of all methods would find.
+	 */
+	private static class DispatchIndex {
+		private static final Candidate[] EMPTY = new Candidate[0];
+
+		/**
+		 * Stands for any operation or compartment which no method names. This can't be a real operation or compartment
+		 * since it can't appear in a URL path.
+		 */
+		private static final String OTHER = "\u0000";
+
+		private final Candidate[] myAllCandidates;
+		private final Set<String> myCompartments = new HashSet<String>();
+		private final Map<RequestType, Map<String, Map<String, Candidate[][]>>> myIndex = new EnumMap<RequestType, Map<String, Map<String, Candidate[][]>>>(RequestType.class);
+		private final Set<String> myOperations = new HashSet<String>();
+
+		DispatchIndex(List<BaseMethodBinding<?>> theMethods) {
+			myAllCandidates = new Candidate[theMethods.size()];
+			for (int i = 0; i < myAllCandidates.length; i++) {
+				BaseMethodBinding<?> next = theMethods.get(i);
+				RequestDispatchCriteria criteria = next.getDispatchCriteria();
+				myAllCandidates[i] = new Candidate(next, criteria);
+				if (criteria.getOperations() != null) {
+					myOperations.addAll(criteria.getOperations());
+				}
+				if (criteria.isCompartmentRestricted() && criteria.getCompartmentName() != null) {
+					myCompartments.add(criteria.getCompartmentName());
+				}
+			}
+			myOperations.add(RequestDispatchCriteria.NO_OPERATION);
+			myOperations.add(OTHER);
+			myCompartments.add(null);
+			myCompartments.add(OTHER);
+
+			for (RequestType nextType : RequestType.values()) {
+				Map<String, Map<String, Candidate[][]>> byOperation = new HashMap<String, Map<String, Candidate[][]>>();
+				for (String nextOperation : myOperations) {
+					Map<String, Candidate[][]> byCompartment = new HashMap<String, Candidate[][]>();
+					for (String nextCompartment : myCompartments) {
+						Candidate[][] byIdAndVersion = new Candidate[4][];
+						for (int idAndVersion = 0; idAndVersion < 4; idAndVersion++) {
+							boolean hasId = (idAndVersion & 1) != 0;
+							boolean hasVersion = (idAndVersion & 2) != 0;
+							List<Candidate> candidates = new ArrayList<Candidate>();
+							for (Candidate nextCandidate : myAllCandidates) {
+								if (nextCandidate.myCriteria.matches(nextType, nextOperation, hasId, hasVersion, nextCompartment)) {
+									candidates.add(nextCandidate);
+								}
+							}
+							byIdAndVersion[idAndVersion] = candidates.isEmpty() ? EMPTY : candidates.toArray(new Candidate[candidates.size()]);
+						}
+						byCompartment.put(nextCompartment, byIdAndVersion);
+					}
+					byOperation.put(nextOperation, byCompartment);
+				}
+				myIndex.put(nextType, byOperation);
+			}
+		}
+
+		Candidate[] getCandidates(Request theRequest) {
+			if (theRequest.getRequestType() == null) {
+				return myAllCandidates;
+			}
+
+			String operation = theRequest.getOperation();
+			if (isBlank(operation)) {
+				operation = RequestDispatchCriteria.NO_OPERATION;
+			} else if (!myOperations.contains(operation)) {
+				operation = OTHER;
+			}
+
+			String compartment = theRequest.getCompartmentName();
+			if (!myCompartments.contains(compartment)) {
+				compartment = OTHER;
+			}
+
+			IdDt id = theRequest.getId();
+			int idAndVersion = 0;
+			if (id != null) {
+				idAndVersion |= 1;
+				if (id.hasVersionIdPart()) {
+					idAndVersion |= 2;
+				}
+			}
+
+			return myIndex.get(theRequest.getRequestType()).get(operation).get(compartment)[idAndVersion];
+		}
+	}
+
 }
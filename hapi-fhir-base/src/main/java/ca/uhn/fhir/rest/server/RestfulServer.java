@@ -23,6 +23,7 @@ package ca.uhn.fhir.rest.server;
 import static org.apache.commons.lang3.StringUtils.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
@@ -43,6 +44,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
@@ -99,6 +101,12 @@ public class RestfulServer extends HttpServlet {
 	 * Default setting for {@link #setETagSupport(ETagSupportEnum) ETag Support}: {@link ETagSupportEnum#ENABLED}
 	 */
 	public static final ETagSupportEnum DEFAULT_ETAG_SUPPORT = ETagSupportEnum.ENABLED;
+
+	/**
+	 * Default setting for {@link #setStreamingChunkSize(int) the streaming chunk size}: 50
+	 */
+	public static final int DEFAULT_STREAMING_CHUNK_SIZE = 50;
+
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(RestfulServer.class);
 
 	private static final long serialVersionUID = 1L;
@@ -107,6 +115,7 @@ public class RestfulServer extends HttpServlet {
 	private FhirContext myFhirContext;
 	private String myImplementationDescription;
 	private final List<IServerInterceptor> myInterceptors = new ArrayList<IServerInterceptor>();
+	private final AtomicReferenceArray<IParser> myResponseParsers = new AtomicReferenceArray<IParser>(EncodingEnum.values().length * 4);
 	private ResourceBinding myNullResourceBinding = new ResourceBinding();
 	private IPagingProvider myPagingProvider;
 	private Collection<Object> myPlainProviders;
@@ -119,6 +128,8 @@ public class RestfulServer extends HttpServlet {
 	/** This is configurable but by default we just use HAPI version */
 	private String myServerVersion = VersionUtil.getVersion();
 	private boolean myStarted;
+	private boolean myStreamBundleResponses;
+	private int myStreamingChunkSize = DEFAULT_STREAMING_CHUNK_SIZE;
 
 	private boolean myUseBrowserFriendlyContentTypes;
 
@@ -415,6 +426,14 @@ public class RestfulServer extends HttpServlet {
 		return myServerVersion;
 	}
 
+	/**
+	 * Returns the number of resources which are loaded from an {@link IBundleProvider} at a time when
+	 * {@link #setStreamBundleResponses(boolean) streaming bundle responses}
+	 */
+	public int getStreamingChunkSize() {
+		return myStreamingChunkSize;
+	}
+
 	private void handlePagingRequest(Request theRequest, HttpServletResponse theResponse, String thePagingAction) throws IOException {
 		IBundleProvider resultList = getPagingProvider().retrieveResultList(thePagingAction);
 		if (resultList == null) {
@@ -804,6 +823,11 @@ public class RestfulServer extends HttpServlet {
 			}
 			findSystemMethods(confProvider);
 
+			myNullResourceBinding.buildIndex();
+			for (ResourceBinding next : myResourceNameToProvider.values()) {
+				next.buildIndex();
+			}
+
 		} catch (Exception ex) {
 			ourLog.error("An error occurred while loading request handlers!", ex);
 			throw new ServletException("Failed to initialize FHIR Restful server", ex);
@@ -847,6 +871,13 @@ public class RestfulServer extends HttpServlet {
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if bundle responses are streamed (see {@link #setStreamBundleResponses(boolean)})
+	 */
+	public boolean isStreamBundleResponses() {
+		return myStreamBundleResponses;
+	}
+
 	public boolean isUseBrowserFriendlyContentTypes() {
 		return myUseBrowserFriendlyContentTypes;
 	}
@@ -891,6 +922,9 @@ public class RestfulServer extends HttpServlet {
 	public void setFhirContext(FhirContext theFhirContext) {
 		Validate.notNull(theFhirContext, "FhirContext must not be null");
 		myFhirContext = theFhirContext;
+		for (int i = 0; i < myResponseParsers.length(); i++) {
+			myResponseParsers.set(i, null);
+		}
 	}
 
 	public void setImplementationDescription(String theImplementationDescription) {
@@ -1016,6 +1050,32 @@ public class RestfulServer extends HttpServlet {
 		myServerVersion = theServerVersion;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), bundle responses are written as the resources are
+	 * loaded: the bundle's own elements are written first, and the resources are then loaded from the
+	 * {@link IBundleProvider} a few at a time (see {@link #setStreamingChunkSize(int)}) and written straight to the
+	 * response. This means that a large page of results is never held in memory all at once, and that the client starts
+	 * receiving the response sooner.
+	 * <p>
+	 * Responses are not streamed if any {@link #registerInterceptor(IServerInterceptor) interceptors} are registered,
+	 * since these are passed the complete bundle before it is written. Note also that an error which occurs while
+	 * loading resources can't be reported to the client as an error response once part of the bundle has been sent.
+	 * </p>
+	 */
+	public void setStreamBundleResponses(boolean theStreamBundleResponses) {
+		myStreamBundleResponses = theStreamBundleResponses;
+	}
+
+	/**
+	 * Sets the number of resources which are loaded from an {@link IBundleProvider} at a time when
+	 * {@link #setStreamBundleResponses(boolean) streaming bundle responses}. Default is
+	 * {@link #DEFAULT_STREAMING_CHUNK_SIZE}.
+	 */
+	public void setStreamingChunkSize(int theStreamingChunkSize) {
+		Validate.isTrue(theStreamingChunkSize > 0, "theStreamingChunkSize must be greater than 0");
+		myStreamingChunkSize = theStreamingChunkSize;
+	}
+
 	/**
 	 * If set to <code>true</code> (default is false), the server will use browser friendly content-types (instead of
 	 * standard FHIR ones) when it detects that the request is coming from a browser instead of a FHIR
@@ -1064,18 +1124,18 @@ public class RestfulServer extends HttpServlet {
 			theHttpResponse.setContentType(theResponseEncoding.getBundleContentType());
 		}
 
-		theHttpResponse.setCharacterEncoding(Constants.CHARSET_UTF_8);
+		if (theNarrativeMode == NarrativeModeEnum.ONLY || !theResponseEncoding.isBinary()) {
+			theHttpResponse.setCharacterEncoding(Constants.CHARSET_UTF_8);
+		}
 
 		theServer.addHeadersToResponse(theHttpResponse);
 
 		int numToReturn;
+		int fromIndex;
 		String searchId = null;
-		List<IResource> resourceList;
 		if (theServer.getPagingProvider() == null) {
 			numToReturn = theResult.size();
-			resourceList = theResult.getResources(0, numToReturn);
-			validateResourceListNotNull(resourceList);
-
+			fromIndex = 0;
 		} else {
 			IPagingProvider pagingProvider = theServer.getPagingProvider();
 			if (theLimit == null) {
@@ -1085,8 +1145,7 @@ public class RestfulServer extends HttpServlet {
 			}
 
 			numToReturn = Math.min(numToReturn, theResult.size() - theOffset);
-			resourceList = theResult.getResources(theOffset, numToReturn + theOffset);
-			validateResourceListNotNull(resourceList);
+			fromIndex = theOffset;
 
 			if (theSearchId != null) {
 				searchId = theSearchId;
@@ -1098,25 +1157,18 @@ public class RestfulServer extends HttpServlet {
 			}
 		}
 
-		for (IResource next : resourceList) {
-			if (next.getId() == null || next.getId().isEmpty()) {
-				if (!(next instanceof BaseOperationOutcome)) {
-					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
-				}
-			}
-		}
-
-		if (theServer.getAddProfileTag() != AddProfileTagEnum.NEVER) {
-			for (IResource nextRes : resourceList) {
-				RuntimeResourceDefinition def = theServer.getFhirContext().getResourceDefinition(nextRes);
-				if (theServer.getAddProfileTag() == AddProfileTagEnum.ALWAYS || !def.isStandardProfile()) {
-					addProfileToBundleEntry(theServer.getFhirContext(), nextRes, theServerBase);
-				}
-			}
+		Bundle bundle;
+		if (theServer.isStreamBundleResponses() && theServer.getInterceptors().isEmpty()) {
+			bundle = new StreamingBundle(theServer, theResult, fromIndex, fromIndex + numToReturn, theServerBase);
+			initializeBundle(bundle, theServer.getServerName(), theServerBase, theCompleteUrl, theBundleType);
+			bundle.getTotalResults().setValue(theResult.size());
+		} else {
+			List<IResource> resourceList = theResult.getResources(fromIndex, fromIndex + numToReturn);
+			validateResourceListNotNull(resourceList);
+			prepareResourcesForResponse(theServer, resourceList, theServerBase);
+			bundle = createBundleFromResourceList(theServer.getFhirContext(), theServer.getServerName(), resourceList, theServerBase, theCompleteUrl, theResult.size(), theBundleType);
 		}
 
-		Bundle bundle = createBundleFromResourceList(theServer.getFhirContext(), theServer.getServerName(), resourceList, theServerBase, theCompleteUrl, theResult.size(), theBundleType);
-
 		bundle.setPublished(theResult.getPublished());
 
 		if (theServer.getPagingProvider() != null) {
@@ -1139,12 +1191,7 @@ public class RestfulServer extends HttpServlet {
 
 	public static Bundle createBundleFromResourceList(FhirContext theContext, String theAuthor, List<IResource> theResult, String theServerBase, String theCompleteUrl, int theTotalResults, BundleTypeEnum theBundleType) {
 		Bundle bundle = new Bundle();
-		bundle.getAuthorName().setValue(theAuthor);
-		bundle.getBundleId().setValue(UUID.randomUUID().toString());
-		bundle.getPublished().setToCurrentTimeInLocalTimeZone();
-		bundle.getLinkBase().setValue(theServerBase);
-		bundle.getLinkSelf().setValue(theCompleteUrl);
-		bundle.getType().setValueAsEnum(theBundleType);
+		initializeBundle(bundle, theAuthor, theServerBase, theCompleteUrl, theBundleType);
 
 		List<IResource> includedResources = new ArrayList<IResource>();
 		Set<IdDt> addedResourceIds = new HashSet<IdDt>();
@@ -1156,81 +1203,137 @@ public class RestfulServer extends HttpServlet {
 		}
 			
 		for (IResource next : theResult) {
+			prepareBundleEntry(theContext, next, addedResourceIds, includedResources);
+			bundle.addResource(next, theContext, theServerBase);
+		}
 
-			Set<String> containedIds = new HashSet<String>();
-			for (IResource nextContained : next.getContained().getContainedResources()) {
-				if (nextContained.getId().isEmpty() == false) {
-					containedIds.add(nextContained.getId().getValue());
-				}
+		/*
+		 * Actually add the resources to the bundle
+		 */
+		for (IResource next : includedResources) {
+			bundle.addEntry(createIncludedEntry(theContext, next, theServerBase));
+		}
+
+		bundle.getTotalResults().setValue(theTotalResults);
+		return bundle;
+	}
+
+	/**
+	 * Creates the bundle entry for a resource which is included in a bundle because another resource refers to it
+	 */
+	static BundleEntry createIncludedEntry(FhirContext theContext, IResource theResource, String theServerBase) {
+		BundleEntry entry = Bundle.createEntry(theResource, theContext, theServerBase);
+		if (theContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
+			if (entry.getSearchMode().isEmpty()) {
+				entry.getSearchMode().setValueAsEnum(BundleEntrySearchModeEnum.INCLUDE);
 			}
+		}
+		return entry;
+	}
 
-			if (theContext.getNarrativeGenerator() != null) {
-				String title = theContext.getNarrativeGenerator().generateTitle(next);
-				ourLog.trace("Narrative generator created title: {}", title);
-				if (StringUtils.isNotBlank(title)) {
-					ResourceMetadataKeyEnum.TITLE.put(next, title);
-				}
-			} else {
-				ourLog.trace("No narrative generator specified");
+	/**
+	 * Returns the ID under which a resource included in a bundle is tracked, so that it is only included once
+	 */
+	static IdDt getIncludedResourceId(FhirContext theContext, IResource theResource) {
+		IdDt id = theResource.getId();
+		if (id.hasResourceType() == false) {
+			String resName = theContext.getResourceDefinition(theResource).getName();
+			id = id.withResourceType(resName);
+		}
+		return id;
+	}
+
+	private static void initializeBundle(Bundle theBundle, String theAuthor, String theServerBase, String theCompleteUrl, BundleTypeEnum theBundleType) {
+		theBundle.getAuthorName().setValue(theAuthor);
+		theBundle.getBundleId().setValue(UUID.randomUUID().toString());
+		theBundle.getPublished().setToCurrentTimeInLocalTimeZone();
+		theBundle.getLinkBase().setValue(theServerBase);
+		theBundle.getLinkSelf().setValue(theCompleteUrl);
+		theBundle.getType().setValueAsEnum(theBundleType);
+	}
+
+	/**
+	 * Sets the title of a resource which is about to be added to a bundle, and adds any resources it refers to which
+	 * aren't already in the bundle to the list of included resources
+	 * 
+	 * @param theAddedResourceIds
+	 *            The IDs of the resources already in the bundle, which is updated with the IDs of the newly included
+	 *            resources
+	 */
+	static void prepareBundleEntry(FhirContext theContext, IResource theResource, Set<IdDt> theAddedResourceIds, List<IResource> theIncludedResources) {
+		Set<String> containedIds = new HashSet<String>();
+		for (IResource nextContained : theResource.getContained().getContainedResources()) {
+			if (nextContained.getId().isEmpty() == false) {
+				containedIds.add(nextContained.getId().getValue());
 			}
+		}
 
-			List<ResourceReferenceDt> references = theContext.newTerser().getAllPopulatedChildElementsOfType(next, ResourceReferenceDt.class);
-			do {
-				List<IResource> addedResourcesThisPass = new ArrayList<IResource>();
-
-				for (ResourceReferenceDt nextRef : references) {
-					IResource nextRes = nextRef.getResource();
-					if (nextRes != null) {
-						if (nextRes.getId().hasIdPart()) {
-							if (containedIds.contains(nextRes.getId().getValue())) {
-								// Don't add contained IDs as top level resources
-								continue;
-							}
+		if (theContext.getNarrativeGenerator() != null) {
+			String title = theContext.getNarrativeGenerator().generateTitle(theResource);
+			ourLog.trace("Narrative generator created title: {}", title);
+			if (StringUtils.isNotBlank(title)) {
+				ResourceMetadataKeyEnum.TITLE.put(theResource, title);
+			}
+		} else {
+			ourLog.trace("No narrative generator specified");
+		}
 
-							IdDt id = nextRes.getId();
-							if (id.hasResourceType() == false) {
-								String resName = theContext.getResourceDefinition(nextRes).getName();
-								id = id.withResourceType(resName);
-							}
+		List<ResourceReferenceDt> references = theContext.newTerser().getAllPopulatedChildElementsOfType(theResource, ResourceReferenceDt.class);
+		do {
+			List<IResource> addedResourcesThisPass = new ArrayList<IResource>();
 
-							if (!addedResourceIds.contains(id)) {
-								addedResourceIds.add(id);
-								addedResourcesThisPass.add(nextRes);
-							}
+			for (ResourceReferenceDt nextRef : references) {
+				IResource nextRes = nextRef.getResource();
+				if (nextRes != null) {
+					if (nextRes.getId().hasIdPart()) {
+						if (containedIds.contains(nextRes.getId().getValue())) {
+							// Don't add contained IDs as top level resources
+							continue;
+						}
 
+						IdDt id = getIncludedResourceId(theContext, nextRes);
+						if (!theAddedResourceIds.contains(id)) {
+							theAddedResourceIds.add(id);
+							addedResourcesThisPass.add(nextRes);
 						}
+
 					}
 				}
+			}
 
-				// Linked resources may themselves have linked resources
-				references = new ArrayList<ResourceReferenceDt>();
-				for (IResource iResource : addedResourcesThisPass) {
-					List<ResourceReferenceDt> newReferences = theContext.newTerser().getAllPopulatedChildElementsOfType(iResource, ResourceReferenceDt.class);
-					references.addAll(newReferences);
-				}
+			// Linked resources may themselves have linked resources
+			references = new ArrayList<ResourceReferenceDt>();
+			for (IResource iResource : addedResourcesThisPass) {
+				List<ResourceReferenceDt> newReferences = theContext.newTerser().getAllPopulatedChildElementsOfType(iResource, ResourceReferenceDt.class);
+				references.addAll(newReferences);
+			}
 
-				includedResources.addAll(addedResourcesThisPass);
+			theIncludedResources.addAll(addedResourcesThisPass);
 
-			} while (references.isEmpty() == false);
+		} while (references.isEmpty() == false);
+	}
 
-			bundle.addResource(next, theContext, theServerBase);
-			
+	/**
+	 * Checks that the resources returned by a server method all have IDs, and adds profile tags to them if the server
+	 * is configured to do so
+	 */
+	static void prepareResourcesForResponse(RestfulServer theServer, List<IResource> theResourceList, String theServerBase) {
+		for (IResource next : theResourceList) {
+			if (next.getId() == null || next.getId().isEmpty()) {
+				if (!(next instanceof BaseOperationOutcome)) {
+					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
+				}
+			}
 		}
 
-		/*
-		 * Actually add the resources to the bundle
-		 */
-		for (IResource next : includedResources) {
-			BundleEntry entry = bundle.addResource(next, theContext, theServerBase);
-			if (theContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
-				if (entry.getSearchMode().isEmpty()) {
-					entry.getSearchMode().setValueAsEnum(BundleEntrySearchModeEnum.INCLUDE);
+		if (theServer.getAddProfileTag() != AddProfileTagEnum.NEVER) {
+			for (IResource nextRes : theResourceList) {
+				RuntimeResourceDefinition def = theServer.getFhirContext().getResourceDefinition(nextRes);
+				if (theServer.getAddProfileTag() == AddProfileTagEnum.ALWAYS || !def.isStandardProfile()) {
+					addProfileToBundleEntry(theServer.getFhirContext(), nextRes, theServerBase);
 				}
 			}
 		}
-
-		bundle.getTotalResults().setValue(theTotalResults);
-		return bundle;
 	}
 
 	public static String createPagingLink(String theServerBase, String theSearchId, int theOffset, int theCount, EncodingEnum theResponseEncoding, boolean thePrettyPrint) {
@@ -1349,20 +1452,39 @@ public class RestfulServer extends HttpServlet {
 		return tryToExtractNamedParameter(theRequest, name);
 	}
 
-	public static IParser getNewParser(FhirContext theContext, EncodingEnum theResponseEncoding, boolean thePrettyPrint, NarrativeModeEnum theNarrativeMode) {
-		IParser parser;
-		switch (theResponseEncoding) {
-		case JSON:
-			parser = theContext.newJsonParser();
-			break;
-		case XML:
-		default:
-			parser = theContext.newXmlParser();
-			break;
+	/**
+	 * Returns a parser which may be used to encode responses using the given settings. A parser is created the first
+	 * time each combination of settings is requested, and is then shared between all requests which use the same
+	 * settings. Callers must not change the configuration of the returned parser.
+	 */
+	public IParser getResponseParser(EncodingEnum theResponseEncoding, boolean thePrettyPrint, NarrativeModeEnum theNarrativeMode) {
+		int index = theResponseEncoding.ordinal() * 4 + (thePrettyPrint ? 2 : 0) + (theNarrativeMode == NarrativeModeEnum.SUPPRESS ? 1 : 0);
+		IParser retVal = myResponseParsers.get(index);
+		if (retVal == null) {
+			retVal = getNewParser(getFhirContext(), theResponseEncoding, thePrettyPrint, theNarrativeMode);
+			if (!myResponseParsers.compareAndSet(index, null, retVal)) {
+				retVal = myResponseParsers.get(index);
+			}
 		}
+		return retVal;
+	}
+
+	public static IParser getNewParser(FhirContext theContext, EncodingEnum theResponseEncoding, boolean thePrettyPrint, NarrativeModeEnum theNarrativeMode) {
+		IParser parser = theResponseEncoding.newParser(theContext);
 		return parser.setPrettyPrint(thePrettyPrint).setSuppressNarratives(theNarrativeMode == NarrativeModeEnum.SUPPRESS);
 	}
 
+	private static OutputStream getOutputStream(HttpServletResponse theHttpResponse, boolean theRespondGzip) throws IOException {
+		OutputStream retVal;
+		if (theRespondGzip) {
+			theHttpResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			retVal = new GZIPOutputStream(theHttpResponse.getOutputStream());
+		} else {
+			retVal = theHttpResponse.getOutputStream();
+		}
+		return retVal;
+	}
+
 	private static Writer getWriter(HttpServletResponse theHttpResponse, boolean theRespondGzip) throws UnsupportedEncodingException, IOException {
 		Writer writer;
 		if (theRespondGzip) {
@@ -1402,18 +1524,23 @@ public class RestfulServer extends HttpServlet {
 	public static void streamResponseAsBundle(RestfulServer theServer, HttpServletResponse theHttpResponse, Bundle bundle, EncodingEnum theResponseEncoding, String theServerBase, boolean thePrettyPrint, NarrativeModeEnum theNarrativeMode, boolean theRespondGzip) throws IOException {
 		assert !theServerBase.endsWith("/");
 
-		Writer writer = getWriter(theHttpResponse, theRespondGzip);
-		try {
-			if (theNarrativeMode == NarrativeModeEnum.ONLY) {
+		if (theNarrativeMode == NarrativeModeEnum.ONLY) {
+			Writer writer = getWriter(theHttpResponse, theRespondGzip);
+			try {
 				for (IResource next : bundle.toListOfResources()) {
 					writer.append(next.getText().getDiv().getValueAsString());
 					writer.append("<hr/>");
 				}
-			} else {
-				RestfulServer.getNewParser(theServer.getFhirContext(), theResponseEncoding, thePrettyPrint, theNarrativeMode).encodeBundleToWriter(bundle, writer);
+			} finally {
+				writer.close();
+			}
+		} else {
+			OutputStream outputStream = getOutputStream(theHttpResponse, theRespondGzip);
+			try {
+				theServer.getResponseParser(theResponseEncoding, thePrettyPrint, theNarrativeMode).encodeBundleToOutputStream(bundle, outputStream);
+			} finally {
+				outputStream.close();
 			}
-		} finally {
-			writer.close();
 		}
 	}
 
@@ -1473,7 +1600,9 @@ public class RestfulServer extends HttpServlet {
 		} else {
 			theHttpResponse.setContentType(theResponseEncoding.getResourceContentType());
 		}
-		theHttpResponse.setCharacterEncoding(Constants.CHARSET_UTF_8);
+		if (theNarrativeMode == NarrativeModeEnum.ONLY || !theResponseEncoding.isBinary()) {
+			theHttpResponse.setCharacterEncoding(Constants.CHARSET_UTF_8);
+		}
 
 		theServer.addHeadersToResponse(theHttpResponse);
 
@@ -1491,15 +1620,20 @@ public class RestfulServer extends HttpServlet {
 			}
 		}
 
-		Writer writer = getWriter(theHttpResponse, theRespondGzip);
-		try {
-			if (theNarrativeMode == NarrativeModeEnum.ONLY) {
+		if (theNarrativeMode == NarrativeModeEnum.ONLY) {
+			Writer writer = getWriter(theHttpResponse, theRespondGzip);
+			try {
 				writer.append(theResource.getText().getDiv().getValueAsString());
-			} else {
-				RestfulServer.getNewParser(theServer.getFhirContext(), theResponseEncoding, thePrettyPrint, theNarrativeMode).encodeResourceToWriter(theResource, writer);
+			} finally {
+				writer.close();
+			}
+		} else {
+			OutputStream outputStream = getOutputStream(theHttpResponse, theRespondGzip);
+			try {
+				theServer.getResponseParser(theResponseEncoding, thePrettyPrint, theNarrativeMode).encodeResourceToOutputStream(theResource, outputStream);
+			} finally {
+				outputStream.close();
 			}
-		} finally {
-			writer.close();
 		}
 	}
 
@@ -1516,7 +1650,7 @@ public class RestfulServer extends HttpServlet {
 		return count;
 	}
 
-	private static void validateResourceListNotNull(List<IResource> theResourceList) {
+	static void validateResourceListNotNull(List<IResource> theResourceList) {
 		if (theResourceList == null) {
 			throw new InternalErrorException("IBundleProvider returned a null list of resources - This is not allowed");
 		}
@@ -0,0 +1,204 @@
+package ca.uhn.fhir.rest.server;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.BundleEntry;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.primitive.IdDt;
+
+/**
+ * A bundle whose entries are loaded from an {@link IBundleProvider} while they are being iterated over, a chunk at a
+ * time, instead of being loaded up front. Parsers write the bundle's own elements before iterating over its entries,
+ * so encoding this bundle writes each entry as soon as it has been loaded, and only one chunk of resources (plus any
+ * included resources, which are written last) is held at any time.
+ * <p>
+ * Each iteration over the entries loads them from the provider again. Calling any other method of the entry list
+ * (e.g. {@link List#size()}) loads all of the entries and keeps them, after which the list behaves like a normal list.
+ * </p>
+ */
+class StreamingBundle extends Bundle {
+
+	private final List<BundleEntry> myEntries = new EntryList();
+	private final int myFromIndex;
+	private List<BundleEntry> myLoadedEntries;
+	private final IBundleProvider myProvider;
+	private final RestfulServer myServer;
+	private final String myServerBase;
+	private final int myToIndex;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theFromIndex
+	 *            The index of the first resource in the provider to include (inclusive)
+	 * @param theToIndex
+	 *            The index of the last resource in the provider to include (exclusive)
+	 */
+	StreamingBundle(RestfulServer theServer, IBundleProvider theProvider, int theFromIndex, int theToIndex, String theServerBase) {
+		myServer = theServer;
+		myProvider = theProvider;
+		myFromIndex = theFromIndex;
+		myToIndex = theToIndex;
+		myServerBase = theServerBase;
+	}
+
+	@Override
+	public List<BundleEntry> getEntries() {
+		return myEntries;
+	}
+
+	private List<BundleEntry> loadEntries() {
+		if (myLoadedEntries == null) {
+			List<BundleEntry> entries = new ArrayList<BundleEntry>();
+			for (Iterator<BundleEntry> iter = new EntryIterator(); iter.hasNext();) {
+				entries.add(iter.next());
+			}
+			myLoadedEntries = entries;
+		}
+		return myLoadedEntries;
+	}
+
+	private class EntryIterator implements Iterator<BundleEntry> {
+		private final Set<IdDt> myAddedResourceIds = new HashSet<IdDt>();
+		private List<IResource> myChunk = Collections.emptyList();
+		private int myChunkIndex;
+		private final FhirContext myContext = myServer.getFhirContext();
+		private List<IResource> myIncludedResources = new ArrayList<IResource>();
+		private Iterator<IResource> myIncludedIterator;
+		private BundleEntry myNext;
+		private int myNextIndex = myFromIndex;
+		private final Set<IdDt> myResourceIds = new HashSet<IdDt>();
+
+		private BundleEntry fetchNext() {
+			while (myChunkIndex >= myChunk.size() && myNextIndex < myToIndex) {
+				int toIndex = Math.min(myNextIndex + myServer.getStreamingChunkSize(), myToIndex);
+				myChunk = myProvider.getResources(myNextIndex, toIndex);
+				RestfulServer.validateResourceListNotNull(myChunk);
+				RestfulServer.prepareResourcesForResponse(myServer, myChunk, myServerBase);
+				myChunkIndex = 0;
+				myNextIndex = toIndex;
+
+				for (IResource next : myChunk) {
+					if (next.getId().isEmpty() == false) {
+						myAddedResourceIds.add(next.getId());
+						myResourceIds.add(next.getId());
+					}
+				}
+			}
+
+			if (myChunkIndex < myChunk.size()) {
+				IResource next = myChunk.get(myChunkIndex++);
+				RestfulServer.prepareBundleEntry(myContext, next, myAddedResourceIds, myIncludedResources);
+				return Bundle.createEntry(next, myContext, myServerBase);
+			}
+			myChunk = Collections.emptyList();
+
+			if (myIncludedIterator == null) {
+				myIncludedIterator = myIncludedResources.iterator();
+			}
+			while (myIncludedIterator.hasNext()) {
+				IResource next = myIncludedIterator.next();
+				/*
+				 * A resource may have been included because of a reference from an earlier chunk than the one the
+				 * resource itself is in, in which case it is already in the bundle
+				 */
+				if (myResourceIds.contains(RestfulServer.getIncludedResourceId(myContext, next))) {
+					continue;
+				}
+				return RestfulServer.createIncludedEntry(myContext, next, myServerBase);
+			}
+			myIncludedResources = null;
+			return null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (myNext == null && myIncludedResources != null) {
+				myNext = fetchNext();
+			}
+			return myNext != null;
+		}
+
+		@Override
+		public BundleEntry next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			BundleEntry retVal = myNext;
+			myNext = null;
+			return retVal;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private class EntryList extends AbstractList<BundleEntry> {
+
+		@Override
+		public void add(int theIndex, BundleEntry theElement) {
+			loadEntries().add(theIndex, theElement);
+		}
+
+		@Override
+		public BundleEntry get(int theIndex) {
+			return loadEntries().get(theIndex);
+		}
+
+		@Override
+		public Iterator<BundleEntry> iterator() {
+			if (myLoadedEntries != null) {
+				return myLoadedEntries.iterator();
+			}
+			return new EntryIterator();
+		}
+
+		@Override
+		public BundleEntry remove(int theIndex) {
+			return loadEntries().remove(theIndex);
+		}
+
+		@Override
+		public BundleEntry set(int theIndex, BundleEntry theElement) {
+			return loadEntries().set(theIndex, theElement);
+		}
+
+		@Override
+		public int size() {
+			return loadEntries().size();
+		}
+
+	}
+
+}
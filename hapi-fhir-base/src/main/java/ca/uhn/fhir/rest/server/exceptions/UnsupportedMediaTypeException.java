@@ -0,0 +1,54 @@
+package ca.uhn.fhir.rest.server.exceptions;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.model.base.resource.BaseOperationOutcome;
+import ca.uhn.fhir.rest.server.Constants;
+
+/**
+ * Represents an <b>HTTP 415 Unsupported Media Type</b> response, which means that the request body is in a format
+ * which the server does not accept for the requested operation.
+ * 
+ * <p>
+ * Note that a complete list of RESTful exceptions is available in the
+ * <a href="./package-summary.html">Package Summary</a>.
+ * </p>
+ */
+public class UnsupportedMediaTypeException extends BaseServerResponseException {
+	public static final int STATUS_CODE = Constants.STATUS_HTTP_415_UNSUPPORTED_MEDIA_TYPE;
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param theMessage
+	 *            The message
+	 *  @param theOperationOutcome The OperationOutcome resource to return to the client
+	 */
+	public UnsupportedMediaTypeException(String theMessage, BaseOperationOutcome theOperationOutcome) {
+		super(STATUS_CODE, theMessage, theOperationOutcome);
+	}
+
+	public UnsupportedMediaTypeException(String theMessage) {
+		super(STATUS_CODE, theMessage);
+	}
+
+}
@@ -22,10 +22,13 @@ package ca.uhn.fhir.util;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.IBase;
 import org.hl7.fhir.instance.model.IBaseResource;
 
@@ -38,10 +41,14 @@ import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.model.api.ExtensionDt;
 import ca.uhn.fhir.model.api.IElement;
+import ca.uhn.fhir.model.api.IIdentifiableElement;
+import ca.uhn.fhir.model.api.IPrimitiveDatatype;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.ISupportsUndeclaredExtensions;
+import ca.uhn.fhir.model.base.resource.ResourceMetadataMap;
 import ca.uhn.fhir.model.dstu.composite.ContainedDt;
 import ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt;
+import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.StringDt;
 import ca.uhn.fhir.parser.DataFormatException;
 
@@ -65,6 +72,167 @@ public class FhirTerser {
 		}
 	}
 
+	/**
+	 * Returns a deep copy of the given resource, which can be modified without affecting the original (and the other
+	 * way around). Contained resources are copied too, and references to them in the copy point to the copied contained
+	 * resources.
+	 * <p>
+	 * Note on scope: Resources which are linked from references but are not contained (e.g. a resource set using
+	 * {@link ResourceReferenceDt#setResource(IResource)}) are not copied, so references in the copy point to the same
+	 * instances as in the original. The resource metadata map is copied, but the values in it are shared.
+	 * </p>
+	 * <p>
+	 * The original resource is only read, so several threads may copy the same resource at once as long as nothing is
+	 * modifying it.
+	 * </p>
+	 * 
+	 * @param theResource
+	 *            The resource to copy. Must not be null.
+	 * @return Returns a new instance of the same type as the given resource
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends IResource> T copy(T theResource) {
+		Validate.notNull(theResource, "theResource must not be null");
+
+		CopyState state = new CopyState();
+		T retVal = (T) copyResource(theResource, state);
+
+		for (ResourceReferenceDt next : state.myLinkedReferences) {
+			IResource copiedContained = state.myCopiedContained.get(next.getResource());
+			if (copiedContained != null) {
+				next.setResource(copiedContained);
+			}
+		}
+
+		return retVal;
+	}
+
+	private void copyChildren(BaseRuntimeElementCompositeDefinition<?> theDefinition, IBase theSource, IBase theTarget, CopyState theState) {
+		for (BaseRuntimeChildDefinition nextChild : theDefinition.getChildrenAndExtension()) {
+			List<? extends IBase> values = nextChild.getAccessor().getValues(theSource);
+			if (values == null) {
+				continue;
+			}
+			for (IBase nextValue : values) {
+				if (nextValue == null || nextValue.isEmpty()) {
+					continue;
+				}
+				BaseRuntimeElementDefinition<?> childElementDef = nextChild.getChildElementDefinitionByDatatype(nextValue.getClass());
+				if (childElementDef == null) {
+					throw new DataFormatException("Found value of type[" + nextValue.getClass().getSimpleName() + "] which is not valid for field[" + nextChild.getElementName() + "] in " + theDefinition.getName());
+				}
+				IBase copied = copyElement(nextValue, childElementDef, nextChild.getInstanceConstructorArguments(), theState);
+				nextChild.getMutator().addValue(theTarget, copied);
+			}
+		}
+	}
+
+	private IBase copyElement(IBase theSource, BaseRuntimeElementDefinition<?> theDefinition, Object theConstructorArguments, CopyState theState) {
+		IBase retVal;
+		switch (theDefinition.getChildType()) {
+		case PRIMITIVE_XHTML:
+		case PRIMITIVE_DATATYPE: {
+			IPrimitiveDatatype<?> primitive = (IPrimitiveDatatype<?>) theDefinition.newInstance(theConstructorArguments);
+			String value = ((IPrimitiveDatatype<?>) theSource).getValueAsString();
+			if (value != null) {
+				primitive.setValueAsString(value);
+			}
+			retVal = primitive;
+			break;
+		}
+		case RESOURCE_REF: {
+			ResourceReferenceDt source = (ResourceReferenceDt) theSource;
+			ResourceReferenceDt reference = new ResourceReferenceDt();
+			if (!source.getReference().isEmpty()) {
+				reference.setReference(new IdDt(source.getReference().getValue()));
+			}
+			if (!source.getDisplay().isEmpty()) {
+				reference.setDisplay(source.getDisplay().getValue());
+			}
+			if (source.getResource() != null) {
+				reference.setResource(source.getResource());
+				theState.myLinkedReferences.add(reference);
+			}
+			retVal = reference;
+			break;
+		}
+		case RESOURCE_BLOCK:
+		case COMPOSITE_DATATYPE: {
+			retVal = theDefinition.newInstance(theConstructorArguments);
+			copyChildren((BaseRuntimeElementCompositeDefinition<?>) theDefinition, theSource, retVal, theState);
+			break;
+		}
+		case CONTAINED_RESOURCES: {
+			ContainedDt contained = (ContainedDt) theDefinition.newInstance();
+			for (IResource next : ((ContainedDt) theSource).getContainedResources()) {
+				IResource copied = copyResource(next, theState);
+				theState.myCopiedContained.put(next, copied);
+				contained.getContainedResources().add(copied);
+			}
+			return contained;
+		}
+		case RESOURCE:
+			return copyResource((IResource) theSource, theState);
+		case EXTENSION_DECLARED:
+		case UNDECL_EXT:
+		default:
+			throw new IllegalStateException("state should not happen: " + theDefinition.getChildType());
+		}
+
+		if (theSource instanceof IIdentifiableElement) {
+			String elementId = ((IIdentifiableElement) theSource).getElementSpecificId();
+			if (elementId != null) {
+				((IIdentifiableElement) retVal).setElementSpecificId(elementId);
+			}
+		}
+		copyUndeclaredExtensions(theSource, retVal, theState);
+		return retVal;
+	}
+
+	private IResource copyResource(IResource theSource, CopyState theState) {
+		RuntimeResourceDefinition def = myContext.getResourceDefinition(theSource);
+		IResource retVal = (IResource) def.newInstance();
+		copyChildren(def, theSource, retVal, theState);
+		copyUndeclaredExtensions(theSource, retVal, theState);
+
+		if (theSource.getId() != null && !theSource.getId().isEmpty()) {
+			retVal.setId(new IdDt(theSource.getId().getValue()));
+		}
+
+		ResourceMetadataMap metadata = new ResourceMetadataMap();
+		metadata.putAll(theSource.getResourceMetadata());
+		retVal.setResourceMetadata(metadata);
+
+		return retVal;
+	}
+
+	private void copyUndeclaredExtensions(IBase theSource, IBase theTarget, CopyState theState) {
+		if (!(theSource instanceof ISupportsUndeclaredExtensions)) {
+			return;
+		}
+		for (ExtensionDt next : ((ISupportsUndeclaredExtensions) theSource).getAllUndeclaredExtensions()) {
+			ExtensionDt extension = new ExtensionDt(next.isModifier());
+			if (next.getUrlAsString() != null) {
+				extension.setUrl(next.getUrlAsString());
+			}
+			if (next.getElementSpecificId() != null) {
+				extension.setElementSpecificId(next.getElementSpecificId());
+			}
+
+			IElement value = next.getValue();
+			if (value != null && !value.isEmpty()) {
+				BaseRuntimeElementDefinition<?> valueDef = myContext.getRuntimeChildUndeclaredExtensionDefinition().getChildElementDefinitionByDatatype(value.getClass());
+				if (valueDef == null) {
+					valueDef = myContext.getElementDefinition(value.getClass());
+				}
+				extension.setValue((IElement) copyElement(value, valueDef, null, theState));
+			}
+
+			copyUndeclaredExtensions(next, extension, theState);
+			((ISupportsUndeclaredExtensions) theTarget).addUndeclaredExtension(extension);
+		}
+	}
+
 	/**
 	 * Returns a list containing all child elements (including the resource itself) which are <b>non-empty</b> and are either of the exact type specified, or are a subclass of that type.
 	 * <p>
@@ -273,4 +441,10 @@ public class FhirTerser {
 		visit(theResource, null, def, theVisitor);
 	}
 
+	private static class CopyState {
+		private final Map<IResource, IResource> myCopiedContained = new IdentityHashMap<IResource, IResource>();
+		private final List<ResourceReferenceDt> myLinkedReferences = new ArrayList<ResourceReferenceDt>();
+	}
+
+
 }
@@ -20,8 +20,7 @@ package ca.uhn.fhir.util;
  * #L%
  */
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.BitSet;
 
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.stream.XMLStreamException;
@@ -32,15 +31,23 @@ import org.apache.commons.lang3.StringUtils;
 public class PrettyPrintWriterWrapper implements XMLStreamWriter {
 
 	private static final String INDENT_CHAR = " ";
+	private static final String[] INDENTS;
 	private static final String LINEFEED_CHAR = "\n";
 	private static final String PRE = "pre";
 	private int depth = 0;
-	private Map<Integer, Boolean> hasChildElement = new HashMap<Integer, Boolean>();
+	private BitSet hasChildElement = new BitSet();
 
 	private int myInsidePre = 0;
 	private XMLStreamWriter myTarget;
 	private boolean myFirstIndent=true;
 
+	static {
+		INDENTS = new String[32];
+		for (int i = 0; i < INDENTS.length; i++) {
+			INDENTS[i] = LINEFEED_CHAR + StringUtils.repeat(INDENT_CHAR, i * 3);
+		}
+	}
+
 	public PrettyPrintWriterWrapper(XMLStreamWriter target) {
 		myTarget = target;
 	}
@@ -240,9 +247,9 @@ public class PrettyPrintWriterWrapper implements XMLStreamWriter {
 		}
 		depth--;
 
-		if (hasChildElement.get(depth) == true) {
+		if (hasChildElement.get(depth)) {
 			// indent for current depth
-			myTarget.writeCharacters(LINEFEED_CHAR + repeat(depth, INDENT_CHAR));
+			myTarget.writeCharacters(indentFor(depth));
 		}
 	}
 
@@ -251,7 +258,7 @@ public class PrettyPrintWriterWrapper implements XMLStreamWriter {
 			myFirstIndent = false;
 			return;
 		}
-		myTarget.writeCharacters(LINEFEED_CHAR + repeat(depth, INDENT_CHAR));
+		myTarget.writeCharacters(indentFor(depth));
 	}
 
 	private void indentAndAdd() throws XMLStreamException {
@@ -262,17 +269,20 @@ public class PrettyPrintWriterWrapper implements XMLStreamWriter {
 
 		// update state of parent node
 		if (depth > 0) {
-			hasChildElement.put(depth - 1, true);
+			hasChildElement.set(depth - 1);
 		}
 
 		// reset state of current node
-		hasChildElement.put(depth, false);
+		hasChildElement.clear(depth);
 
 		depth++;
 	}
 
-	private String repeat(int d, String s) {
-		return StringUtils.repeat(s, d * 3);
+	private static String indentFor(int theDepth) {
+		if (theDepth < INDENTS.length) {
+			return INDENTS[theDepth];
+		}
+		return LINEFEED_CHAR + StringUtils.repeat(INDENT_CHAR, theDepth * 3);
 	}
 
 }
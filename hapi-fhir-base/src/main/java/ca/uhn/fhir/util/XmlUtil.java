@@ -287,6 +287,15 @@ public class XmlUtil {
 		}
 	}
 
+	/**
+	 * Creates a writer which writes UTF-8 directly to the given stream
+	 */
+	public static XMLStreamWriter createXmlStreamWriter(OutputStream theOutputStream) throws FactoryConfigurationError, XMLStreamException {
+		XMLOutputFactory outputFactory = getOrCreateOutputFactory();
+		XMLStreamWriter retVal = outputFactory.createXMLStreamWriter(theOutputStream, "UTF-8");
+		return retVal;
+	}
+
 	public static XMLStreamWriter createXmlStreamWriter(Writer theWriter) throws FactoryConfigurationError, XMLStreamException {
 		XMLOutputFactory outputFactory = getOrCreateOutputFactory();
 		XMLStreamWriter retVal = outputFactory.createXMLStreamWriter(theWriter);
@@ -332,7 +341,7 @@ public class XmlUtil {
 
 		@Override
 		public Writer createEscapingWriterFor(OutputStream theOut, String theEnc) throws UnsupportedEncodingException {
-			return createEscapingWriterFor(new OutputStreamWriter(theOut), theEnc);
+			return createEscapingWriterFor(new OutputStreamWriter(theOut, theEnc != null ? theEnc : "UTF-8"), theEnc);
 		}
 
 		@Override
@@ -22,18 +22,25 @@ package ca.uhn.fhir.jpa.dao;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
 import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -43,6 +50,7 @@ import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
@@ -76,6 +84,8 @@ import ca.uhn.fhir.jpa.entity.ResourceLink;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.entity.ResourceTag;
 import ca.uhn.fhir.jpa.entity.TagDefinition;
+import ca.uhn.fhir.jpa.util.IResourceBodyCodec;
+import ca.uhn.fhir.jpa.util.PidSet;
 import ca.uhn.fhir.jpa.util.StopWatch;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
@@ -93,10 +103,8 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
-import ca.uhn.fhir.util.FhirTerser;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 
 public abstract class BaseFhirDao implements IDao {
@@ -106,15 +114,81 @@ public abstract class BaseFhirDao implements IDao {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseFhirDao.class);
 	private static final Map<FhirVersionEnum, FhirContext> ourRetrievalContexts = new HashMap<FhirVersionEnum, FhirContext>();
 
+	/**
+	 * Maximum number of forced IDs placed in a single <code>IN</code> clause when translating them to PIDs
+	 */
+	private static final int FORCED_ID_BATCH_SIZE = 500;
+
+	/**
+	 * Lists of fewer entities than this are parsed on the calling thread, since handing them off to the parse executor
+	 * would cost more than it saves
+	 */
+	private static final int PARALLEL_PARSE_THRESHOLD = 8;
+
+	private static final Function<ResourceIndexedSearchParamDate, Object> DATE_KEY = new Function<ResourceIndexedSearchParamDate, Object>() {
+		@Override
+		public Object apply(ResourceIndexedSearchParamDate theInput) {
+			return Arrays.asList(theInput.getParamName(), toMillis(theInput.getValueLow()), toMillis(theInput.getValueHigh()));
+		}
+	};
+	private static final Function<ResourceLink, Object> LINK_KEY = new Function<ResourceLink, Object>() {
+		@Override
+		public Object apply(ResourceLink theInput) {
+			Long target = theInput.getTargetResourcePid();
+			if (target == null && theInput.getTargetResource() != null) {
+				target = theInput.getTargetResource().getId();
+			}
+			return Arrays.asList(theInput.getSourcePath(), target);
+		}
+	};
+	private static final Function<ResourceIndexedSearchParamNumber, Object> NUMBER_KEY = new Function<ResourceIndexedSearchParamNumber, Object>() {
+		@Override
+		public Object apply(ResourceIndexedSearchParamNumber theInput) {
+			return Arrays.asList(theInput.getParamName(), toPlainString(theInput.getValue()));
+		}
+	};
+	private static final Function<ResourceIndexedSearchParamQuantity, Object> QUANTITY_KEY = new Function<ResourceIndexedSearchParamQuantity, Object>() {
+		@Override
+		public Object apply(ResourceIndexedSearchParamQuantity theInput) {
+			return Arrays.asList(theInput.getParamName(), toPlainString(theInput.getValue()), theInput.getSystem(), theInput.getUnits());
+		}
+	};
+	private static final Function<ResourceIndexedSearchParamString, Object> STRING_KEY = new Function<ResourceIndexedSearchParamString, Object>() {
+		@Override
+		public Object apply(ResourceIndexedSearchParamString theInput) {
+			return Arrays.asList(theInput.getParamName(), theInput.getValueNormalized(), theInput.getValueExact());
+		}
+	};
+	private static final Function<ResourceIndexedSearchParamToken, Object> TOKEN_KEY = new Function<ResourceIndexedSearchParamToken, Object>() {
+		@Override
+		public Object apply(ResourceIndexedSearchParamToken theInput) {
+			return Arrays.asList(theInput.getParamName(), theInput.getSystem(), theInput.getValue());
+		}
+	};
+
 	@Autowired(required = true)
 	private DaoConfig myConfig;
 
+	private final AtomicLong myIndexRowsAdded = new AtomicLong();
+	private final AtomicLong myIndexRowsRemoved = new AtomicLong();
+	private final AtomicLong myIndexRowsUnchanged = new AtomicLong();
+
 	private FhirContext myContext;
 
+	@Autowired(required = false)
+	private ParsedResourceCache myParsedResourceCache;
+
+	@Autowired(required = false)
+	private ForcedIdCache myForcedIdCache;
+
 	@PersistenceContext(name = "FHIR_UT", type = PersistenceContextType.TRANSACTION, unitName = "FHIR_UT")
 	private EntityManager myEntityManager;
 
 	private List<IDaoListener> myListeners = new ArrayList<IDaoListener>();
+
+	@Autowired(required = false)
+	private ResourceParseExecutor myParseExecutor;
+
 	private ISearchParamExtractor mySearchParamExtractor;
 
 	@Autowired
@@ -143,15 +217,10 @@ public abstract class BaseFhirDao implements IDao {
 		return InstantDt.withCurrentTime();
 	}
 
-	protected List<ResourceLink> extractResourceLinks(ResourceTable theEntity, IResource theResource) {
+	protected List<ResourceLink> extractResourceLinks(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceLink> retVal = new ArrayList<ResourceLink>();
 
-		RuntimeResourceDefinition def = getContext().getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.REFERENCE) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.REFERENCE)) {
 			String nextPathsUnsplit = nextSpDef.getPath();
 			if (isBlank(nextPathsUnsplit)) {
 				continue;
@@ -162,7 +231,7 @@ public abstract class BaseFhirDao implements IDao {
 				multiType = true;
 			}
 
-			for (Object nextObject : extractValues(nextPathsUnsplit, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null) {
 					continue;
 				}
@@ -231,40 +300,24 @@ public abstract class BaseFhirDao implements IDao {
 		return retVal;
 	}
 
-	protected List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, IResource theResource) {
-		return mySearchParamExtractor.extractSearchParamDates(theEntity, theResource);
+	protected List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
+		return mySearchParamExtractor.extractSearchParamDates(theEntity, theValues);
 	}
 
-	protected ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, IResource theResource) {
-		return mySearchParamExtractor.extractSearchParamNumber(theEntity, theResource);
+	protected ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
+		return mySearchParamExtractor.extractSearchParamNumber(theEntity, theValues);
 	}
 
-	protected List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, IResource theResource) {
-		return mySearchParamExtractor.extractSearchParamQuantity(theEntity, theResource);
+	protected List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
+		return mySearchParamExtractor.extractSearchParamQuantity(theEntity, theValues);
 	}
 
-	protected List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, IResource theResource) {
-		return mySearchParamExtractor.extractSearchParamStrings(theEntity, theResource);
+	protected List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
+		return mySearchParamExtractor.extractSearchParamStrings(theEntity, theValues);
 	}
 
-	protected List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, IResource theResource) {
-		return mySearchParamExtractor.extractSearchParamTokens(theEntity, theResource);
-	}
-
-	private List<Object> extractValues(String thePaths, IResource theResource) {
-		List<Object> values = new ArrayList<Object>();
-		String[] nextPathsSplit = thePaths.split("\\|");
-		FhirTerser t = getContext().newTerser();
-		for (String nextPath : nextPathsSplit) {
-			String nextPathTrimmed = nextPath.trim();
-			try {
-				values.addAll(t.getValues(theResource, nextPathTrimmed));
-			} catch (Exception e) {
-				RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-				ourLog.warn("Failed to index values from path[{}] in resource type[{}]: ", nextPathTrimmed, def.getName(), e.toString());
-			}
-		}
-		return values;
+	protected List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
+		return mySearchParamExtractor.extractSearchParamTokens(theEntity, theValues);
 	}
 
 	private void findMatchingTagIds(String theResourceName, IdDt theResourceId, Set<Long> tagIds, Class<? extends BaseTag> entityClass) {
@@ -382,87 +435,7 @@ public abstract class BaseFhirDao implements IDao {
 	}
 
 	protected IBundleProvider history(String theResourceName, Long theId, Date theSince) {
-		final List<HistoryTuple> tuples = new ArrayList<HistoryTuple>();
-
-		final InstantDt end = createHistoryToTimestamp();
-
-		StopWatch timer = new StopWatch();
-
-		int limit = 10000;
-
-		// Get list of IDs
-		searchHistoryCurrentVersion(theResourceName, theId, theSince, end.getValue(), limit, tuples);
-		assert tuples.size() < 2 || !tuples.get(tuples.size() - 2).getUpdated().before(tuples.get(tuples.size() - 1).getUpdated());
-		ourLog.info("Retrieved {} history IDs from current versions in {} ms", tuples.size(), timer.getMillisAndRestart());
-
-		searchHistoryHistory(theResourceName, theId, theSince, end.getValue(), limit, tuples);
-		assert tuples.size() < 2 || !tuples.get(tuples.size() - 2).getUpdated().before(tuples.get(tuples.size() - 1).getUpdated());
-		ourLog.info("Retrieved {} history IDs from previous versions in {} ms", tuples.size(), timer.getMillisAndRestart());
-
-		// Sort merged list
-		Collections.sort(tuples, Collections.reverseOrder());
-		assert tuples.size() < 2 || !tuples.get(tuples.size() - 2).getUpdated().before(tuples.get(tuples.size() - 1).getUpdated());
-
-		return new IBundleProvider() {
-
-			@Override
-			public InstantDt getPublished() {
-				return end;
-			}
-
-			@Override
-			public List<IResource> getResources(final int theFromIndex, final int theToIndex) {
-				final StopWatch timer = new StopWatch();
-				TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
-				return template.execute(new TransactionCallback<List<IResource>>() {
-					@Override
-					public List<IResource> doInTransaction(TransactionStatus theStatus) {
-						List<BaseHasResource> resEntities = Lists.newArrayList();
-
-						List<HistoryTuple> tupleSubList = tuples.subList(theFromIndex, theToIndex);
-						searchHistoryCurrentVersion(tupleSubList, resEntities);
-						ourLog.info("Loaded history from current versions in {} ms", timer.getMillisAndRestart());
-
-						searchHistoryHistory(tupleSubList, resEntities);
-						ourLog.info("Loaded history from previous versions in {} ms", timer.getMillisAndRestart());
-
-						Collections.sort(resEntities, new Comparator<BaseHasResource>() {
-							@Override
-							public int compare(BaseHasResource theO1, BaseHasResource theO2) {
-								return theO2.getUpdated().getValue().compareTo(theO1.getUpdated().getValue());
-							}
-						});
-
-						int limit = theToIndex - theFromIndex;
-						if (resEntities.size() > limit) {
-							resEntities = resEntities.subList(0, limit);
-						}
-
-						ArrayList<IResource> retVal = new ArrayList<IResource>();
-						for (BaseHasResource next : resEntities) {
-							RuntimeResourceDefinition type;
-							try {
-								type = myContext.getResourceDefinition(next.getResourceType());
-							} catch (DataFormatException e) {
-								if (next.getFhirVersion() != getContext().getVersion().getVersion()) {
-									ourLog.info("Ignoring history resource of type[{}] because it is not compatible with version[{}]", next.getResourceType(), getContext().getVersion().getVersion());
-									continue;
-								}
-								throw e;
-							}
-							IResource resource = (IResource) toResource(type.getImplementingClass(), next);
-							retVal.add(resource);
-						}
-						return retVal;
-					}
-				});
-			}
-
-			@Override
-			public int size() {
-				return tuples.size();
-			}
-		};
+		return new HistoryBundleProvider(theResourceName, theId, theSince, createHistoryToTimestamp());
 	}
 
 	protected boolean isValidPid(IdDt theId) {
@@ -477,36 +450,18 @@ public abstract class BaseFhirDao implements IDao {
 	}
 
 	protected List<IResource> loadResourcesById(Set<IdDt> theIncludePids) {
-		Set<Long> pids = new HashSet<Long>();
-		for (IdDt next : theIncludePids) {
-			if (next.isIdPartValidLong()) {
-				pids.add(next.getIdPartAsLong());
-			} else {
-				try {
-					pids.add(translateForcedIdToPid(next));
-				} catch (ResourceNotFoundException e) {
-					ourLog.warn("Failed to translate forced ID [{}] to PID", next.getValue());
-				}
-			}
+		PidSet pids = translateForcedIdsToPids(theIncludePids);
+		if (pids.isEmpty()) {
+			return new ArrayList<IResource>();
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
 		CriteriaQuery<ResourceTable> cq = builder.createQuery(ResourceTable.class);
 		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		// cq.where(builder.equal(from.get("myResourceType"),
-		// getContext().getResourceDefinition(myResourceType).getName()));
-		// if (theIncludePids != null) {
 		cq.where(from.get("myId").in(pids));
-		// }
 		TypedQuery<ResourceTable> q = myEntityManager.createQuery(cq);
 
-		ArrayList<IResource> retVal = new ArrayList<IResource>();
-		for (ResourceTable next : q.getResultList()) {
-			IResource resource = (IResource) toResource(next);
-			retVal.add(resource);
-		}
-
-		return retVal;
+		return toResources(q.getResultList());
 	}
 
 	protected static String normalizeString(String theString) {
@@ -546,22 +501,10 @@ public abstract class BaseFhirDao implements IDao {
 			}
 		}
 
-		String encoded = myConfig.getResourceEncoding().newParser(myContext).encodeResourceToString(theResource);
 		ResourceEncodingEnum encoding = myConfig.getResourceEncoding();
 		theEntity.setEncoding(encoding);
 		theEntity.setFhirVersion(myContext.getVersion().getVersion());
-		try {
-			switch (encoding) {
-			case JSON:
-				theEntity.setResource(encoded.getBytes("UTF-8"));
-				break;
-			case JSONC:
-				theEntity.setResource(GZipUtil.compress(encoded));
-				break;
-			}
-		} catch (UnsupportedEncodingException e) {
-			throw new InternalErrorException(e);
-		}
+		theEntity.setResource(encoding.getCodec().encode(encoding.newParser(myContext), theResource));
 
 		TagList tagList = (TagList) theResource.getResourceMetadata().get(ResourceMetadataKeyEnum.TAG_LIST);
 		if (tagList != null) {
@@ -586,19 +529,7 @@ public abstract class BaseFhirDao implements IDao {
 		myListeners.add(theListener);
 	}
 
-	private void searchHistoryCurrentVersion(List<HistoryTuple> theTuples, List<BaseHasResource> theRetVal) {
-		Collection<HistoryTuple> tuples = Collections2.filter(theTuples, new com.google.common.base.Predicate<HistoryTuple>() {
-			@Override
-			public boolean apply(HistoryTuple theInput) {
-				return theInput.isHistory() == false;
-			}
-		});
-		Collection<Long> ids = Collections2.transform(tuples, new Function<HistoryTuple, Long>() {
-			@Override
-			public Long apply(HistoryTuple theInput) {
-				return theInput.getId();
-			}
-		});
+	private void searchHistoryCurrentVersion(PidSet ids, List<BaseHasResource> theRetVal) {
 		if (ids.isEmpty()) {
 			return;
 		}
@@ -615,57 +546,7 @@ public abstract class BaseFhirDao implements IDao {
 		}
 	}
 
-	private void searchHistoryCurrentVersion(String theResourceName, Long theId, Date theSince, Date theEnd, Integer theLimit, List<HistoryTuple> tuples) {
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Tuple> cq = builder.createTupleQuery();
-		Root<?> from = cq.from(ResourceTable.class);
-		cq.multiselect(from.get("myId").as(Long.class), from.get("myUpdated").as(Date.class));
-
-		List<Predicate> predicates = new ArrayList<Predicate>();
-		if (theSince != null) {
-			Predicate low = builder.greaterThanOrEqualTo(from.<Date> get("myUpdated"), theSince);
-			predicates.add(low);
-		}
-
-		Predicate high = builder.lessThan(from.<Date> get("myUpdated"), theEnd);
-		predicates.add(high);
-
-		if (theResourceName != null) {
-			predicates.add(builder.equal(from.get("myResourceType"), theResourceName));
-		}
-		if (theId != null) {
-			predicates.add(builder.equal(from.get("myId"), theId));
-		}
-
-		cq.where(builder.and(predicates.toArray(new Predicate[0])));
-
-		cq.orderBy(builder.desc(from.get("myUpdated")));
-		TypedQuery<Tuple> q = myEntityManager.createQuery(cq);
-		if (theLimit != null && theLimit < myConfig.getHardSearchLimit()) {
-			q.setMaxResults(theLimit);
-		} else {
-			q.setMaxResults(myConfig.getHardSearchLimit());
-		}
-		for (Tuple next : q.getResultList()) {
-			long id = next.get(0, Long.class);
-			Date updated = next.get(1, Date.class);
-			tuples.add(new HistoryTuple(false, updated, id));
-		}
-	}
-
-	private void searchHistoryHistory(List<HistoryTuple> theTuples, List<BaseHasResource> theRetVal) {
-		Collection<HistoryTuple> tuples = Collections2.filter(theTuples, new com.google.common.base.Predicate<HistoryTuple>() {
-			@Override
-			public boolean apply(HistoryTuple theInput) {
-				return theInput.isHistory() == true;
-			}
-		});
-		Collection<Long> ids = Collections2.transform(tuples, new Function<HistoryTuple, Long>() {
-			@Override
-			public Long apply(HistoryTuple theInput) {
-				return (Long) theInput.getId();
-			}
-		});
+	private void searchHistoryHistory(PidSet ids, List<BaseHasResource> theRetVal) {
 		if (ids.isEmpty()) {
 			return;
 		}
@@ -684,44 +565,6 @@ public abstract class BaseFhirDao implements IDao {
 		}
 	}
 
-	private void searchHistoryHistory(String theResourceName, Long theResourceId, Date theSince, Date theEnd, Integer theLimit, List<HistoryTuple> tuples) {
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Tuple> cq = builder.createTupleQuery();
-		Root<?> from = cq.from(ResourceHistoryTable.class);
-		cq.multiselect(from.get("myId").as(Long.class), from.get("myUpdated").as(Date.class));
-
-		List<Predicate> predicates = new ArrayList<Predicate>();
-		if (theSince != null) {
-			Predicate low = builder.greaterThanOrEqualTo(from.<Date> get("myUpdated"), theSince);
-			predicates.add(low);
-		}
-
-		Predicate high = builder.lessThan(from.<Date> get("myUpdated"), theEnd);
-		predicates.add(high);
-
-		if (theResourceName != null) {
-			predicates.add(builder.equal(from.get("myResourceType"), theResourceName));
-		}
-		if (theResourceId != null) {
-			predicates.add(builder.equal(from.get("myResourceId"), theResourceId));
-		}
-
-		cq.where(builder.and(predicates.toArray(new Predicate[0])));
-
-		cq.orderBy(builder.desc(from.get("myUpdated")));
-		TypedQuery<Tuple> q = myEntityManager.createQuery(cq);
-		if (theLimit != null && theLimit < myConfig.getHardSearchLimit()) {
-			q.setMaxResults(theLimit);
-		} else {
-			q.setMaxResults(myConfig.getHardSearchLimit());
-		}
-		for (Tuple next : q.getResultList()) {
-			Long id = next.get(0, Long.class);
-			Date updated = (Date) next.get(1);
-			tuples.add(new HistoryTuple(true, updated, id));
-		}
-	}
-
 	public void setContext(FhirContext theContext) {
 		myContext = theContext;
 		switch (myContext.getVersion().getVersion()) {
@@ -750,32 +593,54 @@ public abstract class BaseFhirDao implements IDao {
 	}
 
 	protected <T extends IBaseResource> T toResource(Class<T> theResourceType, BaseHasResource theEntity) {
-		String resourceText = null;
-		switch (theEntity.getEncoding()) {
-		case JSON:
-			try {
-				resourceText = new String(theEntity.getResource(), "UTF-8");
-			} catch (UnsupportedEncodingException e) {
-				throw new Error("Should not happen", e);
+		T retVal = parseResource(theResourceType, new StoredResource(theEntity));
+		populateResourceMetadata((IResource) retVal, theEntity);
+		return retVal;
+	}
+
+	/**
+	 * Parses the body of a stored resource. This does not touch the entity the body was read from, so it may be called
+	 * from any thread.
+	 */
+	private <T extends IBaseResource> T parseResource(Class<T> theResourceType, StoredResource theStored) {
+		boolean useCache = myParsedResourceCache != null && theStored.myResourcePid != null;
+		if (useCache) {
+			IResource cached = myParsedResourceCache.get(theStored.myResourcePid, theStored.myVersion);
+			if (theResourceType.isInstance(cached)) {
+				return theResourceType.cast(cached);
 			}
-			break;
-		case JSONC:
-			resourceText = GZipUtil.decompress(theEntity.getResource());
-			break;
 		}
 
-		IParser parser = theEntity.getEncoding().newParser(getContext(theEntity.getFhirVersion()));
-		T retVal;
+		FhirContext context = getContext(theStored.myFhirVersion);
+		IResourceBodyCodec codec = theStored.myEncoding.getCodec();
+		IParser parser = theStored.myEncoding.newParser(context);
 		try {
-			retVal = parser.parseResource(theResourceType, resourceText);
+			T retVal;
+			int encodedLength;
+			if (theStored.myEncoding.isBinary()) {
+				retVal = parser.parseResource(theResourceType, new ByteArrayInputStream(theStored.myBody));
+				encodedLength = theStored.myBody.length;
+			} else if (useCache) {
+				String resourceText = codec.decode(theStored.myBody);
+				retVal = parser.parseResource(theResourceType, resourceText);
+				encodedLength = resourceText.length();
+			} else {
+				// Nothing is caching the result, so parse straight from the stored bytes
+				return parser.parseResource(theResourceType, codec.newReader(theStored.myBody));
+			}
+
+			if (useCache) {
+				retVal = theResourceType.cast(myParsedResourceCache.put(theStored.myResourcePid, theStored.myVersion, context, (IResource) retVal, encodedLength));
+			}
+			return retVal;
 		} catch (Exception e) {
 			StringBuilder b = new StringBuilder();
 			b.append("Failed to parse database resource[");
 			b.append(theResourceType);
 			b.append("/");
-			b.append(theEntity.getIdDt().getIdPart());
+			b.append(theStored.myIdPart);
 			b.append(" (pid ");
-			b.append(theEntity.getId());
+			b.append(theStored.myPid);
 			b.append(", version ");
 			b.append(myContext.getVersion().getVersion());
 			b.append("): ");
@@ -784,19 +649,21 @@ public abstract class BaseFhirDao implements IDao {
 			ourLog.error(msg, e);
 			throw new DataFormatException(msg, e);
 		}
-		IResource res = (IResource) retVal;
-		res.setId(theEntity.getIdDt());
+	}
+
+	private void populateResourceMetadata(IResource theResource, BaseHasResource theEntity) {
+		theResource.setId(theEntity.getIdDt());
 
-		res.getResourceMetadata().put(ResourceMetadataKeyEnum.VERSION_ID, theEntity.getVersion());
-		res.getResourceMetadata().put(ResourceMetadataKeyEnum.PUBLISHED, theEntity.getPublished());
-		res.getResourceMetadata().put(ResourceMetadataKeyEnum.UPDATED, theEntity.getUpdated());
+		theResource.getResourceMetadata().put(ResourceMetadataKeyEnum.VERSION_ID, theEntity.getVersion());
+		theResource.getResourceMetadata().put(ResourceMetadataKeyEnum.PUBLISHED, theEntity.getPublished());
+		theResource.getResourceMetadata().put(ResourceMetadataKeyEnum.UPDATED, theEntity.getUpdated());
 
 		if (theEntity.getTitle() != null) {
-			ResourceMetadataKeyEnum.TITLE.put(res, theEntity.getTitle());
+			ResourceMetadataKeyEnum.TITLE.put(theResource, theEntity.getTitle());
 		}
 
 		if (theEntity.getDeleted() != null) {
-			ResourceMetadataKeyEnum.DELETED_AT.put(res, new InstantDt(theEntity.getDeleted()));
+			ResourceMetadataKeyEnum.DELETED_AT.put(theResource, new InstantDt(theEntity.getDeleted()));
 		}
 
 		Collection<? extends BaseTag> tags = theEntity.getTags();
@@ -805,7 +672,56 @@ public abstract class BaseFhirDao implements IDao {
 			for (BaseTag next : tags) {
 				tagList.add(new Tag(next.getTag().getScheme(), next.getTag().getTerm(), next.getTag().getLabel()));
 			}
-			res.getResourceMetadata().put(ResourceMetadataKeyEnum.TAG_LIST, tagList);
+			theResource.getResourceMetadata().put(ResourceMetadataKeyEnum.TAG_LIST, tagList);
+		}
+	}
+
+	/**
+	 * Parses the given entities into resources, returning them in the same order. Larger lists are parsed in parallel
+	 * if a {@link ResourceParseExecutor} is available. Only the stored bodies are handed to the executor: everything
+	 * else is read from the entities on the calling thread, which must be within a transaction.
+	 */
+	protected List<IResource> toResources(List<? extends BaseHasResource> theEntities) {
+		List<IResource> retVal = new ArrayList<IResource>(theEntities.size());
+		if (theEntities.size() < PARALLEL_PARSE_THRESHOLD || myParseExecutor == null || !myParseExecutor.isEnabled()) {
+			for (BaseHasResource next : theEntities) {
+				retVal.add((IResource) toResource(next));
+			}
+			return retVal;
+		}
+
+		List<Future<IResource>> futures = new ArrayList<Future<IResource>>(theEntities.size());
+		try {
+			for (BaseHasResource next : theEntities) {
+				final Class<? extends IBaseResource> type = myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
+				final StoredResource stored = new StoredResource(next);
+				futures.add(myParseExecutor.submit(new Callable<IResource>() {
+					@Override
+					public IResource call() throws Exception {
+						return (IResource) parseResource(type, stored);
+					}
+				}));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				IResource next = futures.get(i).get();
+				populateResourceMetadata(next, theEntities.get(i));
+				retVal.add(next);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(e);
+		} catch (CancellationException e) {
+			throw new InternalErrorException("Parsing was cancelled because the server is shutting down", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(e.getCause());
+		} finally {
+			for (Future<IResource> next : futures) {
+				next.cancel(false);
+			}
 		}
 
 		return retVal;
@@ -823,17 +739,150 @@ public abstract class BaseFhirDao implements IDao {
 		if (isValidPid(theId)) {
 			return theId.getIdPartAsLong();
 		} else {
+			String forcedId = theId.getIdPart();
+			if (myForcedIdCache != null) {
+				Long cached = myForcedIdCache.getPid(forcedId);
+				if (cached != null) {
+					return cached;
+				}
+			}
+
 			TypedQuery<ForcedId> q = myEntityManager.createNamedQuery("Q_GET_FORCED_ID", ForcedId.class);
-			q.setParameter("ID", theId.getIdPart());
+			q.setParameter("ID", forcedId);
+			Long retVal;
 			try {
-				return q.getSingleResult().getResourcePid();
+				retVal = q.getSingleResult().getResourcePid();
 			} catch (NoResultException e) {
 				throw new ResourceNotFoundException(theId);
 			}
+
+			if (myForcedIdCache != null) {
+				myForcedIdCache.put(forcedId, retVal);
+			}
+			return retVal;
 		}
 	}
 
+	/**
+	 * Translates a collection of IDs into PIDs, looking up any forced (client assigned) IDs in batches rather than one
+	 * at a time. Forced IDs which are held in the {@link ForcedIdCache} are not looked up at all. IDs which can not be
+	 * resolved are logged and left out of the returned set.
+	 */
+	protected PidSet translateForcedIdsToPids(Collection<IdDt> theIds) {
+		PidSet.Builder retVal = new PidSet.Builder(theIds.size());
+		List<String> forcedIds = new ArrayList<String>();
+		for (IdDt next : theIds) {
+			if (!next.hasIdPart()) {
+				continue;
+			}
+			if (isValidPid(next)) {
+				retVal.add(next.getIdPartAsLong());
+				continue;
+			}
+			Long cached = myForcedIdCache != null ? myForcedIdCache.getPid(next.getIdPart()) : null;
+			if (cached != null) {
+				retVal.add(cached);
+			} else {
+				forcedIds.add(next.getIdPart());
+			}
+		}
+
+		for (List<String> nextBatch : Lists.partition(forcedIds, FORCED_ID_BATCH_SIZE)) {
+			TypedQuery<ForcedId> q = myEntityManager.createNamedQuery("Q_GET_FORCED_IDS", ForcedId.class);
+			q.setParameter("IDS", nextBatch);
+			List<ForcedId> results = q.getResultList();
+			for (ForcedId next : results) {
+				retVal.add(next.getResourcePid());
+				if (myForcedIdCache != null) {
+					myForcedIdCache.put(next.getForcedId(), next.getResourcePid());
+				}
+			}
+			if (results.size() < nextBatch.size()) {
+				ourLog.warn("Failed to translate {} of {} forced IDs to PIDs", nextBatch.size() - results.size(), nextBatch.size());
+			}
+		}
+
+		return retVal.build();
+	}
+
+	/**
+	 * Matches the existing index rows for a resource against the newly extracted ones using the given key (the indexed
+	 * content of the row). Existing rows with no match are added to <code>theToRemove</code>, extracted rows with no
+	 * match are added to <code>theToAdd</code>.
+	 * 
+	 * @return The rows which should be associated with the resource once the update is complete: matched existing rows
+	 *         in place of their extracted equivalents, plus the unmatched extracted rows
+	 */
+	private static <T> List<T> diffIndexRows(Collection<T> theExisting, Collection<T> theExtracted, Function<T, ?> theKeyFunction, List<Object> theToRemove, List<Object> theToAdd) {
+		Map<Object, List<T>> existingByKey = new HashMap<Object, List<T>>();
+		for (T next : theExisting) {
+			Object key = theKeyFunction.apply(next);
+			List<T> rows = existingByKey.get(key);
+			if (rows == null) {
+				rows = new ArrayList<T>(1);
+				existingByKey.put(key, rows);
+			}
+			rows.add(next);
+		}
+
+		List<T> retVal = new ArrayList<T>(theExtracted.size());
+		for (T next : theExtracted) {
+			List<T> rows = existingByKey.get(theKeyFunction.apply(next));
+			if (rows != null && rows.isEmpty() == false) {
+				retVal.add(rows.remove(rows.size() - 1));
+			} else {
+				retVal.add(next);
+				theToAdd.add(next);
+			}
+		}
+
+		for (List<T> next : existingByKey.values()) {
+			theToRemove.addAll(next);
+		}
+
+		return retVal;
+	}
+
+	@Override
+	public long getIndexRowsAddedCount() {
+		return myIndexRowsAdded.get();
+	}
+
+	@Override
+	public long getIndexRowsRemovedCount() {
+		return myIndexRowsRemoved.get();
+	}
+
+	@Override
+	public long getIndexRowsUnchangedCount() {
+		return myIndexRowsUnchanged.get();
+	}
+
+	private static Long toMillis(Date theDate) {
+		return theDate != null ? theDate.getTime() : null;
+	}
+
+	private static String toPlainString(BigDecimal theValue) {
+		if (theValue == null) {
+			return null;
+		}
+		if (theValue.signum() == 0) {
+			return "0";
+		}
+		return theValue.stripTrailingZeros().toPlainString();
+	}
+
 	protected ResourceTable updateEntity(final IResource theResource, ResourceTable entity, boolean theUpdateHistory, Date theDeletedTimestampOrNull) {
+		return updateEntity(theResource, entity, theUpdateHistory, theDeletedTimestampOrNull, true);
+	}
+
+	/**
+	 * @param thePerformFlush
+	 *           If <code>false</code>, the writes for this resource are left pending in the persistence context so that
+	 *           they can be flushed (and therefore batched) along with the writes for other resources. The caller is
+	 *           then responsible for flushing.
+	 */
+	protected ResourceTable updateEntity(final IResource theResource, ResourceTable entity, boolean theUpdateHistory, Date theDeletedTimestampOrNull, boolean thePerformFlush) {
 		if (entity.getPublished() == null) {
 			entity.setPublished(new Date());
 		}
@@ -851,6 +900,10 @@ public abstract class BaseFhirDao implements IDao {
 		}
 
 		entity.setVersion(entity.getVersion() + 1);
+		if (myParsedResourceCache != null && entity.getId() != null) {
+			// The new version number is used again if this transaction is rolled back
+			myParsedResourceCache.evictOnRollback(entity.getId(), entity.getVersion());
+		}
 
 		Collection<ResourceIndexedSearchParamString> paramsString = new ArrayList<ResourceIndexedSearchParamString>(entity.getParamsString());
 		Collection<ResourceIndexedSearchParamToken> paramsToken = new ArrayList<ResourceIndexedSearchParamToken>(entity.getParamsToken());
@@ -874,17 +927,21 @@ public abstract class BaseFhirDao implements IDao {
 			dateParams = Collections.emptyList();
 			links = Collections.emptyList();
 			entity.setDeleted(theDeletedTimestampOrNull);
+			if (entity.getForcedId() != null && myForcedIdCache != null) {
+				myForcedIdCache.evict(entity.getForcedId().getForcedId());
+			}
 			entity.setUpdated(theDeletedTimestampOrNull);
 
 		} else {
 
-			stringParams = extractSearchParamStrings(entity, theResource);
-			numberParams = extractSearchParamNumber(entity, theResource);
-			quantityParams = extractSearchParamQuantity(entity, theResource);
-			dateParams = extractSearchParamDates(entity, theResource);
+			SearchParamExtractionPlan.Values values = mySearchParamExtractor.extractValues(theResource);
+			stringParams = extractSearchParamStrings(entity, values);
+			numberParams = extractSearchParamNumber(entity, values);
+			quantityParams = extractSearchParamQuantity(entity, values);
+			dateParams = extractSearchParamDates(entity, values);
 
 			tokenParams = new ArrayList<ResourceIndexedSearchParamToken>();
-			for (BaseResourceIndexedSearchParam next : extractSearchParamTokens(entity, theResource)) {
+			for (BaseResourceIndexedSearchParam next : extractSearchParamTokens(entity, values)) {
 				if (next instanceof ResourceIndexedSearchParamToken) {
 					tokenParams.add((ResourceIndexedSearchParamToken) next);
 				} else {
@@ -892,26 +949,43 @@ public abstract class BaseFhirDao implements IDao {
 				}
 			}
 
-			links = extractResourceLinks(entity, theResource);
+			links = extractResourceLinks(entity, values);
 			populateResourceIntoEntity(theResource, entity);
 
 			entity.setUpdated(new Date());
 			entity.setLanguage(theResource.getLanguage().getValue());
-			entity.setParamsString(stringParams);
-			entity.setParamsStringPopulated(stringParams.isEmpty() == false);
-			entity.setParamsToken(tokenParams);
-			entity.setParamsTokenPopulated(tokenParams.isEmpty() == false);
-			entity.setParamsNumber(numberParams);
-			entity.setParamsNumberPopulated(numberParams.isEmpty() == false);
-			entity.setParamsQuantity(quantityParams);
-			entity.setParamsQuantityPopulated(quantityParams.isEmpty() == false);
-			entity.setParamsDate(dateParams);
-			entity.setParamsDatePopulated(dateParams.isEmpty() == false);
-			entity.setResourceLinks(links);
-			entity.setHasLinks(links.isEmpty() == false);
 
 		}
 
+		/*
+		 * Only rows whose indexed values have actually changed are deleted and inserted. Existing rows which match a
+		 * newly extracted row are kept as-is.
+		 */
+		List<Object> toRemove = new ArrayList<Object>();
+		List<Object> toAdd = new ArrayList<Object>();
+		List<ResourceIndexedSearchParamString> newParamsString = diffIndexRows(paramsString, stringParams, STRING_KEY, toRemove, toAdd);
+		List<ResourceIndexedSearchParamToken> newParamsToken = diffIndexRows(paramsToken, tokenParams, TOKEN_KEY, toRemove, toAdd);
+		List<ResourceIndexedSearchParamNumber> newParamsNumber = diffIndexRows(paramsNumber, numberParams, NUMBER_KEY, toRemove, toAdd);
+		List<ResourceIndexedSearchParamQuantity> newParamsQuantity = diffIndexRows(paramsQuantity, quantityParams, QUANTITY_KEY, toRemove, toAdd);
+		List<ResourceIndexedSearchParamDate> newParamsDate = diffIndexRows(paramsDate, dateParams, DATE_KEY, toRemove, toAdd);
+		List<ResourceLink> newLinks = diffIndexRows(resourceLinks, links, LINK_KEY, toRemove, toAdd);
+		int unchanged = newParamsString.size() + newParamsToken.size() + newParamsNumber.size() + newParamsQuantity.size() + newParamsDate.size() + newLinks.size() - toAdd.size();
+
+		if (theDeletedTimestampOrNull == null) {
+			entity.setParamsString(newParamsString);
+			entity.setParamsStringPopulated(newParamsString.isEmpty() == false);
+			entity.setParamsToken(newParamsToken);
+			entity.setParamsTokenPopulated(newParamsToken.isEmpty() == false);
+			entity.setParamsNumber(newParamsNumber);
+			entity.setParamsNumberPopulated(newParamsNumber.isEmpty() == false);
+			entity.setParamsQuantity(newParamsQuantity);
+			entity.setParamsQuantityPopulated(newParamsQuantity.isEmpty() == false);
+			entity.setParamsDate(newParamsDate);
+			entity.setParamsDatePopulated(newParamsDate.isEmpty() == false);
+			entity.setResourceLinks(newLinks);
+			entity.setHasLinks(newLinks.isEmpty() == false);
+		}
+
 		if (entity.getId() == null) {
 			myEntityManager.persist(entity);
 
@@ -923,67 +997,310 @@ public abstract class BaseFhirDao implements IDao {
 			entity = myEntityManager.merge(entity);
 		}
 
-		if (entity.isParamsStringPopulated()) {
-			for (ResourceIndexedSearchParamString next : paramsString) {
-				myEntityManager.remove(next);
-			}
+		for (Object next : toRemove) {
+			myEntityManager.remove(next);
 		}
-		for (ResourceIndexedSearchParamString next : stringParams) {
+		for (Object next : toAdd) {
 			myEntityManager.persist(next);
 		}
 
-		if (entity.isParamsTokenPopulated()) {
-			for (ResourceIndexedSearchParamToken next : paramsToken) {
-				myEntityManager.remove(next);
-			}
+		myIndexRowsRemoved.addAndGet(toRemove.size());
+		myIndexRowsAdded.addAndGet(toAdd.size());
+		myIndexRowsUnchanged.addAndGet(unchanged);
+		ourLog.debug("Search index for {}: {} rows removed, {} rows added, {} rows unchanged", new Object[] { entity.getIdDt().toUnqualifiedVersionless(), toRemove.size(), toAdd.size(), unchanged });
+
+		if (thePerformFlush) {
+			myEntityManager.flush();
 		}
-		for (ResourceIndexedSearchParamToken next : tokenParams) {
-			myEntityManager.persist(next);
+
+		if (theResource != null) {
+			theResource.setId(entity.getIdDt());
 		}
 
-		if (entity.isParamsNumberPopulated()) {
-			for (ResourceIndexedSearchParamNumber next : paramsNumber) {
-				myEntityManager.remove(next);
+		return entity;
+	}
+
+	/**
+	 * Lazily pages through history by merging two cursors, one over the current versions (<code>HFJ_RESOURCE</code>)
+	 * and one over previous versions (<code>HFJ_RES_VER</code>), both ordered newest first by (updated, resource PID,
+	 * version). Each page is fetched using the key of the last row on the previous page rather than an offset, so
+	 * there is no limit on the amount of history which can be paged through and only one page is held at a time.
+	 */
+	private class HistoryBundleProvider implements IBundleProvider {
+
+		/**
+		 * Number of keys fetched at a time when skipping ahead to a page which follows a page that has not been read
+		 */
+		private static final int SKIP_CHUNK_SIZE = 500;
+
+		/**
+		 * Key of the row preceding each page boundary seen so far, keyed by the index of the first row on the page
+		 */
+		private final TreeMap<Integer, HistoryKey> myCheckpoints = new TreeMap<Integer, HistoryKey>();
+		private final InstantDt myEnd;
+		private final Long myResourceId;
+		private final String myResourceName;
+		private final Date mySince;
+		private Integer mySize;
+
+		public HistoryBundleProvider(String theResourceName, Long theResourceId, Date theSince, InstantDt theEnd) {
+			myResourceName = theResourceName;
+			myResourceId = theResourceId;
+			mySince = theSince;
+			myEnd = theEnd;
+		}
+
+		private List<Predicate> createPredicates(CriteriaBuilder theBuilder, Root<?> theFrom, boolean theHistory) {
+			List<Predicate> retVal = new ArrayList<Predicate>();
+			if (mySince != null) {
+				retVal.add(theBuilder.greaterThanOrEqualTo(theFrom.<Date> get("myUpdated"), mySince));
+			}
+			retVal.add(theBuilder.lessThan(theFrom.<Date> get("myUpdated"), myEnd.getValue()));
+			if (myResourceName != null) {
+				retVal.add(theBuilder.equal(theFrom.get("myResourceType"), myResourceName));
+			}
+			if (myResourceId != null) {
+				retVal.add(theBuilder.equal(theFrom.get(theHistory ? "myResourceId" : "myId"), myResourceId));
 			}
+			return retVal;
 		}
-		for (ResourceIndexedSearchParamNumber next : numberParams) {
-			myEntityManager.persist(next);
+
+		private long count(boolean theHistory) {
+			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+			CriteriaQuery<Long> cq = builder.createQuery(Long.class);
+			Root<?> from = cq.from(theHistory ? ResourceHistoryTable.class : ResourceTable.class);
+			cq.select(builder.count(from));
+			List<Predicate> predicates = createPredicates(builder, from, theHistory);
+			cq.where(builder.and(predicates.toArray(new Predicate[predicates.size()])));
+			return myEntityManager.createQuery(cq).getSingleResult();
 		}
 
-		if (entity.isParamsQuantityPopulated()) {
-			for (ResourceIndexedSearchParamQuantity next : paramsQuantity) {
-				myEntityManager.remove(next);
+		private List<HistoryKey> fetchKeys(boolean theHistory, HistoryKey theAfter, int theCount) {
+			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+			CriteriaQuery<Tuple> cq = builder.createTupleQuery();
+			Root<?> from = cq.from(theHistory ? ResourceHistoryTable.class : ResourceTable.class);
+			Path<Long> rowPid = from.get("myId");
+			Path<Long> resourcePid = theHistory ? from.<Long> get("myResourceId") : rowPid;
+			Path<Long> version = from.get(theHistory ? "myResourceVersion" : "myVersion");
+			Path<Date> updated = from.get("myUpdated");
+			cq.multiselect(rowPid, resourcePid, version, updated);
+
+			List<Predicate> predicates = createPredicates(builder, from, theHistory);
+			if (theAfter != null) {
+				Predicate sameResourceOlderVersion = builder.and(builder.equal(resourcePid, theAfter.myResourcePid), builder.lessThan(version, theAfter.myVersion));
+				Predicate sameTimeLowerPid = builder.or(builder.lessThan(resourcePid, theAfter.myResourcePid), sameResourceOlderVersion);
+				predicates.add(builder.or(builder.lessThan(updated, theAfter.myUpdated), builder.and(builder.equal(updated, theAfter.myUpdated), sameTimeLowerPid)));
+			}
+			cq.where(builder.and(predicates.toArray(new Predicate[predicates.size()])));
+			cq.orderBy(builder.desc(updated), builder.desc(resourcePid), builder.desc(version));
+
+			TypedQuery<Tuple> q = myEntityManager.createQuery(cq);
+			q.setMaxResults(theCount);
+
+			List<Tuple> results = q.getResultList();
+			List<HistoryKey> retVal = new ArrayList<HistoryKey>(results.size());
+			for (Tuple next : results) {
+				retVal.add(new HistoryKey(theHistory, next.get(0, Long.class), next.get(1, Long.class), next.get(2, Long.class), next.get(3, Date.class)));
 			}
+			return retVal;
 		}
-		for (ResourceIndexedSearchParamQuantity next : quantityParams) {
-			myEntityManager.persist(next);
+
+		/**
+		 * Returns up to <code>theCount</code> keys which follow <code>theAfter</code> (or start from the newest row if
+		 * it is <code>null</code>), merged from both tables
+		 */
+		private List<HistoryKey> fetchNextKeys(HistoryKey theAfter, int theCount) {
+			List<HistoryKey> current = fetchKeys(false, theAfter, theCount);
+			List<HistoryKey> history = fetchKeys(true, theAfter, theCount);
+
+			List<HistoryKey> retVal = new ArrayList<HistoryKey>(Math.min(theCount, current.size() + history.size()));
+			int i = 0;
+			int j = 0;
+			while (retVal.size() < theCount && (i < current.size() || j < history.size())) {
+				if (j == history.size() || (i < current.size() && current.get(i).compareTo(history.get(j)) <= 0)) {
+					retVal.add(current.get(i++));
+				} else {
+					retVal.add(history.get(j++));
+				}
+			}
+			return retVal;
+		}
+
+		@Override
+		public InstantDt getPublished() {
+			return myEnd;
 		}
 
-		if (entity.isParamsDatePopulated()) {
-			for (ResourceIndexedSearchParamDate next : paramsDate) {
-				myEntityManager.remove(next);
+		@Override
+		public List<IResource> getResources(final int theFromIndex, final int theToIndex) {
+			TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+			return template.execute(new TransactionCallback<List<IResource>>() {
+				@Override
+				public List<IResource> doInTransaction(TransactionStatus theStatus) {
+					StopWatch timer = new StopWatch();
+
+					int index = 0;
+					HistoryKey after = null;
+					synchronized (myCheckpoints) {
+						Map.Entry<Integer, HistoryKey> checkpoint = myCheckpoints.floorEntry(theFromIndex);
+						if (checkpoint != null) {
+							index = checkpoint.getKey();
+							after = checkpoint.getValue();
+						}
+					}
+
+					while (index < theFromIndex) {
+						List<HistoryKey> skipped = fetchNextKeys(after, Math.min(SKIP_CHUNK_SIZE, theFromIndex - index));
+						if (skipped.isEmpty()) {
+							return new ArrayList<IResource>();
+						}
+						index += skipped.size();
+						after = skipped.get(skipped.size() - 1);
+					}
+
+					List<HistoryKey> keys = fetchNextKeys(after, theToIndex - theFromIndex);
+					synchronized (myCheckpoints) {
+						myCheckpoints.put(theFromIndex, after);
+						if (!keys.isEmpty()) {
+							myCheckpoints.put(theFromIndex + keys.size(), keys.get(keys.size() - 1));
+						}
+					}
+					ourLog.debug("Retrieved {} history keys in {} ms", keys.size(), timer.getMillisAndRestart());
+
+					List<IResource> retVal = loadHistoryRows(keys);
+					ourLog.info("Loaded {} history resources in {} ms", retVal.size(), timer.getMillisAndRestart());
+					return retVal;
+				}
+			});
+		}
+
+		private List<IResource> loadHistoryRows(List<HistoryKey> theKeys) {
+			PidSet.Builder currentPids = new PidSet.Builder();
+			PidSet.Builder historyPids = new PidSet.Builder();
+			for (HistoryKey next : theKeys) {
+				if (next.myHistoryRow) {
+					historyPids.add(next.myRowPid);
+				} else {
+					currentPids.add(next.myRowPid);
+				}
+			}
+
+			List<BaseHasResource> currentEntities = new ArrayList<BaseHasResource>();
+			searchHistoryCurrentVersion(currentPids.build(), currentEntities);
+			Map<Long, BaseHasResource> currentById = new HashMap<Long, BaseHasResource>();
+			for (BaseHasResource next : currentEntities) {
+				currentById.put(next.getId(), next);
 			}
+
+			List<BaseHasResource> historyEntities = new ArrayList<BaseHasResource>();
+			searchHistoryHistory(historyPids.build(), historyEntities);
+			Map<Long, BaseHasResource> historyById = new HashMap<Long, BaseHasResource>();
+			for (BaseHasResource next : historyEntities) {
+				historyById.put(next.getId(), next);
+			}
+
+			List<BaseHasResource> entities = new ArrayList<BaseHasResource>(theKeys.size());
+			for (HistoryKey next : theKeys) {
+				BaseHasResource entity = next.myHistoryRow ? historyById.get(next.myRowPid) : currentById.get(next.myRowPid);
+				if (entity == null) {
+					// Row was updated or removed since its key was read
+					continue;
+				}
+				try {
+					myContext.getResourceDefinition(entity.getResourceType());
+				} catch (DataFormatException e) {
+					if (entity.getFhirVersion() != getContext().getVersion().getVersion()) {
+						ourLog.info("Ignoring history resource of type[{}] because it is not compatible with version[{}]", entity.getResourceType(), getContext().getVersion().getVersion());
+						continue;
+					}
+					throw e;
+				}
+				entities.add(entity);
+			}
+
+			return toResources(entities);
 		}
-		for (ResourceIndexedSearchParamDate next : dateParams) {
-			myEntityManager.persist(next);
+
+		@Override
+		public int size() {
+			if (mySize == null) {
+				TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+				mySize = template.execute(new TransactionCallback<Integer>() {
+					@Override
+					public Integer doInTransaction(TransactionStatus theStatus) {
+						StopWatch timer = new StopWatch();
+						long retVal = count(false) + count(true);
+						ourLog.info("Counted {} history entries in {} ms", retVal, timer.getMillisAndRestart());
+						return (int) Math.min(Integer.MAX_VALUE, retVal);
+					}
+				});
+			}
+			return mySize;
+		}
+
+	}
+
+	/**
+	 * Position of a single row within the history of a server, type or instance. Keys sort newest first.
+	 */
+	private static final class HistoryKey implements Comparable<HistoryKey> {
+
+		private final boolean myHistoryRow;
+		private final long myResourcePid;
+		private final long myRowPid;
+		private final Date myUpdated;
+		private final long myVersion;
+
+		public HistoryKey(boolean theHistoryRow, long theRowPid, long theResourcePid, long theVersion, Date theUpdated) {
+			myHistoryRow = theHistoryRow;
+			myRowPid = theRowPid;
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+			myUpdated = theUpdated;
 		}
 
-		if (entity.isHasLinks()) {
-			for (ResourceLink next : resourceLinks) {
-				myEntityManager.remove(next);
+		@Override
+		public int compareTo(HistoryKey theO) {
+			int retVal = theO.myUpdated.compareTo(myUpdated);
+			if (retVal == 0) {
+				retVal = compare(theO.myResourcePid, myResourcePid);
+			}
+			if (retVal == 0) {
+				retVal = compare(theO.myVersion, myVersion);
 			}
+			return retVal;
 		}
-		for (ResourceLink next : links) {
-			myEntityManager.persist(next);
+
+		private static int compare(long theA, long theB) {
+			return theA < theB ? -1 : (theA == theB ? 0 : 1);
 		}
 
-		myEntityManager.flush();
+	}
 
-		if (theResource != null) {
-			theResource.setId(entity.getIdDt());
+	/**
+	 * The parts of a stored resource version which are needed to parse it. These are read from the entity up front (on
+	 * a thread which is within the entity's transaction), so that the body can then be parsed on any thread.
+	 */
+	private static final class StoredResource {
+
+		private final byte[] myBody;
+		private final ResourceEncodingEnum myEncoding;
+		private final FhirVersionEnum myFhirVersion;
+		private final String myIdPart;
+		private final Long myPid;
+		private final Long myResourcePid;
+		private final long myVersion;
+
+		private StoredResource(BaseHasResource theEntity) {
+			myBody = theEntity.getResource();
+			myEncoding = theEntity.getEncoding();
+			myFhirVersion = theEntity.getFhirVersion();
+			myIdPart = theEntity.getIdDt().getIdPart();
+			myPid = theEntity.getId();
+			myResourcePid = theEntity instanceof ResourceHistoryTable ? ((ResourceHistoryTable) theEntity).getResourceId() : theEntity.getId();
+			myVersion = theEntity.getVersion();
 		}
 
-		return entity;
 	}
 
 }
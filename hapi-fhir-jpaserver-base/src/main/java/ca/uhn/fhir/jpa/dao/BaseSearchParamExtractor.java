@@ -0,0 +1,62 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.model.api.IResource;
+
+abstract class BaseSearchParamExtractor implements ISearchParamExtractor {
+
+	private final FhirContext myContext;
+	private final ConcurrentHashMap<RuntimeResourceDefinition, SearchParamExtractionPlan> myPlans = new ConcurrentHashMap<RuntimeResourceDefinition, SearchParamExtractionPlan>();
+
+	public BaseSearchParamExtractor(FhirContext theContext) {
+		myContext = theContext;
+	}
+
+	@Override
+	public SearchParamExtractionPlan.Values extractValues(IResource theResource) {
+		return getPlan(myContext.getResourceDefinition(theResource)).extract(theResource);
+	}
+
+	protected FhirContext getContext() {
+		return myContext;
+	}
+
+	/**
+	 * Returns the compiled plan for the given resource type, compiling it the first time each type is seen
+	 */
+	SearchParamExtractionPlan getPlan(RuntimeResourceDefinition theResourceDefinition) {
+		SearchParamExtractionPlan retVal = myPlans.get(theResourceDefinition);
+		if (retVal == null) {
+			retVal = new SearchParamExtractionPlan(myContext, theResourceDefinition);
+			SearchParamExtractionPlan existing = myPlans.putIfAbsent(theResourceDefinition, retVal);
+			if (existing != null) {
+				retVal = existing;
+			}
+		}
+		return retVal;
+	}
+
+}
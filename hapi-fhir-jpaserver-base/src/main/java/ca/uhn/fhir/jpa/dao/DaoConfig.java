@@ -20,6 +20,8 @@ package ca.uhn.fhir.jpa.dao;
  * #L%
  */
 
+import org.apache.commons.lang3.Validate;
+
 import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
 
 public class DaoConfig {
@@ -28,6 +30,9 @@ public class DaoConfig {
 	private int myHardTagListLimit = 1000;
 	private ResourceEncodingEnum myResourceEncoding=ResourceEncodingEnum.JSONC;
 	private int myIncludeLimit = 2000;
+	private int myParseThreadCount = Runtime.getRuntime().availableProcessors();
+	private boolean myStreamSearchResults = false;
+	private int myWriteBatchSize = 50;
 
 	/**
 	 * This is the maximum number of resources that will be added to a single page of 
@@ -62,6 +67,10 @@ public class DaoConfig {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the format in which new resource versions are stored. Existing rows are always read using the format they
+	 * were written with, so this may be changed at any time. Default is {@link ResourceEncodingEnum#JSONC}.
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -70,4 +79,63 @@ public class DaoConfig {
 		return myIncludeLimit;
 	}
 
+	/**
+	 * See {@link #setParseThreadCount(int)}
+	 */
+	public int getParseThreadCount() {
+		return myParseThreadCount;
+	}
+
+	/**
+	 * See {@link #setWriteBatchSize(int)}
+	 */
+	public int getWriteBatchSize() {
+		return myWriteBatchSize;
+	}
+
+	/**
+	 * See {@link #setStreamSearchResults(boolean)}
+	 */
+	public boolean isStreamSearchResults() {
+		return myStreamSearchResults;
+	}
+
+	/**
+	 * Sets the number of threads used by the {@link ResourceParseExecutor} (if one is declared) to parse larger lists
+	 * of resources in parallel. Default is the number of available processors. A value of 0 means that resources are
+	 * always parsed on the calling thread. This is read when the executor is started, so changing it afterwards has no
+	 * effect.
+	 */
+	public void setParseThreadCount(int theParseThreadCount) {
+		Validate.isTrue(theParseThreadCount >= 0, "theParseThreadCount must not be negative");
+		myParseThreadCount = theParseThreadCount;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), searches which do not specify a sort order will not
+	 * load the IDs of all matching resources up front. Instead, each page of results is fetched from the database as
+	 * it is requested, and the total number of matches is determined using a separate count query only if it is
+	 * needed. This greatly reduces the memory used by searches which match large numbers of resources, at the cost
+	 * of an additional query per page.
+	 */
+	public void setStreamSearchResults(boolean theStreamSearchResults) {
+		myStreamSearchResults = theStreamSearchResults;
+	}
+
+	/**
+	 * When a transaction containing multiple resources is processed, the search index and history rows for each
+	 * resource are not written to the database individually. Instead, they are left pending and written out (flushed)
+	 * after this many resources have been processed, so that the inserts can be sent to the database in JDBC batches.
+	 * Default is 50. A value of 0 means that all writes are flushed together at the end of the transaction.
+	 * <p>
+	 * Note that the size of the JDBC batches themselves is controlled by the <code>hibernate.jdbc.batch_size</code>
+	 * property, which should be set to a non-zero value (along with <code>hibernate.order_inserts</code>) in order
+	 * for batching to take place.
+	 * </p>
+	 */
+	public void setWriteBatchSize(int theWriteBatchSize) {
+		Validate.isTrue(theWriteBatchSize >= 0, "theWriteBatchSize must not be negative");
+		myWriteBatchSize = theWriteBatchSize;
+	}
+
 }
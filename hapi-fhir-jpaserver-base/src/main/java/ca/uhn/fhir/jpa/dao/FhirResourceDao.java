@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -47,11 +48,16 @@ import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
+import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hl7.fhir.instance.model.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
@@ -78,6 +84,7 @@ import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.entity.ResourceLink;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.entity.TagDefinition;
+import ca.uhn.fhir.jpa.util.PidSet;
 import ca.uhn.fhir.jpa.util.StopWatch;
 import ca.uhn.fhir.model.api.IPrimitiveDatatype;
 import ca.uhn.fhir.model.api.IQueryParameterType;
@@ -451,150 +458,55 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		StopWatch w = new StopWatch();
 		final InstantDt now = InstantDt.withCurrentTime();
 
-		Set<Long> loadPids;
-		if (theParams.isEmpty()) {
-			loadPids = new HashSet<Long>();
-			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-			CriteriaQuery<Tuple> cq = builder.createTupleQuery();
-			Root<ResourceTable> from = cq.from(ResourceTable.class);
-			cq.multiselect(from.get("myId").as(Long.class));
-			cq.where(builder.equal(from.get("myResourceType"), myResourceName));
-
-			TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
-			for (Tuple next : query.getResultList()) {
-				loadPids.add(next.get(0, Long.class));
-			}
-		} else {
-			loadPids = searchForIdsWithAndOr(theParams);
-			if (loadPids.isEmpty()) {
+		boolean sorted = theParams.getSort() != null && isNotBlank(theParams.getSort().getParamName());
+		if (getConfig().isStreamSearchResults() && !sorted) {
+			StreamingSearchBundleProvider retVal = new StreamingSearchBundleProvider(theParams, now);
+			if (retVal.isUnrestricted() && !theParams.isEmpty()) {
 				return new SimpleBundleProvider();
 			}
-		}
-
-		final List<Long> pids = new ArrayList<Long>(loadPids);
 
-		// Handle sorting if any was provided
-		if (theParams.getSort() != null && isNotBlank(theParams.getSort().getParamName())) {
-			List<Order> orders = new ArrayList<Order>();
-			List<Predicate> predicates = new ArrayList<Predicate>();
-			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-			CriteriaQuery<Tuple> cq = builder.createTupleQuery();
-			Root<ResourceTable> from = cq.from(ResourceTable.class);
-			predicates.add(from.get("myId").in(pids));
-			createSort(builder, from, theParams.getSort(), orders, predicates);
-			if (orders.size() > 0) {
-				loadPids = new LinkedHashSet<Long>();
-				cq.multiselect(from.get("myId").as(Long.class));
-				cq.where(predicates.toArray(new Predicate[0]));
-				cq.orderBy(orders);
-
-				TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
-
-				for (Tuple next : query.getResultList()) {
-					loadPids.add(next.get(0, Long.class));
-				}
+			ourLog.info("Processed streaming search for {} on {} in {}ms", new Object[] { myResourceName, theParams, w.getMillisAndRestart() });
+			return retVal;
+		}
 
-				ourLog.info("Sort PID order is now: {}", loadPids);
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> cq = builder.createTupleQuery();
+		Root<ResourceTable> from = cq.from(ResourceTable.class);
+		cq.multiselect(from.get("myId").as(Long.class));
 
-				pids.clear();
-				pids.addAll(loadPids);
+		List<Predicate> predicates = new ArrayList<Predicate>();
+		predicates.add(builder.equal(from.get("myResourceType"), myResourceName));
+		if (!theParams.isEmpty()) {
+			List<Predicate> searchPredicates = createSearchPredicates(builder, cq, from, theParams, new ResolvedReferences());
+			if (searchPredicates.isEmpty()) {
+				return new SimpleBundleProvider();
 			}
+			predicates.addAll(searchPredicates);
 		}
 
-		IBundleProvider retVal = new IBundleProvider() {
+		// Handle sorting if any was provided
+		List<Order> orders = new ArrayList<Order>();
+		createSort(builder, from, theParams.getSort(), orders, predicates);
 
-			@Override
-			public InstantDt getPublished() {
-				return now;
-			}
+		cq.where(builder.and(predicates.toArray(new Predicate[0])));
+		if (orders.size() > 0) {
+			cq.orderBy(orders);
+		}
 
-			@Override
-			public List<IResource> getResources(final int theFromIndex, final int theToIndex) {
-				TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
-				return template.execute(new TransactionCallback<List<IResource>>() {
-					@Override
-					public List<IResource> doInTransaction(TransactionStatus theStatus) {
-						List<Long> pidsSubList = pids.subList(theFromIndex, theToIndex);
-
-						// Execute the query and make sure we return distinct results
-						List<IResource> retVal = new ArrayList<IResource>();
-						loadResourcesByPid(pidsSubList, retVal, BundleEntrySearchModeEnum.MATCH);
-
-						// Load _include resources
-						if (theParams.getIncludes() != null && theParams.getIncludes().isEmpty() == false) {
-							Set<IdDt> previouslyLoadedPids = new HashSet<IdDt>();
-
-							Set<IdDt> includePids = new HashSet<IdDt>();
-							List<IResource> resources = retVal;
-							do {
-								includePids.clear();
-
-								FhirTerser t = getContext().newTerser();
-								for (Include next : theParams.getIncludes()) {
-									for (IResource nextResource : resources) {
-										RuntimeResourceDefinition def = getContext().getResourceDefinition(nextResource);
-										List<Object> values;
-										if ("*".equals(next.getValue())) {
-											values = new ArrayList<Object>();
-											values.addAll(t.getAllPopulatedChildElementsOfType(nextResource, ResourceReferenceDt.class));
-										} else if (next.getValue().startsWith(def.getName() + ".")) {
-											values = t.getValues(nextResource, next.getValue());
-										} else {
-											continue;
-										}
-
-										for (Object object : values) {
-											if (object == null) {
-												continue;
-											}
-											if (!(object instanceof ResourceReferenceDt)) {
-												throw new InvalidRequestException("Path '" + next.getValue() + "' produced non ResourceReferenceDt value: " + object.getClass());
-											}
-											ResourceReferenceDt rr = (ResourceReferenceDt) object;
-											if (rr.getReference().isEmpty()) {
-												continue;
-											}
-											if (rr.getReference().isLocal()) {
-												continue;
-											}
-
-											IdDt nextId = rr.getReference().toUnqualified();
-											if (!previouslyLoadedPids.contains(nextId)) {
-												includePids.add(nextId);
-												previouslyLoadedPids.add(nextId);
-											}
-										}
-									}
-								}
-
-								if (!includePids.isEmpty()) {
-									ourLog.info("Loading {} included resources", includePids.size());
-									resources = loadResourcesById(includePids);
-									for (IResource next : resources) {
-										ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(next, BundleEntrySearchModeEnum.INCLUDE);
-									}
-									retVal.addAll(resources);
-								}
-							} while (includePids.size() > 0 && previouslyLoadedPids.size() < getConfig().getIncludeLimit());
-
-							if (previouslyLoadedPids.size() >= getConfig().getIncludeLimit()) {
-								OperationOutcome oo = new OperationOutcome();
-								oo.addIssue().setSeverity(IssueSeverityEnum.WARNING)
-										.setDetails("Not all _include resources were actually included as the request surpassed the limit of " + getConfig().getIncludeLimit() + " resources");
-								retVal.add(0, oo);
-							}
-						}
+		// The sort joins can produce one row per matching index entry, so dedupe while keeping the order
+		Set<Long> loadPids = new LinkedHashSet<Long>();
+		TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
+		for (Tuple next : query.getResultList()) {
+			loadPids.add(next.get(0, Long.class));
+		}
 
-						return retVal;
-					}
-				});
-			}
+		if (loadPids.isEmpty() && !theParams.isEmpty()) {
+			return new SimpleBundleProvider();
+		}
 
-			@Override
-			public int size() {
-				return pids.size();
-			}
-		};
+		final List<Long> pids = new ArrayList<Long>(loadPids);
+
+		IBundleProvider retVal = new PidListBundleProvider(pids, theParams.getIncludes(), now);
 
 		ourLog.info("Processed search for {} on {} in {}ms", new Object[] { myResourceName, theParams, w.getMillisAndRestart() });
 
@@ -607,7 +519,7 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 	}
 
 	@Override
-	public Set<Long> searchForIds(Map<String, IQueryParameterType> theParams) {
+	public PidSet searchForIds(Map<String, IQueryParameterType> theParams) {
 		SearchParameterMap map = new SearchParameterMap();
 		for (Entry<String, IQueryParameterType> nextEntry : theParams.entrySet()) {
 			map.add(nextEntry.getKey(), (nextEntry.getValue()));
@@ -616,133 +528,45 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 	}
 
 	@Override
-	public Set<Long> searchForIds(String theParameterName, IQueryParameterType theValue) {
+	public PidSet searchForIds(String theParameterName, IQueryParameterType theValue) {
 		return searchForIds(Collections.singletonMap(theParameterName, theValue));
 	}
 
 	@Override
-	public Set<Long> searchForIdsWithAndOr(SearchParameterMap theParams) {
+	public PidSet searchForIdsWithAndOr(SearchParameterMap theParams) {
 		SearchParameterMap params = theParams;
 		if (params == null) {
 			params = new SearchParameterMap();
 		}
 
-		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(myResourceType);
-
-		Set<Long> pids = new HashSet<Long>();
-
-		for (Entry<String, List<List<? extends IQueryParameterType>>> nextParamEntry : params.entrySet()) {
-			String nextParamName = nextParamEntry.getKey();
-			if (nextParamName.equals("_id")) {
-
-				if (nextParamEntry.getValue().isEmpty()) {
-					continue;
-				} else if (nextParamEntry.getValue().size() > 1) {
-					throw new InvalidRequestException("AND queries not supported for _id (Multiple instances of this param found)");
-				} else {
-					Set<Long> joinPids = new HashSet<Long>();
-					List<? extends IQueryParameterType> nextValue = nextParamEntry.getValue().get(0);
-					if (nextValue == null || nextValue.size() == 0) {
-						continue;
-					} else {
-						for (IQueryParameterType next : nextValue) {
-							String value = next.getValueAsQueryToken();
-							IdDt valueId = new IdDt(value);
-							try {
-								long valueLong = translateForcedIdToPid(valueId);
-								joinPids.add(valueLong);
-							} catch (ResourceNotFoundException e) {
-								// This isn't an error, just means no result found
-							}
-						}
-						if (joinPids.isEmpty()) {
-							continue;
-						}
-					}
-
-					pids = addPredicateId(pids, joinPids);
-					if (pids.isEmpty()) {
-						return new HashSet<Long>();
-					}
-
-					if (pids.isEmpty()) {
-						pids.addAll(joinPids);
-					} else {
-						pids.retainAll(joinPids);
-					}
-				}
-
-			} else if (nextParamName.equals("_language")) {
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
+		Root<ResourceTable> from = cq.from(ResourceTable.class);
+		cq.select(from.get("myId").as(Long.class));
 
-				pids = addPredicateLanguage(pids, nextParamEntry.getValue());
+		List<Predicate> predicates = createSearchPredicates(builder, cq, from, params, new ResolvedReferences());
+		if (predicates.isEmpty()) {
+			return PidSet.empty();
+		}
 
-			} else {
+		predicates.add(0, builder.equal(from.get("myResourceType"), myResourceName));
+		cq.where(builder.and(predicates.toArray(new Predicate[0])));
 
-				RuntimeSearchParam nextParamDef = resourceDef.getSearchParam(nextParamName);
-				if (nextParamDef != null) {
-					switch (nextParamDef.getParamType()) {
-					case DATE:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateDate(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case QUANTITY:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateQuantity(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case REFERENCE:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateReference(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case STRING:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateString(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case TOKEN:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateToken(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case NUMBER:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateNumber(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case COMPOSITE:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateComposite(nextParamDef, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					}
-				}
+		/*
+		 * Read the PIDs straight into the set instead of having the query build a List<Long> of the whole result,
+		 * which for a broad chained search can be far larger than the set itself
+		 */
+		TypedQuery<Long> q = myEntityManager.createQuery(cq);
+		ScrollableResults results = q.unwrap(Query.class).scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			PidSet.Builder retVal = new PidSet.Builder();
+			while (results.next()) {
+				retVal.add(results.getLong(0).longValue());
 			}
+			return retVal.build();
+		} finally {
+			results.close();
 		}
-
-		return pids;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -783,11 +607,11 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		return toMethodOutcome(savedEntity);
 	}
 
-	private Set<Long> addPredicateComposite(RuntimeSearchParam theParamDef, Set<Long> thePids, List<? extends IQueryParameterType> theNextAnd) {
+	private Predicate addPredicateComposite(RuntimeSearchParam theParamDef, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theNextAnd) {
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceTable> from = sq.from(ResourceTable.class);
+		sq.select(from.get("myId").as(Long.class));
 
 		IQueryParameterType or = theNextAnd.get(0);
 		if (!(or instanceof CompositeParam<?, ?>)) {
@@ -803,49 +627,42 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		IQueryParameterType rightValue = cp.getRightValue();
 		Predicate rightPredicate = createCompositeParamPart(builder, from, right, rightValue);
 
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, leftPredicate, rightPredicate, inPids));
-		} else {
-			cq.where(builder.and(type, leftPredicate, rightPredicate));
-		}
-
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		Predicate joinPid = builder.equal(from.get("myId"), theFrom.get("myId"));
+		sq.where(builder.and(joinPid, leftPredicate, rightPredicate));
 
+		return builder.exists(sq);
 	}
 
-	private Set<Long> addPredicateDate(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateDate(String theParamName, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theList) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamDate> from = cq.from(ResourceIndexedSearchParamDate.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamDate> from = sq.from(ResourceIndexedSearchParamDate.class);
+		sq.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
 			IQueryParameterType params = nextOr;
 			Predicate p = createPredicateDate(builder, from, params);
-			codePredicates.add(p);
+			if (p != null) {
+				codePredicates.add(p);
+			}
+		}
+		if (codePredicates.isEmpty()) {
+			return null;
 		}
 
 		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
 
+		Predicate joinPid = builder.equal(from.get("myResourcePid"), theFrom.get("myId"));
 		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
 		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		sq.where(builder.and(joinPid, type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return builder.exists(sq);
 	}
 
 	private Predicate addPredicateDateFromRange(CriteriaBuilder theBuilder, From<ResourceIndexedSearchParamDate, ResourceIndexedSearchParamDate> theFrom, DateRangeParam theRange) {
@@ -888,43 +705,47 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		}
 	}
 
-	private Set<Long> addPredicateId(Set<Long> theExistingPids, Set<Long> thePids) {
-		if (thePids == null || thePids.isEmpty()) {
-			return Collections.emptySet();
+	private Predicate addPredicateId(Root<ResourceTable> theFrom, List<List<? extends IQueryParameterType>> theList, ResolvedReferences theResolved) {
+		if (theList.isEmpty()) {
+			return null;
+		} else if (theList.size() > 1) {
+			throw new InvalidRequestException("AND queries not supported for _id (Multiple instances of this param found)");
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
-
-		Predicate typePredicate = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate idPrecidate = from.get("myId").in(thePids);
+		List<? extends IQueryParameterType> nextValue = theList.get(0);
+		if (nextValue == null || nextValue.size() == 0) {
+			return null;
+		}
 
-		cq.where(builder.and(typePredicate, idPrecidate));
+		PidSet.Builder joinPids = new PidSet.Builder(nextValue.size());
+		for (IQueryParameterType next : nextValue) {
+			String value = next.getValueAsQueryToken();
+			IdDt valueId = new IdDt(value);
+			try {
+				long valueLong = theResolved.translateForcedIdToPid(valueId);
+				joinPids.add(valueLong);
+			} catch (ResourceNotFoundException e) {
+				// This isn't an error, just means no result found
+			}
+		}
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		HashSet<Long> found = new HashSet<Long>(q.getResultList());
-		if (!theExistingPids.isEmpty()) {
-			theExistingPids.retainAll(found);
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		if (joinPids.size() == 0) {
+			// None of the requested IDs exist, so nothing can match
+			return builder.disjunction();
 		}
 
-		return found;
+		return theFrom.get("myId").in(joinPids.build());
 	}
 
-	private Set<Long> addPredicateLanguage(Set<Long> thePids, List<List<? extends IQueryParameterType>> theList) {
+	private Predicate addPredicateLanguage(Root<ResourceTable> theFrom, List<List<? extends IQueryParameterType>> theList) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 		if (theList.size() > 1) {
 			throw new InvalidRequestException("Language parameter can not have more than one AND value, found " + theList.size());
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
-
 		Set<String> values = new HashSet<String>();
 		for (IQueryParameterType next : theList.get(0)) {
 			if (next instanceof StringParam) {
@@ -939,33 +760,21 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		}
 
 		if (values.isEmpty()) {
-			return thePids;
-		}
-
-		Predicate typePredicate = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate langPredicate = from.get("myLanguage").as(String.class).in(values);
-		Predicate masterCodePredicate = builder.and(typePredicate, langPredicate);
-
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myId").in(thePids));
-			cq.where(builder.and(masterCodePredicate, inPids));
-		} else {
-			cq.where(masterCodePredicate);
+			return null;
 		}
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theFrom.get("myLanguage").as(String.class).in(values);
 	}
 
-	private Set<Long> addPredicateNumber(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateNumber(String theParamName, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theList) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamNumber> from = cq.from(ResourceIndexedSearchParamNumber.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamNumber> from = sq.from(ResourceIndexedSearchParamNumber.class);
+		sq.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
@@ -976,7 +785,7 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 
 				BigDecimal value = param.getValue();
 				if (value == null) {
-					return thePids;
+					return null;
 				}
 
 				Path<Object> fromObj = from.get("myValue");
@@ -1011,28 +820,23 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 
 		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
 
+		Predicate joinPid = builder.equal(from.get("myResourcePid"), theFrom.get("myId"));
 		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
 		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		sq.where(builder.and(joinPid, type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return builder.exists(sq);
 	}
 
-	private Set<Long> addPredicateQuantity(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateQuantity(String theParamName, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theList) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamQuantity> from = cq.from(ResourceIndexedSearchParamQuantity.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamQuantity> from = sq.from(ResourceIndexedSearchParamQuantity.class);
+		sq.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
@@ -1113,32 +917,25 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 
 		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
 
+		Predicate joinPid = builder.equal(from.get("myResourcePid"), theFrom.get("myId"));
 		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
 		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		sq.where(builder.and(joinPid, type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return builder.exists(sq);
 	}
 
-	private Set<Long> addPredicateReference(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateReference(String theParamName, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theList, ResolvedReferences theResolved) {
 		assert theParamName.contains(".") == false;
 
-		Set<Long> pidsToRetain = thePids;
 		if (theList == null || theList.isEmpty()) {
-			return pidsToRetain;
+			return null;
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceLink> from = cq.from(ResourceLink.class);
-		cq.select(from.get("mySourceResourcePid").as(Long.class));
-
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceLink> from = sq.from(ResourceLink.class);
+		sq.select(from.get("mySourceResourcePid").as(Long.class));
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 
 		for (IQueryParameterType nextOr : theList) {
@@ -1154,49 +951,22 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 				}
 
 				if (isBlank(ref.getChain())) {
-					Long targetPid = translateForcedIdToPid(new IdDt(resourceId));
+					Long targetPid = theResolved.translateForcedIdToPid(new IdDt(resourceId));
 					ourLog.info("Searching for resource link with target PID: {}", targetPid);
 					Predicate eq = builder.equal(from.get("myTargetResourcePid"), targetPid);
 
 					codePredicates.add(eq);
 
 				} else {
-					String chain = getContext().getResourceDefinition(myResourceType).getSearchParam(theParamName).getPath();
-					BaseRuntimeChildDefinition def = getContext().newTerser().getDefinition(myResourceType, chain);
-					if (!(def instanceof RuntimeChildResourceDefinition)) {
-						throw new ConfigurationException("Property " + chain + " of type " + myResourceName + " is not a resource: " + def.getClass());
+					PidSet targetPids = theResolved.getChainTargets(ref);
+					if (targetPids == null) {
+						targetPids = searchForChainTargets(theParamName, ref, resourceId);
+						theResolved.putChainTargets(ref, targetPids);
 					}
-					List<Class<? extends IBaseResource>> resourceTypes;
-					if (isBlank(ref.getResourceType())) {
-						RuntimeChildResourceDefinition resDef = (RuntimeChildResourceDefinition) def;
-						resourceTypes = resDef.getResourceTypes();
-					} else {
-						resourceTypes = new ArrayList<Class<? extends IBaseResource>>();
-						RuntimeResourceDefinition resDef = getContext().getResourceDefinition(ref.getResourceType());
-						resourceTypes.add(resDef.getImplementingClass());
-					}
-					for (Class<? extends IBaseResource> nextType : resourceTypes) {
-						RuntimeResourceDefinition typeDef = getContext().getResourceDefinition(nextType);
-						RuntimeSearchParam param = typeDef.getSearchParam(ref.getChain());
-						if (param == null) {
-							ourLog.debug("Type {} doesn't have search param {}", nextType.getSimpleName(), param);
-							continue;
-						}
-						IFhirResourceDao<?> dao = getDao(nextType);
-						if (dao == null) {
-							ourLog.debug("Don't have a DAO for type {}", nextType.getSimpleName(), param);
-							continue;
-						}
 
-						IQueryParameterType chainValue = toParameterType(param, resourceId);
-						Set<Long> pids = dao.searchForIds(ref.getChain(), chainValue);
-						if (pids.isEmpty()) {
-							continue;
-						}
-
-						Predicate eq = from.get("myTargetResourcePid").in(pids);
+					if (!targetPids.isEmpty()) {
+						Predicate eq = from.get("myTargetResourcePid").in(targetPids);
 						codePredicates.add(eq);
-
 					}
 				}
 
@@ -1211,27 +981,61 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		RuntimeSearchParam param = getContext().getResourceDefinition(getResourceType()).getSearchParam(theParamName);
 		String path = param.getPath();
 
+		Predicate joinPid = builder.equal(from.get("mySourceResourcePid"), theFrom.get("myId"));
 		Predicate type = builder.equal(from.get("mySourcePath"), path);
-		if (pidsToRetain.size() > 0) {
-			Predicate inPids = (from.get("mySourceResourcePid").in(pidsToRetain));
-			cq.where(builder.and(type, masterCodePredicate, inPids));
+		sq.where(builder.and(joinPid, type, masterCodePredicate));
+
+		return builder.exists(sq);
+	}
+
+	/**
+	 * Finds the PIDs of the resources a chained reference parameter (e.g. <code>subject.name=smith</code>) can point
+	 * to, by running the chained part of the search against each of the possible target types
+	 */
+	private PidSet searchForChainTargets(String theParamName, ReferenceParam theRef, String theResourceId) {
+		String chain = getContext().getResourceDefinition(myResourceType).getSearchParam(theParamName).getPath();
+		BaseRuntimeChildDefinition def = getContext().newTerser().getDefinition(myResourceType, chain);
+		if (!(def instanceof RuntimeChildResourceDefinition)) {
+			throw new ConfigurationException("Property " + chain + " of type " + myResourceName + " is not a resource: " + def.getClass());
+		}
+		List<Class<? extends IBaseResource>> resourceTypes;
+		if (isBlank(theRef.getResourceType())) {
+			RuntimeChildResourceDefinition resDef = (RuntimeChildResourceDefinition) def;
+			resourceTypes = resDef.getResourceTypes();
 		} else {
-			cq.where(builder.and(type, masterCodePredicate));
-		}
+			resourceTypes = new ArrayList<Class<? extends IBaseResource>>();
+			RuntimeResourceDefinition resDef = getContext().getResourceDefinition(theRef.getResourceType());
+			resourceTypes.add(resDef.getImplementingClass());
+		}
+		PidSet targetPids = PidSet.empty();
+		for (Class<? extends IBaseResource> nextType : resourceTypes) {
+			RuntimeResourceDefinition typeDef = getContext().getResourceDefinition(nextType);
+			RuntimeSearchParam param = typeDef.getSearchParam(theRef.getChain());
+			if (param == null) {
+				ourLog.debug("Type {} doesn't have search param {}", nextType.getSimpleName(), param);
+				continue;
+			}
+			IFhirResourceDao<?> dao = getDao(nextType);
+			if (dao == null) {
+				ourLog.debug("Don't have a DAO for type {}", nextType.getSimpleName(), param);
+				continue;
+			}
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+			IQueryParameterType chainValue = toParameterType(param, theResourceId);
+			targetPids = targetPids.union(dao.searchForIds(theRef.getChain(), chainValue));
+		}
+		return targetPids;
 	}
 
-	private Set<Long> addPredicateString(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateString(String theParamName, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theList) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamString> from = cq.from(ResourceIndexedSearchParamString.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamString> from = sq.from(ResourceIndexedSearchParamString.class);
+		sq.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
@@ -1243,35 +1047,30 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 
 		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
 
+		Predicate joinPid = builder.equal(from.get("myResourcePid"), theFrom.get("myId"));
 		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
 		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		sq.where(builder.and(joinPid, type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return builder.exists(sq);
 	}
 
-	private Set<Long> addPredicateToken(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateToken(String theParamName, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, List<? extends IQueryParameterType> theList) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamToken> from = cq.from(ResourceIndexedSearchParamToken.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> sq = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamToken> from = sq.from(ResourceIndexedSearchParamToken.class);
+		sq.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
 			if (nextOr instanceof TokenParam) {
 				TokenParam id = (TokenParam) nextOr;
 				if (id.isText()) {
-					return addPredicateString(theParamName, thePids, theList);
+					return addPredicateString(theParamName, theQuery, theFrom, theList);
 				}
 			}
 
@@ -1281,17 +1080,12 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 
 		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
 
+		Predicate joinPid = builder.equal(from.get("myResourcePid"), theFrom.get("myId"));
 		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
 		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		sq.where(builder.and(joinPid, type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return builder.exists(sq);
 	}
 
 	private Predicate createCompositeParamPart(CriteriaBuilder builder, Root<ResourceTable> from, RuntimeSearchParam left, IQueryParameterType leftValue) {
@@ -1423,6 +1217,121 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		return singleCode;
 	}
 
+	/**
+	 * Builds one predicate per AND clause in the given parameter map, each of which is expressed against the
+	 * given {@link ResourceTable} root (typically as an EXISTS subquery against the relevant index table) so
+	 * that the whole search can be executed as a single statement. The returned predicates are ordered with
+	 * the clauses expected to be most selective first.
+	 * 
+	 * 
+	 * @param theResolved
+	 *            Forced IDs and chained references which have already been resolved for this search. Anything not
+	 *            already in here is looked up and added to it, so that building the predicates again for the same
+	 *            parameters (e.g. for a COUNT statement) doesn't repeat those lookups.
+	 * @return The predicates, or an empty list if none of the parameters in the map restrict the search
+	 */
+	private List<Predicate> createSearchPredicates(CriteriaBuilder theBuilder, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom, SearchParameterMap theParams, ResolvedReferences theResolved) {
+		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(myResourceType);
+
+		List<SearchClause> clauses = new ArrayList<SearchClause>();
+		for (Entry<String, List<List<? extends IQueryParameterType>>> nextParamEntry : theParams.entrySet()) {
+			String nextParamName = nextParamEntry.getKey();
+			if (nextParamName.equals("_id")) {
+
+				Predicate p = addPredicateId(theFrom, nextParamEntry.getValue(), theResolved);
+				addClause(clauses, p, SearchClause.COST_ID, 0);
+
+			} else if (nextParamName.equals("_language")) {
+
+				Predicate p = addPredicateLanguage(theFrom, nextParamEntry.getValue());
+				addClause(clauses, p, SearchClause.COST_LANGUAGE, 0);
+
+			} else {
+
+				RuntimeSearchParam nextParamDef = resourceDef.getSearchParam(nextParamName);
+				if (nextParamDef == null) {
+					continue;
+				}
+
+				for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
+					Predicate p;
+					int cost;
+					switch (nextParamDef.getParamType()) {
+					case DATE:
+						p = addPredicateDate(nextParamName, theQuery, theFrom, nextAnd);
+						cost = SearchClause.COST_DATE;
+						break;
+					case QUANTITY:
+						p = addPredicateQuantity(nextParamName, theQuery, theFrom, nextAnd);
+						cost = SearchClause.COST_NUMERIC;
+						break;
+					case REFERENCE:
+						p = addPredicateReference(nextParamName, theQuery, theFrom, nextAnd, theResolved);
+						cost = isChained(nextAnd) ? SearchClause.COST_CHAINED_REFERENCE : SearchClause.COST_TOKEN;
+						break;
+					case STRING:
+						p = addPredicateString(nextParamName, theQuery, theFrom, nextAnd);
+						cost = isExact(nextAnd) ? SearchClause.COST_EXACT_STRING : SearchClause.COST_STRING;
+						break;
+					case TOKEN:
+						p = addPredicateToken(nextParamName, theQuery, theFrom, nextAnd);
+						cost = SearchClause.COST_TOKEN;
+						break;
+					case NUMBER:
+						p = addPredicateNumber(nextParamName, theQuery, theFrom, nextAnd);
+						cost = SearchClause.COST_NUMERIC;
+						break;
+					case COMPOSITE:
+						p = addPredicateComposite(nextParamDef, theQuery, theFrom, nextAnd);
+						cost = SearchClause.COST_COMPOSITE;
+						break;
+					default:
+						continue;
+					}
+					addClause(clauses, p, cost, nextAnd != null ? nextAnd.size() : 0);
+				}
+			}
+		}
+
+		// Collections.sort is stable, so clauses of equal cost keep the order they were given in
+		Collections.sort(clauses);
+
+		List<Predicate> retVal = new ArrayList<Predicate>(clauses.size() + 1);
+		for (SearchClause next : clauses) {
+			retVal.add(next.getPredicate());
+		}
+		return retVal;
+	}
+
+	private static void addClause(List<SearchClause> theClauses, Predicate thePredicate, int theBaseCost, int theOrCount) {
+		if (thePredicate != null) {
+			theClauses.add(new SearchClause(thePredicate, theBaseCost + theOrCount));
+		}
+	}
+
+	private static boolean isChained(List<? extends IQueryParameterType> theList) {
+		if (theList != null) {
+			for (IQueryParameterType next : theList) {
+				if (next instanceof ReferenceParam && isNotBlank(((ReferenceParam) next).getChain())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isExact(List<? extends IQueryParameterType> theList) {
+		if (theList == null || theList.isEmpty()) {
+			return false;
+		}
+		for (IQueryParameterType next : theList) {
+			if (!(next instanceof StringParam) || !((StringParam) next).isExact()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void createSort(CriteriaBuilder theBuilder, Root<ResourceTable> theFrom, SortSpec theSort, List<Order> theOrders, List<Predicate> thePredicates) {
 		if (theSort == null || isBlank(theSort.getParamName())) {
 			return;
@@ -1471,8 +1380,11 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		}
 		TypedQuery<ResourceTable> q = myEntityManager.createQuery(cq);
 
-		for (ResourceTable next : q.getResultList()) {
-			T resource = toResource(myResourceType, next);
+		List<ResourceTable> entities = q.getResultList();
+		List<IResource> resources = toResources(entities);
+		for (int i = 0; i < entities.size(); i++) {
+			ResourceTable next = entities.get(i);
+			IResource resource = resources.get(i);
 			Integer index = position.get(next.getId());
 			if (index == null) {
 				ourLog.warn("Got back unexpected resource PID {}", next.getId());
@@ -1485,6 +1397,95 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		}
 	}
 
+	/**
+	 * Loads the resources for one page of search results, along with any resources requested via _include. Joins the
+	 * caller's transaction if there is one.
+	 */
+	@Override
+	public List<IResource> loadSearchPage(List<Long> thePids, Set<Include> theIncludes) {
+		// Execute the query and make sure we return distinct results
+		List<IResource> retVal = new ArrayList<IResource>();
+		loadResourcesByPid(thePids, retVal, BundleEntrySearchModeEnum.MATCH);
+
+		// Load _include resources
+		if (theIncludes != null && theIncludes.isEmpty() == false) {
+			int includeLimit = getConfig().getIncludeLimit();
+			Set<IdDt> previouslyLoadedPids = new HashSet<IdDt>();
+			boolean limitReached = false;
+
+			FhirTerser t = getContext().newTerser();
+			List<IResource> resources = retVal;
+			while (!resources.isEmpty() && !limitReached) {
+
+				/*
+				 * Collect every reference target for this round first, so that the targets can be
+				 * translated and loaded together instead of one at a time
+				 */
+				Set<IdDt> includePids = new LinkedHashSet<IdDt>();
+				for (IResource nextResource : resources) {
+					RuntimeResourceDefinition def = getContext().getResourceDefinition(nextResource);
+					for (Include next : theIncludes) {
+						List<?> values;
+						if ("*".equals(next.getValue())) {
+							values = t.getAllPopulatedChildElementsOfType(nextResource, ResourceReferenceDt.class);
+						} else if (next.getValue().startsWith(def.getName() + ".")) {
+							values = t.getValues(nextResource, next.getValue());
+						} else {
+							continue;
+						}
+
+						for (Object object : values) {
+							if (object == null) {
+								continue;
+							}
+							if (!(object instanceof ResourceReferenceDt)) {
+								throw new InvalidRequestException("Path '" + next.getValue() + "' produced non ResourceReferenceDt value: " + object.getClass());
+							}
+							ResourceReferenceDt rr = (ResourceReferenceDt) object;
+							if (rr.getReference().isEmpty()) {
+								continue;
+							}
+							if (rr.getReference().isLocal()) {
+								continue;
+							}
+
+							IdDt nextId = rr.getReference().toUnqualified();
+							if (previouslyLoadedPids.contains(nextId)) {
+								continue;
+							}
+							if (previouslyLoadedPids.size() >= includeLimit) {
+								limitReached = true;
+								continue;
+							}
+							includePids.add(nextId);
+							previouslyLoadedPids.add(nextId);
+						}
+					}
+				}
+
+				if (includePids.isEmpty()) {
+					break;
+				}
+
+				ourLog.info("Loading {} included resources", includePids.size());
+				resources = loadResourcesById(includePids);
+				for (IResource next : resources) {
+					ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(next, BundleEntrySearchModeEnum.INCLUDE);
+				}
+				retVal.addAll(resources);
+			}
+
+			if (limitReached) {
+				OperationOutcome oo = new OperationOutcome();
+				oo.addIssue().setSeverity(IssueSeverityEnum.WARNING)
+						.setDetails("Not all _include resources were actually included as the request surpassed the limit of " + includeLimit + " resources");
+				retVal.add(0, oo);
+			}
+		}
+
+		return retVal;
+	}
+
 	private ResourceTable readEntityLatestVersion(IdDt theId) {
 		ResourceTable entity = myEntityManager.find(ResourceTable.class, translateForcedIdToPid(theId));
 		if (entity == null) {
@@ -1565,4 +1566,299 @@ public class FhirResourceDao<T extends IResource> extends BaseFhirDao implements
 		}
 	}
 
-}
+	/**
+	 * Search results provider which holds the PIDs of all of the matching resources, in order, and loads the resources
+	 * for each requested page
+	 */
+	private class PidListBundleProvider implements IPidBundleProvider {
+
+		private final Set<Include> myIncludes;
+		private final List<Long> myPids;
+		private final InstantDt myPublished;
+
+		PidListBundleProvider(List<Long> thePids, Set<Include> theIncludes, InstantDt thePublished) {
+			myPids = thePids;
+			myIncludes = theIncludes;
+			myPublished = thePublished;
+		}
+
+		@Override
+		public Set<Include> getIncludes() {
+			return myIncludes;
+		}
+
+		@Override
+		public InstantDt getPublished() {
+			return myPublished;
+		}
+
+		@Override
+		public String getResourceName() {
+			return myResourceName;
+		}
+
+		@Override
+		public List<Long> getResourcePids(int theFromIndex, int theToIndex) {
+			return myPids.subList(theFromIndex, theToIndex);
+		}
+
+		@Override
+		public List<IResource> getResources(final int theFromIndex, final int theToIndex) {
+			TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+			return template.execute(new TransactionCallback<List<IResource>>() {
+				@Override
+				public List<IResource> doInTransaction(TransactionStatus theStatus) {
+					return loadSearchPage(myPids.subList(theFromIndex, theToIndex), myIncludes);
+				}
+			});
+		}
+
+		@Override
+		public int size() {
+			return myPids.size();
+		}
+	}
+
+	/**
+	 * Search results provider which does not hold on to the matching PIDs. Each call to
+	 * {@link #getResources(int, int)} re-runs the search statement for just the requested window: a request for the
+	 * window immediately following the previous one continues from the last PID returned (keyset pagination), and any
+	 * other window falls back to an offset query. The total is only calculated (using a separate COUNT statement) if
+	 * {@link #size()} is actually called and the end of the results has not already been seen.
+	 * <p>
+	 * Results are ordered by PID, so this provider is only used for searches which do not request a sort.
+	 * </p>
+	 */
+	private class StreamingSearchBundleProvider implements IPidBundleProvider {
+
+		private Long myLastPid;
+		private final ParameterExpression<Long> myLastPidParam;
+		private int myNextIndex = -1;
+		private final CriteriaQuery<Long> myNextPageQuery;
+		private final CriteriaQuery<Long> myPageQuery;
+		private final SearchParameterMap myParams;
+		private final InstantDt myPublished;
+		private final ResolvedReferences myResolved = new ResolvedReferences();
+		private Integer mySize;
+		private boolean myUnrestricted;
+
+		/**
+		 * Builds the page statements up front, so that any forced IDs and chained references in the search are
+		 * resolved once here rather than each time a page is loaded
+		 */
+		StreamingSearchBundleProvider(SearchParameterMap theParams, InstantDt thePublished) {
+			myParams = theParams;
+			myPublished = thePublished;
+
+			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+
+			myPageQuery = builder.createQuery(Long.class);
+			Root<ResourceTable> from = myPageQuery.from(ResourceTable.class);
+			myPageQuery.select(from.get("myId").as(Long.class));
+			myPageQuery.where(builder.and(createPredicates(builder, myPageQuery, from).toArray(new Predicate[0])));
+			myPageQuery.orderBy(builder.asc(from.get("myId")));
+
+			myNextPageQuery = builder.createQuery(Long.class);
+			myLastPidParam = builder.parameter(Long.class, "LAST_PID");
+			from = myNextPageQuery.from(ResourceTable.class);
+			myNextPageQuery.select(from.get("myId").as(Long.class));
+			List<Predicate> predicates = createPredicates(builder, myNextPageQuery, from);
+			predicates.add(builder.greaterThan(from.<Long> get("myId"), myLastPidParam));
+			myNextPageQuery.where(builder.and(predicates.toArray(new Predicate[0])));
+			myNextPageQuery.orderBy(builder.asc(from.get("myId")));
+		}
+
+		private List<Predicate> createPredicates(CriteriaBuilder theBuilder, CriteriaQuery<?> theQuery, Root<ResourceTable> theFrom) {
+			List<Predicate> retVal = new ArrayList<Predicate>();
+			retVal.add(theBuilder.equal(theFrom.get("myResourceType"), myResourceName));
+			if (!myParams.isEmpty()) {
+				List<Predicate> searchPredicates = createSearchPredicates(theBuilder, theQuery, theFrom, myParams, myResolved);
+				if (searchPredicates.isEmpty()) {
+					myUnrestricted = true;
+					searchPredicates.add(theBuilder.disjunction());
+				}
+				retVal.addAll(searchPredicates);
+			}
+			return retVal;
+		}
+
+		private synchronized List<Long> fetchPids(int theFromIndex, int theToIndex) {
+			int count = theToIndex - theFromIndex;
+			if (count <= 0) {
+				return Collections.emptyList();
+			}
+
+			TypedQuery<Long> q;
+			if (myLastPid != null && theFromIndex == myNextIndex) {
+				q = myEntityManager.createQuery(myNextPageQuery);
+				q.setParameter(myLastPidParam, myLastPid);
+			} else {
+				q = myEntityManager.createQuery(myPageQuery);
+				q.setFirstResult(theFromIndex);
+			}
+			q.setMaxResults(count);
+			List<Long> retVal = q.getResultList();
+
+			if (!retVal.isEmpty()) {
+				myLastPid = retVal.get(retVal.size() - 1);
+				myNextIndex = theFromIndex + retVal.size();
+				if (retVal.size() < count) {
+					// We've seen the end of the results, so no need for a COUNT
+					mySize = myNextIndex;
+				}
+			}
+
+			return retVal;
+		}
+
+		@Override
+		public Set<Include> getIncludes() {
+			return myParams.getIncludes();
+		}
+
+		@Override
+		public InstantDt getPublished() {
+			return myPublished;
+		}
+
+		@Override
+		public String getResourceName() {
+			return myResourceName;
+		}
+
+		@Override
+		public List<Long> getResourcePids(int theFromIndex, int theToIndex) {
+			return fetchPids(theFromIndex, theToIndex);
+		}
+
+		@Override
+		public List<IResource> getResources(final int theFromIndex, final int theToIndex) {
+			TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+			return template.execute(new TransactionCallback<List<IResource>>() {
+				@Override
+				public List<IResource> doInTransaction(TransactionStatus theStatus) {
+					List<Long> pids = fetchPids(theFromIndex, theToIndex);
+					return loadSearchPage(pids, myParams.getIncludes());
+				}
+			});
+		}
+
+		/**
+		 * Returns <code>true</code> if the search had parameters, but none of them were ones which could restrict the
+		 * results
+		 */
+		boolean isUnrestricted() {
+			return myUnrestricted;
+		}
+
+		@Override
+		public synchronized int size() {
+			if (mySize == null) {
+				StopWatch w = new StopWatch();
+				TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+				Long count = template.execute(new TransactionCallback<Long>() {
+					@Override
+					public Long doInTransaction(TransactionStatus theStatus) {
+						CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+						CriteriaQuery<Long> cq = builder.createQuery(Long.class);
+						Root<ResourceTable> from = cq.from(ResourceTable.class);
+						cq.select(builder.count(from.get("myId")));
+						cq.where(builder.and(createPredicates(builder, cq, from).toArray(new Predicate[0])));
+						return myEntityManager.createQuery(cq).getSingleResult();
+					}
+				});
+				mySize = count.intValue();
+				ourLog.debug("Counted {} results for search on {} in {}ms", new Object[] { mySize, myResourceName, w.getMillisAndRestart() });
+			}
+			return mySize;
+		}
+	}
+
+	/**
+	 * The forced IDs and chained reference targets which have been looked up while building the predicates for a
+	 * search. Not thread safe.
+	 */
+	private class ResolvedReferences {
+
+		private final Map<ReferenceParam, PidSet> myChainTargets = new IdentityHashMap<ReferenceParam, PidSet>();
+		private final Map<String, Long> myForcedIdToPid = new HashMap<String, Long>();
+
+		/**
+		 * Returns the PIDs the given chained reference was found to point to, or <code>null</code> if it has not been
+		 * resolved yet
+		 */
+		PidSet getChainTargets(ReferenceParam theRef) {
+			return myChainTargets.get(theRef);
+		}
+
+		void putChainTargets(ReferenceParam theRef, PidSet theTargetPids) {
+			myChainTargets.put(theRef, theTargetPids);
+		}
+
+		/**
+		 * @throws ResourceNotFoundException
+		 *             If the ID does not exist (which is remembered too)
+		 */
+		Long translateForcedIdToPid(IdDt theId) {
+			String key = theId.getIdPart();
+			if (myForcedIdToPid.containsKey(key)) {
+				Long retVal = myForcedIdToPid.get(key);
+				if (retVal == null) {
+					throw new ResourceNotFoundException(theId);
+				}
+				return retVal;
+			}
+
+			try {
+				Long retVal = FhirResourceDao.this.translateForcedIdToPid(theId);
+				myForcedIdToPid.put(key, retVal);
+				return retVal;
+			} catch (ResourceNotFoundException e) {
+				myForcedIdToPid.put(key, null);
+				throw e;
+			}
+		}
+
+	}
+
+	/**
+	 * A single AND clause of a search, along with a rough estimate of how expensive (i.e. how unselective) it is
+	 * expected to be. Clauses are ordered cheapest first so that the database sees the most restrictive
+	 * conditions ahead of the broad ones (range scans over dates and quantities, prefix matches over strings).
+	 * <p>
+	 * Note that the costs are a fixed heuristic per parameter type, not a measured selectivity: no statistics about
+	 * the indexed values are consulted, so a token clause matching most of the table is still ordered ahead of a
+	 * date clause matching a handful of rows. The ordering only affects how the query is written, never which
+	 * resources match.
+	 * </p>
+	 */
+	private static class SearchClause implements Comparable<SearchClause> {
+		static final int COST_CHAINED_REFERENCE = 35;
+		static final int COST_COMPOSITE = 20;
+		static final int COST_DATE = 50;
+		static final int COST_EXACT_STRING = 20;
+		static final int COST_ID = 0;
+		static final int COST_LANGUAGE = 60;
+		static final int COST_NUMERIC = 40;
+		static final int COST_STRING = 30;
+		static final int COST_TOKEN = 10;
+
+		private final int myCost;
+		private final Predicate myPredicate;
+
+		SearchClause(Predicate thePredicate, int theCost) {
+			myPredicate = thePredicate;
+			myCost = theCost;
+		}
+
+		@Override
+		public int compareTo(SearchClause theO) {
+			return myCost < theO.myCost ? -1 : (myCost == theO.myCost ? 0 : 1);
+		}
+
+		Predicate getPredicate() {
+			return myPredicate;
+		}
+	}
+
+}
\ No newline at end of file
@@ -49,6 +49,7 @@ import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.jpa.entity.BaseHasResource;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
+import ca.uhn.fhir.jpa.util.PidSet;
 import ca.uhn.fhir.jpa.util.StopWatch;
 import ca.uhn.fhir.model.api.IQueryParameterAnd;
 import ca.uhn.fhir.model.api.IResource;
@@ -128,7 +129,7 @@ public class FhirSystemDao extends BaseFhirDao implements IFhirSystemDao {
 			}
 
 			String matchUrl = ResourceMetadataKeyEnum.LINK_SEARCH.get(nextResource);
-			Set<Long> candidateMatches = null;
+			PidSet candidateMatches = null;
 			if (StringUtils.isNotBlank(matchUrl)) {
 				candidateMatches = processMatchUrl(matchUrl, nextResource.getClass());
 			}
@@ -264,6 +265,8 @@ public class FhirSystemDao extends BaseFhirDao implements IFhirSystemDao {
 
 		ourLog.info("Re-flushing updated resource references and extracting search criteria");
 
+		int writeBatchSize = getConfig().getWriteBatchSize();
+		int pendingWrites = 0;
 		for (int i = 0; i < theResources.size(); i++) {
 			IResource resource = theResources.get(i);
 			ResourceTable table = persistedResources.get(i);
@@ -278,8 +281,15 @@ public class FhirSystemDao extends BaseFhirDao implements IFhirSystemDao {
 				ResourceMetadataKeyEnum.DELETED_AT.put(resource, new InstantDt(deletedTimestampOrNull));
 			}
 
-			updateEntity(resource, table, table.getId() != null, deletedTimestampOrNull);
+			updateEntity(resource, table, table.getId() != null, deletedTimestampOrNull, false);
+
+			pendingWrites++;
+			if (writeBatchSize > 0 && pendingWrites >= writeBatchSize) {
+				myEntityManager.flush();
+				pendingWrites = 0;
+			}
 		}
+		myEntityManager.flush();
 
 		long delay = System.currentTimeMillis() - start;
 		ourLog.info("Transaction completed in {}ms with {} creations and {} updates", new Object[] { delay, creations, updates });
@@ -306,11 +316,11 @@ public class FhirSystemDao extends BaseFhirDao implements IFhirSystemDao {
 		return entity;
 	}
 
-	private ResourceTable loadFirstEntityFromCandidateMatches(Set<Long> candidateMatches) {
-		return myEntityManager.find(ResourceTable.class, candidateMatches.iterator().next());
+	private ResourceTable loadFirstEntityFromCandidateMatches(PidSet candidateMatches) {
+		return myEntityManager.find(ResourceTable.class, candidateMatches.getPid(0));
 	}
 
-	private Set<Long> processMatchUrl(String theMatchUrl, Class<? extends IBaseResource> theResourceType) {
+	private PidSet processMatchUrl(String theMatchUrl, Class<? extends IBaseResource> theResourceType) {
 		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(theResourceType);
 
 		SearchParameterMap paramMap = new SearchParameterMap();
@@ -352,7 +362,7 @@ public class FhirSystemDao extends BaseFhirDao implements IFhirSystemDao {
 		}
 
 		IFhirResourceDao<? extends IResource> dao = getDao(theResourceType);
-		Set<Long> ids = dao.searchForIdsWithAndOr(paramMap);
+		PidSet ids = dao.searchForIdsWithAndOr(paramMap);
 
 		return ids;
 	}
@@ -0,0 +1,169 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of the mapping between forced (client assigned) resource IDs and the PIDs of the resources they
+ * belong to, in both directions. A single instance should be shared by all of the DAOs which use the same database,
+ * and it should be declared as a bean in the Spring context so that the DAOs can find it.
+ * <p>
+ * Mappings discovered within a database transaction are only added to the cache once that transaction commits, so a
+ * rolled back transaction can never leave behind a mapping for a forced ID which does not exist.
+ * </p>
+ */
+public class ForcedIdCache {
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private final Cache<String, Long> myForcedIdToPid;
+	private final Cache<Long, String> myPidToForcedId;
+
+	public ForcedIdCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param theMaximumSize
+	 *           The maximum number of mappings to hold. Once this is reached, the least recently used mappings are
+	 *           discarded.
+	 */
+	public ForcedIdCache(int theMaximumSize) {
+		Validate.isTrue(theMaximumSize > 0, "theMaximumSize must be greater than 0");
+		myForcedIdToPid = CacheBuilder.newBuilder().maximumSize(theMaximumSize).recordStats().build();
+		myPidToForcedId = CacheBuilder.newBuilder().maximumSize(theMaximumSize).build();
+	}
+
+	/**
+	 * Discards all cached mappings
+	 */
+	public void clear() {
+		myForcedIdToPid.invalidateAll();
+		myPidToForcedId.invalidateAll();
+	}
+
+	/**
+	 * Removes the mapping for the given forced ID (and its PID). This takes effect immediately, and is repeated when the
+	 * current transaction (if any) completes so that a mapping added concurrently by another transaction is also
+	 * removed.
+	 */
+	public void evict(final String theForcedId) {
+		doEvict(theForcedId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					doEvict(theForcedId);
+				}
+			});
+		}
+	}
+
+	private void doEvict(String theForcedId) {
+		Long pid = myForcedIdToPid.getIfPresent(theForcedId);
+		myForcedIdToPid.invalidate(theForcedId);
+		if (pid != null) {
+			myPidToForcedId.invalidate(pid);
+		}
+	}
+
+	/**
+	 * Returns the cached forced ID for the given PID, or <code>null</code> if it is not cached (either because the
+	 * resource has no forced ID, or because it has not been looked up recently)
+	 */
+	public String getForcedId(Long thePid) {
+		return myPidToForcedId.getIfPresent(thePid);
+	}
+
+	/**
+	 * Returns the number of lookups by forced ID which were answered from the cache
+	 */
+	public long getHitCount() {
+		return myForcedIdToPid.stats().hitCount();
+	}
+
+	/**
+	 * Returns the proportion of lookups by forced ID which were answered from the cache, or 1.0 if there have been no
+	 * lookups yet
+	 */
+	public double getHitRate() {
+		return myForcedIdToPid.stats().hitRate();
+	}
+
+	/**
+	 * Returns the number of lookups by forced ID which were not found in the cache and had to go to the database
+	 */
+	public long getMissCount() {
+		return myForcedIdToPid.stats().missCount();
+	}
+
+	/**
+	 * Returns the cached PID for the given forced ID, or <code>null</code> if it is not cached
+	 */
+	public Long getPid(String theForcedId) {
+		return myForcedIdToPid.getIfPresent(theForcedId);
+	}
+
+	/**
+	 * Returns the statistics of lookups by forced ID
+	 */
+	public CacheStats getStats() {
+		return myForcedIdToPid.stats();
+	}
+
+	/**
+	 * Adds a mapping which has been read from the database. If a transaction is active the mapping is only added once
+	 * it commits.
+	 */
+	public void put(final String theForcedId, final Long thePid) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					doPut(theForcedId, thePid);
+				}
+			});
+		} else {
+			doPut(theForcedId, thePid);
+		}
+	}
+
+	private void doPut(String theForcedId, Long thePid) {
+		myForcedIdToPid.put(theForcedId, thePid);
+		myPidToForcedId.put(thePid, theForcedId);
+	}
+
+	/**
+	 * Returns the approximate number of cached mappings
+	 */
+	public long size() {
+		return myForcedIdToPid.size();
+	}
+
+}
@@ -22,6 +22,24 @@ package ca.uhn.fhir.jpa.dao;
 
 public interface IDao {
 
+	/**
+	 * Returns the total number of search index rows (search parameters and resource links) which have been inserted by
+	 * this DAO since it was created
+	 */
+	long getIndexRowsAddedCount();
+
+	/**
+	 * Returns the total number of search index rows (search parameters and resource links) which have been deleted by
+	 * this DAO since it was created
+	 */
+	long getIndexRowsRemovedCount();
+
+	/**
+	 * Returns the total number of search index rows (search parameters and resource links) which were left untouched by
+	 * updates performed by this DAO because their indexed values had not changed
+	 */
+	long getIndexRowsUnchangedCount();
+
 	void registerDaoListener(IDaoListener theListener);
 
 }
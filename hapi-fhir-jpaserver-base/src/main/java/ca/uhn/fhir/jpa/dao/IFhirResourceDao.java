@@ -21,12 +21,15 @@ package ca.uhn.fhir.jpa.dao;
  */
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import ca.uhn.fhir.jpa.entity.BaseHasResource;
+import ca.uhn.fhir.jpa.util.PidSet;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.api.TagList;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.MethodOutcome;
@@ -52,6 +55,12 @@ public interface IFhirResourceDao<T extends IResource> extends IDao {
 	IBundleProvider history(IdDt theId,Date theSince);
 
 	IBundleProvider history(Long theId, Date theSince);
+
+	/**
+	 * Loads one page of search results: the resources with the given PIDs (in the given order), along with any
+	 * resources they refer to which were requested using the given includes
+	 */
+	List<IResource> loadSearchPage(List<Long> thePids, Set<Include> theIncludes);
 	
 	/**
 	 * 
@@ -71,13 +80,13 @@ public interface IFhirResourceDao<T extends IResource> extends IDao {
 
 	IBundleProvider search(String theParameterName, IQueryParameterType theValue);
 
-	Set<Long> searchForIds(Map<String, IQueryParameterType> theParams);
+	PidSet searchForIds(Map<String, IQueryParameterType> theParams);
 
-	Set<Long> searchForIds(String theParameterName, IQueryParameterType theValue);
+	PidSet searchForIds(String theParameterName, IQueryParameterType theValue);
 
 	MethodOutcome update(T theResource, IdDt theId);
 
-	Set<Long> searchForIdsWithAndOr(SearchParameterMap theParams);
+	PidSet searchForIdsWithAndOr(SearchParameterMap theParams);
 
 	/**
 	 * @param theCheckForForcedId If true, this method should fail if the requested ID contains
@@ -0,0 +1,52 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.Set;
+
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+
+/**
+ * Search results which are identified by the PIDs of the matching resources, so that they can be stored as a list of
+ * PIDs (e.g. by {@link ca.uhn.fhir.jpa.provider.JpaPagingProvider}) and loaded again later using
+ * {@link IFhirResourceDao#loadSearchPage(List, Set)}.
+ */
+public interface IPidBundleProvider extends IBundleProvider {
+
+	/**
+	 * Returns the <code>_include</code>s requested by the search
+	 */
+	Set<Include> getIncludes();
+
+	/**
+	 * Returns the name of the resource type which was searched for
+	 */
+	String getResourceName();
+
+	/**
+	 * Returns the PIDs of the matching resources, in order, from <code>theFromIndex</code> (inclusive) to
+	 * <code>theToIndex</code> (exclusive). Must be called within a transaction.
+	 */
+	List<Long> getResourcePids(int theFromIndex, int theToIndex);
+
+}
@@ -33,14 +33,20 @@ import ca.uhn.fhir.model.api.IResource;
 
 interface ISearchParamExtractor {
 
-	public abstract List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, IResource theResource);
+	/**
+	 * Walks the resource once and collects the values of all of its search parameters, which are then passed to each of
+	 * the <code>extractSearchParamXXX</code> methods
+	 */
+	public abstract SearchParamExtractionPlan.Values extractValues(IResource theResource);
 
-	public abstract ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, IResource theResource);
+	public abstract List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues);
 
-	public abstract List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, IResource theResource);
+	public abstract ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues);
 
-	public abstract List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, IResource theResource);
+	public abstract List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues);
 
-	public abstract List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, IResource theResource);
+	public abstract List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues);
+
+	public abstract List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues);
 
 }
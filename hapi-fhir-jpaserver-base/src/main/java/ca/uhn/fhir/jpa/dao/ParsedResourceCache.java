@@ -0,0 +1,209 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Memory bounded cache of parsed resource versions, keyed by resource PID and version. Declare an instance as a bean in
+ * the Spring context to enable it.
+ * <p>
+ * Cached instances are never handed out. Each caller receives its own deep copy (see
+ * {@link ca.uhn.fhir.util.FhirTerser#copy(IResource)}), which it is free to modify, and which is much cheaper to
+ * make than decoding and parsing the stored body again. Cached instances hold the resource body only: the metadata
+ * which comes from the database row (ID, version, timestamps, tags) is populated on each copy by the caller.
+ * </p>
+ */
+public class ParsedResourceCache {
+
+	public static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024L * 1024L;
+	public static final int DEFAULT_MAXIMUM_ENTRY_BYTES = 1024 * 1024;
+
+	/**
+	 * Rough per-entry overhead (key, cache entry and resource instance) used when weighing entries
+	 */
+	private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+	/**
+	 * Rough number of bytes a parsed resource takes up for every character (or byte) of its encoded form
+	 */
+	private static final int PARSED_BYTES_PER_ENCODED_UNIT = 8;
+
+	private final Cache<Key, Entry> myCache;
+	private final int myMaximumEntryBytes;
+
+	public ParsedResourceCache() {
+		this(DEFAULT_MAXIMUM_BYTES, DEFAULT_MAXIMUM_ENTRY_BYTES);
+	}
+
+	/**
+	 * @param theMaximumBytes
+	 *           The approximate maximum amount of memory the cached resources may use. Once this is reached, the least
+	 *           recently used entries are discarded.
+	 * @param theMaximumEntryBytes
+	 *           Resources which are estimated to be larger than this are never cached
+	 */
+	public ParsedResourceCache(long theMaximumBytes, int theMaximumEntryBytes) {
+		Validate.isTrue(theMaximumBytes > 0, "theMaximumBytes must be greater than 0");
+		Validate.isTrue(theMaximumEntryBytes > 0, "theMaximumEntryBytes must be greater than 0");
+		myMaximumEntryBytes = theMaximumEntryBytes;
+		myCache = CacheBuilder.newBuilder().maximumWeight(theMaximumBytes).weigher(new Weigher<Key, Entry>() {
+			@Override
+			public int weigh(Key theKey, Entry theValue) {
+				return theValue.myWeight;
+			}
+		}).recordStats().build();
+	}
+
+	/**
+	 * Discards all cached resources
+	 */
+	public void clear() {
+		myCache.invalidateAll();
+	}
+
+	/**
+	 * Removes the given version of a resource if the current transaction is rolled back. Stored versions never change,
+	 * but the version number of an update which is rolled back will be used again by the next update, so anything
+	 * cached for it while the transaction was running must not survive it.
+	 */
+	public void evictOnRollback(long theResourcePid, long theVersion) {
+		final Key key = new Key(theResourcePid, theVersion);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					if (theStatus != TransactionSynchronization.STATUS_COMMITTED) {
+						myCache.invalidate(key);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns a copy of the cached given version of a resource, or <code>null</code> if it is not cached
+	 */
+	public IResource get(long theResourcePid, long theVersion) {
+		Entry entry = myCache.getIfPresent(new Key(theResourcePid, theVersion));
+		if (entry == null) {
+			return null;
+		}
+		return entry.myContext.newTerser().copy(entry.myResource);
+	}
+
+	/**
+	 * Returns the number of lookups which were answered from the cache
+	 */
+	public long getHitCount() {
+		return myCache.stats().hitCount();
+	}
+
+	/**
+	 * Returns the number of lookups which were not found in the cache
+	 */
+	public long getMissCount() {
+		return myCache.stats().missCount();
+	}
+
+	/**
+	 * Adds a freshly parsed version of a resource, unless it is too large to be cached. If it is cached, the cache keeps
+	 * the given instance and a copy is returned for the caller to use instead, since the given instance must not be
+	 * modified once it is cached.
+	 * 
+	 * @param theContext
+	 *           The context the resource was parsed with
+	 * @param theResource
+	 *           The parsed resource, without any metadata from the database row
+	 * @param theEncodedLength
+	 *           The length of the encoded form the resource was parsed from, used to estimate its size
+	 * @return The resource the caller should use
+	 */
+	public IResource put(long theResourcePid, long theVersion, FhirContext theContext, IResource theResource, int theEncodedLength) {
+		long weight = ENTRY_OVERHEAD_BYTES + ((long) theEncodedLength * PARSED_BYTES_PER_ENCODED_UNIT);
+		if (weight > myMaximumEntryBytes) {
+			return theResource;
+		}
+
+		/*
+		 * Copying reads (and so lazily initializes) everything later copies will read, so the instance is not
+		 * modified any more once it is published to other threads by the put below
+		 */
+		IResource retVal = theContext.newTerser().copy(theResource);
+		myCache.put(new Key(theResourcePid, theVersion), new Entry(theContext, theResource, (int) weight));
+		return retVal;
+	}
+
+	/**
+	 * Returns the approximate number of cached entries
+	 */
+	public long size() {
+		return myCache.size();
+	}
+
+	private static final class Entry {
+		private final FhirContext myContext;
+		private final IResource myResource;
+		private final int myWeight;
+
+		private Entry(FhirContext theContext, IResource theResource, int theWeight) {
+			myContext = theContext;
+			myResource = theResource;
+			myWeight = theWeight;
+		}
+	}
+
+	private static final class Key {
+		private final long myResourcePid;
+		private final long myVersion;
+
+		private Key(long theResourcePid, long theVersion) {
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+		}
+
+		@Override
+		public boolean equals(Object theObj) {
+			if (!(theObj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) theObj;
+			return myResourcePid == other.myResourcePid && myVersion == other.myVersion;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (myResourcePid ^ (myResourcePid >>> 32)) * 31 + (int) (myVersion ^ (myVersion >>> 32));
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Parses stored resources in the background, so that the DAOs can parse larger lists of resources (e.g. a page of
+ * search results along with its _include targets) in parallel. Declare an instance as a bean in the Spring context to
+ * enable it. Without one, resources are always parsed on the calling thread.
+ * <p>
+ * The number of threads is set by {@link DaoConfig#setParseThreadCount(int)} when the bean is started, and the threads
+ * are stopped when the context is closed. Threads are created as needed and stop once they have been idle for a
+ * minute, so an executor which is not being used holds no threads.
+ * </p>
+ */
+public class ResourceParseExecutor {
+
+	private static final AtomicInteger ourExecutorCount = new AtomicInteger();
+
+	@Autowired
+	private DaoConfig myConfig;
+
+	private volatile ThreadPoolExecutor myExecutor;
+
+	/**
+	 * Returns <code>true</code> if this executor has been started with at least one thread, and has not been shut
+	 * down
+	 */
+	public boolean isEnabled() {
+		ThreadPoolExecutor executor = myExecutor;
+		return executor != null && !executor.isShutdown();
+	}
+
+	/**
+	 * Stops the threads of this executor. Tasks which have not yet started are cancelled.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		ThreadPoolExecutor executor = myExecutor;
+		if (executor != null) {
+			for (Runnable next : executor.shutdownNow()) {
+				((Future<?>) next).cancel(false);
+			}
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		int threadCount = myConfig.getParseThreadCount();
+		if (threadCount == 0) {
+			return;
+		}
+
+		final String threadNamePrefix = "hapi-fhir-jpa-parse-" + ourExecutorCount.incrementAndGet() + "-";
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger myThreadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable theRunnable) {
+				Thread retVal = new Thread(theRunnable, threadNamePrefix + myThreadCount.incrementAndGet());
+				retVal.setDaemon(true);
+				return retVal;
+			}
+		};
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+		myExecutor = executor;
+	}
+
+	/**
+	 * Submits a task to be run in the background
+	 * 
+	 * @throws RejectedExecutionException
+	 *            If this executor is not {@link #isEnabled() enabled}
+	 */
+	<T> Future<T> submit(Callable<T> theTask) {
+		ThreadPoolExecutor executor = myExecutor;
+		if (executor == null) {
+			throw new RejectedExecutionException("Executor has not been started");
+		}
+		return executor.submit(theTask);
+	}
+
+}
@@ -0,0 +1,284 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hl7.fhir.instance.model.IBase;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.valueset.SearchParamTypeEnum;
+
+/**
+ * The paths of all of the search parameters of one resource type, compiled into a tree of child names which is shared
+ * between parameters (e.g. <code>Patient.name.family</code> and <code>Patient.name.given</code> share the
+ * <code>name</code> node). {@link #extract(IResource)} walks a resource along this tree once and collects the values
+ * of every parameter, so that indexing a resource doesn't resolve each path separately from the root.
+ * <p>
+ * Instances are immutable once compiled and may be shared between threads.
+ * </p>
+ */
+class SearchParamExtractionPlan {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractionPlan.class);
+
+	private final FhirContext myContext;
+	private final RuntimeResourceDefinition myResourceDefinition;
+	private final Node myRoot;
+	private final Map<SearchParamTypeEnum, List<RuntimeSearchParam>> myParamsByType;
+	private final Map<String, int[]> mySlotsByParamName;
+	private int mySlotCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theContext
+	 *            The context
+	 * @param theResourceDefinition
+	 *            The resource type to compile the search parameters of
+	 */
+	public SearchParamExtractionPlan(FhirContext theContext, RuntimeResourceDefinition theResourceDefinition) {
+		myContext = theContext;
+		myResourceDefinition = theResourceDefinition;
+		myRoot = new Node(null);
+		myParamsByType = new EnumMap<SearchParamTypeEnum, List<RuntimeSearchParam>>(SearchParamTypeEnum.class);
+		mySlotsByParamName = new HashMap<String, int[]>();
+
+		for (RuntimeSearchParam nextSpDef : theResourceDefinition.getSearchParams()) {
+			String nextPathsUnsplit = nextSpDef.getPath();
+			if (isBlank(nextPathsUnsplit)) {
+				continue;
+			}
+
+			List<RuntimeSearchParam> params = myParamsByType.get(nextSpDef.getParamType());
+			if (params == null) {
+				params = new ArrayList<RuntimeSearchParam>();
+				myParamsByType.put(nextSpDef.getParamType(), params);
+			}
+			params.add(nextSpDef);
+
+			List<Integer> slots = new ArrayList<Integer>();
+			for (String nextPath : nextPathsUnsplit.split("\\|")) {
+				String nextPathTrimmed = nextPath.trim();
+				String[] parts = nextPathTrimmed.split("\\.");
+				if (parts.length < 2 || !isResolvable(theResourceDefinition, parts)) {
+					ourLog.warn("Failed to compile path[{}] in resource type[{}], values will not be indexed", nextPathTrimmed, theResourceDefinition.getName());
+					continue;
+				}
+
+				// The first part is the resource name
+				Node node = myRoot;
+				for (int i = 1; i < parts.length; i++) {
+					node = node.getOrAddChild(parts[i]);
+				}
+				int slot = mySlotCount++;
+				node.addSlot(slot);
+				slots.add(slot);
+			}
+
+			int[] slotArray = new int[slots.size()];
+			for (int i = 0; i < slotArray.length; i++) {
+				slotArray[i] = slots.get(i);
+			}
+			mySlotsByParamName.put(nextSpDef.getName(), slotArray);
+		}
+
+		myRoot.compile();
+	}
+
+	/**
+	 * Walks the given resource once and returns the values of all of its search parameters
+	 */
+	public Values extract(IResource theResource) {
+		@SuppressWarnings("unchecked")
+		List<Object>[] slotValues = new List[mySlotCount];
+		walk(myResourceDefinition, theResource, myRoot, slotValues);
+		return new Values(slotValues);
+	}
+
+	public RuntimeResourceDefinition getResourceDefinition() {
+		return myResourceDefinition;
+	}
+
+	/**
+	 * Returns the search parameters of the given type which have a path, in the order they are declared
+	 */
+	public List<RuntimeSearchParam> getSearchParams(SearchParamTypeEnum theParamType) {
+		List<RuntimeSearchParam> retVal = myParamsByType.get(theParamType);
+		if (retVal == null) {
+			return Collections.emptyList();
+		}
+		return retVal;
+	}
+
+	private void walk(BaseRuntimeElementCompositeDefinition<?> theDefinition, Object theElement, Node theNode, List<Object>[] theSlotValues) {
+		for (Node nextNode : theNode.myChildArray) {
+			BaseRuntimeChildDefinition nextChildDef = theDefinition.getChildByName(nextNode.myName);
+			if (nextChildDef == null) {
+				continue;
+			}
+
+			List<? extends IBase> values = nextChildDef.getAccessor().getValues(theElement);
+			if (values.isEmpty()) {
+				continue;
+			}
+
+			boolean choice = nextChildDef instanceof RuntimeChildChoiceDefinition;
+			for (IBase nextValue : values) {
+				if (nextValue == null) {
+					continue;
+				}
+				if (choice && !nextNode.myName.equals(nextChildDef.getChildNameByDatatype(nextValue.getClass()))) {
+					continue;
+				}
+
+				for (int nextSlot : nextNode.mySlots) {
+					List<Object> slotValues = theSlotValues[nextSlot];
+					if (slotValues == null) {
+						slotValues = new ArrayList<Object>(values.size());
+						theSlotValues[nextSlot] = slotValues;
+					}
+					slotValues.add(nextValue);
+				}
+
+				if (nextNode.myChildArray.length > 0) {
+					BaseRuntimeElementDefinition<?> nextDef = myContext.getElementDefinition(nextValue.getClass());
+					if (nextDef instanceof BaseRuntimeElementCompositeDefinition) {
+						walk((BaseRuntimeElementCompositeDefinition<?>) nextDef, nextValue, nextNode, theSlotValues);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isResolvable(RuntimeResourceDefinition theResourceDefinition, String[] theParts) {
+		BaseRuntimeElementCompositeDefinition<?> currentDef = theResourceDefinition;
+		for (int i = 1; i < theParts.length; i++) {
+			BaseRuntimeChildDefinition childDef = currentDef.getChildByName(theParts[i]);
+			if (childDef == null) {
+				return false;
+			}
+			if (i < theParts.length - 1) {
+				BaseRuntimeElementDefinition<?> elementDef = childDef.getChildByName(theParts[i]);
+				if (!(elementDef instanceof BaseRuntimeElementCompositeDefinition)) {
+					return false;
+				}
+				currentDef = (BaseRuntimeElementCompositeDefinition<?>) elementDef;
+			}
+		}
+		return true;
+	}
+
+	private static class Node {
+		private Node[] myChildArray;
+		private Map<String, Node> myChildren = new LinkedHashMap<String, Node>();
+		private final String myName;
+		private int[] mySlots = new int[0];
+
+		Node(String theName) {
+			myName = theName;
+		}
+
+		void addSlot(int theSlot) {
+			int[] slots = new int[mySlots.length + 1];
+			System.arraycopy(mySlots, 0, slots, 0, mySlots.length);
+			slots[mySlots.length] = theSlot;
+			mySlots = slots;
+		}
+
+		void compile() {
+			myChildArray = myChildren.values().toArray(new Node[myChildren.size()]);
+			myChildren = null;
+			for (Node next : myChildArray) {
+				next.compile();
+			}
+		}
+
+		Node getOrAddChild(String theName) {
+			Node retVal = myChildren.get(theName);
+			if (retVal == null) {
+				retVal = new Node(theName);
+				myChildren.put(theName, retVal);
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * The values extracted from one resource
+	 */
+	public class Values {
+		private final List<Object>[] mySlotValues;
+
+		private Values(List<Object>[] theSlotValues) {
+			mySlotValues = theSlotValues;
+		}
+
+		public RuntimeResourceDefinition getResourceDefinition() {
+			return myResourceDefinition;
+		}
+
+		/**
+		 * Returns the search parameters of the given type which have a path, in the order they are declared
+		 */
+		public List<RuntimeSearchParam> getSearchParams(SearchParamTypeEnum theParamType) {
+			return SearchParamExtractionPlan.this.getSearchParams(theParamType);
+		}
+
+		/**
+		 * Returns the values found at the path(s) of the given search parameter, in the same order as
+		 * {@link ca.uhn.fhir.util.FhirTerser#getValues(IResource, String)} would return them for each path in turn
+		 */
+		public List<Object> getValues(RuntimeSearchParam theSearchParam) {
+			int[] slots = mySlotsByParamName.get(theSearchParam.getName());
+			if (slots == null) {
+				return Collections.emptyList();
+			}
+			if (slots.length == 1) {
+				List<Object> retVal = mySlotValues[slots[0]];
+				return retVal != null ? retVal : Collections.<Object> emptyList();
+			}
+			List<Object> retVal = new ArrayList<Object>();
+			for (int nextSlot : slots) {
+				if (mySlotValues[nextSlot] != null) {
+					retVal.addAll(mySlotValues[nextSlot]);
+				}
+			}
+			return retVal;
+		}
+
+	}
+
+}
@@ -36,7 +36,6 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamDate;
@@ -47,7 +46,6 @@ import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.model.api.IDatatype;
 import ca.uhn.fhir.model.api.IPrimitiveDatatype;
-import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.base.composite.BaseHumanNameDt;
 import ca.uhn.fhir.model.dstu.composite.AddressDt;
 import ca.uhn.fhir.model.dstu.composite.CodeableConceptDt;
@@ -63,26 +61,19 @@ import ca.uhn.fhir.model.primitive.BaseDateTimeDt;
 import ca.uhn.fhir.model.primitive.IntegerDt;
 import ca.uhn.fhir.model.primitive.StringDt;
 import ca.uhn.fhir.model.primitive.UriDt;
-import ca.uhn.fhir.util.FhirTerser;
 
-class SearchParamExtractorDstu1 implements ISearchParamExtractor {
+class SearchParamExtractorDstu1 extends BaseSearchParamExtractor {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorDstu1.class);
-	private FhirContext myContext;
 
 	public SearchParamExtractorDstu1(FhirContext theContext) {
-		myContext = theContext;
+		super(theContext);
 	}
 
 	@Override
-	public List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, IResource theResource) {
+	public List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamDate> retVal = new ArrayList<ResourceIndexedSearchParamDate>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.DATE) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.DATE)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
@@ -93,7 +84,7 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 				multiType = true;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null) {
 					continue;
 				}
@@ -131,21 +122,16 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 	}
 
 	@Override
-	public ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, IResource theResource) {
+	public ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamNumber> retVal = new ArrayList<ResourceIndexedSearchParamNumber>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.NUMBER) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.NUMBER)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -228,21 +214,16 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 	}
 
 	@Override
-	public List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, IResource theResource) {
+	public List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamQuantity> retVal = new ArrayList<ResourceIndexedSearchParamQuantity>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.QUANTITY) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.QUANTITY)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -278,22 +259,17 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 	}
 
 	@Override
-	public List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, IResource theResource) {
+	public List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamString> retVal = new ArrayList<ResourceIndexedSearchParamString>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.STRING) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.STRING)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				// TODO: implement phoenetic, and any others that have no path
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -366,15 +342,10 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 	}
 
 	@Override
-	public List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, IResource theResource) {
+	public List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<BaseResourceIndexedSearchParam> retVal = new ArrayList<BaseResourceIndexedSearchParam>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.TOKEN) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.TOKEN)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
@@ -388,7 +359,7 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 			List<String> systems = new ArrayList<String>();
 			List<String> codes = new ArrayList<String>();
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject instanceof IdentifierDt) {
 					IdentifierDt nextValue = (IdentifierDt) nextObject;
 					if (nextValue.isEmpty()) {
@@ -475,20 +446,4 @@ class SearchParamExtractorDstu1 implements ISearchParamExtractor {
 		return retVal;
 	}
 
-	private List<Object> extractValues(String thePaths, IResource theResource) {
-		List<Object> values = new ArrayList<Object>();
-		String[] nextPathsSplit = thePaths.split("\\|");
-		FhirTerser t = myContext.newTerser();
-		for (String nextPath : nextPathsSplit) {
-			String nextPathTrimmed = nextPath.trim();
-			try {
-				values.addAll(t.getValues(theResource, nextPathTrimmed));
-			} catch (Exception e) {
-				RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-				ourLog.warn("Failed to index values from path[{}] in resource type[{}]: ", nextPathTrimmed, def.getName(), e.toString());
-			}
-		}
-		return values;
-	}
-
 }
@@ -37,7 +37,6 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamDate;
@@ -48,7 +47,6 @@ import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.model.api.IDatatype;
 import ca.uhn.fhir.model.api.IPrimitiveDatatype;
-import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.base.composite.BaseHumanNameDt;
 import ca.uhn.fhir.model.dstu.valueset.SearchParamTypeEnum;
 import ca.uhn.fhir.model.dstu2.composite.AddressDt;
@@ -64,32 +62,25 @@ import ca.uhn.fhir.model.primitive.BaseDateTimeDt;
 import ca.uhn.fhir.model.primitive.IntegerDt;
 import ca.uhn.fhir.model.primitive.StringDt;
 import ca.uhn.fhir.model.primitive.UriDt;
-import ca.uhn.fhir.util.FhirTerser;
 
-class SearchParamExtractorDstu2 implements ISearchParamExtractor {
+class SearchParamExtractorDstu2 extends BaseSearchParamExtractor {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorDstu2.class);
-	private FhirContext myContext;
 
 	public SearchParamExtractorDstu2(FhirContext theContext) {
-		myContext = theContext;
+		super(theContext);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see ca.uhn.fhir.jpa.dao.ISearchParamExtractor#extractSearchParamDates(ca.uhn.fhir.jpa.entity.ResourceTable,
-	 * ca.uhn.fhir.model.api.IResource)
+	 * ca.uhn.fhir.jpa.dao.SearchParamExtractionPlan.Values)
 	 */
 	@Override
-	public List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, IResource theResource) {
+	public List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamDate> retVal = new ArrayList<ResourceIndexedSearchParamDate>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.DATE) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.DATE)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
@@ -100,7 +91,7 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 				multiType = true;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null) {
 					continue;
 				}
@@ -141,24 +132,19 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 	 * (non-Javadoc)
 	 * 
 	 * @see ca.uhn.fhir.jpa.dao.ISearchParamExtractor#extractSearchParamNumber(ca.uhn.fhir.jpa.entity.ResourceTable,
-	 * ca.uhn.fhir.model.api.IResource)
+	 * ca.uhn.fhir.jpa.dao.SearchParamExtractionPlan.Values)
 	 */
 	@Override
-	public ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, IResource theResource) {
+	public ArrayList<ResourceIndexedSearchParamNumber> extractSearchParamNumber(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamNumber> retVal = new ArrayList<ResourceIndexedSearchParamNumber>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.NUMBER) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.NUMBER)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -244,24 +230,19 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 	 * (non-Javadoc)
 	 * 
 	 * @see ca.uhn.fhir.jpa.dao.ISearchParamExtractor#extractSearchParamQuantity(ca.uhn.fhir.jpa.entity.ResourceTable,
-	 * ca.uhn.fhir.model.api.IResource)
+	 * ca.uhn.fhir.jpa.dao.SearchParamExtractionPlan.Values)
 	 */
 	@Override
-	public List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, IResource theResource) {
+	public List<ResourceIndexedSearchParamQuantity> extractSearchParamQuantity(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamQuantity> retVal = new ArrayList<ResourceIndexedSearchParamQuantity>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.QUANTITY) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.QUANTITY)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -300,25 +281,20 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 	 * (non-Javadoc)
 	 * 
 	 * @see ca.uhn.fhir.jpa.dao.ISearchParamExtractor#extractSearchParamStrings(ca.uhn.fhir.jpa.entity.ResourceTable,
-	 * ca.uhn.fhir.model.api.IResource)
+	 * ca.uhn.fhir.jpa.dao.SearchParamExtractionPlan.Values)
 	 */
 	@Override
-	public List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, IResource theResource) {
+	public List<ResourceIndexedSearchParamString> extractSearchParamStrings(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<ResourceIndexedSearchParamString> retVal = new ArrayList<ResourceIndexedSearchParamString>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.STRING) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.STRING)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				// TODO: implement phonetic, and any others that have no path
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -394,18 +370,13 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 	 * (non-Javadoc)
 	 * 
 	 * @see ca.uhn.fhir.jpa.dao.ISearchParamExtractor#extractSearchParamTokens(ca.uhn.fhir.jpa.entity.ResourceTable,
-	 * ca.uhn.fhir.model.api.IResource)
+	 * ca.uhn.fhir.jpa.dao.SearchParamExtractionPlan.Values)
 	 */
 	@Override
-	public List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, IResource theResource) {
+	public List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, SearchParamExtractionPlan.Values theValues) {
 		ArrayList<BaseResourceIndexedSearchParam> retVal = new ArrayList<BaseResourceIndexedSearchParam>();
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
-			if (nextSpDef.getParamType() != SearchParamTypeEnum.TOKEN) {
-				continue;
-			}
-
+		for (RuntimeSearchParam nextSpDef : theValues.getSearchParams(SearchParamTypeEnum.TOKEN)) {
 			String nextPath = nextSpDef.getPath();
 			if (isBlank(nextPath)) {
 				continue;
@@ -419,7 +390,7 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 			List<String> systems = new ArrayList<String>();
 			List<String> codes = new ArrayList<String>();
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : theValues.getValues(nextSpDef)) {
 				if (nextObject instanceof IdentifierDt) {
 					IdentifierDt nextValue = (IdentifierDt) nextObject;
 					if (nextValue.isEmpty()) {
@@ -506,20 +477,4 @@ class SearchParamExtractorDstu2 implements ISearchParamExtractor {
 		return retVal;
 	}
 
-	private List<Object> extractValues(String thePaths, IResource theResource) {
-		List<Object> values = new ArrayList<Object>();
-		String[] nextPathsSplit = thePaths.split("\\|");
-		FhirTerser t = myContext.newTerser();
-		for (String nextPath : nextPathsSplit) {
-			String nextPathTrimmed = nextPath.trim();
-			try {
-				values.addAll(t.getValues(theResource, nextPathTrimmed));
-			} catch (Exception e) {
-				RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-				ourLog.warn("Failed to index values from path[{}] in resource type[{}]: ", nextPathTrimmed, def.getName(), e.toString());
-			}
-		}
-		return values;
-	}
-
 }
@@ -29,6 +29,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.SequenceGenerator;
 
 @MappedSuperclass
 public abstract class BaseResourceIndexedSearchParam implements Serializable {
@@ -36,7 +37,8 @@ public abstract class BaseResourceIndexedSearchParam implements Serializable {
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@SequenceGenerator(name = "SEQ_SPIDX_ID", sequenceName = "SEQ_SPIDX_ID", allocationSize = ResourceTable.ID_ALLOCATION_SIZE)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_SPIDX_ID")
 	@Column(name = "SP_ID")
 	private Long myId;
 
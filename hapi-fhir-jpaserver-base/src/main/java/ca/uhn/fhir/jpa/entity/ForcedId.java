@@ -34,7 +34,10 @@ import javax.persistence.UniqueConstraint;
 
 @Entity()
 @Table(name = "HFJ_FORCED_ID", uniqueConstraints = { @UniqueConstraint(name = "IDX_FORCEDID", columnNames = { "FORCED_ID" }) })
-@NamedQueries(@NamedQuery(name = "Q_GET_FORCED_ID", query = "SELECT f FROM ForcedId f WHERE myForcedId = :ID"))
+@NamedQueries({
+	@NamedQuery(name = "Q_GET_FORCED_ID", query = "SELECT f FROM ForcedId f WHERE myForcedId = :ID"),
+	@NamedQuery(name = "Q_GET_FORCED_IDS", query = "SELECT f FROM ForcedId f WHERE myForcedId IN :IDS")
+})
 public class ForcedId {
 
 	public static final int MAX_FORCED_ID_LENGTH = 100;
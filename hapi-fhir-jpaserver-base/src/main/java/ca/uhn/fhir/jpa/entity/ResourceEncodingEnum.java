@@ -21,15 +21,65 @@ package ca.uhn.fhir.jpa.entity;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.util.DictionaryDeflateBodyCodec;
+import ca.uhn.fhir.jpa.util.GZipBodyCodec;
+import ca.uhn.fhir.jpa.util.IResourceBodyCodec;
+import ca.uhn.fhir.jpa.util.RawBodyCodec;
+import ca.uhn.fhir.jpa.util.SnappyBodyCodec;
 import ca.uhn.fhir.parser.IParser;
 
+/**
+ * The format in which resource bodies are stored in the database. The constant is stored in each row (so names must
+ * not exceed 5 characters), which means rows written in any format remain readable when the configured format
+ * changes.
+ */
 public enum ResourceEncodingEnum {
 
 	/** Json */
-	JSON,
+	JSON(new RawBodyCodec()),
 	
-	/** Json Compressed */
-	JSONC;
+	/** Json Compressed (GZip) */
+	JSONC(new GZipBodyCodec()),
+
+	/** Json Compressed using Deflate with a preset dictionary of common FHIR JSON strings */
+	JSOND(new DictionaryDeflateBodyCodec()),
+
+	/** Json Compressed using Snappy, which is much faster than GZip but compresses less */
+	JSONS(new SnappyBodyCodec()),
+
+	/**
+	 * CBOR, the binary form of the JSON structure, which is considerably faster to parse than JSON. The bytes written
+	 * by the parser are stored as-is, so this codec's text methods do not apply to it.
+	 */
+	CBOR(new RawBodyCodec()) {
+		@Override
+		public boolean isBinary() {
+			return true;
+		}
+
+		@Override
+		public IParser newParser(FhirContext theContext) {
+			return theContext.newCborParser();
+		}
+	};
+
+	private final IResourceBodyCodec myCodec;
+
+	private ResourceEncodingEnum(IResourceBodyCodec theCodec) {
+		myCodec = theCodec;
+	}
+
+	public IResourceBodyCodec getCodec() {
+		return myCodec;
+	}
+
+	/**
+	 * Returns <code>true</code> if the stored bytes are not resource text, in which case they must be parsed from an
+	 * {@link java.io.InputStream} and can not be cached as text
+	 */
+	public boolean isBinary() {
+		return false;
+	}
 
 	public IParser newParser(FhirContext theContext) {
 		return theContext.newJsonParser();
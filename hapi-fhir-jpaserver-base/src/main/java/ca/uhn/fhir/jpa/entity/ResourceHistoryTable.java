@@ -32,6 +32,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
@@ -49,7 +50,8 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 
 
 	@Id
-	@GeneratedValue(strategy=GenerationType.AUTO)
+	@SequenceGenerator(name = "SEQ_RESOURCE_HISTORY_ID", sequenceName = "SEQ_RESOURCE_HISTORY_ID", allocationSize = ResourceTable.ID_ALLOCATION_SIZE)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_RESOURCE_HISTORY_ID")
 	@Column(name="PID")
 	private Long myId;
 
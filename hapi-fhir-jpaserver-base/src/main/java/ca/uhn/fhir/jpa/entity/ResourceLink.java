@@ -29,6 +29,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
 import org.apache.commons.lang3.Validate;
@@ -41,7 +42,8 @@ public class ResourceLink implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@SequenceGenerator(name = "SEQ_RESLINK_ID", sequenceName = "SEQ_RESLINK_ID", allocationSize = ResourceTable.ID_ALLOCATION_SIZE)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_RESLINK_ID")
 	@Id
 	@Column(name = "PID")
 	private Long myId;
@@ -62,6 +62,12 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Number of IDs fetched from the database sequence at a time for the index and history tables. This means
+	 * that IDs are known without a round trip to the database, so Hibernate is able to batch the inserts.
+	 */
+	static final int ID_ALLOCATION_SIZE = 50;
+
 	static final int RESTYPE_LEN = 30;
 
 	@Column(name = "SP_HAS_LINKS")
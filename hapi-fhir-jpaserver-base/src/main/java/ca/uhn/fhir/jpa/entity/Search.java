@@ -0,0 +1,127 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.Index;
+
+/**
+ * A set of search results which has been stored so that further pages of the results can be loaded (by any server
+ * which shares the database) after the search itself has returned. The results themselves are stored as
+ * {@link SearchResult} rows.
+ */
+@Entity()
+@Table(name = "HFJ_SEARCH", uniqueConstraints = { @UniqueConstraint(name = "IDX_SEARCH_UUID", columnNames = { "SEARCH_UUID" }) })
+@org.hibernate.annotations.Table(appliesTo = "HFJ_SEARCH", indexes = { @Index(name = "IDX_SEARCH_CREATED", columnNames = { "CREATED" }) })
+@NamedQueries({
+	@NamedQuery(name = "Q_GET_SEARCH_BY_UUID", query = "SELECT s FROM Search s WHERE s.myUuid = :UUID"),
+	@NamedQuery(name = "Q_GET_SEARCH_PIDS_CREATED_BEFORE", query = "SELECT s.myId FROM Search s WHERE s.myCreated < :CUTOFF"),
+	@NamedQuery(name = "Q_DELETE_SEARCHES", query = "DELETE FROM Search s WHERE s.myId IN :SEARCHES")
+})
+public class Search {
+
+	public static final int MAX_INCLUDES_LENGTH = 4000;
+	public static final int MAX_RESOURCE_TYPE_LENGTH = 30;
+	public static final int UUID_LENGTH = 40;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED", nullable = false, updatable = false)
+	private Date myCreated;
+
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "SEARCH_INCLUDES", nullable = true, length = MAX_INCLUDES_LENGTH, updatable = false)
+	private String myIncludes;
+
+	@Column(name = "RESOURCE_TYPE", nullable = false, length = MAX_RESOURCE_TYPE_LENGTH, updatable = false)
+	private String myResourceType;
+
+	@Column(name = "TOTAL_COUNT", nullable = false, updatable = false)
+	private int myTotalCount;
+
+	@Column(name = "SEARCH_UUID", nullable = false, length = UUID_LENGTH, updatable = false)
+	private String myUuid;
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	/**
+	 * Returns the values of the <code>_include</code>s requested by the search, separated by newlines, or
+	 * <code>null</code> if there were none
+	 */
+	public String getIncludes() {
+		return myIncludes;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public int getTotalCount() {
+		return myTotalCount;
+	}
+
+	public String getUuid() {
+		return myUuid;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	public void setIncludes(String theIncludes) {
+		myIncludes = theIncludes;
+	}
+
+	public void setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+	}
+
+	public void setTotalCount(int theTotalCount) {
+		myTotalCount = theTotalCount;
+	}
+
+	public void setUuid(String theUuid) {
+		myUuid = theUuid;
+	}
+
+}
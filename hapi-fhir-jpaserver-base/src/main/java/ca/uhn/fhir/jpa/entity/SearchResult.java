@@ -0,0 +1,123 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * One matching resource within a stored {@link Search}. Only the PID of the resource is stored, so the resource is
+ * loaded in its current version when the page containing it is requested.
+ * <p>
+ * Rows are identified by their search and position within it, rather than by a generated ID, so that they can be
+ * inserted in bulk using {@link #INSERT_SQL} without going through the entity manager.
+ * </p>
+ */
+@Entity()
+@Table(name = "HFJ_SEARCH_RESULT")
+@IdClass(SearchResult.SearchResultId.class)
+@NamedQueries({
+	@NamedQuery(name = "Q_GET_SEARCH_RESULT_PIDS", query = "SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :SEARCH AND r.myOrder >= :FROM AND r.myOrder < :TO ORDER BY r.myOrder"),
+	@NamedQuery(name = "Q_DELETE_SEARCH_RESULTS", query = "DELETE FROM SearchResult r WHERE r.mySearchPid IN :SEARCHES")
+})
+public class SearchResult {
+
+	/**
+	 * Inserts a single row, with the search PID, order and resource PID as parameters
+	 */
+	public static final String INSERT_SQL = "INSERT INTO HFJ_SEARCH_RESULT (SEARCH_PID, SEARCH_ORDER, RESOURCE_PID) VALUES (?, ?, ?)";
+
+	@Id
+	@Column(name = "SEARCH_ORDER", nullable = false, updatable = false)
+	private int myOrder;
+
+	@Column(name = "RESOURCE_PID", nullable = false, updatable = false)
+	private Long myResourcePid;
+
+	@Id
+	@Column(name = "SEARCH_PID", nullable = false, updatable = false)
+	private Long mySearchPid;
+
+	public SearchResult() {
+		super();
+	}
+
+	public SearchResult(Long theSearchPid, int theOrder, Long theResourcePid) {
+		mySearchPid = theSearchPid;
+		myOrder = theOrder;
+		myResourcePid = theResourcePid;
+	}
+
+	public int getOrder() {
+		return myOrder;
+	}
+
+	public Long getResourcePid() {
+		return myResourcePid;
+	}
+
+	public Long getSearchPid() {
+		return mySearchPid;
+	}
+
+	/**
+	 * Identifier of a {@link SearchResult}, which is the combination of its search and order
+	 */
+	public static class SearchResultId implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int myOrder;
+		private Long mySearchPid;
+
+		public SearchResultId() {
+			super();
+		}
+
+		public SearchResultId(Long theSearchPid, int theOrder) {
+			mySearchPid = theSearchPid;
+			myOrder = theOrder;
+		}
+
+		@Override
+		public boolean equals(Object theObj) {
+			if (!(theObj instanceof SearchResultId)) {
+				return false;
+			}
+			SearchResultId obj = (SearchResultId) theObj;
+			return myOrder == obj.myOrder && (mySearchPid == null ? obj.mySearchPid == null : mySearchPid.equals(obj.mySearchPid));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * myOrder + (mySearchPid == null ? 0 : mySearchPid.hashCode());
+		}
+
+	}
+
+}
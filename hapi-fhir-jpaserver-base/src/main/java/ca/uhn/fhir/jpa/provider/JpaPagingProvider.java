@@ -0,0 +1,489 @@
+package ca.uhn.fhir.jpa.provider;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IPidBundleProvider;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchResult;
+import ca.uhn.fhir.jpa.util.StopWatch;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.IPagingProvider;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Paging provider which stores search results in the database, so that further pages of a search can be requested
+ * from any server which shares the database (and after a restart) instead of only from the server which performed the
+ * search. This should be declared as a bean in the Spring context, and the {@link #setContext(FhirContext) context}
+ * must be set.
+ * <p>
+ * Only the PIDs of the matching resources are stored, and only for results which are identified by PID (see
+ * {@link IPidBundleProvider}), which is the case for the results of searches performed by the resource DAOs. Other
+ * results (e.g. history) are kept in a bounded local cache instead, so they can only be paged through on the server
+ * which created them, and they are discarded early if the cache is full.
+ * </p>
+ * <p>
+ * Stored searches expire a fixed time after they are created. Expired searches are deleted from the database
+ * periodically as new searches are stored, or when {@link #purgeExpiredSearches()} is called. Retrieving a stored
+ * search doesn't lock anything: details of recently used searches are cached, and the results are read from the
+ * database a page at a time.
+ * </p>
+ */
+public class JpaPagingProvider implements IPagingProvider {
+
+	public static final long DEFAULT_EXPIRE_AFTER_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	public static final int DEFAULT_MAXIMUM_LOCAL_RESULTS = 10000;
+
+	private static final int CACHED_SEARCHES = 1000;
+	private static final String INCLUDE_SEPARATOR = "\n";
+	private static final int INSERT_BATCH_SIZE = 500;
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(JpaPagingProvider.class);
+	private static final int PURGE_BATCH_SIZE = 100;
+	private static final long PURGE_INTERVAL_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+
+	private FhirContext myContext;
+	private int myDefaultPageSize = 10;
+
+	@PersistenceContext()
+	private EntityManager myEntityManager;
+
+	private final long myExpireAfterMillis;
+	private final Cache<String, IBundleProvider> myLocalResults;
+	private int myMaximumPageSize = 50;
+	private final AtomicLong myNextPurge = new AtomicLong();
+
+	@Autowired
+	private PlatformTransactionManager myPlatformTransactionManager;
+
+	@Autowired
+	private List<IFhirResourceDao<?>> myResourceDaos;
+
+	private volatile Map<String, IFhirResourceDao<?>> myResourceNameToDao;
+	private final Cache<String, StoredSearch> mySearches;
+
+	public JpaPagingProvider() {
+		this(DEFAULT_EXPIRE_AFTER_MILLIS, DEFAULT_MAXIMUM_LOCAL_RESULTS);
+	}
+
+	/**
+	 * @param theExpireAfterMillis
+	 *           The time after which a stored search expires, in milliseconds
+	 * @param theMaximumLocalResults
+	 *           The maximum total number of results which may be held in the local cache, for results which can not be
+	 *           stored in the database. Once this is reached, the oldest results are discarded.
+	 */
+	public JpaPagingProvider(long theExpireAfterMillis, int theMaximumLocalResults) {
+		Validate.isTrue(theExpireAfterMillis > 0, "theExpireAfterMillis must be greater than 0");
+		Validate.isTrue(theMaximumLocalResults > 0, "theMaximumLocalResults must be greater than 0");
+
+		myExpireAfterMillis = theExpireAfterMillis;
+		mySearches = CacheBuilder.newBuilder().maximumSize(CACHED_SEARCHES).expireAfterWrite(theExpireAfterMillis, TimeUnit.MILLISECONDS).build();
+		myLocalResults = CacheBuilder.newBuilder().maximumWeight(theMaximumLocalResults).weigher(new Weigher<String, IBundleProvider>() {
+			@Override
+			public int weigh(String theKey, IBundleProvider theValue) {
+				return Math.max(1, theValue.size());
+			}
+		}).expireAfterWrite(theExpireAfterMillis, TimeUnit.MILLISECONDS).build();
+	}
+
+	private IFhirResourceDao<?> getDao(String theResourceName) {
+		Map<String, IFhirResourceDao<?>> resourceNameToDao = myResourceNameToDao;
+		if (resourceNameToDao == null) {
+			Validate.notNull(myContext, "No FhirContext has been set");
+			resourceNameToDao = new HashMap<String, IFhirResourceDao<?>>();
+			for (IFhirResourceDao<?> next : myResourceDaos) {
+				resourceNameToDao.put(myContext.getResourceDefinition(next.getResourceType()).getName(), next);
+			}
+			myResourceNameToDao = resourceNameToDao;
+		}
+
+		IFhirResourceDao<?> retVal = resourceNameToDao.get(theResourceName);
+		if (retVal == null) {
+			throw new InternalErrorException("No DAO is available for resource type " + theResourceName + ", which is needed to load stored search results");
+		}
+		return retVal;
+	}
+
+	@Override
+	public int getDefaultPageSize() {
+		return myDefaultPageSize;
+	}
+
+	/**
+	 * Returns the time after which a stored search expires, in milliseconds
+	 */
+	public long getExpireAfterMillis() {
+		return myExpireAfterMillis;
+	}
+
+	@Override
+	public int getMaximumPageSize() {
+		return myMaximumPageSize;
+	}
+
+	private StoredSearch loadSearch(final String theUuid) {
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		template.setReadOnly(true);
+		return template.execute(new TransactionCallback<StoredSearch>() {
+			@Override
+			public StoredSearch doInTransaction(TransactionStatus theStatus) {
+				List<Search> searches = myEntityManager.createNamedQuery("Q_GET_SEARCH_BY_UUID", Search.class).setParameter("UUID", theUuid).getResultList();
+				if (searches.isEmpty()) {
+					return null;
+				}
+				return new StoredSearch(searches.get(0));
+			}
+		});
+	}
+
+	/**
+	 * Deletes all searches which have expired from the database. This is also done periodically as new searches are
+	 * stored, so calling this method is only needed to purge expired searches sooner (e.g. from a scheduled task when
+	 * no new searches are being performed).
+	 *
+	 * @return The number of searches which were deleted
+	 */
+	public int purgeExpiredSearches() {
+		StopWatch w = new StopWatch();
+		final Date cutoff = new Date(System.currentTimeMillis() - myExpireAfterMillis);
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+
+		int retVal = 0;
+		while (true) {
+			int count = template.execute(new TransactionCallback<Integer>() {
+				@Override
+				public Integer doInTransaction(TransactionStatus theStatus) {
+					List<Long> pids = myEntityManager.createNamedQuery("Q_GET_SEARCH_PIDS_CREATED_BEFORE", Long.class).setParameter("CUTOFF", cutoff).setMaxResults(PURGE_BATCH_SIZE).getResultList();
+					if (pids.isEmpty()) {
+						return 0;
+					}
+					myEntityManager.createNamedQuery("Q_DELETE_SEARCH_RESULTS").setParameter("SEARCHES", pids).executeUpdate();
+					myEntityManager.createNamedQuery("Q_DELETE_SEARCHES").setParameter("SEARCHES", pids).executeUpdate();
+					return pids.size();
+				}
+			});
+			retVal += count;
+			if (count < PURGE_BATCH_SIZE) {
+				break;
+			}
+		}
+
+		myLocalResults.cleanUp();
+		if (retVal > 0) {
+			ourLog.info("Purged {} expired searches in {}ms", retVal, w.getMillisAndRestart());
+		}
+		return retVal;
+	}
+
+	private void purgeExpiredSearchesIfDue() {
+		long now = System.currentTimeMillis();
+		long nextPurge = myNextPurge.get();
+		if (now < nextPurge || !myNextPurge.compareAndSet(nextPurge, now + PURGE_INTERVAL_MILLIS)) {
+			return;
+		}
+		try {
+			purgeExpiredSearches();
+		} catch (RuntimeException e) {
+			// Another server may be purging the same searches, so just try again next time
+			ourLog.warn("Failed to purge expired searches", e);
+		}
+	}
+
+	@Override
+	public IBundleProvider retrieveResultList(String theId) {
+		if (isBlank(theId) || theId.length() > Search.UUID_LENGTH) {
+			return null;
+		}
+
+		IBundleProvider local = myLocalResults.getIfPresent(theId);
+		if (local != null) {
+			return local;
+		}
+
+		StoredSearch search = mySearches.getIfPresent(theId);
+		if (search == null) {
+			search = loadSearch(theId);
+			if (search == null) {
+				return null;
+			}
+			mySearches.put(theId, search);
+		}
+
+		if (search.getCreated() + myExpireAfterMillis < System.currentTimeMillis()) {
+			mySearches.invalidate(theId);
+			return null;
+		}
+
+		return new StoredSearchBundleProvider(search);
+	}
+
+	/**
+	 * Sets the context, which is used to determine the resource type of each DAO
+	 */
+	public void setContext(FhirContext theContext) {
+		myContext = theContext;
+	}
+
+	public void setDefaultPageSize(int theDefaultPageSize) {
+		Validate.isTrue(theDefaultPageSize > 0, "size must be greater than 0");
+		myDefaultPageSize = theDefaultPageSize;
+	}
+
+	public void setMaximumPageSize(int theMaximumPageSize) {
+		Validate.isTrue(theMaximumPageSize > 0, "size must be greater than 0");
+		myMaximumPageSize = theMaximumPageSize;
+	}
+
+	private StoredSearch storeSearch(final String theUuid, final IPidBundleProvider theList, final String theIncludes) {
+		StopWatch w = new StopWatch();
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		StoredSearch retVal = template.execute(new TransactionCallback<StoredSearch>() {
+			@Override
+			public StoredSearch doInTransaction(TransactionStatus theStatus) {
+				InstantDt published = theList.getPublished();
+
+				// Fetch all of the PIDs in one go, since a streaming search re-runs its query for each call
+				final List<Long> pids = theList.getResourcePids(0, theList.size());
+
+				Search search = new Search();
+				search.setUuid(theUuid);
+				search.setResourceType(theList.getResourceName());
+				search.setCreated(published != null && published.getValue() != null ? published.getValue() : new Date());
+				search.setIncludes(theIncludes);
+				search.setTotalCount(pids.size());
+				myEntityManager.persist(search);
+				myEntityManager.flush();
+
+				final Long searchPid = search.getId();
+				myEntityManager.unwrap(Session.class).doWork(new Work() {
+					@Override
+					public void execute(Connection theConnection) throws SQLException {
+						PreparedStatement statement = theConnection.prepareStatement(SearchResult.INSERT_SQL);
+						try {
+							int order = 0;
+							for (Long next : pids) {
+								statement.setLong(1, searchPid);
+								statement.setInt(2, order);
+								statement.setLong(3, next);
+								statement.addBatch();
+								if (++order % INSERT_BATCH_SIZE == 0) {
+									statement.executeBatch();
+								}
+							}
+							if (order % INSERT_BATCH_SIZE != 0) {
+								statement.executeBatch();
+							}
+						} finally {
+							statement.close();
+						}
+					}
+				});
+
+				return new StoredSearch(search);
+			}
+		});
+
+		ourLog.debug("Stored {} results for search {} in {}ms", new Object[] { retVal.getTotalCount(), theUuid, w.getMillisAndRestart() });
+		return retVal;
+	}
+
+	/**
+	 * Stores the given results and returns the ID of the stored search. Results which are identified by PID are stored
+	 * in the database, and other results are held in the local cache.
+	 */
+	@Override
+	public String storeResultList(IBundleProvider theList) {
+		purgeExpiredSearchesIfDue();
+
+		String uuid = UUID.randomUUID().toString();
+		if (theList instanceof IPidBundleProvider) {
+			IPidBundleProvider pidList = (IPidBundleProvider) theList;
+			String includes = toIncludesString(pidList.getIncludes());
+			if (includes == null || includes.length() <= Search.MAX_INCLUDES_LENGTH) {
+				mySearches.put(uuid, storeSearch(uuid, pidList, includes));
+				return uuid;
+			}
+		}
+
+		myLocalResults.put(uuid, theList);
+		return uuid;
+	}
+
+	private static Set<Include> toIncludes(String theIncludes) {
+		if (isBlank(theIncludes)) {
+			return Collections.emptySet();
+		}
+		Set<Include> retVal = new LinkedHashSet<Include>();
+		for (String next : StringUtils.split(theIncludes, INCLUDE_SEPARATOR)) {
+			retVal.add(new Include(next));
+		}
+		return Collections.unmodifiableSet(retVal);
+	}
+
+	private static String toIncludesString(Set<Include> theIncludes) {
+		if (theIncludes == null || theIncludes.isEmpty()) {
+			return null;
+		}
+		StringBuilder b = new StringBuilder();
+		for (Include next : theIncludes) {
+			if (b.length() > 0) {
+				b.append(INCLUDE_SEPARATOR);
+			}
+			b.append(next.getValue());
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Immutable details of a stored search, which are cached so that retrieving a page of a recently used search only
+	 * needs to read the results themselves
+	 */
+	private static class StoredSearch {
+		private final long myCreated;
+		private final Set<Include> myIncludes;
+		private final Long myPid;
+		private final String myResourceName;
+		private final int myTotalCount;
+
+		StoredSearch(Long thePid, String theResourceName, String theIncludes, Date theCreated, int theTotalCount) {
+			myPid = thePid;
+			myResourceName = theResourceName;
+			myIncludes = toIncludes(theIncludes);
+			myCreated = theCreated.getTime();
+			myTotalCount = theTotalCount;
+		}
+
+		StoredSearch(Search theSearch) {
+			this(theSearch.getId(), theSearch.getResourceType(), theSearch.getIncludes(), theSearch.getCreated(), theSearch.getTotalCount());
+		}
+
+		long getCreated() {
+			return myCreated;
+		}
+
+		Set<Include> getIncludes() {
+			return myIncludes;
+		}
+
+		Long getPid() {
+			return myPid;
+		}
+
+		String getResourceName() {
+			return myResourceName;
+		}
+
+		int getTotalCount() {
+			return myTotalCount;
+		}
+	}
+
+	/**
+	 * Results of a stored search, which reads the PIDs of the requested page from the database and then loads the
+	 * resources using the DAO for the resource type which was searched for
+	 */
+	private class StoredSearchBundleProvider implements IPidBundleProvider {
+
+		private final StoredSearch mySearch;
+
+		StoredSearchBundleProvider(StoredSearch theSearch) {
+			mySearch = theSearch;
+		}
+
+		@Override
+		public Set<Include> getIncludes() {
+			return mySearch.getIncludes();
+		}
+
+		@Override
+		public InstantDt getPublished() {
+			return new InstantDt(new Date(mySearch.getCreated()));
+		}
+
+		@Override
+		public String getResourceName() {
+			return mySearch.getResourceName();
+		}
+
+		@Override
+		public List<Long> getResourcePids(int theFromIndex, int theToIndex) {
+			return myEntityManager.createNamedQuery("Q_GET_SEARCH_RESULT_PIDS", Long.class).setParameter("SEARCH", mySearch.getPid()).setParameter("FROM", theFromIndex)
+					.setParameter("TO", theToIndex).getResultList();
+		}
+
+		@Override
+		public List<IResource> getResources(final int theFromIndex, final int theToIndex) {
+			final IFhirResourceDao<?> dao = getDao(mySearch.getResourceName());
+			TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+			template.setReadOnly(true);
+			return template.execute(new TransactionCallback<List<IResource>>() {
+				@Override
+				public List<IResource> doInTransaction(TransactionStatus theStatus) {
+					return dao.loadSearchPage(getResourcePids(theFromIndex, theToIndex), mySearch.getIncludes());
+				}
+			});
+		}
+
+		@Override
+		public int size() {
+			return mySearch.getTotalCount();
+		}
+	}
+
+}
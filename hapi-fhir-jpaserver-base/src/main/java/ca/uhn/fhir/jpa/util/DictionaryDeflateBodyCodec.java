@@ -0,0 +1,177 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.hl7.fhir.instance.model.IBaseResource;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Stores resource text as Deflate compressed UTF-8, using a preset dictionary made up of strings which occur
+ * frequently in FHIR JSON. Since the compressor can refer back to the dictionary from the very first byte, this
+ * compresses typical (small) resources noticeably better than GZip, and at a faster compression level.
+ * <p>
+ * The first byte of the stored data identifies the dictionary that was used. The contents of a dictionary must never
+ * be changed once rows have been written with it; add a new version instead.
+ * </p>
+ */
+public class DictionaryDeflateBodyCodec implements IResourceBodyCodec {
+
+	private static final byte CURRENT_DICTIONARY_VERSION = 1;
+
+	/**
+	 * Version 1 of the dictionary. Deflate favours matches which are closer to the data being compressed, so the most
+	 * common strings are at the end.
+	 */
+	private static final byte[] DICTIONARY_V1 = ("\"contained\":[{\"resourceType\":\"" +
+			"\"telecom\":[{\"system\":\"phone\",\"value\":\"" +
+			"\"address\":[{\"use\":\"home\",\"line\":[\"" +
+			"\"period\":{\"start\":\"" +
+			"\"end\":\"" +
+			"\"valueQuantity\":{\"value\":" +
+			",\"units\":\"" +
+			"\"valueCodeableConcept\":{\"coding\":[{\"system\":\"" +
+			"\"valueString\":\"" +
+			"\"valueDateTime\":\"" +
+			"\"status\":\"final\"," +
+			"\"reliability\":\"ok\"," +
+			"\"gender\":{\"coding\":[{\"system\":\"http://hl7.org/fhir/v3/AdministrativeGender\",\"code\":\"" +
+			"\"birthDate\":\"" +
+			"\"name\":[{\"use\":\"official\",\"family\":[\"" +
+			"\"],\"given\":[\"" +
+			"\"identifier\":[{\"use\":\"official\",\"system\":\"" +
+			"\"managingOrganization\":{\"reference\":\"Organization/" +
+			"\"subject\":{\"reference\":\"Patient/" +
+			"\"patient\":{\"reference\":\"Patient/" +
+			"\"encounter\":{\"reference\":\"Encounter/" +
+			"\"performer\":[{\"reference\":\"Practitioner/" +
+			"\"extension\":[{\"url\":\"http://hl7.org/fhir/StructureDefinition/" +
+			"\"text\":{\"status\":\"generated\",\"div\":\"<div xmlns=\\\"http://www.w3.org/1999/xhtml\\\">" +
+			"</div>\"}," +
+			"\"system\":\"http://loinc.org\",\"code\":\"" +
+			"\"system\":\"http://snomed.info/sct\",\"code\":\"" +
+			"\"system\":\"http://hl7.org/fhir/" +
+			"\"code\":{\"coding\":[{\"system\":\"" +
+			"\",\"display\":\"" +
+			"\",\"code\":\"" +
+			"\"}]," +
+			"\"}]}," +
+			"\"reference\":\"" +
+			"\"value\":\"" +
+			"{\"resourceType\":\"").getBytes(RawBodyCodec.UTF8);
+
+	@Override
+	public String decode(byte[] theBytes) {
+		return new String(inflate(theBytes), RawBodyCodec.UTF8);
+	}
+
+	@Override
+	public byte[] encode(String theText) {
+		byte[] input = theText.getBytes(RawBodyCodec.UTF8);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setDictionary(DICTIONARY_V1);
+			deflater.setInput(input);
+			deflater.finish();
+
+			ByteArrayOutputStream os = new ByteArrayOutputStream(input.length / 3 + 32);
+			os.write(CURRENT_DICTIONARY_VERSION);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				os.write(buffer, 0, count);
+			}
+			return os.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public byte[] encode(IParser theParser, IBaseResource theResource) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setDictionary(DICTIONARY_V1);
+
+			ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+			os.write(CURRENT_DICTIONARY_VERSION);
+			RawBodyCodec.encodeTo(theParser, theResource, new DeflaterOutputStream(os, deflater, 4096));
+			return os.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public Reader newReader(byte[] theBytes) {
+		return new InputStreamReader(new ByteArrayInputStream(inflate(theBytes)), RawBodyCodec.UTF8);
+	}
+
+	private static byte[] getDictionary(byte theVersion) {
+		switch (theVersion) {
+		case 1:
+			return DICTIONARY_V1;
+		default:
+			throw new DataFormatException("Unknown compression dictionary version: " + theVersion);
+		}
+	}
+
+	private static byte[] inflate(byte[] theBytes) {
+		if (theBytes.length == 0) {
+			throw new DataFormatException("Failed to decompress contents: no data");
+		}
+		byte[] dictionary = getDictionary(theBytes[0]);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(theBytes, 1, theBytes.length - 1);
+			ByteArrayOutputStream os = new ByteArrayOutputStream(theBytes.length * 4);
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0) {
+					if (inflater.needsDictionary()) {
+						inflater.setDictionary(dictionary);
+					} else if (inflater.needsInput() && !inflater.finished()) {
+						throw new DataFormatException("Failed to decompress contents: data is truncated");
+					}
+				}
+				os.write(buffer, 0, count);
+			}
+			return os.toByteArray();
+		} catch (java.util.zip.DataFormatException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.instance.model.IBaseResource;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Stores resource text as GZip compressed UTF-8. This is the format used by the original <code>JSONC</code> encoding.
+ */
+public class GZipBodyCodec implements IResourceBodyCodec {
+
+	@Override
+	public String decode(byte[] theBytes) {
+		try {
+			GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(theBytes));
+			ByteArrayOutputStream os = new ByteArrayOutputStream(theBytes.length * 4);
+			IOUtils.copy(is, os);
+			return new String(os.toByteArray(), RawBodyCodec.UTF8);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		}
+	}
+
+	@Override
+	public byte[] encode(String theText) {
+		try {
+			byte[] bytes = theText.getBytes(RawBodyCodec.UTF8);
+			ByteArrayOutputStream os = new ByteArrayOutputStream(bytes.length / 4 + 32);
+			GZIPOutputStream gos = new GZIPOutputStream(os);
+			gos.write(bytes);
+			gos.close();
+			return os.toByteArray();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to compress contents", e);
+		}
+	}
+
+	@Override
+	public byte[] encode(IParser theParser, IBaseResource theResource) {
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+			RawBodyCodec.encodeTo(theParser, theResource, new GZIPOutputStream(os));
+			return os.toByteArray();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to compress contents", e);
+		}
+	}
+
+	@Override
+	public Reader newReader(byte[] theBytes) {
+		try {
+			return new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(theBytes)), RawBodyCodec.UTF8);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		}
+	}
+
+}
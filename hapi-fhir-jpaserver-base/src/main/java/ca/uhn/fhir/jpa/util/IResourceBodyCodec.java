@@ -0,0 +1,64 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Reader;
+
+import org.hl7.fhir.instance.model.IBaseResource;
+
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Converts the encoded (JSON) text of a resource to and from the bytes which are stored in the database. Each
+ * {@link ca.uhn.fhir.jpa.entity.ResourceEncodingEnum ResourceEncodingEnum} constant is backed by one codec, and the
+ * constant is stored alongside each row so that rows written with any codec remain readable.
+ * <p>
+ * Implementations must be thread safe, and the format they write must never change once rows have been stored with
+ * it.
+ * </p>
+ */
+public interface IResourceBodyCodec {
+
+	/**
+	 * Decodes stored bytes into the resource text
+	 */
+	String decode(byte[] theBytes);
+
+	/**
+	 * Encodes resource text into the bytes to store
+	 */
+	byte[] encode(String theText);
+
+	/**
+	 * Encodes a resource using the given parser straight into the bytes to store, without building an intermediate
+	 * string. The result must be identical to passing the output of
+	 * {@link IParser#encodeResourceToString(IBaseResource)} to {@link #encode(String)}.
+	 */
+	byte[] encode(IParser theParser, IBaseResource theResource);
+
+	/**
+	 * Returns a reader over the resource text in the stored bytes, which can be passed directly to a parser without
+	 * building an intermediate string
+	 */
+	Reader newReader(byte[] theBytes);
+
+}
@@ -0,0 +1,216 @@
+package ca.uhn.fhir.jpa.util;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of resource PIDs, stored as a sorted array of primitive <code>long</code> values. This uses roughly
+ * a quarter of the memory of a <code>HashSet&lt;Long&gt;</code> holding the same IDs, and allows sets to be combined
+ * in linear time.
+ * <p>
+ * This class implements {@link java.util.Set Set&lt;Long&gt;} so that it can be passed anywhere a collection of IDs is
+ * expected (e.g. to a JPA <code>IN</code> predicate), but values are only boxed as they are iterated over. Use
+ * {@link #getPid(int)} and {@link #containsPid(long)} to avoid boxing entirely.
+ * </p>
+ */
+public final class PidSet extends AbstractSet<Long> {
+
+	private static final long[] EMPTY_ARRAY = new long[0];
+	private static final PidSet EMPTY = new PidSet(EMPTY_ARRAY, 0);
+
+	private final int mySize;
+	private final long[] myValues;
+
+	/**
+	 * Callers must supply an array which is sorted and free of duplicates in the first <code>theSize</code> positions
+	 */
+	private PidSet(long[] theValues, int theSize) {
+		myValues = theValues;
+		mySize = theSize;
+	}
+
+	@Override
+	public boolean contains(Object theO) {
+		if (theO instanceof Long) {
+			return containsPid(((Long) theO).longValue());
+		}
+		return false;
+	}
+
+	public boolean containsPid(long thePid) {
+		return Arrays.binarySearch(myValues, 0, mySize, thePid) >= 0;
+	}
+
+	/**
+	 * Returns the PID at the given position (PIDs are ordered from lowest to highest)
+	 */
+	public long getPid(int theIndex) {
+		if (theIndex < 0 || theIndex >= mySize) {
+			throw new IndexOutOfBoundsException("Index " + theIndex + " is out of bounds for set of size " + mySize);
+		}
+		return myValues[theIndex];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	@Override
+	public Iterator<Long> iterator() {
+		return new Iterator<Long>() {
+			private int myIndex;
+
+			@Override
+			public boolean hasNext() {
+				return myIndex < mySize;
+			}
+
+			@Override
+			public Long next() {
+				if (myIndex >= mySize) {
+					throw new NoSuchElementException();
+				}
+				return myValues[myIndex++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return mySize;
+	}
+
+	/**
+	 * Returns a copy of the PIDs in this set, in ascending order
+	 */
+	public long[] toLongArray() {
+		return Arrays.copyOf(myValues, mySize);
+	}
+
+	/**
+	 * Returns a set containing the PIDs which are in either this set or the given set
+	 */
+	public PidSet union(PidSet theOther) {
+		if (theOther.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return theOther;
+		}
+
+		long[] values = new long[mySize + theOther.mySize];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < mySize && j < theOther.mySize) {
+			long a = myValues[i];
+			long b = theOther.myValues[j];
+			if (a < b) {
+				values[count++] = a;
+				i++;
+			} else if (a > b) {
+				values[count++] = b;
+				j++;
+			} else {
+				values[count++] = a;
+				i++;
+				j++;
+			}
+		}
+		while (i < mySize) {
+			values[count++] = myValues[i++];
+		}
+		while (j < theOther.mySize) {
+			values[count++] = theOther.myValues[j++];
+		}
+
+		return new PidSet(values, count);
+	}
+
+	public static PidSet empty() {
+		return EMPTY;
+	}
+
+	public static PidSet of(long... thePids) {
+		Builder retVal = new Builder(thePids.length);
+		for (long next : thePids) {
+			retVal.add(next);
+		}
+		return retVal.build();
+	}
+
+	/**
+	 * Accumulates PIDs in any order (duplicates are permitted) and then produces a {@link PidSet}
+	 */
+	public static final class Builder {
+
+		private int mySize;
+		private long[] myValues;
+
+		public Builder() {
+			this(16);
+		}
+
+		public Builder(int theInitialCapacity) {
+			myValues = theInitialCapacity > 0 ? new long[theInitialCapacity] : EMPTY_ARRAY;
+		}
+
+		public Builder add(long thePid) {
+			if (mySize == myValues.length) {
+				myValues = Arrays.copyOf(myValues, Math.max(16, mySize * 2));
+			}
+			myValues[mySize++] = thePid;
+			return this;
+		}
+
+		public PidSet build() {
+			if (mySize == 0) {
+				return EMPTY;
+			}
+
+			long[] values = Arrays.copyOf(myValues, mySize);
+			Arrays.sort(values);
+			int count = 1;
+			for (int i = 1; i < values.length; i++) {
+				if (values[i] != values[count - 1]) {
+					values[count++] = values[i];
+				}
+			}
+			return new PidSet(values, count);
+		}
+
+		public int size() {
+			return mySize;
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import org.hl7.fhir.instance.model.IBaseResource;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Stores resource text as uncompressed UTF-8
+ */
+public class RawBodyCodec implements IResourceBodyCodec {
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Override
+	public String decode(byte[] theBytes) {
+		return new String(theBytes, UTF8);
+	}
+
+	@Override
+	public byte[] encode(String theText) {
+		return theText.getBytes(UTF8);
+	}
+
+	@Override
+	public byte[] encode(IParser theParser, IBaseResource theResource) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+		encodeTo(theParser, theResource, os);
+		return os.toByteArray();
+	}
+
+	@Override
+	public Reader newReader(byte[] theBytes) {
+		return new InputStreamReader(new ByteArrayInputStream(theBytes), UTF8);
+	}
+
+	/**
+	 * Encodes the resource as UTF-8 to the given stream, which is closed afterwards
+	 */
+	static void encodeTo(IParser theParser, IBaseResource theResource, OutputStream theOutputStream) {
+		try {
+			theParser.encodeResourceToOutputStream(theResource, theOutputStream);
+			theOutputStream.close();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to encode resource", e);
+		}
+	}
+
+}
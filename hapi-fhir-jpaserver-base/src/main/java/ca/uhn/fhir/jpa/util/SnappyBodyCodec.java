@@ -0,0 +1,75 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.hl7.fhir.instance.model.IBaseResource;
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Stores resource text as Snappy compressed UTF-8. Snappy compresses FHIR JSON less tightly than GZip, but both
+ * compresses and decompresses it several times faster.
+ */
+public class SnappyBodyCodec implements IResourceBodyCodec {
+
+	@Override
+	public String decode(byte[] theBytes) {
+		return new String(uncompress(theBytes), RawBodyCodec.UTF8);
+	}
+
+	@Override
+	public byte[] encode(String theText) {
+		return Snappy.compress(theText.getBytes(RawBodyCodec.UTF8));
+	}
+
+	/**
+	 * Snappy blocks are compressed in one pass, so the UTF-8 bytes are collected first (but no string is built)
+	 */
+	@Override
+	public byte[] encode(IParser theParser, IBaseResource theResource) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+		RawBodyCodec.encodeTo(theParser, theResource, os);
+		return Snappy.compress(os.toByteArray());
+	}
+
+	@Override
+	public Reader newReader(byte[] theBytes) {
+		return new InputStreamReader(new ByteArrayInputStream(uncompress(theBytes)), RawBodyCodec.UTF8);
+	}
+
+	private static byte[] uncompress(byte[] theBytes) {
+		try {
+			return Snappy.uncompress(theBytes, 0, theBytes.length);
+		} catch (CorruptionException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		}
+	}
+
+}
@@ -16,6 +16,7 @@ import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,6 +36,7 @@ import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.api.TagList;
 import ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt;
+import ca.uhn.fhir.model.dstu.resource.OperationOutcome;
 import ca.uhn.fhir.model.dstu.valueset.QuantityCompararatorEnum;
 import ca.uhn.fhir.model.dstu2.composite.CodeableConceptDt;
 import ca.uhn.fhir.model.dstu2.composite.IdentifierDt;
@@ -62,6 +64,7 @@ import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
@@ -1272,6 +1275,49 @@ public class FhirResourceDaoTest {
 
 	}
 
+	@Test
+	public void testSearchWithIncludesRespectsIncludeLimit() {
+		List<IdDt> orgIds = new ArrayList<IdDt>();
+		for (int i = 0; i < 4; i++) {
+			Organization org = new Organization();
+			if (i % 2 == 0) {
+				org.setId("testSearchWithIncludesRespectsIncludeLimit_id" + i);
+			}
+			org.getNameElement().setValue("testSearchWithIncludesRespectsIncludeLimit_O" + i);
+			orgIds.add(ourOrganizationDao.create(org).getId().toUnqualifiedVersionless());
+		}
+		for (int i = 0; i < 12; i++) {
+			Patient patient = new Patient();
+			patient.addName().addFamily("Tester_testSearchWithIncludesRespectsIncludeLimit");
+			patient.getManagingOrganization().setReference(orgIds.get(i % 4));
+			ourPatientDao.create(patient);
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringDt("Tester_testSearchWithIncludesRespectsIncludeLimit"));
+		params.addInclude(Patient.INCLUDE_MANAGINGORGANIZATION);
+		List<IResource> resources = toList(ourPatientDao.search(params));
+		assertEquals(16, resources.size());
+		Set<IdDt> included = new HashSet<IdDt>();
+		for (IResource next : resources) {
+			if (next instanceof Organization) {
+				included.add(next.getId().toUnqualifiedVersionless());
+			}
+		}
+		assertEquals(new HashSet<IdDt>(orgIds), included);
+
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		int oldLimit = config.getIncludeLimit();
+		config.setIncludeLimit(2);
+		try {
+			resources = toList(ourPatientDao.search(params));
+			assertEquals(15, resources.size());
+			assertEquals(OperationOutcome.class, resources.get(0).getClass());
+		} finally {
+			config.setIncludeLimit(oldLimit);
+		}
+	}
+
 	@Test
 	public void testSearchWithNoResults() {
 		IBundleProvider value = ourDeviceDao.search(new SearchParameterMap());
@@ -1287,6 +1333,194 @@ public class FhirResourceDaoTest {
 
 	}
 
+	@Test
+	public void testSearchWithCombinedParams() {
+		String methodName = "testSearchWithCombinedParams";
+		IdDt[] ids = createObservationsForCombinedSearch(methodName);
+		IdDt patientA = ids[0];
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2], ids[4], ids[5]));
+
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(patientA.getIdPart()));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2]));
+
+		// The order in which the parameters are given doesn't matter
+		params = new SearchParameterMap();
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(patientA.getIdPart()));
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2]));
+
+		// An unknown parameter is ignored
+		params.add("notAParam", new StringParam("foo"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2]));
+
+		// Two values for the same parameter must both match
+		params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "Low"));
+		assertTrue(searchBothWays(params).isEmpty());
+
+		// ..but only one of a list of OR values
+		params = new SearchParameterMap();
+		StringOrListParam orList = new StringOrListParam();
+		orList.add(new StringParam(methodName + "High"));
+		orList.add(new StringParam(methodName + "Low"));
+		params.add(Observation.SP_VALUE_STRING, orList);
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(patientA.getIdPart()));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2], ids[3]));
+	}
+
+	@Test
+	public void testSearchWithChainedAndCombinedParams() {
+		String methodName = "testSearchWithChainedAndCombinedParams";
+		IdDt[] ids = createObservationsForCombinedSearch(methodName);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_FAMILY, methodName + "Smith"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2], ids[3]));
+
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2]));
+
+		// Two chains on the same parameter must both match the same subject
+		params = new SearchParameterMap();
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_FAMILY, methodName + "Smith"));
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_IDENTIFIER, "urn:system|" + methodName + "B"));
+		assertTrue(searchBothWays(params).isEmpty());
+
+		params = new SearchParameterMap();
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_FAMILY, methodName + "Jones"));
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_IDENTIFIER, "urn:system|" + methodName + "B"));
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[4]));
+	}
+
+	@Test
+	public void testSearchWithParamMissingFromResources() {
+		String methodName = "testSearchWithParamMissingFromResources";
+		IdDt[] ids = createObservationsForCombinedSearch(methodName);
+
+		// The observation without a subject only matches when the subject isn't searched for
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_IDENTIFIER, "urn:system|" + methodName + "A"));
+		assertThat(searchBothWays(params), containsInAnyOrder(ids[2]));
+
+		// None of the observations have a quantity
+		params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		params.add(Observation.SP_VALUE_QUANTITY, new QuantityParam(">0", null, null));
+		assertTrue(searchBothWays(params).isEmpty());
+	}
+
+	@Test
+	public void testSearchWithClauseMatchingNothing() {
+		String methodName = "testSearchWithClauseMatchingNothing";
+		IdDt[] ids = createObservationsForCombinedSearch(methodName);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(Patient.SP_FAMILY, methodName + "Nobody"));
+		assertTrue(searchBothWays(params).isEmpty());
+
+		params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "High"));
+		params.add("_id", new StringParam("999999999999"));
+		assertTrue(searchBothWays(params).isEmpty());
+
+		params = new SearchParameterMap();
+		params.add(Observation.SP_VALUE_STRING, new StringParam(methodName + "Nothing"));
+		params.add(Observation.SP_SUBJECT, new ReferenceParam(ids[0].getIdPart()));
+		assertTrue(searchBothWays(params).isEmpty());
+	}
+
+	/**
+	 * Creates patients A (family Smith) and B (family Jones), and observations with the following subjects and values:
+	 * A/High, A/Low, B/High, no subject/High. Returns the IDs of the patients followed by those of the observations.
+	 */
+	private IdDt[] createObservationsForCombinedSearch(String theMethodName) {
+		Patient patientA = new Patient();
+		patientA.addIdentifier().setSystem("urn:system").setValue(theMethodName + "A");
+		patientA.addName().addFamily(theMethodName + "Smith");
+		IdDt patientAId = ourPatientDao.create(patientA).getId().toUnqualifiedVersionless();
+
+		Patient patientB = new Patient();
+		patientB.addIdentifier().setSystem("urn:system").setValue(theMethodName + "B");
+		patientB.addName().addFamily(theMethodName + "Jones");
+		IdDt patientBId = ourPatientDao.create(patientB).getId().toUnqualifiedVersionless();
+
+		IdDt[] retVal = new IdDt[6];
+		retVal[0] = patientAId;
+		retVal[1] = patientBId;
+		IdDt[] subjects = new IdDt[] { patientAId, patientAId, patientBId, null };
+		String[] values = new String[] { "High", "Low", "High", "High" };
+		for (int i = 0; i < subjects.length; i++) {
+			Observation obs = new Observation();
+			if (subjects[i] != null) {
+				obs.setSubject(new ResourceReferenceDt(subjects[i]));
+			}
+			obs.setValue(new StringDt(theMethodName + values[i]));
+			retVal[i + 2] = ourObservationDao.create(obs).getId().toUnqualifiedVersionless();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Performs the given observation search both with the matching PIDs loaded up front and with streamed results,
+	 * and checks that both find the same resources
+	 */
+	private List<IdDt> searchBothWays(SearchParameterMap theParams) {
+		List<IdDt> retVal = toUnqualifiedVersionlessIds(ourObservationDao.search(theParams));
+
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		config.setStreamSearchResults(true);
+		try {
+			List<IdDt> streamed = toUnqualifiedVersionlessIds(ourObservationDao.search(theParams));
+			assertEquals(new HashSet<IdDt>(retVal), new HashSet<IdDt>(streamed));
+			assertEquals(retVal.size(), streamed.size());
+		} finally {
+			config.setStreamSearchResults(false);
+		}
+		return retVal;
+	}
+
+	@Test
+	public void testSearchWithStreamedResults() {
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		config.setStreamSearchResults(true);
+		try {
+			for (int i = 0; i < 25; i++) {
+				Patient patient = new Patient();
+				patient.addIdentifier().setSystem("urn:system").setValue("testSearchWithStreamedResults" + i);
+				patient.addName().addFamily("testSearchWithStreamedResults");
+				ourPatientDao.create(patient);
+			}
+
+			SearchParameterMap params = new SearchParameterMap();
+			params.add(Patient.SP_FAMILY, new StringParam("testSearchWithStreamedResults"));
+
+			IBundleProvider found = ourPatientDao.search(params);
+			List<IdDt> ids = new ArrayList<IdDt>();
+			for (int i = 0; i < 25; i += 10) {
+				for (IResource next : found.getResources(i, Math.min(25, i + 10))) {
+					ids.add(next.getId().toUnqualifiedVersionless());
+				}
+			}
+			assertEquals(25, ids.size());
+			assertEquals(25, found.size());
+
+			// Jump straight to a page without reading the preceding ones
+			found = ourPatientDao.search(params);
+			assertEquals(25, found.size());
+			assertEquals(ids.get(20), found.getResources(20, 21).get(0).getId().toUnqualifiedVersionless());
+			assertEquals(5, found.getResources(20, 30).size());
+		} finally {
+			config.setStreamSearchResults(false);
+		}
+	}
+
 	@Test
 	public void testSort() {
 		Patient p = new Patient();
@@ -1554,6 +1788,43 @@ public class FhirResourceDaoTest {
 
 	}
 
+	@Test
+	public void testUpdateOnlyChangesModifiedIndexRows() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("urn:system").setValue("testUpdateOnlyChangesModifiedIndexRows01");
+		patient.addIdentifier().setSystem("urn:system").setValue("testUpdateOnlyChangesModifiedIndexRows02");
+		patient.addName().addFamily("testUpdateOnlyChangesModifiedIndexRows");
+		IdDt id = ourPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		long added = ourPatientDao.getIndexRowsAddedCount();
+		long removed = ourPatientDao.getIndexRowsRemovedCount();
+		long unchanged = ourPatientDao.getIndexRowsUnchangedCount();
+
+		// Nothing indexed has changed
+		ourPatientDao.update(patient, id);
+		assertEquals(added, ourPatientDao.getIndexRowsAddedCount());
+		assertEquals(removed, ourPatientDao.getIndexRowsRemovedCount());
+		assertThat(ourPatientDao.getIndexRowsUnchangedCount(), greaterThan(unchanged));
+
+		// One identifier has changed
+		patient.getIdentifier().get(1).setValue("testUpdateOnlyChangesModifiedIndexRows03");
+		ourPatientDao.update(patient, id);
+		assertEquals(added + 1, ourPatientDao.getIndexRowsAddedCount());
+		assertEquals(removed + 1, ourPatientDao.getIndexRowsRemovedCount());
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new IdentifierDt("urn:system", "testUpdateOnlyChangesModifiedIndexRows02"));
+		assertEquals(0, ourPatientDao.search(params).size());
+
+		params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new IdentifierDt("urn:system", "testUpdateOnlyChangesModifiedIndexRows03"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(params)), contains(id));
+
+		params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new IdentifierDt("urn:system", "testUpdateOnlyChangesModifiedIndexRows01"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(params)), contains(id));
+	}
+
 	@Test
 	public void testUpdateRejectsInvalidTypes() throws InterruptedException {
 		Patient p1 = new Patient();
@@ -9,8 +9,10 @@ import java.lang.instrument.UnmodifiableClassException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -32,6 +34,7 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.valueset.BundleEntryTransactionOperationEnum;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -119,6 +122,47 @@ public class FhirSystemDaoTest {
 
 	}
 
+	@Test
+	public void testHistoryPaging() throws Exception {
+		Date start = new Date();
+		Thread.sleep(10);
+
+		List<IdDt> ids = new ArrayList<IdDt>();
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("testHistoryPaging" + i);
+			ids.add(ourPatientDao.create(patient).getId().toVersionless());
+		}
+		for (int i = 0; i < 10; i += 2) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("testHistoryPaging" + i + "b");
+			ourPatientDao.update(patient, ids.get(i));
+		}
+
+		IBundleProvider values = ourSystemDao.history(start);
+		assertEquals(15, values.size());
+
+		List<IResource> all = new ArrayList<IResource>();
+		for (int i = 0; i < 15; i += 4) {
+			all.addAll(values.getResources(i, Math.min(15, i + 4)));
+		}
+		assertEquals(15, all.size());
+		for (int i = 1; i < all.size(); i++) {
+			Date prev = ResourceMetadataKeyEnum.UPDATED.get(all.get(i - 1)).getValue();
+			Date next = ResourceMetadataKeyEnum.UPDATED.get(all.get(i)).getValue();
+			assertFalse(next.after(prev));
+			assertFalse(all.get(i - 1).getId().equals(all.get(i).getId()));
+		}
+
+		// Jumping straight to a later page returns the same resources
+		values = ourSystemDao.history(start);
+		List<IResource> page = values.getResources(8, 12);
+		assertEquals(4, page.size());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(all.get(8 + i).getId(), page.get(i).getId());
+		}
+	}
+
 	@Test
 	public void testPersistWithSimpleLink() {
 		Patient patient = new Patient();
@@ -560,6 +604,64 @@ public class FhirSystemDaoTest {
 		assertThat(id, not(equalToIgnoringCase("")));
 	}
 
+	/**
+	 * The index, link and history rows written by a transaction get their IDs from pooled sequences and are
+	 * flushed in batches, so make sure a transaction spanning several batches stores all of them
+	 */
+	@Test
+	public void testTransactionLargerThanWriteBatchSize() {
+		String methodName = "testTransactionLargerThanWriteBatchSize";
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		config.setWriteBatchSize(7);
+		try {
+			int count = 30;
+			int[] historySizes = new int[count];
+
+			// The second pass updates them all, so that each one gets another history row
+			for (int pass = 0; pass < 2; pass++) {
+				List<IResource> res = new ArrayList<IResource>();
+				for (int i = 0; i < count; i++) {
+					Patient patient = new Patient();
+					patient.setId(new IdDt("Patient/" + methodName + "P" + i));
+					patient.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+					patient.addName().addFamily(methodName).addGiven("Given" + pass);
+					res.add(patient);
+
+					Observation obs = new Observation();
+					obs.setId(new IdDt("Observation/" + methodName + "O" + i));
+					obs.getName().addCoding().setSystem("urn:system").setCode(methodName + i);
+					obs.setSubject(new ResourceReferenceDt("Patient/" + methodName + "P" + i));
+					res.add(obs);
+				}
+				ourSystemDao.transaction(res);
+
+				if (pass == 0) {
+					for (int i = 0; i < count; i++) {
+						historySizes[i] = ourPatientDao.history(new IdDt("Patient/" + methodName + "P" + i), null).size();
+					}
+				}
+			}
+
+			Set<String> obsIds = new HashSet<String>();
+			for (int i = 0; i < count; i++) {
+				IBundleProvider patResults = ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName + i));
+				assertEquals(1, patResults.size());
+				IdDt patientId = patResults.getResources(0, 1).get(0).getId();
+				assertEquals("2", patientId.getVersionIdPart());
+				assertEquals(historySizes[i] + 1, ourPatientDao.history(patientId.toVersionless(), null).size());
+
+				IBundleProvider obsResults = ourObservationDao.search(Observation.SP_SUBJECT, new ReferenceParam(patientId.getIdPart()));
+				assertEquals(1, obsResults.size());
+				Observation obs = (Observation) obsResults.getResources(0, 1).get(0);
+				assertEquals(methodName + i, obs.getName().getCodingFirstRep().getCode());
+				obsIds.add(obs.getId().getIdPart());
+			}
+			assertEquals(count, obsIds.size());
+		} finally {
+			config.setWriteBatchSize(new DaoConfig().getWriteBatchSize());
+		}
+	}
+
 	@Test
 	public void testTransactionUpdateMatchUrlWithOneMatch() {
 		String methodName = "testTransactionUpdateMatchUrlWithOneMatch";
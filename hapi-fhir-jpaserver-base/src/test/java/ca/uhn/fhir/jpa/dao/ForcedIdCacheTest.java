@@ -0,0 +1,73 @@
+package ca.uhn.fhir.jpa.dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ForcedIdCacheTest {
+
+	@Test
+	public void testBounded() {
+		ForcedIdCache cache = new ForcedIdCache(10);
+		for (long i = 0; i < 100; i++) {
+			cache.put("id" + i, i);
+		}
+		assertTrue(cache.size() <= 10);
+		assertEquals(Long.valueOf(99L), cache.getPid("id99"));
+	}
+
+	@Test
+	public void testEvict() {
+		ForcedIdCache cache = new ForcedIdCache();
+		cache.put("foo", 123L);
+		assertEquals(Long.valueOf(123L), cache.getPid("foo"));
+		assertEquals("foo", cache.getForcedId(123L));
+
+		cache.evict("foo");
+		assertNull(cache.getPid("foo"));
+		assertNull(cache.getForcedId(123L));
+	}
+
+	@Test
+	public void testHitAndMissCounts() {
+		ForcedIdCache cache = new ForcedIdCache();
+		assertNull(cache.getPid("foo"));
+		cache.put("foo", 123L);
+		cache.getPid("foo");
+		cache.getPid("foo");
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testPutDeferredUntilCommit() {
+		ForcedIdCache cache = new ForcedIdCache();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.put("foo", 123L);
+			assertNull(cache.getPid("foo"));
+			for (TransactionSynchronization next : TransactionSynchronizationManager.getSynchronizations()) {
+				next.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertNull(cache.getPid("foo"));
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.put("foo", 123L);
+			for (TransactionSynchronization next : TransactionSynchronizationManager.getSynchronizations()) {
+				next.afterCommit();
+				next.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(Long.valueOf(123L), cache.getPid("foo"));
+	}
+
+}
@@ -0,0 +1,98 @@
+package ca.uhn.fhir.jpa.dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+
+public class ParsedResourceCacheTest {
+
+	private static FhirContext ourCtx = new FhirContext();
+
+	private static Patient newPatient(String theFamily) {
+		Patient retVal = new Patient();
+		retVal.addName().addFamily(theFamily);
+		return retVal;
+	}
+
+	@Test
+	public void testCallersGetCopies() {
+		ParsedResourceCache cache = new ParsedResourceCache();
+		Patient parsed = newPatient("FAMILY");
+		Patient returned = (Patient) cache.put(1L, 1L, ourCtx, parsed, 100);
+		assertNotSame(parsed, returned);
+
+		returned.getNameFirstRep().getFamilyFirstRep().setValue("CHANGED");
+		Patient first = (Patient) cache.get(1L, 1L);
+		assertEquals("FAMILY", first.getNameFirstRep().getFamilyFirstRep().getValue());
+
+		first.addName().addFamily("ADDED");
+		Patient second = (Patient) cache.get(1L, 1L);
+		assertNotSame(first, second);
+		assertEquals(1, second.getName().size());
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testEvictOnRollback() {
+		ParsedResourceCache cache = new ParsedResourceCache();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.put(1L, 1L, ourCtx, newPatient("V1"), 100);
+			cache.put(1L, 2L, ourCtx, newPatient("V2"), 100);
+			cache.evictOnRollback(1L, 2L);
+			assertNotNull(cache.get(1L, 2L));
+			for (TransactionSynchronization next : TransactionSynchronizationManager.getSynchronizations()) {
+				next.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertNull(cache.get(1L, 2L));
+		assertNotNull(cache.get(1L, 1L));
+	}
+
+	@Test
+	public void testKeptOnCommit() {
+		ParsedResourceCache cache = new ParsedResourceCache();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.put(1L, 2L, ourCtx, newPatient("V2"), 100);
+			cache.evictOnRollback(1L, 2L);
+			for (TransactionSynchronization next : TransactionSynchronizationManager.getSynchronizations()) {
+				next.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertNotNull(cache.get(1L, 2L));
+	}
+
+	@Test
+	public void testLargeEntriesNotCached() {
+		ParsedResourceCache cache = new ParsedResourceCache(1024 * 1024, 10000);
+		Patient parsed = newPatient("FAMILY");
+		IResource returned = cache.put(1L, 1L, ourCtx, parsed, 5000);
+		assertSame(parsed, returned);
+		assertNull(cache.get(1L, 1L));
+
+		cache.put(1L, 1L, ourCtx, parsed, 100);
+		assertNotNull(cache.get(1L, 1L));
+	}
+
+	@Test
+	public void testMemoryBounded() {
+		ParsedResourceCache cache = new ParsedResourceCache(100000, 50000);
+		for (long i = 0; i < 100; i++) {
+			cache.put(i, 1L, ourCtx, newPatient("FAMILY" + i), 1000);
+		}
+		assertTrue(cache.size() < 20);
+		assertEquals("FAMILY99", ((Patient) cache.get(99L, 1L)).getNameFirstRep().getFamilyFirstRep().getValue());
+	}
+
+}
@@ -0,0 +1,73 @@
+package ca.uhn.fhir.jpa.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+public class ResourceParseExecutorTest {
+
+	private static AnnotationConfigApplicationContext createContext(int theParseThreadCount) {
+		DaoConfig config = new DaoConfig();
+		config.setParseThreadCount(theParseThreadCount);
+		AnnotationConfigApplicationContext retVal = new AnnotationConfigApplicationContext();
+		retVal.getBeanFactory().registerSingleton("myDaoConfig", config);
+		retVal.register(ResourceParseExecutor.class);
+		retVal.refresh();
+		return retVal;
+	}
+
+	@Test
+	public void testDisabledWithNoThreads() {
+		AnnotationConfigApplicationContext ctx = createContext(0);
+		try {
+			assertFalse(ctx.getBean(ResourceParseExecutor.class).isEnabled());
+		} finally {
+			ctx.close();
+		}
+	}
+
+	@Test
+	public void testStoppedWithContext() throws Exception {
+		AnnotationConfigApplicationContext ctx = createContext(1);
+		ResourceParseExecutor executor = ctx.getBean(ResourceParseExecutor.class);
+		assertTrue(executor.isEnabled());
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<String> running = executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				started.countDown();
+				release.await();
+				return "running";
+			}
+		});
+		Future<String> queued = executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "queued";
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		ctx.close();
+		assertFalse(executor.isEnabled());
+
+		// A task which never got a thread is cancelled, so nothing is left waiting for it
+		assertTrue(queued.isCancelled());
+		release.countDown();
+		try {
+			running.get(10, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			// Interrupted by the shutdown
+		}
+		assertTrue(running.isDone());
+	}
+
+}
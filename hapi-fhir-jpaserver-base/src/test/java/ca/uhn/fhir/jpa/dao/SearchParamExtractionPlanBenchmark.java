@@ -0,0 +1,53 @@
+package ca.uhn.fhir.jpa.dao;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.model.api.IResource;
+
+/**
+ * Not a unit test: logs the time taken to collect the values of every search parameter by resolving each path
+ * separately, and with the compiled plan. Normal builds skip this class, run it with
+ * <code>mvn test -PBENCHMARK -Dtest=SearchParamExtractionPlanBenchmark</code>
+ */
+public class SearchParamExtractionPlanBenchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractionPlanBenchmark.class);
+	private static FhirContext ourCtx;
+
+	@Test
+	public void testThroughput() {
+		int passes = 20000;
+		IResource[] resources = new IResource[] { SearchParamExtractionPlanTest.createPatient(), SearchParamExtractionPlanTest.createObservation() };
+		SearchParamExtractorDstu1 extractor = new SearchParamExtractorDstu1(ourCtx);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < passes; i++) {
+			for (IResource next : resources) {
+				for (RuntimeSearchParam nextSpDef : ourCtx.getResourceDefinition(next).getSearchParams()) {
+					SearchParamExtractionPlanTest.extractValuesWithTerser(nextSpDef, next);
+				}
+			}
+		}
+		long terserNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < passes; i++) {
+			for (IResource next : resources) {
+				extractor.extractValues(next);
+			}
+		}
+		long planNanos = System.nanoTime() - start;
+
+		ourLog.info("Per path: {} us/resource, compiled plan: {} us/resource", (terserNanos / 1000) / (passes * resources.length), (planNanos / 1000) / (passes * resources.length));
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		SearchParamExtractionPlanTest.beforeClass();
+		ourCtx = SearchParamExtractionPlanTest.ourCtx;
+	}
+
+}
@@ -0,0 +1,150 @@
+package ca.uhn.fhir.jpa.dao;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.composite.QuantityDt;
+import ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt;
+import ca.uhn.fhir.model.dstu.resource.Observation;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.dstu.valueset.AdministrativeGenderCodesEnum;
+import ca.uhn.fhir.model.dstu.valueset.ContactSystemEnum;
+import ca.uhn.fhir.model.dstu.valueset.SearchParamTypeEnum;
+import ca.uhn.fhir.model.primitive.DateTimeDt;
+import ca.uhn.fhir.util.FhirTerser;
+
+public class SearchParamExtractionPlanTest {
+
+	// Shared with SearchParamExtractionPlanBenchmark
+	static FhirContext ourCtx;
+
+	@Test
+	public void testExtractorUsesPlan() {
+		SearchParamExtractorDstu1 extractor = new SearchParamExtractorDstu1(ourCtx);
+		Patient patient = createPatient();
+		SearchParamExtractionPlan.Values values = extractor.extractValues(patient);
+
+		ResourceTable entity = new ResourceTable();
+		List<String> names = new ArrayList<String>();
+		for (ResourceIndexedSearchParamString next : extractor.extractSearchParamStrings(entity, values)) {
+			if (next.getParamName().equals(Patient.SP_FAMILY)) {
+				names.add(next.getValueExact());
+			}
+		}
+		assertEquals("[Smith, Jones]", names.toString());
+
+		List<String> identifiers = new ArrayList<String>();
+		for (BaseResourceIndexedSearchParam next : extractor.extractSearchParamTokens(entity, values)) {
+			if (next.getParamName().equals(Patient.SP_IDENTIFIER)) {
+				identifiers.add(((ResourceIndexedSearchParamToken) next).getValue());
+			}
+		}
+		assertEquals("[111, 222]", identifiers.toString());
+		assertTrue(entity.isParamsStringPopulated());
+		assertTrue(entity.isParamsTokenPopulated());
+	}
+
+	@Test
+	public void testPlanIsCachedPerResourceType() {
+		SearchParamExtractorDstu1 extractor = new SearchParamExtractorDstu1(ourCtx);
+		RuntimeResourceDefinition def = ourCtx.getResourceDefinition(Patient.class);
+		assertSame(extractor.getPlan(def), extractor.getPlan(def));
+		assertNotSame(extractor.getPlan(def), extractor.getPlan(ourCtx.getResourceDefinition(Observation.class)));
+	}
+
+	@Test
+	public void testSearchParamsGroupedByType() {
+		SearchParamExtractionPlan plan = new SearchParamExtractionPlan(ourCtx, ourCtx.getResourceDefinition(Observation.class));
+		for (SearchParamTypeEnum nextType : SearchParamTypeEnum.values()) {
+			for (RuntimeSearchParam next : plan.getSearchParams(nextType)) {
+				assertEquals(nextType, next.getParamType());
+			}
+		}
+		assertTrue(plan.getSearchParams(SearchParamTypeEnum.REFERENCE).contains(ourCtx.getResourceDefinition(Observation.class).getSearchParam(Observation.SP_SUBJECT)));
+	}
+
+	@Test
+	public void testValuesMatchTerser() {
+		for (IResource next : new IResource[] { createPatient(), createObservation(), new Patient() }) {
+			RuntimeResourceDefinition def = ourCtx.getResourceDefinition(next);
+			SearchParamExtractionPlan.Values values = new SearchParamExtractionPlan(ourCtx, def).extract(next);
+
+			for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
+				List<Object> expected = extractValuesWithTerser(nextSpDef, next);
+				List<Object> actual = values.getValues(nextSpDef);
+				assertEquals(def.getName() + "." + nextSpDef.getName(), expected.size(), actual.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertSame(def.getName() + "." + nextSpDef.getName(), expected.get(i), actual.get(i));
+				}
+			}
+		}
+	}
+
+	static Patient createPatient() {
+		Patient patient = new Patient();
+		patient.addIdentifier("urn:system", "111");
+		patient.addIdentifier("urn:system", "222");
+		patient.addName().addFamily("Smith").addGiven("John").addGiven("Q");
+		patient.addName().addFamily("Jones");
+		patient.addTelecom().setSystem(ContactSystemEnum.PHONE).setValue("555-1212");
+		patient.addAddress().addLine("1 Main St").setCity("Toronto");
+		patient.setGender(AdministrativeGenderCodesEnum.M);
+		patient.setBirthDate(new DateTimeDt("1970-01-01"));
+		patient.setManagingOrganization(new ResourceReferenceDt("Organization/1"));
+		return patient;
+	}
+
+	static Observation createObservation() {
+		Observation obs = new Observation();
+		obs.getName().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		obs.getName().setText("Some observation");
+		QuantityDt value = new QuantityDt();
+		value.setValue(new BigDecimal("1.5"));
+		value.setUnits("mg");
+		obs.setValue(value);
+		obs.setApplies(new DateTimeDt(new Date()));
+		obs.setSubject(new ResourceReferenceDt("Patient/1"));
+		obs.addPerformer().setReference("Practitioner/1");
+		return obs;
+	}
+
+	/**
+	 * Collects the values the way the extractors did before the paths were compiled
+	 */
+	static List<Object> extractValuesWithTerser(RuntimeSearchParam theSearchParam, IResource theResource) {
+		List<Object> values = new ArrayList<Object>();
+		if (theSearchParam.getPath() == null || theSearchParam.getPath().trim().length() == 0) {
+			return values;
+		}
+		FhirTerser t = ourCtx.newTerser();
+		for (String nextPath : theSearchParam.getPath().split("\\|")) {
+			try {
+				values.addAll(t.getValues(theResource, nextPath.trim()));
+			} catch (Exception e) {
+				// Paths which can't be resolved are skipped
+			}
+		}
+		return values;
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourCtx = new FhirContext();
+	}
+
+}
@@ -0,0 +1,178 @@
+package ca.uhn.fhir.jpa.provider;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IPidBundleProvider;
+import ca.uhn.fhir.jpa.dao.SearchParameterMap;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.model.dstu2.resource.Organization;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+
+public class JpaPagingProviderTest {
+
+	private static ClassPathXmlApplicationContext ourCtx;
+	private static IFhirResourceDao<Organization> ourOrganizationDao;
+	private static IdDt ourOrgId;
+	private static IFhirResourceDao<Patient> ourPatientDao;
+
+	private JpaPagingProvider newPagingProvider(long theExpireAfterMillis, int theMaximumLocalResults) {
+		JpaPagingProvider retVal = new JpaPagingProvider(theExpireAfterMillis, theMaximumLocalResults);
+		retVal.setContext(ourCtx.getBean(FhirContext.class));
+		ourCtx.getAutowireCapableBeanFactory().autowireBean(retVal);
+		return retVal;
+	}
+
+	@Test
+	public void testExpiredSearchesArePurged() throws Exception {
+		JpaPagingProvider provider = newPagingProvider(1000, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS);
+		IBundleProvider found = ourPatientDao.search(createParams());
+		String id = provider.storeResultList(found);
+		assertNotNull(provider.retrieveResultList(id));
+
+		Thread.sleep(2000);
+		assertNull(provider.retrieveResultList(id));
+		assertNull(newPagingProvider(1000, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS).retrieveResultList(id));
+		assertTrue(provider.purgeExpiredSearches() >= 1);
+
+		// Once purged, even a provider with a longer expiry can't find it
+		assertNull(newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS).retrieveResultList(id));
+	}
+
+	@Test
+	public void testIncludesAreStoredWithSearch() {
+		Organization org = new Organization();
+		org.setName("testIncludesAreStoredWithSearch");
+		IdDt orgId = ourOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		Patient linked = new Patient();
+		linked.addName().addFamily("linkedFromTestIncludesAreStoredWithSearch");
+		IdDt linkedId = ourPatientDao.create(linked).getId().toUnqualifiedVersionless();
+
+		Patient patient = new Patient();
+		patient.addName().addFamily("testIncludesAreStoredWithSearch");
+		patient.getManagingOrganization().setReference(orgId);
+		patient.addLink().getOther().setReference(linkedId);
+		IdDt patientId = ourPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("testIncludesAreStoredWithSearch"));
+		params.addInclude(Patient.INCLUDE_MANAGINGORGANIZATION);
+		params.addInclude(new Include("Patient.link.other"));
+		String id = newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS).storeResultList(ourPatientDao.search(params));
+
+		IBundleProvider retrieved = newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS).retrieveResultList(id);
+		assertEquals(params.getIncludes(), ((IPidBundleProvider) retrieved).getIncludes());
+		assertEquals(1, retrieved.size());
+
+		List<IdDt> page = toIds(retrieved.getResources(0, 1));
+		assertEquals(patientId, page.get(0));
+		Set<IdDt> included = new HashSet<IdDt>(page.subList(1, page.size()));
+		Set<IdDt> expected = new HashSet<IdDt>();
+		expected.add(orgId);
+		expected.add(linkedId);
+		assertEquals(expected, included);
+	}
+
+	@Test
+	public void testNonPidResultsAreOnlyAvailableLocally() {
+		JpaPagingProvider provider = newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, 5);
+		List<IResource> resources = new ArrayList<IResource>();
+		resources.add(new Patient());
+		String id = provider.storeResultList(new SimpleBundleProvider(resources));
+		assertEquals(1, provider.retrieveResultList(id).size());
+		assertNull(newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, 5).retrieveResultList(id));
+
+		// Results which don't fit in the local cache are discarded
+		for (int i = 0; i < 9; i++) {
+			resources.add(new Patient());
+		}
+		id = provider.storeResultList(new SimpleBundleProvider(resources));
+		assertNull(provider.retrieveResultList(id));
+	}
+
+	@Test
+	public void testStoredSearchCanBeRetrievedByAnotherProvider() {
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		for (boolean stream : new boolean[] { false, true }) {
+			config.setStreamSearchResults(stream);
+			try {
+				IBundleProvider found = ourPatientDao.search(createParams());
+				assertEquals(25, found.size());
+				List<IdDt> expected = toIds(found.getResources(10, 20));
+
+				String id = newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS).storeResultList(found);
+
+				IBundleProvider retrieved = newPagingProvider(JpaPagingProvider.DEFAULT_EXPIRE_AFTER_MILLIS, JpaPagingProvider.DEFAULT_MAXIMUM_LOCAL_RESULTS).retrieveResultList(id);
+				assertNotNull(retrieved);
+				assertEquals(25, retrieved.size());
+				assertEquals(found.getPublished().getValue(), retrieved.getPublished().getValue());
+				assertEquals(expected, toIds(retrieved.getResources(10, 20)));
+				// The last 5 patients, and the organization they all refer to
+				List<IdDt> lastPage = toIds(retrieved.getResources(20, 30));
+				assertEquals(6, lastPage.size());
+				assertEquals(ourOrgId, lastPage.get(5));
+			} finally {
+				config.setStreamSearchResults(false);
+			}
+		}
+	}
+
+	private static SearchParameterMap createParams() {
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("testJpaPagingProvider"));
+		params.addInclude(Patient.INCLUDE_MANAGINGORGANIZATION);
+		return params;
+	}
+
+	private static List<IdDt> toIds(List<IResource> theResources) {
+		List<IdDt> retVal = new ArrayList<IdDt>();
+		for (IResource next : theResources) {
+			retVal.add(next.getId().toUnqualifiedVersionless());
+		}
+		return retVal;
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		ourCtx.close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@BeforeClass
+	public static void beforeClass() {
+		ourCtx = new ClassPathXmlApplicationContext("fhir-jpabase-spring-test-config.xml");
+		ourPatientDao = ourCtx.getBean("myPatientDao", IFhirResourceDao.class);
+		ourOrganizationDao = ourCtx.getBean("myOrganizationDao", IFhirResourceDao.class);
+
+		Organization org = new Organization();
+		org.setName("testJpaPagingProvider");
+		ourOrgId = ourOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		for (int i = 0; i < 25; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("testJpaPagingProvider" + i);
+			patient.addName().addFamily("testJpaPagingProvider");
+			patient.getManagingOrganization().setReference(ourOrgId);
+			ourPatientDao.create(patient);
+		}
+	}
+
+}
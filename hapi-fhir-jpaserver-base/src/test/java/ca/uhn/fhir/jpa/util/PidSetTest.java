@@ -0,0 +1,77 @@
+package ca.uhn.fhir.jpa.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class PidSetTest {
+
+	@Test
+	public void testBuilderSortsAndRemovesDuplicates() {
+		PidSet set = new PidSet.Builder().add(5).add(1).add(3).add(5).add(1).build();
+		assertEquals(3, set.size());
+		assertArrayEquals(new long[] { 1, 3, 5 }, set.toLongArray());
+		assertTrue(set.containsPid(3));
+		assertFalse(set.containsPid(4));
+		assertTrue(set.contains(5L));
+		assertFalse(set.contains("5"));
+		assertEquals(1L, set.getPid(0));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertTrue(PidSet.empty().isEmpty());
+		assertTrue(new PidSet.Builder(0).build().isEmpty());
+		assertEquals(PidSet.of(1, 2), PidSet.empty().union(PidSet.of(1, 2)));
+	}
+
+	@Test
+	public void testEqualsOtherSets() {
+		Set<Long> expected = new HashSet<Long>(Arrays.asList(2L, 4L, 6L));
+		assertEquals(expected, PidSet.of(6, 4, 2));
+		assertEquals(PidSet.of(6, 4, 2), expected);
+		assertEquals(expected.hashCode(), PidSet.of(6, 4, 2).hashCode());
+	}
+
+	@Test
+	public void testUnionMatchesJavaCollections() {
+		Random random = new Random(1);
+		for (int pass = 0; pass < 50; pass++) {
+			List<Long> left = randomPids(random, random.nextInt(200));
+			List<Long> right = randomPids(random, random.nextInt(5) == 0 ? 5000 : random.nextInt(200));
+
+			Set<Long> expectedUnion = new TreeSet<Long>(left);
+			expectedUnion.addAll(right);
+
+			PidSet leftSet = toPidSet(left);
+			PidSet rightSet = toPidSet(right);
+			assertEquals(new ArrayList<Long>(expectedUnion), new ArrayList<Long>(leftSet.union(rightSet)));
+			assertEquals(new ArrayList<Long>(expectedUnion), new ArrayList<Long>(rightSet.union(leftSet)));
+		}
+	}
+
+	private static PidSet toPidSet(List<Long> thePids) {
+		PidSet.Builder retVal = new PidSet.Builder();
+		for (Long next : thePids) {
+			retVal.add(next);
+		}
+		return retVal.build();
+	}
+
+	private static List<Long> randomPids(Random theRandom, int theCount) {
+		List<Long> retVal = new ArrayList<Long>();
+		for (int i = 0; i < theCount; i++) {
+			retVal.add((long) theRandom.nextInt(10000));
+		}
+		return retVal;
+	}
+
+}
@@ -0,0 +1,72 @@
+package ca.uhn.fhir.jpa.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
+
+/**
+ * Not a unit test: logs the size and encode/decode throughput of each codec against the sample resources. Normal
+ * builds skip this class, run it with <code>mvn test -PBENCHMARK -Dtest=ResourceBodyCodecBenchmark</code>
+ */
+public class ResourceBodyCodecBenchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceBodyCodecBenchmark.class);
+	private static List<String> ourSamples;
+
+	@Test
+	public void testThroughput() {
+		int passes = 200;
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			IResourceBodyCodec codec = next.getCodec();
+			long rawBytes = 0;
+			long storedBytes = 0;
+			List<byte[]> encoded = new ArrayList<byte[]>();
+			for (String nextSample : ourSamples) {
+				byte[] bytes = codec.encode(nextSample);
+				encoded.add(bytes);
+				rawBytes += nextSample.length();
+				storedBytes += bytes.length;
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < passes; i++) {
+				for (String nextSample : ourSamples) {
+					codec.encode(nextSample);
+				}
+			}
+			long encodeNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++) {
+				for (byte[] nextEncoded : encoded) {
+					codec.decode(nextEncoded);
+				}
+			}
+			long decodeNanos = System.nanoTime() - start;
+
+			double mb = (rawBytes * passes) / (1024.0 * 1024.0);
+			ourLog.info("{}: stored size {}% of original, write {} MB/s, read {} MB/s", new Object[] { next, (storedBytes * 100) / rawBytes, (int) (mb / (encodeNanos / 1e9)), (int) (mb / (decodeNanos / 1e9)) });
+		}
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		ourSamples = new ArrayList<String>();
+		for (String next : new String[] { "/documentmanifest.json", "/documentreference.json", "/imagingstudy.json", "/bundle.json" }) {
+			InputStream stream = ResourceBodyCodecBenchmark.class.getResourceAsStream(next);
+			try {
+				ourSamples.add(IOUtils.toString(stream, "UTF-8"));
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package ca.uhn.fhir.jpa.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.parser.DataFormatException;
+
+public class ResourceBodyCodecTest {
+
+	private static List<String> ourSamples;
+
+	@Test
+	public void testCorruptDataRejected() {
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			if (next == ResourceEncodingEnum.JSON || next == ResourceEncodingEnum.CBOR) {
+				continue;
+			}
+			byte[] encoded = next.getCodec().encode(ourSamples.get(0));
+			byte[] truncated = new byte[encoded.length / 2];
+			System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+			try {
+				next.getCodec().decode(truncated);
+				fail(next.name());
+			} catch (DataFormatException e) {
+				// good
+			}
+		}
+	}
+
+	@Test
+	public void testEncodeWithParser() {
+		FhirContext ctx = new FhirContext();
+		Patient patient = new Patient();
+		patient.addIdentifier("urn:system", "12345");
+		patient.addName().addFamily("M\u00fcller").addGiven("\u65e5\u672c");
+
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			if (next.isBinary()) {
+				Patient parsed = next.newParser(ctx).parseResource(Patient.class, new ByteArrayInputStream(next.getCodec().encode(next.newParser(ctx), patient)));
+				assertEquals(next.name(), ctx.newJsonParser().encodeResourceToString(patient), ctx.newJsonParser().encodeResourceToString(parsed));
+				continue;
+			}
+			String expected = next.newParser(ctx).encodeResourceToString(patient);
+			byte[] encoded = next.getCodec().encode(next.newParser(ctx), patient);
+			assertEquals(next.name(), expected, next.getCodec().decode(encoded));
+			assertArrayEquals(next.name(), next.getCodec().encode(expected), encoded);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			for (String nextSample : ourSamples) {
+				byte[] encoded = next.getCodec().encode(nextSample);
+				assertEquals(next.name(), nextSample, next.getCodec().decode(encoded));
+
+				Reader reader = next.getCodec().newReader(encoded);
+				assertEquals(next.name(), nextSample, IOUtils.toString(reader));
+			}
+			assertEquals("", next.getCodec().decode(next.getCodec().encode("")));
+		}
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		ourSamples = new ArrayList<String>();
+		for (String next : new String[] { "/documentmanifest.json", "/documentreference.json", "/imagingstudy.json", "/bundle.json" }) {
+			InputStream stream = ResourceBodyCodecTest.class.getResourceAsStream(next);
+			try {
+				ourSamples.add(IOUtils.toString(stream, "UTF-8"));
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+}
@@ -3,10 +3,21 @@ package ca.uhn.fhir.context;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.dstu.resource.Practitioner;
 import ca.uhn.fhir.model.dstu.resource.ValueSet;
 
 public class FhirContextTest {
@@ -22,6 +33,81 @@ public class FhirContextTest {
 		assertSame(vsDef, vsDef2);
 	}
 
+	@Test
+	public void testLazyModelScanning() {
+		FhirContext ctx = new FhirContext();
+		ctx.setLazyModelScanning(true);
+
+		RuntimeResourceDefinition ptDef = ctx.getResourceDefinition(Patient.class);
+		assertNull(ctx.getResourceDefinitionById("practitioner"));
+
+		RuntimeChildResourceDefinition providerChild = (RuntimeChildResourceDefinition) ptDef.getChildByName("careProvider");
+		RuntimeResourceReferenceDefinition refDef = (RuntimeResourceReferenceDefinition) providerChild.getChildByName("careProvider");
+		RuntimeResourceDefinition practDef = refDef.getDefinitionForResourceType(Practitioner.class);
+		assertSame(ctx.getResourceDefinition(Practitioner.class), practDef);
+		assertSame(practDef, ctx.getResourceDefinitionById("practitioner"));
+
+		Patient p = new Patient();
+		Practitioner pract = new Practitioner();
+		pract.getName().addFamily("FAMILY");
+		p.addCareProvider().setResource(pract);
+		String encoded = new FhirContext().newXmlParser().encodeResourceToString(p);
+
+		FhirContext lazyCtx = new FhirContext();
+		lazyCtx.setLazyModelScanning(true);
+		Patient parsed = lazyCtx.newXmlParser().parseResource(Patient.class, encoded);
+		assertEquals("FAMILY", ((Practitioner) parsed.getContained().getContainedResources().get(0)).getName().getFamilyFirstRep().getValue());
+		assertEquals(encoded, lazyCtx.newXmlParser().encodeResourceToString(parsed));
+	}
+
+	@Test
+	public void testEagerModelScanningIncludesReferencedTypes() {
+		FhirContext ctx = new FhirContext();
+		ctx.getResourceDefinition(Patient.class);
+		assertNotNull(ctx.getResourceDefinitionById("practitioner"));
+	}
+
+	@Test
+	public void testConcurrentLazyModelScanning() throws Exception {
+		final FhirContext ctx = new FhirContext();
+		ctx.setLazyModelScanning(true);
+
+		final List<String> names = Arrays.asList("Patient", "Observation", "Organization", "Practitioner", "Encounter", "DiagnosticReport", "Condition", "Location", "Device", "Specimen");
+		int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<RuntimeResourceDefinition>>> futures = new ArrayList<Future<List<RuntimeResourceDefinition>>>();
+			for (int i = 0; i < threads; i++) {
+				final int offset = i;
+				futures.add(executor.submit(new Callable<List<RuntimeResourceDefinition>>() {
+					@Override
+					public List<RuntimeResourceDefinition> call() throws Exception {
+						List<String> order = new ArrayList<String>(names);
+						Collections.rotate(order, offset);
+						start.await();
+						List<RuntimeResourceDefinition> retVal = new ArrayList<RuntimeResourceDefinition>();
+						for (String next : order) {
+							retVal.add(ctx.getResourceDefinition(next));
+						}
+						Collections.rotate(retVal, -offset);
+						return retVal;
+					}
+				}));
+			}
+			start.countDown();
+
+			for (Future<List<RuntimeResourceDefinition>> next : futures) {
+				List<RuntimeResourceDefinition> defs = next.get();
+				for (int i = 0; i < names.size(); i++) {
+					assertSame(ctx.getResourceDefinition(names.get(i)), defs.get(i));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void testFindBinary() {
 		RuntimeResourceDefinition def = new FhirContext().getResourceDefinition("Binary");
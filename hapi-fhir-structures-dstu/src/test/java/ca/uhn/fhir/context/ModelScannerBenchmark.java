@@ -0,0 +1,44 @@
+package ca.uhn.fhir.context;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Not a unit test: logs the time taken to build a context and scan every resource type with and without the generated
+ * model index. Normal builds skip this class, run it with <code>mvn test -PBENCHMARK -Dtest=ModelScannerBenchmark</code>
+ */
+public class ModelScannerBenchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ModelScannerBenchmark.class);
+
+	@Test
+	public void testModelIndexStartupTime() {
+		// The first pass loads all of the model classes, which dwarfs the scanning time
+		timeStartup();
+
+		int passes = 5;
+		long indexed = 0;
+		long reflective = 0;
+		for (int i = 0; i < passes; i++) {
+			indexed += timeStartup();
+			ModelIndex.setEnabled(false);
+			try {
+				reflective += timeStartup();
+			} finally {
+				ModelIndex.setEnabled(true);
+			}
+		}
+		ourLog.info("Average context startup with model index: {}ms, reflective: {}ms", indexed / passes, reflective / passes);
+	}
+
+	private static long timeStartup() {
+		long start = System.currentTimeMillis();
+		FhirContext ctx = new FhirContext();
+		for (String next : ModelIndex.forVersion(ctx.getVersion()).getNameToResourceType().keySet()) {
+			assertNotNull(ctx.getResourceDefinition(next));
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+}
@@ -2,8 +2,19 @@ package ca.uhn.fhir.context;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
 import org.junit.Test;
 
+import org.hl7.fhir.instance.model.IBase;
+import org.hl7.fhir.instance.model.IBaseResource;
+
+import ca.uhn.fhir.model.api.IModelAccessor;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.composite.HumanNameDt;
 import ca.uhn.fhir.model.dstu.resource.CarePlan;
 import ca.uhn.fhir.model.dstu.resource.Patient;
 import ca.uhn.fhir.parser.DataFormatException;
@@ -17,6 +28,73 @@ public class ModelScannerTest {
 		new ModelScanner(new FhirContext(), CarePlan.class);
 	}
 	
+	@Test
+	public void testGeneratedModelAccessor() {
+		assertNotNull(ModelScanner.findModelAccessor(Patient.class));
+		assertNotNull(ModelScanner.findModelAccessor(Patient.Contact.class));
+		assertNull(ModelScanner.findModelAccessor(MyPatient.class));
+
+		IModelAccessor accessor = ModelScanner.findModelAccessor(Patient.class);
+		Patient patient = (Patient) accessor.newInstance();
+		patient.addName().addFamily("FAMILY");
+		int index = accessor.getFieldIndex("myName");
+		assertTrue(index >= 0);
+		assertSame(patient.getName(), accessor.getFieldValue(patient, index));
+		assertEquals(-1, accessor.getFieldIndex("myNonExistant"));
+
+		RuntimeResourceDefinition def = new FhirContext().getResourceDefinition(Patient.class);
+		BaseRuntimeChildDefinition nameChild = def.getChildByName("name");
+		assertEquals("FAMILY", ((HumanNameDt) nameChild.getAccessor().getValues(patient).get(0)).getFamilyFirstRep().getValue());
+	}
+
+	@Test
+	public void testModelIndexMatchesReflectiveScan() throws Exception {
+		FhirContext ctx = new FhirContext();
+		List<Class<? extends IResource>> resourceTypes = new ArrayList<Class<? extends IResource>>();
+		for (String next : ModelIndex.forVersion(ctx.getVersion()).getNameToResourceType().values()) {
+			resourceTypes.add(Class.forName(next).asSubclass(IResource.class));
+		}
+
+		ModelScanner indexed = new ModelScanner(ctx, new ArrayList<Class<? extends IBaseResource>>(resourceTypes));
+		ModelScanner reflective;
+		ModelIndex.setEnabled(false);
+		try {
+			reflective = new ModelScanner(ctx, new ArrayList<Class<? extends IBaseResource>>(resourceTypes));
+		} finally {
+			ModelIndex.setEnabled(true);
+		}
+
+		assertEquals(reflective.getClassToElementDefinitions().keySet(), indexed.getClassToElementDefinitions().keySet());
+		assertEquals(reflective.getNameToResourceType(), indexed.getNameToResourceType());
+		for (Entry<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> next : reflective.getClassToElementDefinitions().entrySet()) {
+			String expected = describe(next.getValue());
+			String actual = describe(indexed.getClassToElementDefinitions().get(next.getKey()));
+			assertEquals(expected, actual);
+		}
+	}
+
+	private static String describe(BaseRuntimeElementDefinition<?> theDefinition) {
+		StringBuilder b = new StringBuilder();
+		b.append(theDefinition.getClass().getSimpleName()).append(' ').append(theDefinition.getName());
+		if (theDefinition instanceof BaseRuntimeElementCompositeDefinition) {
+			for (BaseRuntimeChildDefinition next : ((BaseRuntimeElementCompositeDefinition<?>) theDefinition).getChildrenAndExtension()) {
+				b.append("\n ").append(next.getClass().getSimpleName()).append(' ').append(next.getElementName());
+				b.append(' ').append(next.getMin()).append("..").append(next.getMax()).append(' ').append(new TreeSet<String>(next.getValidChildNames()));
+			}
+		}
+		if (theDefinition instanceof RuntimeResourceDefinition) {
+			for (RuntimeSearchParam next : ((RuntimeResourceDefinition) theDefinition).getSearchParams()) {
+				b.append("\n param ").append(next.getName()).append(' ').append(next.getParamType()).append(' ').append(next.getPath());
+				if (next.getCompositeOf() != null) {
+					for (RuntimeSearchParam nextCompositeOf : next.getCompositeOf()) {
+						b.append(' ').append(nextCompositeOf.getName());
+					}
+				}
+			}
+		}
+		return b.toString();
+	}
+
 	@Test
 	public void testExtendedClass() {
 		FhirContext ctx = new FhirContext();
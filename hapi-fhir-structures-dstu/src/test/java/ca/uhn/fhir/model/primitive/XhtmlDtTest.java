@@ -1,9 +1,11 @@
 package ca.uhn.fhir.model.primitive;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import ca.uhn.fhir.parser.DataFormatException;
+
 public class XhtmlDtTest {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(XhtmlDtTest.class);
@@ -44,6 +46,35 @@ public class XhtmlDtTest {
 
 	}
 
+	@Test
+	public void testStringValueIsParsedOnDemand() {
+		XhtmlDt x = new XhtmlDt();
+		x.setValueAsString("<div>unclosed");
+		assertFalse(x.isEmpty());
+		assertEquals("<div>unclosed", x.getValueAsString());
+
+		try {
+			x.getValue();
+			fail();
+		} catch (DataFormatException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		XhtmlDt x = new XhtmlDt();
+		assertTrue(x.isEmpty());
+		x.setValueAsString("<div>a</div>");
+		assertFalse(x.isEmpty());
+		x.setValueAsString("");
+		assertTrue(x.isEmpty());
+		assertNull(x.getValue());
+		x.setValue(new XhtmlDt("<div>a</div>").getValue());
+		assertFalse(x.isEmpty());
+		assertEquals("<div>a</div>", x.getValueAsString());
+	}
+
 	@Test
 	public void testBasicCharacterEntity() {
 		String input = "amp &amp;";
@@ -1,15 +1,25 @@
 package ca.uhn.fhir.parser;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.model.dstu.resource.AllergyIntolerance;
 import ca.uhn.fhir.model.dstu.resource.Composition;
+import ca.uhn.fhir.model.dstu.resource.Organization;
+import ca.uhn.fhir.model.dstu.resource.Patient;
 
 public class BaseParserTest {
 
@@ -25,6 +35,62 @@ public class BaseParserTest {
 		return retVal.addIdentifier("urn:system", theIdentifierValue);
 	}
 
+	private Patient createPatientWithContainedOrganization(int theIndex) {
+		Organization org = new Organization();
+		org.getName().setValue("Organization " + theIndex);
+
+		Patient retVal = new Patient();
+		retVal.setId("Patient/" + theIndex);
+		retVal.addIdentifier("urn:mrns", "MRN" + theIndex);
+		retVal.getManagingOrganization().setResource(org);
+		return retVal;
+	}
+
+	/**
+	 * A configured parser may be shared between threads, including when the resources being encoded have contained
+	 * resources (which are tracked per encoding)
+	 */
+	@Test
+	public void testSharedParserEncodesConcurrently() throws Exception {
+		final IParser[] parsers = { ourCtx.newXmlParser().setPrettyPrint(true), ourCtx.newJsonParser().setPrettyPrint(true) };
+		final int count = 200;
+
+		final List<List<String>> expected = new ArrayList<List<String>>();
+		for (IParser nextParser : parsers) {
+			List<String> encoded = new ArrayList<String>();
+			for (int i = 0; i < count; i++) {
+				encoded.add(nextParser.encodeResourceToString(createPatientWithContainedOrganization(i)));
+			}
+			expected.add(encoded);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int thread = 0; thread < 8; thread++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int i = 0; i < count; i++) {
+							for (int p = 0; p < parsers.length; p++) {
+								assertEquals(expected.get(p).get(i), parsers[p].encodeResourceToString(createPatientWithContainedOrganization(i)));
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(expected.get(0).get(0), stringContainsInOrder("<contained>", "<Organization", "id=\"1\""));
+		assertThat(expected.get(1).get(0), stringContainsInOrder("\"contained\"", "\"id\":\"1\""));
+	}
+
 	/**
 	 * See #103
 	 */
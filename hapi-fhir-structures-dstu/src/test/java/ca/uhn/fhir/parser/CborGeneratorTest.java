@@ -0,0 +1,117 @@
+package ca.uhn.fhir.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+/**
+ * Encodes the examples from <a href="http://tools.ietf.org/html/rfc7049#appendix-A">RFC 7049 appendix A</a> which the
+ * generator can produce. Containers are always written with an indefinite length, and floating point numbers are
+ * always written at double precision, so only the examples which use those forms are checked.
+ */
+public class CborGeneratorTest {
+
+	@Test
+	public void testContainers() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CborGenerator gen = new CborGenerator(bytes);
+		gen.writeStartArray().writeEnd().flush();
+		assertEquals("9fff", Hex.encodeHexString(bytes.toByteArray()));
+
+		bytes = new ByteArrayOutputStream();
+		gen = new CborGenerator(bytes);
+		gen.writeStartObject().write("a", 1).writeStartArray("b").write(2).write(3).writeEnd().writeEnd().flush();
+		assertEquals("bf61610161629f0203ffff", Hex.encodeHexString(bytes.toByteArray()));
+
+		bytes = new ByteArrayOutputStream();
+		gen = new CborGenerator(bytes);
+		gen.writeStartObject().write("Fun", true).write("Amt", -2).writeEnd().flush();
+		assertEquals("bf6346756ef563416d7421ff", Hex.encodeHexString(bytes.toByteArray()));
+	}
+
+	@Test
+	public void testFloats() {
+		assertEquals("fb3ff199999999999a", encode(1.1));
+		assertEquals("fb7e37e43c8800759c", encode(1.0e+300));
+		assertEquals("fbc010666666666666", encode(-4.1));
+	}
+
+	@Test
+	public void testIntegers() {
+		assertEquals("00", encode(0));
+		assertEquals("01", encode(1));
+		assertEquals("0a", encode(10));
+		assertEquals("17", encode(23));
+		assertEquals("1818", encode(24));
+		assertEquals("1819", encode(25));
+		assertEquals("1864", encode(100));
+		assertEquals("1903e8", encode(1000));
+		assertEquals("1a000f4240", encode(1000000));
+		assertEquals("1b000000e8d4a51000", encode(1000000000000L));
+		assertEquals("1bffffffffffffffff", encode(new BigInteger("18446744073709551615")));
+		assertEquals("c249010000000000000000", encode(new BigInteger("18446744073709551616")));
+		assertEquals("3bffffffffffffffff", encode(new BigInteger("-18446744073709551616")));
+		assertEquals("c349010000000000000000", encode(new BigInteger("-18446744073709551617")));
+		assertEquals("20", encode(-1));
+		assertEquals("29", encode(-10));
+		assertEquals("3863", encode(-100));
+		assertEquals("3903e7", encode(-1000));
+
+		// Decimal fraction example from section 2.4.3
+		assertEquals("c48221196ab3", encode(new BigDecimal("273.15")));
+	}
+
+	@Test
+	public void testSimpleValues() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborGenerator(bytes).write(false).write(true).writeNull().flush();
+		assertEquals("f4f5f6", Hex.encodeHexString(bytes.toByteArray()));
+	}
+
+	@Test
+	public void testStrings() {
+		assertEquals("60", encode(""));
+		assertEquals("6161", encode("a"));
+		assertEquals("6449455446", encode("IETF"));
+		assertEquals("62225c", encode("\"\\"));
+		assertEquals("62c3bc", encode("\u00fc"));
+		assertEquals("63e6b0b4", encode("\u6c34"));
+		assertEquals("64f0908591", encode("\ud800\udd51"));
+	}
+
+	private static String encode(BigDecimal theValue) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborGenerator(bytes).write(theValue).flush();
+		return Hex.encodeHexString(bytes.toByteArray());
+	}
+
+	private static String encode(BigInteger theValue) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborGenerator(bytes).write(theValue).flush();
+		return Hex.encodeHexString(bytes.toByteArray());
+	}
+
+	private static String encode(double theValue) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborGenerator(bytes).write(theValue).flush();
+		return Hex.encodeHexString(bytes.toByteArray());
+	}
+
+	private static String encode(long theValue) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborGenerator(bytes).write(theValue).flush();
+		return Hex.encodeHexString(bytes.toByteArray());
+	}
+
+	private static String encode(String theValue) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborGenerator(bytes).write(theValue).flush();
+		return Hex.encodeHexString(bytes.toByteArray());
+	}
+
+}
@@ -0,0 +1,54 @@
+package ca.uhn.fhir.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Bundle;
+
+/**
+ * Not a unit test: logs the size and encode/parse throughput of each encoding against a large bundle. Normal builds
+ * skip this class, run it with <code>mvn test -PBENCHMARK -Dtest=CborParserBenchmark</code>
+ */
+public class CborParserBenchmark {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(CborParserBenchmark.class);
+	private static FhirContext ourCtx;
+
+	@Test
+	public void testThroughput() throws Exception {
+		String json = IOUtils.toString(CborParserBenchmark.class.getResourceAsStream("/atom-document-large.json"), Charset.forName("UTF-8"));
+		Bundle bundle = ourCtx.newJsonParser().parseBundle(json);
+		int passes = 20;
+
+		for (IParser next : new IParser[] { ourCtx.newXmlParser(), ourCtx.newJsonParser(), ourCtx.newCborParser() }) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			next.encodeBundleToOutputStream(bundle, bytes);
+			byte[] encoded = bytes.toByteArray();
+
+			long start = System.nanoTime();
+			for (int i = 0; i < passes; i++) {
+				next.encodeBundleToOutputStream(bundle, new ByteArrayOutputStream(encoded.length));
+			}
+			long encodeNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++) {
+				next.parseBundle(null, new ByteArrayInputStream(encoded));
+			}
+			long parseNanos = System.nanoTime() - start;
+
+			ourLog.info("{}: {} bytes, encode {} ms, parse {} ms", new Object[] { next.getClass().getSimpleName(), encoded.length, encodeNanos / passes / 1000000, parseNanos / passes / 1000000 });
+		}
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourCtx = new FhirContext();
+	}
+
+}
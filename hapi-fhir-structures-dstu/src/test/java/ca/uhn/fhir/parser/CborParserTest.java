@@ -0,0 +1,193 @@
+package ca.uhn.fhir.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.api.TagList;
+import ca.uhn.fhir.model.dstu.composite.QuantityDt;
+import ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt;
+import ca.uhn.fhir.model.dstu.resource.Observation;
+import ca.uhn.fhir.model.dstu.resource.Organization;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.dstu.valueset.NarrativeStatusEnum;
+import ca.uhn.fhir.model.primitive.IntegerDt;
+import ca.uhn.fhir.rest.server.Constants;
+import ca.uhn.fhir.rest.server.EncodingEnum;
+
+public class CborParserTest {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(CborParserTest.class);
+	private static FhirContext ourCtx;
+
+	/**
+	 * Methods which work with characters use the base64 form of the CBOR content
+	 */
+	@Test
+	public void testCharacterMethodsUseBase64() throws Exception {
+		IParser parser = ourCtx.newCborParser();
+		IParser jsonParser = ourCtx.newJsonParser();
+		Patient patient = createPatient();
+
+		String encoded = parser.encodeResourceToString(patient);
+		assertArrayEquals(encode(patient), Base64.decodeBase64(encoded));
+		StringWriter writer = new StringWriter();
+		parser.encodeResourceToWriter(patient, writer);
+		assertEquals(encoded, writer.toString());
+
+		Patient parsed = parser.parseResource(Patient.class, encoded);
+		assertEquals(jsonParser.encodeResourceToString(patient), jsonParser.encodeResourceToString(parsed));
+		assertEquals(Patient.class, parser.parseResource(new StringReader(encoded)).getClass());
+
+		Bundle bundle = new Bundle();
+		bundle.addEntry().setResource(patient);
+		Bundle parsedBundle = parser.parseBundle(parser.encodeBundleToString(bundle));
+		assertEquals(jsonParser.encodeBundleToString(bundle), jsonParser.encodeBundleToString(parsedBundle));
+
+		TagList tagList = new TagList();
+		tagList.addTag("http://scheme", "term", "label");
+		assertEquals(tagList, parser.parseTagList(parser.encodeTagListToString(tagList)));
+
+		try {
+			parser.parseResource(Patient.class, "{\"resourceType\":\"Patient\"}");
+			fail();
+		} catch (DataFormatException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("base64"));
+		}
+	}
+
+	/**
+	 * Code which reads content of any FHIR type through a Reader must not be handed a CBOR parser
+	 */
+	@Test
+	public void testContentTypeLookupExcludesCbor() throws Exception {
+		assertNull(EncodingEnum.forContentType(Constants.CT_CBOR));
+		assertNull(EncodingEnum.forContentType(Constants.CT_FHIR_CBOR));
+		assertEquals(EncodingEnum.CBOR, Constants.FORMAT_VAL_TO_ENCODING.get(Constants.CT_FHIR_CBOR));
+		assertFalse(ourCtx.newCborParser() instanceof JsonParser);
+	}
+
+	@Test
+	public void testInvalidContentIsRejected() throws Exception {
+		byte[] bytes = encode(createPatient());
+		byte[] truncated = new byte[bytes.length / 2];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		try {
+			ourCtx.newCborParser().parseResource(Patient.class, new ByteArrayInputStream(truncated));
+			fail();
+		} catch (DataFormatException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Invalid CBOR content"));
+		}
+	}
+
+	@Test
+	public void testIsSmallerThanJson() throws Exception {
+		String json = IOUtils.toString(CborParserTest.class.getResourceAsStream("/example-patient-general.json"), Charset.forName("UTF-8"));
+		Patient patient = ourCtx.newJsonParser().parseResource(Patient.class, json);
+
+		byte[] cbor = encode(patient);
+		byte[] compactJson = ourCtx.newJsonParser().encodeResourceToString(patient).getBytes("UTF-8");
+		ourLog.info("CBOR is {} bytes, JSON is {} bytes", cbor.length, compactJson.length);
+		assertTrue(cbor.length < compactJson.length);
+	}
+
+	@Test
+	public void testRoundTripBundle() throws Exception {
+		String json = IOUtils.toString(CborParserTest.class.getResourceAsStream("/atom-document-large.json"), Charset.forName("UTF-8"));
+		IParser jsonParser = ourCtx.newJsonParser();
+		Bundle bundle = jsonParser.parseBundle(json);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ourCtx.newCborParser().encodeBundleToOutputStream(bundle, bytes);
+		Bundle parsed = ourCtx.newCborParser().parseBundle(null, new ByteArrayInputStream(bytes.toByteArray()));
+
+		assertEquals(bundle.getEntries().size(), parsed.getEntries().size());
+		assertEquals(jsonParser.encodeBundleToString(bundle), jsonParser.encodeBundleToString(parsed));
+	}
+
+	@Test
+	public void testRoundTripNumbers() throws Exception {
+		Observation obs = new Observation();
+		QuantityDt value = new QuantityDt();
+		value.setValue(new BigDecimal("1.500"));
+		obs.setValue(value);
+		obs.getReferenceRangeFirstRep().getLow().setValue(new BigDecimal("-12345678901234567890.000000000001"));
+		obs.getReferenceRangeFirstRep().getHigh().setValue(new BigDecimal("98765432109876543210"));
+		obs.getReferenceRangeFirstRep().getAge().getLow().setValue(new BigDecimal("0"));
+
+		Observation parsed = ourCtx.newCborParser().parseResource(Observation.class, new ByteArrayInputStream(encode(obs)));
+		assertEquals("1.500", ((QuantityDt) parsed.getValue()).getValue().getValueAsString());
+		assertEquals("-12345678901234567890.000000000001", parsed.getReferenceRangeFirstRep().getLow().getValue().getValueAsString());
+		assertEquals("98765432109876543210", parsed.getReferenceRangeFirstRep().getHigh().getValue().getValueAsString());
+		assertEquals("0", parsed.getReferenceRangeFirstRep().getAge().getLow().getValue().getValueAsString());
+
+		Patient patient = new Patient();
+		patient.addUndeclaredExtension(false, "http://foo", new IntegerDt(Integer.MIN_VALUE));
+		patient.addUndeclaredExtension(false, "http://bar", new IntegerDt(Integer.MAX_VALUE));
+		Patient parsedPatient = ourCtx.newCborParser().parseResource(Patient.class, new ByteArrayInputStream(encode(patient)));
+		assertEquals(Integer.MIN_VALUE, ((IntegerDt) parsedPatient.getUndeclaredExtensionsByUrl("http://foo").get(0).getValue()).getValue().intValue());
+		assertEquals(Integer.MAX_VALUE, ((IntegerDt) parsedPatient.getUndeclaredExtensionsByUrl("http://bar").get(0).getValue()).getValue().intValue());
+	}
+
+	@Test
+	public void testRoundTripResource() throws Exception {
+		Patient patient = createPatient();
+
+		IParser jsonParser = ourCtx.newJsonParser();
+		Patient parsed = ourCtx.newCborParser().parseResource(Patient.class, new ByteArrayInputStream(encode(patient)));
+		assertEquals(jsonParser.encodeResourceToString(patient), jsonParser.encodeResourceToString(parsed));
+		assertEquals("M\u00fcller \u65e5\u672c \ud83d\ude00", parsed.getNameFirstRep().getFamilyAsSingleString());
+
+		IResource parsedUntyped = (IResource) ourCtx.newCborParser().parseResource(null, new ByteArrayInputStream(encode(patient)));
+		assertEquals(Patient.class, parsedUntyped.getClass());
+	}
+
+	@Test
+	public void testRoundTripSampleResource() throws Exception {
+		String json = IOUtils.toString(CborParserTest.class.getResourceAsStream("/example-patient-general.json"), Charset.forName("UTF-8"));
+		IParser jsonParser = ourCtx.newJsonParser();
+		Patient patient = jsonParser.parseResource(Patient.class, json);
+
+		Patient parsed = ourCtx.newCborParser().parseResource(Patient.class, new ByteArrayInputStream(encode(patient)));
+		assertEquals(jsonParser.encodeResourceToString(patient), jsonParser.encodeResourceToString(parsed));
+	}
+
+	private static Patient createPatient() {
+		Patient patient = new Patient();
+		patient.setId("Patient/1");
+		patient.getText().setStatus(NarrativeStatusEnum.GENERATED);
+		patient.getText().setDiv("<div>Hello <b>world</b></div>");
+		patient.addIdentifier("urn:system", "12345");
+		patient.addName().addFamily("M\u00fcller \u65e5\u672c \ud83d\ude00").addGiven("<&\">");
+		patient.setActive(true);
+
+		Organization org = new Organization();
+		org.setName("Contained Org");
+		patient.setManagingOrganization(new ResourceReferenceDt(org));
+		return patient;
+	}
+
+	private static byte[] encode(IResource theResource) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ourCtx.newCborParser().encodeResourceToOutputStream(theResource, bytes);
+		return bytes.toByteArray();
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourCtx = new FhirContext();
+	}
+
+}
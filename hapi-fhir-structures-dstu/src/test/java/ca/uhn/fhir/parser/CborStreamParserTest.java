@@ -0,0 +1,205 @@
+package ca.uhn.fhir.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+
+import javax.json.stream.JsonParser.Event;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+/**
+ * Decodes the examples from <a href="http://tools.ietf.org/html/rfc7049#appendix-A">RFC 7049 appendix A</a>. Examples
+ * which can't be represented in the JSON data model (byte strings, non-text map keys, simple values other than
+ * true/false/null/undefined, and non-finite numbers) must be rejected.
+ */
+public class CborStreamParserTest {
+
+	@Test
+	public void testArraysAndMaps() throws Exception {
+		assertEquals("[]", decode("80"));
+		assertEquals("[1,2,3]", decode("83010203"));
+		assertEquals("[1,[2,3],[4,5]]", decode("8301820203820405"));
+		assertEquals("[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25]", decode("98190102030405060708090a0b0c0d0e0f101112131415161718181819"));
+		assertEquals("{}", decode("a0"));
+		assertEquals("{\"a\":1,\"b\":[2,3]}", decode("a26161016162820203"));
+		assertEquals("[\"a\",{\"b\":\"c\"}]", decode("826161a161626163"));
+		assertEquals("{\"a\":\"A\",\"b\":\"B\",\"c\":\"C\",\"d\":\"D\",\"e\":\"E\"}", decode("a56161614161626142616361436164614461656145"));
+	}
+
+	@Test
+	public void testFloats() throws Exception {
+		assertNumber("0.0", "f90000");
+		assertNumber("-0.0", "f98000");
+		assertNumber("1.0", "f93c00");
+		assertNumber("1.1", "fb3ff199999999999a");
+		assertNumber("1.5", "f93e00");
+		assertNumber("65504.0", "f97bff");
+		assertNumber("100000.0", "fa47c35000");
+		assertNumber("3.4028234663852886e+38", "fa7f7fffff");
+		assertNumber("1.0e+300", "fb7e37e43c8800759c");
+		// 2^-24 exactly, which the appendix shows rounded as 5.960464477539063e-8
+		assertNumber("5.9604644775390625e-8", "f90001");
+		assertNumber("0.00006103515625", "f90400");
+		assertNumber("-4.0", "f9c400");
+		assertNumber("-4.1", "fbc010666666666666");
+	}
+
+	@Test
+	public void testIndefiniteLength() throws Exception {
+		assertEquals("\"streaming\"", decode("7f657374726561646d696e67ff"));
+		assertEquals("[]", decode("9fff"));
+		assertEquals("[1,[2,3],[4,5]]", decode("9f018202039f0405ffff"));
+		assertEquals("[1,[2,3],[4,5]]", decode("9f01820203820405ff"));
+		assertEquals("[1,[2,3],[4,5]]", decode("83018202039f0405ff"));
+		assertEquals("[1,[2,3],[4,5]]", decode("83019f0203ff820405"));
+		assertEquals("[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25]", decode("9f0102030405060708090a0b0c0d0e0f101112131415161718181819ff"));
+		assertEquals("{\"a\":1,\"b\":[2,3]}", decode("bf61610161629f0203ffff"));
+		assertEquals("[\"a\",{\"b\":\"c\"}]", decode("826161bf61626163ff"));
+		assertEquals("{\"Fun\":true,\"Amt\":-2}", decode("bf6346756ef563416d7421ff"));
+	}
+
+	@Test
+	public void testIntegers() throws Exception {
+		assertNumber("0", "00");
+		assertNumber("1", "01");
+		assertNumber("10", "0a");
+		assertNumber("23", "17");
+		assertNumber("24", "1818");
+		assertNumber("25", "1819");
+		assertNumber("100", "1864");
+		assertNumber("1000", "1903e8");
+		assertNumber("1000000", "1a000f4240");
+		assertNumber("1000000000000", "1b000000e8d4a51000");
+		assertNumber("18446744073709551615", "1bffffffffffffffff");
+		assertNumber("18446744073709551616", "c249010000000000000000");
+		assertNumber("-18446744073709551616", "3bffffffffffffffff");
+		assertNumber("-18446744073709551617", "c349010000000000000000");
+		assertNumber("-1", "20");
+		assertNumber("-10", "29");
+		assertNumber("-100", "3863");
+		assertNumber("-1000", "3903e7");
+
+		// Decimal fraction example from section 2.4.3
+		assertNumber("273.15", "c48221196ab3");
+	}
+
+	@Test
+	public void testSimpleValues() throws Exception {
+		assertEquals("false", decode("f4"));
+		assertEquals("true", decode("f5"));
+		assertEquals("null", decode("f6"));
+		assertEquals("null", decode("f7"));
+	}
+
+	@Test
+	public void testStrings() throws Exception {
+		assertEquals("\"\"", decode("60"));
+		assertEquals("\"a\"", decode("6161"));
+		assertEquals("\"IETF\"", decode("6449455446"));
+		assertEquals("\"\\\"\\\\\"", decode("62225c"));
+		assertEquals("\"\u00fc\"", decode("62c3bc"));
+		assertEquals("\"\u6c34\"", decode("63e6b0b4"));
+		assertEquals("\"\ud800\udd51\"", decode("64f0908591"));
+	}
+
+	@Test
+	public void testTagsAreIgnored() throws Exception {
+		assertEquals("\"2013-03-21T20:04:00Z\"", decode("c074323031332d30332d32315432303a30343a30305a"));
+		assertNumber("1363896240", "c11a514b67b0");
+		assertNumber("1363896240.5", "c1fb41d452d9ec200000");
+		assertEquals("\"http://www.example.com\"", decode("d82076687474703a2f2f7777772e6578616d706c652e636f6d"));
+	}
+
+	@Test
+	public void testUnsupportedContentIsRejected() throws Exception {
+		String[] unsupported = { //
+				// Non-finite numbers
+				"f97c00", "f97e00", "f9fc00", "fa7f800000", "fa7fc00000", "faff800000", "fb7ff0000000000000", "fb7ff8000000000000", "fbfff0000000000000",
+				// Other simple values
+				"f0", "f818", "f8ff",
+				// Byte strings, including tagged ones
+				"40", "4401020304", "5f42010243030405ff", "d74401020304", "d818456449455446",
+				// Map keys which aren't text
+				"a201020304",
+				// Truncated content
+				"1903", "830102", "6449" };
+		for (String next : unsupported) {
+			try {
+				decode(next);
+				fail(next);
+			} catch (DataFormatException e) {
+				assertTrue(next + ": " + e.getMessage(), e.getMessage().contains("Invalid CBOR content"));
+			}
+		}
+	}
+
+	private static void assertNumber(String theExpected, String theHex) throws Exception {
+		CborStreamParser parser = newParser(theHex);
+		assertEquals(theHex, Event.VALUE_NUMBER, parser.next());
+		BigDecimal actual = parser.getBigDecimal();
+		assertEquals(theHex + " was " + actual, 0, new BigDecimal(theExpected).compareTo(actual));
+		assertFalse(theHex, parser.hasNext());
+	}
+
+	/**
+	 * Reads all of the events in the given content and writes them out as compact JSON
+	 */
+	private static String decode(String theHex) throws Exception {
+		CborStreamParser parser = newParser(theHex);
+		StringBuilder b = new StringBuilder();
+		Event previous = null;
+		while (parser.hasNext()) {
+			Event next = parser.next();
+			boolean first = previous == null || previous == Event.START_ARRAY || previous == Event.START_OBJECT || previous == Event.KEY_NAME;
+			if (!first && next != Event.END_ARRAY && next != Event.END_OBJECT) {
+				b.append(',');
+			}
+			switch (next) {
+			case START_ARRAY:
+				b.append('[');
+				break;
+			case END_ARRAY:
+				b.append(']');
+				break;
+			case START_OBJECT:
+				b.append('{');
+				break;
+			case END_OBJECT:
+				b.append('}');
+				break;
+			case KEY_NAME:
+				b.append(quote(parser.getString())).append(':');
+				break;
+			case VALUE_STRING:
+				b.append(quote(parser.getString()));
+				break;
+			case VALUE_NUMBER:
+				b.append(parser.getBigDecimal().toString());
+				break;
+			case VALUE_TRUE:
+				b.append("true");
+				break;
+			case VALUE_FALSE:
+				b.append("false");
+				break;
+			case VALUE_NULL:
+				b.append("null");
+				break;
+			}
+			previous = next;
+		}
+		return b.toString();
+	}
+
+	private static CborStreamParser newParser(String theHex) throws Exception {
+		return new CborStreamParser(new ByteArrayInputStream(Hex.decodeHex(theHex.toCharArray())));
+	}
+
+	private static String quote(String theString) {
+		return "\"" + theString.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
@@ -68,6 +69,24 @@ public class JsonParserTest {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(JsonParserTest.class);
 	private static FhirContext ourCtx;
 
+	@Test
+	public void testEncodeToOutputStreamUsesUtf8() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("Patient/1");
+		patient.addName().addFamily("M\u00fcller \u65e5\u672c").addGiven("<&\">");
+		Bundle bundle = Bundle.withSingleResource(patient);
+
+		IParser parser = ourCtx.newJsonParser().setPrettyPrint(true);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		parser.encodeResourceToOutputStream(patient, bytes);
+		assertEquals(parser.encodeResourceToString(patient), new String(bytes.toByteArray(), "UTF-8"));
+
+		bytes = new ByteArrayOutputStream();
+		parser.encodeBundleToOutputStream(bundle, bytes);
+		assertEquals(parser.encodeBundleToString(bundle), new String(bytes.toByteArray(), "UTF-8"));
+	}
+
 	@Test
 	public void testEncodeNarrativeBlockInBundle() {
 		Patient p = new Patient();
@@ -175,6 +194,95 @@ public class JsonParserTest {
 
 	}
 
+	/**
+	 * Resource types and primitive extensions (the "_name" members) may appear anywhere within their object
+	 */
+	@Test
+	public void testParseMembersOutOfOrder() {
+		String msg = "{\"name\":[{\"_family\":[{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"EXT1\"}]}],\"family\":[\"Smith\"],\"given\":[\"John\"]}]," + //
+				"\"contained\":[{\"id\":\"1\",\"name\":\"Org\",\"resourceType\":\"Organization\"}]," + //
+				"\"gender\":{\"text\":\"M\"}," + //
+				"\"managingOrganization\":{\"reference\":\"#1\"}," + //
+				"\"_active\":{\"extension\":[{\"url\":\"http://bar\",\"valueString\":\"EXT2\"}]}," + //
+				"\"resourceType\":\"Patient\"," + //
+				"\"active\":true}";
+
+		Patient p = ourCtx.newJsonParser().parseResource(Patient.class, msg);
+
+		assertEquals("Smith", p.getNameFirstRep().getFamilyFirstRep().getValue());
+		assertEquals("EXT1", ((StringDt) p.getNameFirstRep().getFamilyFirstRep().getUndeclaredExtensionsByUrl("http://foo").get(0).getValue()).getValue());
+		assertEquals("John", p.getNameFirstRep().getGivenFirstRep().getValue());
+		assertEquals("M", p.getGender().getText().getValue());
+		assertEquals(Boolean.TRUE, p.getActive().getValue());
+		assertEquals("EXT2", ((StringDt) p.getActive().getUndeclaredExtensionsByUrl("http://bar").get(0).getValue()).getValue());
+		assertEquals(1, p.getContained().getContainedResources().size());
+		assertEquals("Org", ((Organization) p.getContained().getContainedResources().get(0)).getName().getValue());
+		assertEquals("Org", ((Organization) p.getManagingOrganization().getResource()).getName().getValue());
+	}
+
+	/**
+	 * Content preceding "resourceType" is buffered only when the resource type isn't already known, and only up to a
+	 * limit
+	 */
+	@Test
+	public void testParseResourceTypeAfterLargeContent() {
+		StringBuilder b = new StringBuilder();
+		b.append("{\"name\":[");
+		for (int i = 0; b.length() <= JsonParser.MAX_RESOURCE_TYPE_LOOKAHEAD; i++) {
+			if (i > 0) {
+				b.append(',');
+			}
+			b.append("{\"family\":[\"Family").append(i).append("\"]}");
+		}
+		b.append("],\"resourceType\":\"Patient\"}");
+		String msg = b.toString();
+
+		Patient p = ourCtx.newJsonParser().parseResource(Patient.class, msg);
+		assertEquals("Family0", p.getNameFirstRep().getFamilyFirstRep().getValue());
+		assertTrue(p.getName().size() > 1000);
+
+		try {
+			ourCtx.newJsonParser().parseResource(msg);
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("before 'resourceType'"));
+		}
+	}
+
+	/**
+	 * The resourceType is still validated when the caller says which type to expect, even if it comes last
+	 */
+	@Test
+	public void testParseResourceTypeValidatedWhenTypeKnown() {
+		try {
+			ourCtx.newJsonParser().parseResource(Patient.class, "{\"resourceType\":\"Organization\",\"name\":\"Org\"}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("found resourceType 'Organization'"));
+		}
+
+		try {
+			ourCtx.newJsonParser().parseResource(Patient.class, "{\"active\":true,\"resourceType\":\"Organization\"}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("found resourceType 'Organization'"));
+		}
+
+		try {
+			ourCtx.newJsonParser().parseResource(Patient.class, "{\"active\":true}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("missing required element: 'resourceType'"));
+		}
+
+		try {
+			ourCtx.newJsonParser().parseResource(Patient.class, "{\"resourceType\":1,\"active\":true}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Invalid content of element resourceType"));
+		}
+	}
+
 	@Test
 	public void testParseSingleQuotes() {
 		try {
@@ -258,6 +366,16 @@ public class JsonParserTest {
 
 	}
 
+	@Test
+	public void testNarrativePassedThroughVerbatim() {
+		String div = "<div class='a'>Hello<br/> world</div>";
+		String input = "{\"resourceType\":\"Patient\",\"text\":{\"status\":\"generated\",\"div\":\"" + div + "\"}}";
+
+		Patient parsed = ourCtx.newJsonParser().parseResource(Patient.class, input);
+		String encoded = ourCtx.newJsonParser().encodeResourceToString(parsed);
+		assertEquals(input, encoded);
+	}
+
 	@Test
 	public void testParseEmptyNarrative() throws ConfigurationException, DataFormatException, IOException {
 		//@formatter:off
@@ -906,6 +1024,29 @@ public class JsonParserTest {
 		assertThat(str, StringContains.containsString(",\"text\":{\"status\":\"generated\",\"div\":\"<div>help</div>\"},"));
 	}
 
+	@Test
+	public void testParseBundleWithEntryHandler() throws Exception {
+		String msg = IOUtils.toString(XmlParser.class.getResourceAsStream("/atom-document-large.json"));
+		Bundle expected = ourCtx.newJsonParser().parseBundle(msg);
+
+		final List<BundleEntry> entries = new ArrayList<BundleEntry>();
+		Bundle bundle = ourCtx.newJsonParser().parseBundle(null, new StringReader(msg), new IBundleEntryHandler() {
+			@Override
+			public void handleEntry(BundleEntry theEntry) {
+				entries.add(theEntry);
+			}
+		});
+
+		assertEquals(0, bundle.getEntries().size());
+		assertEquals(expected.getBundleId().getValue(), bundle.getBundleId().getValue());
+		assertEquals(expected.getLinkSelf().getValue(), bundle.getLinkSelf().getValue());
+		assertEquals(expected.getEntries().size(), entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			assertEquals(expected.getEntries().get(i).getId().getValue(), entries.get(i).getId().getValue());
+			assertEquals(ourCtx.newJsonParser().encodeResourceToString(expected.getEntries().get(i).getResource()), ourCtx.newJsonParser().encodeResourceToString(entries.get(i).getResource()));
+		}
+	}
+
 	@Test
 	public void testParseBundle() throws DataFormatException, IOException {
 
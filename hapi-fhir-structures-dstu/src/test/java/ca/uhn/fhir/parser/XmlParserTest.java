@@ -14,6 +14,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -84,6 +85,24 @@ public class XmlParserTest {
 	private static FhirContext ourCtx;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(XmlParserTest.class);
 
+	@Test
+	public void testEncodeToOutputStreamUsesUtf8() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("Patient/1");
+		patient.addName().addFamily("M\u00fcller \u65e5\u672c").addGiven("<&\">");
+		Bundle bundle = Bundle.withSingleResource(patient);
+
+		IParser parser = ourCtx.newXmlParser().setPrettyPrint(true);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		parser.encodeResourceToOutputStream(patient, bytes);
+		assertEquals(parser.encodeResourceToString(patient), new String(bytes.toByteArray(), "UTF-8"));
+
+		bytes = new ByteArrayOutputStream();
+		parser.encodeBundleToOutputStream(bundle, bytes);
+		assertEquals(parser.encodeBundleToString(bundle), new String(bytes.toByteArray(), "UTF-8"));
+	}
+
 	@Test
 	public void testComposition() {
 		
@@ -1241,6 +1260,31 @@ public class XmlParserTest {
 
 	}
 
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testParseBundleWithEntryHandler() throws Exception {
+		String json = IOUtils.toString(XmlParser.class.getResourceAsStream("/atom-document-large.json"));
+		String msg = ourCtx.newXmlParser().encodeBundleToString(ourCtx.newJsonParser().parseBundle(json));
+		Bundle expected = ourCtx.newXmlParser().parseBundle(msg);
+
+		final List<BundleEntry> entries = new ArrayList<BundleEntry>();
+		Bundle bundle = ourCtx.newXmlParser().parseBundle(null, new StringReader(msg), new IBundleEntryHandler() {
+			@Override
+			public void handleEntry(BundleEntry theEntry) {
+				entries.add(theEntry);
+			}
+		});
+
+		assertEquals(0, bundle.getEntries().size());
+		assertEquals(expected.getBundleId().getValue(), bundle.getBundleId().getValue());
+		assertEquals(expected.getLinkSelf().getValue(), bundle.getLinkSelf().getValue());
+		assertEquals(expected.getEntries().size(), entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			assertEquals(expected.getEntries().get(i).getId().getValue(), entries.get(i).getId().getValue());
+			assertEquals(ourCtx.newXmlParser().encodeResourceToString(expected.getEntries().get(i).getResource()), ourCtx.newXmlParser().encodeResourceToString(entries.get(i).getResource()));
+		}
+	}
+
 	@SuppressWarnings("deprecation")
 	@Test
 	public void testParseBundleDeletedEntry() {
@@ -76,14 +76,38 @@ public class ClientIntegrationTest {
 		assertEquals("Basic Zm9vYmFyOmJvb2JlYXI=", myPatientProvider.getAuthorizationHeader());
 	}
 
+	@Test
+	public void testGzipResponseIsDecompressed() throws Exception {
+		myServer.start();
+
+		FhirContext ctx = new FhirContext();
+
+		// Without content compression the HTTP client won't decompress responses itself
+		CloseableHttpClient httpClient = HttpClientBuilder.create().disableContentCompression().build();
+		ctx.getRestfulClientFactory().setHttpClient(httpClient);
+
+		PatientClient client = ctx.newRestfulClient(PatientClient.class, "http://localhost:" + myPort + "/");
+
+		List<Patient> actualPatients = client.searchForPatients(new StringDt("AAAABBBB"));
+		assertEquals(1, actualPatients.size());
+		assertEquals("AAAABBBB", actualPatients.get(0).getNameFirstRep().getFamilyAsSingleString());
+
+		assertEquals("gzip", myPatientProvider.getAcceptEncodingHeader());
+	}
+
 	@After
 	public void after() throws Exception {
 		myServer.stop();
 	}
 
 	public static class MyPatientResourceProvider implements IResourceProvider {
+		private String myAcceptEncodingHeader;
 		private String myAuthorizationHeader;
 
+		public String getAcceptEncodingHeader() {
+			return myAcceptEncodingHeader;
+		}
+
 		public String getAuthorizationHeader() {
 			return myAuthorizationHeader;
 		}
@@ -99,6 +123,7 @@ public class ClientIntegrationTest {
 			Validate.notNull(theResponse);
 
 			myAuthorizationHeader = theRequest.getHeader("authorization");
+			myAcceptEncodingHeader = theRequest.getHeader("accept-encoding");
 
 			Patient retVal = new Patient();
 			retVal.setId("1");
@@ -0,0 +1,290 @@
+package ca.uhn.fhir.rest.client;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.PortUtil;
+
+public class GenericClientAsyncTest {
+
+	private static AtomicInteger ourActive = new AtomicInteger();
+	private static volatile CountDownLatch ourBlockEntered;
+	private static volatile CountDownLatch ourBlockRelease;
+	private static AtomicInteger ourMaxActive = new AtomicInteger();
+	private static int ourPort;
+	private static Server ourServer;
+
+	private FhirContext myCtx;
+
+	@Before
+	public void before() {
+		ourActive.set(0);
+		ourMaxActive.set(0);
+		myCtx = new FhirContext();
+		myCtx.getRestfulClientFactory().setServerValidationModeEnum(ServerValidationModeEnum.NEVER);
+	}
+
+	@Test
+	public void testBackpressureBlocksSubmitter() throws Exception {
+		final AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<String> blocking = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return "done";
+			}
+		};
+
+		Future<String> running = executor.submit("http://foo", blocking);
+		Future<String> queued = executor.submit("http://foo", blocking);
+
+		final CountDownLatch submitted = new CountDownLatch(1);
+		Thread submitter = new Thread() {
+			@Override
+			public void run() {
+				executor.submit("http://foo", new Callable<String>() {
+					@Override
+					public String call() {
+						return "third";
+					}
+				});
+				submitted.countDown();
+			}
+		};
+		submitter.start();
+
+		assertFalse("Third request should wait for room", submitted.await(300, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(submitted.await(10, TimeUnit.SECONDS));
+		assertEquals("done", running.get());
+		assertEquals("done", queued.get());
+		executor.shutdown();
+	}
+
+	/**
+	 * A request which is cancelled while it's running holds on to its place until its thread is done with it
+	 */
+	@Test
+	public void testCancelledRunningRequestKeepsPlaceUntilFinished() throws Exception {
+		final AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1, 0);
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<String> running = executor.submit("http://foo", new Callable<String>() {
+			@Override
+			public String call() {
+				entered.countDown();
+				// Ignores interruption, like a request which can't be aborted
+				boolean released = false;
+				while (!released) {
+					try {
+						released = release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						// keep waiting
+					}
+				}
+				return "done";
+			}
+		});
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+		assertTrue(running.cancel(true));
+
+		final CountDownLatch submitted = new CountDownLatch(1);
+		Thread submitter = new Thread() {
+			@Override
+			public void run() {
+				executor.submit("http://foo", new Callable<String>() {
+					@Override
+					public String call() {
+						return "next";
+					}
+				});
+				submitted.countDown();
+			}
+		};
+		submitter.start();
+
+		assertFalse("Next request should wait for the cancelled one to finish", submitted.await(300, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(submitted.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+
+	/**
+	 * A request which is cancelled before it starts gives up its place straight away
+	 */
+	@Test
+	public void testCancelledWaitingRequestReleasesPlace() throws Exception {
+		final AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<String> blocking = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				release.await(10, TimeUnit.SECONDS);
+				return "done";
+			}
+		};
+
+		Future<String> running = executor.submit("http://foo", blocking);
+		Future<String> waiting = executor.submit("http://foo", blocking);
+		assertTrue(waiting.cancel(false));
+
+		final CountDownLatch submitted = new CountDownLatch(1);
+		Thread submitter = new Thread() {
+			@Override
+			public void run() {
+				executor.submit("http://foo", new Callable<String>() {
+					@Override
+					public String call() {
+						return "third";
+					}
+				});
+				submitted.countDown();
+			}
+		};
+		submitter.start();
+
+		assertTrue("Third request should take the cancelled request's place", submitted.await(10, TimeUnit.SECONDS));
+		release.countDown();
+		assertEquals("done", running.get(10, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testCancelAbortsRequest() throws Exception {
+		ourBlockEntered = new CountDownLatch(1);
+		ourBlockRelease = new CountDownLatch(1);
+		IGenericClient client = myCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/");
+
+		try {
+			Future<Patient> future = client.read().resource(Patient.class).withId("block").executeAsync();
+			assertTrue(ourBlockEntered.await(10, TimeUnit.SECONDS));
+
+			assertTrue(future.cancel(true));
+			assertTrue(future.isCancelled());
+			try {
+				future.get();
+				fail();
+			} catch (CancellationException e) {
+				// good
+			}
+		} finally {
+			ourBlockRelease.countDown();
+		}
+
+		// The client can still be used afterwards
+		Patient patient = client.read().resource(Patient.class).withId("1").executeAsync().get(10, TimeUnit.SECONDS);
+		assertEquals("1", patient.getIdentifierFirstRep().getValue().getValue());
+	}
+
+	@Test
+	public void testExecuteAsyncPerRouteLimit() throws Exception {
+		myCtx.getRestfulClientFactory().setPoolMaxPerRoute(2);
+		IGenericClient client = myCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/");
+
+		List<Future<Patient>> futures = new ArrayList<Future<Patient>>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(client.read().resource(Patient.class).withId(Integer.toString(i)).executeAsync());
+		}
+		for (int i = 0; i < 20; i++) {
+			Patient patient = futures.get(i).get(10, TimeUnit.SECONDS);
+			assertEquals(Integer.toString(i), patient.getIdentifierFirstRep().getValue().getValue());
+		}
+
+		assertTrue("Max concurrent was " + ourMaxActive.get(), ourMaxActive.get() <= 2);
+	}
+
+	@Test
+	public void testExecuteAsyncWrapsServerError() throws Exception {
+		IGenericClient client = myCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/");
+
+		Future<Patient> future = client.read().resource(Patient.class).withId("missing").executeAsync();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(ResourceNotFoundException.class, e.getCause().getClass());
+		}
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception {
+		ourServer.stop();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		RestfulServer servlet = new RestfulServer();
+		servlet.setResourceProviders(new DummyProvider());
+		ServletHolder servletHolder = new ServletHolder(servlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+	}
+
+	public static class DummyProvider implements IResourceProvider {
+
+		@Read
+		public Patient read(@IdParam IdDt theId) throws InterruptedException {
+			int active = ourActive.incrementAndGet();
+			try {
+				synchronized (ourMaxActive) {
+					ourMaxActive.set(Math.max(ourMaxActive.get(), active));
+				}
+				if ("missing".equals(theId.getIdPart())) {
+					throw new ResourceNotFoundException(Patient.class, theId);
+				}
+				if ("block".equals(theId.getIdPart())) {
+					ourBlockEntered.countDown();
+					ourBlockRelease.await(10, TimeUnit.SECONDS);
+				} else {
+					Thread.sleep(20);
+				}
+
+				Patient patient = new Patient();
+				patient.setId(theId);
+				patient.addIdentifier("urn:system", theId.getIdPart());
+				return patient;
+			} finally {
+				ourActive.decrementAndGet();
+			}
+		}
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+	}
+
+}
@@ -425,6 +425,33 @@ public class GenericClientTest {
 	}
 
 	
+	/**
+	 * Bodies which are only logged are cut off, but a kept body must be complete
+	 */
+	@Test
+	public void testReadKeepsWholeResponseBody() throws Exception {
+		Patient patient = new Patient();
+		while (patient.getName().size() * 40 <= TeeHttpEntity.DEFAULT_MAX_BYTES) {
+			patient.addName().addFamily("Cardinal\u00e9" + patient.getName().size());
+		}
+		String msg = ourCtx.newXmlParser().encodeResourceToString(patient);
+		assertTrue(msg.getBytes("UTF-8").length > TeeHttpEntity.DEFAULT_MAX_BYTES);
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_XML + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenReturn(new ReaderInputStream(new StringReader(msg), Charset.forName("UTF-8")));
+		when(myHttpResponse.getAllHeaders()).thenReturn(new Header[0]);
+
+		GenericClient client = (GenericClient) ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		client.setKeepResponses(true);
+
+		Patient response = client.read(Patient.class, new IdDt("Patient/1234"));
+		assertEquals(patient.getName().size(), response.getName().size());
+		assertEquals(msg, client.getLastResponseBody());
+	}
+
 	@Test
 	public void testReadWithAbsoluteUrl() throws Exception {
 
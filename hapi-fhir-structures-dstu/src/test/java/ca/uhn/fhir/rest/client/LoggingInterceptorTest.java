@@ -76,6 +76,24 @@ public class LoggingInterceptorTest {
 		}));
 	}
 
+	@Test
+	public void testLoggerLogsResponseBodyOnceRead() throws Exception {
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort);
+		LoggingInterceptor interceptor = new LoggingInterceptor();
+		interceptor.setLogResponseBody(true);
+		client.registerInterceptor(interceptor);
+		Patient patient = client.read(Patient.class, "1");
+		assertFalse(patient.getIdentifierFirstRep().isEmpty());
+
+		verify(myMockAppender).doAppend(argThat(new ArgumentMatcher<ILoggingEvent>() {
+			@Override
+			public boolean matches(final Object argument) {
+				String message = ((LoggingEvent) argument).getFormattedMessage();
+				return message.startsWith("Client response body:") && message.contains("<Patient");
+			}
+		}));
+	}
+
 	@AfterClass
 	public static void afterClass() throws Exception {
 		ourServer.stop();
@@ -0,0 +1,48 @@
+package ca.uhn.fhir.rest.client;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Test;
+
+public class TeeHttpEntityTest {
+
+	@Test
+	public void testCapturedStringIsComplete() throws Exception {
+		String body = "caf\u00e9 \u00e9t\u00e9";
+		TeeHttpEntity tee = new TeeHttpEntity(new StringEntity(body, ContentType.create("text/plain", "UTF-8")), 100);
+		assertEquals(body, read(tee));
+
+		assertFalse(tee.isTruncated());
+		assertEquals(body, tee.getCapturedString());
+	}
+
+	/**
+	 * Each accented character is two bytes in UTF-8, so an odd limit cuts one of them in half
+	 */
+	@Test
+	public void testTruncatedCapturedStringEndsOnCharacterBoundary() throws Exception {
+		String body = "\u00e9\u00e9\u00e9\u00e9\u00e9";
+		TeeHttpEntity tee = new TeeHttpEntity(new StringEntity(body, ContentType.create("text/plain", "UTF-8")), 5);
+		assertEquals(body, read(tee));
+
+		assertTrue(tee.isTruncated());
+		assertEquals(10, tee.getTotalBytes());
+		assertEquals(5, tee.getCapturedBytes().length);
+		assertEquals("\u00e9\u00e9", tee.getCapturedString());
+	}
+
+	private static String read(TeeHttpEntity theTee) throws Exception {
+		InputStream content = theTee.getContent();
+		try {
+			return IOUtils.toString(content, "UTF-8");
+		} finally {
+			content.close();
+		}
+	}
+
+}
@@ -4,6 +4,7 @@ import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
@@ -87,6 +88,29 @@ public class ReadTest {
 		assertThat(responseContent, not(stringContainsInOrder("1", "\"", "1")));
 	}
 
+	@Test
+	public void testReadCbor() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1");
+		httpGet.addHeader(Constants.HEADER_ACCEPT, Constants.CT_FHIR_CBOR);
+		HttpResponse status = ourClient.execute(httpGet);
+		byte[] responseContent = IOUtils.toByteArray(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertEquals(Constants.CT_FHIR_CBOR, status.getFirstHeader("Content-Type").getValue());
+		IdentifierDt dt = ourCtx.newCborParser().parseResource(Patient.class, new ByteArrayInputStream(responseContent)).getIdentifierFirstRep();
+		assertEquals("1", dt.getSystem().getValueAsString());
+
+		httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1?_format=cbor");
+		status = ourClient.execute(httpGet);
+		responseContent = IOUtils.toByteArray(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		dt = ourCtx.newCborParser().parseResource(Patient.class, new ByteArrayInputStream(responseContent)).getIdentifierFirstRep();
+		assertEquals("1", dt.getSystem().getValueAsString());
+	}
+
 	@Test
 	public void testReadForProviderWithAbstractReturnType() throws Exception {
 		{
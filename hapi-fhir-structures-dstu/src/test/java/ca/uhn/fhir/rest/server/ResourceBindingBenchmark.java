@@ -0,0 +1,55 @@
+package ca.uhn.fhir.rest.server;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ca.uhn.fhir.rest.method.Request;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Not a unit test: logs the time taken to find the method for each request by checking every method, and with the
+ * index. Normal builds skip this class, run it with <code>mvn test -PBENCHMARK -Dtest=ResourceBindingBenchmark</code>
+ */
+public class ResourceBindingBenchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceBindingBenchmark.class);
+
+	@Test
+	public void testDispatchLatency() throws Exception {
+		int passes = 2000;
+		ResourceBinding binding = ResourceBindingTest.ourBinding;
+
+		// Don't time the debug logging of each lookup
+		Logger bindingLogger = (Logger) LoggerFactory.getLogger(ResourceBinding.class);
+		Level level = bindingLogger.getLevel();
+		bindingLogger.setLevel(Level.INFO);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < passes; i++) {
+			for (Request next : ResourceBindingTest.ourRequests) {
+				ResourceBindingTest.scan(binding, next);
+			}
+		}
+		long scanNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < passes; i++) {
+			for (Request next : ResourceBindingTest.ourRequests) {
+				binding.getMethod(next);
+			}
+		}
+		long indexNanos = System.nanoTime() - start;
+		bindingLogger.setLevel(level);
+
+		int count = passes * ResourceBindingTest.ourRequests.size();
+		ourLog.info("{} methods, scan: {} ns/request, index: {} ns/request", new Object[] { binding.getMethodBindings().size(), scanNanos / count, indexNanos / count });
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ResourceBindingTest.beforeClass();
+	}
+
+}
@@ -0,0 +1,341 @@
+package ca.uhn.fhir.rest.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.api.TagList;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.annotation.Create;
+import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.GetTags;
+import ca.uhn.fhir.rest.annotation.History;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.OptionalParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.RequiredParam;
+import ca.uhn.fhir.rest.annotation.ResourceParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Update;
+import ca.uhn.fhir.rest.annotation.Validate;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.method.BaseMethodBinding;
+import ca.uhn.fhir.rest.method.Request;
+import ca.uhn.fhir.rest.method.SearchMethodBinding.RequestType;
+import ca.uhn.fhir.rest.param.StringParam;
+
+public class ResourceBindingTest {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceBindingTest.class);
+	private static FhirContext ourCtx = new FhirContext();
+	// Shared with ResourceBindingBenchmark
+	static ResourceBinding ourBinding;
+	static List<Request> ourRequests;
+
+	@Test
+	public void testIndexedDispatchMatchesScan() throws Exception {
+		int matched = 0;
+		for (Request next : ourRequests) {
+			BaseMethodBinding<?> expected = scan(ourBinding, next);
+			assertSame(describe(next), expected, ourBinding.getMethod(next));
+			if (expected != null) {
+				matched++;
+			}
+		}
+		ourLog.info("{} of {} requests matched a method", matched, ourRequests.size());
+		assertTrue(matched > 0);
+	}
+
+	@Test
+	public void testIndexRebuiltWhenMethodAdded() throws Exception {
+		ResourceBinding binding = new ResourceBinding("Patient", new ArrayList<BaseMethodBinding<?>>());
+		Request request = createRequest(RequestType.GET, null, null, "p00", "a");
+		assertNull(binding.getMethod(request));
+
+		for (BaseMethodBinding<?> next : ourBinding.getMethodBindings()) {
+			binding.addMethod(next);
+		}
+		assertNotNull(binding.getMethod(request));
+		assertSame(scan(binding, request), binding.getMethod(request));
+	}
+
+	static BaseMethodBinding<?> scan(ResourceBinding theBinding, Request theRequest) throws Exception {
+		for (BaseMethodBinding<?> next : theBinding.getMethodBindings()) {
+			if (next.incomingServerRequestMatchesMethod(theRequest)) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	private static String describe(Request theRequest) {
+		return theRequest.getRequestType() + " " + theRequest.getId() + " " + theRequest.getOperation() + " " + theRequest.getCompartmentName() + " " + theRequest.getParameters().keySet();
+	}
+
+	private static Request createRequest(RequestType theRequestType, String theId, String theOperation, String... theParams) {
+		Request retVal = new Request();
+		retVal.setResourceName("Patient");
+		retVal.setRequestType(theRequestType);
+		if (theId != null) {
+			retVal.setId(new IdDt("Patient", theId.split("/")[0], theId.contains("/") ? theId.split("/")[1] : null));
+		}
+		retVal.setOperation(theOperation);
+		Map<String, String[]> params = new HashMap<String, String[]>();
+		for (int i = 0; i < theParams.length; i += 2) {
+			params.put(theParams[i], new String[] { theParams[i + 1] });
+		}
+		retVal.setParameters(params);
+		return retVal;
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		RestfulServer servlet = new RestfulServer();
+		servlet.setFhirContext(ourCtx);
+		servlet.setResourceProviders(new DummyPatientResourceProvider());
+		servlet.init();
+		for (ResourceBinding next : servlet.getResourceBindings()) {
+			if ("Patient".equals(next.getResourceName())) {
+				ourBinding = next;
+			}
+		}
+		assertNotNull(ourBinding);
+
+		ourRequests = new ArrayList<Request>();
+		for (RequestType nextType : RequestType.values()) {
+			for (String nextId : new String[] { null, "1", "1/2" }) {
+				for (String nextOperation : new String[] { null, "", "_search", "_history", "_tags", "_validate", "_other" }) {
+					ourRequests.add(createRequest(nextType, nextId, nextOperation));
+					ourRequests.add(createRequest(nextType, nextId, nextOperation, "p07", "a"));
+					ourRequests.add(createRequest(nextType, nextId, nextOperation, "p29:exact", "a", "o29", "b"));
+					ourRequests.add(createRequest(nextType, nextId, nextOperation, "unknown", "a"));
+					Request compartment = createRequest(nextType, nextId, nextOperation);
+					compartment.setCompartmentName("Encounter");
+					ourRequests.add(compartment);
+					compartment = createRequest(nextType, nextId, nextOperation);
+					compartment.setCompartmentName("Other");
+					ourRequests.add(compartment);
+				}
+			}
+		}
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Create
+		public MethodOutcome create(@ResourceParam Patient thePatient) {
+			return new MethodOutcome();
+		}
+
+		@Delete
+		public MethodOutcome delete(@IdParam IdDt theId) {
+			return new MethodOutcome();
+		}
+
+		@GetTags
+		public TagList getTags(@IdParam IdDt theId) {
+			return new TagList();
+		}
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@History
+		public List<Patient> historyInstance(@IdParam IdDt theId) {
+			return new ArrayList<Patient>();
+		}
+
+		@History
+		public List<Patient> historyType() {
+			return new ArrayList<Patient>();
+		}
+
+		@Read(version = true)
+		public Patient read(@IdParam IdDt theId) {
+			return new Patient();
+		}
+
+		@Search
+		public List<Patient> search() {
+			return new ArrayList<Patient>();
+		}
+
+		@Search(compartmentName = "Encounter")
+		public List<Patient> searchEncounterCompartment(@IdParam IdDt theId) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search00(@RequiredParam(name = "p00") StringParam theParam, @OptionalParam(name = "o00") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search01(@RequiredParam(name = "p01") StringParam theParam, @OptionalParam(name = "o01") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search02(@RequiredParam(name = "p02") StringParam theParam, @OptionalParam(name = "o02") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search03(@RequiredParam(name = "p03") StringParam theParam, @OptionalParam(name = "o03") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search04(@RequiredParam(name = "p04") StringParam theParam, @OptionalParam(name = "o04") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search05(@RequiredParam(name = "p05") StringParam theParam, @OptionalParam(name = "o05") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search06(@RequiredParam(name = "p06") StringParam theParam, @OptionalParam(name = "o06") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search07(@RequiredParam(name = "p07") StringParam theParam, @OptionalParam(name = "o07") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search08(@RequiredParam(name = "p08") StringParam theParam, @OptionalParam(name = "o08") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search09(@RequiredParam(name = "p09") StringParam theParam, @OptionalParam(name = "o09") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search10(@RequiredParam(name = "p10") StringParam theParam, @OptionalParam(name = "o10") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search11(@RequiredParam(name = "p11") StringParam theParam, @OptionalParam(name = "o11") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search12(@RequiredParam(name = "p12") StringParam theParam, @OptionalParam(name = "o12") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search13(@RequiredParam(name = "p13") StringParam theParam, @OptionalParam(name = "o13") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search14(@RequiredParam(name = "p14") StringParam theParam, @OptionalParam(name = "o14") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search15(@RequiredParam(name = "p15") StringParam theParam, @OptionalParam(name = "o15") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search16(@RequiredParam(name = "p16") StringParam theParam, @OptionalParam(name = "o16") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search17(@RequiredParam(name = "p17") StringParam theParam, @OptionalParam(name = "o17") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search18(@RequiredParam(name = "p18") StringParam theParam, @OptionalParam(name = "o18") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search19(@RequiredParam(name = "p19") StringParam theParam, @OptionalParam(name = "o19") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search20(@RequiredParam(name = "p20") StringParam theParam, @OptionalParam(name = "o20") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search21(@RequiredParam(name = "p21") StringParam theParam, @OptionalParam(name = "o21") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search22(@RequiredParam(name = "p22") StringParam theParam, @OptionalParam(name = "o22") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search23(@RequiredParam(name = "p23") StringParam theParam, @OptionalParam(name = "o23") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search24(@RequiredParam(name = "p24") StringParam theParam, @OptionalParam(name = "o24") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search25(@RequiredParam(name = "p25") StringParam theParam, @OptionalParam(name = "o25") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search26(@RequiredParam(name = "p26") StringParam theParam, @OptionalParam(name = "o26") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search27(@RequiredParam(name = "p27") StringParam theParam, @OptionalParam(name = "o27") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search28(@RequiredParam(name = "p28") StringParam theParam, @OptionalParam(name = "o28") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Search
+		public List<Patient> search29(@RequiredParam(name = "p29") StringParam theParam, @OptionalParam(name = "o29") StringParam theOptional) {
+			return new ArrayList<Patient>();
+		}
+
+		@Update
+		public MethodOutcome update(@IdParam IdDt theId, @ResourceParam Patient thePatient) {
+			return new MethodOutcome();
+		}
+
+		@Validate
+		public MethodOutcome validate(@ResourceParam Patient thePatient) {
+			return new MethodOutcome();
+		}
+
+	}
+
+}
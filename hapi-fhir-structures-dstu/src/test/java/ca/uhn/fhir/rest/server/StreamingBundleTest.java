@@ -0,0 +1,243 @@
+package ca.uhn.fhir.rest.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.BundleEntry;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.resource.Organization;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.server.interceptor.InterceptorAdapter;
+import ca.uhn.fhir.util.PortUtil;
+
+public class StreamingBundleTest {
+
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = new FhirContext();
+	private static List<String> ourLoadedRanges = new ArrayList<String>();
+	private static int ourPort;
+	private static List<IResource> ourResources;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+
+	@After
+	public void after() {
+		ourServlet.setStreamBundleResponses(false);
+		ourServlet.setStreamingChunkSize(RestfulServer.DEFAULT_STREAMING_CHUNK_SIZE);
+		ourServlet.setPagingProvider(null);
+	}
+
+	@Before
+	public void before() {
+		ourLoadedRanges.clear();
+	}
+
+	@Test
+	public void testEntryListLoadedWhenSizeRequested() {
+		RestfulServer server = new RestfulServer(ourCtx);
+		server.setStreamingChunkSize(4);
+		StreamingBundle bundle = new StreamingBundle(server, new CountingBundleProvider(), 0, 10, "http://foo");
+
+		List<String> ids = new ArrayList<String>();
+		for (BundleEntry next : bundle.getEntries()) {
+			ids.add(next.getResource().getId().getValue());
+		}
+		assertEquals("[Patient/0, Patient/1, Patient/2, Patient/3, Patient/4, Patient/5, Patient/6, Patient/7, Patient/8, Patient/9, Organization/0, Organization/1, Organization/2]", ids.toString());
+		assertEquals("[0-4, 4-8, 8-10]", ourLoadedRanges.toString());
+
+		// Iterating again loads the resources again
+		ourLoadedRanges.clear();
+		assertEquals(13, bundle.getEntries().size());
+		assertEquals("[0-4, 4-8, 8-10]", ourLoadedRanges.toString());
+
+		// ..but once the entries have been loaded they are kept
+		ourLoadedRanges.clear();
+		assertEquals("Patient/3", bundle.getEntries().get(3).getResource().getId().getValue());
+		for (@SuppressWarnings("unused") BundleEntry next : bundle.getEntries()) {
+			// nothing
+		}
+		assertEquals("[]", ourLoadedRanges.toString());
+	}
+
+	@Test
+	public void testStreamedPages() throws Exception {
+		ourServlet.setStreamBundleResponses(true);
+		ourServlet.setStreamingChunkSize(3);
+		FifoMemoryPagingProvider pagingProvider = new FifoMemoryPagingProvider(10);
+		pagingProvider.setDefaultPageSize(4);
+		ourServlet.setPagingProvider(pagingProvider);
+
+		Bundle bundle = executeSearch("http://localhost:" + ourPort + "/Patient?_format=json");
+		assertEquals("[Patient/0, Patient/1, Patient/2, Patient/3, Organization/0, Organization/1, Patient/9, Organization/2]", toIds(bundle));
+		assertEquals(10, bundle.getTotalResults().getValue().intValue());
+		assertEquals("[0-3, 3-4]", ourLoadedRanges.toString());
+		assertNotNull(bundle.getLinkNext().getValue());
+
+		ourLoadedRanges.clear();
+		bundle = executeSearch(bundle.getLinkNext().getValue());
+		assertEquals("[Patient/4, Patient/5, Patient/6, Patient/7, Organization/1, Organization/2, Organization/0]", toIds(bundle));
+		assertEquals("[4-7, 7-8]", ourLoadedRanges.toString());
+	}
+
+	@Test
+	public void testStreamedResponseMatchesBufferedResponse() throws Exception {
+		for (String nextFormat : new String[] { "xml", "json" }) {
+			String url = "http://localhost:" + ourPort + "/Patient?_format=" + nextFormat;
+
+			Bundle buffered = executeSearch(url);
+			assertEquals("[0-10]", ourLoadedRanges.toString());
+
+			ourServlet.setStreamBundleResponses(true);
+			ourServlet.setStreamingChunkSize(4);
+			ourLoadedRanges.clear();
+			Bundle streamed = executeSearch(url);
+			assertEquals("[0-4, 4-8, 8-10]", ourLoadedRanges.toString());
+			ourServlet.setStreamBundleResponses(false);
+			ourLoadedRanges.clear();
+
+			assertEquals(toIds(buffered), toIds(streamed));
+			assertEquals(buffered.getTotalResults().getValue(), streamed.getTotalResults().getValue());
+			assertEquals(buffered.getLinkSelf().getValue(), streamed.getLinkSelf().getValue());
+			for (int i = 0; i < buffered.getEntries().size(); i++) {
+				assertEquals(buffered.getEntries().get(i).getTitle().getValue(), streamed.getEntries().get(i).getTitle().getValue());
+				assertEquals(buffered.getEntries().get(i).getLinkSelf().getValue(), streamed.getEntries().get(i).getLinkSelf().getValue());
+			}
+		}
+	}
+
+	@Test
+	public void testNotStreamedWithInterceptor() throws Exception {
+		ourServlet.setStreamBundleResponses(true);
+		ourServlet.setStreamingChunkSize(4);
+		InterceptorAdapter interceptor = new InterceptorAdapter();
+		ourServlet.registerInterceptor(interceptor);
+		try {
+			Bundle bundle = executeSearch("http://localhost:" + ourPort + "/Patient?_format=xml");
+			assertEquals(13, bundle.getEntries().size());
+			assertEquals("[0-10]", ourLoadedRanges.toString());
+		} finally {
+			ourServlet.unregisterInterceptor(interceptor);
+		}
+	}
+
+	private static Bundle executeSearch(String theUrl) throws Exception {
+		HttpGet httpGet = new HttpGet(theUrl);
+		HttpResponse status = ourClient.execute(httpGet);
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		assertEquals(responseContent, 200, status.getStatusLine().getStatusCode());
+		if (theUrl.contains("json")) {
+			return ourCtx.newJsonParser().parseBundle(responseContent);
+		}
+		return ourCtx.newXmlParser().parseBundle(responseContent);
+	}
+
+	private static String toIds(Bundle theBundle) {
+		List<String> retVal = new ArrayList<String>();
+		for (BundleEntry next : theBundle.getEntries()) {
+			retVal.add(next.getResource().getId().toUnqualifiedVersionless().getValue());
+		}
+		return retVal.toString();
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception {
+		ourServer.stop();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setResourceProviders(new DummyPatientResourceProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+
+		Organization[] orgs = new Organization[3];
+		for (int i = 0; i < orgs.length; i++) {
+			orgs[i] = new Organization();
+			orgs[i].setId("Organization/" + i);
+			orgs[i].setName("Org " + i);
+		}
+
+		ourResources = new ArrayList<IResource>();
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/" + i);
+			patient.addName().addFamily("Family " + i);
+			patient.getManagingOrganization().setResource(orgs[i % orgs.length]);
+			ourResources.add(patient);
+		}
+
+		// A reference to a resource which comes later in the results doesn't add it as an included resource
+		((Patient) ourResources.get(1)).addLink().getOther().setResource(ourResources.get(9));
+	}
+
+	private static class CountingBundleProvider implements IBundleProvider {
+
+		@Override
+		public InstantDt getPublished() {
+			return new InstantDt(new Date());
+		}
+
+		@Override
+		public List<IResource> getResources(int theFromIndex, int theToIndex) {
+			ourLoadedRanges.add(theFromIndex + "-" + theToIndex);
+			return ourResources.subList(theFromIndex, theToIndex);
+		}
+
+		@Override
+		public int size() {
+			return ourResources.size();
+		}
+
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Search
+		public IBundleProvider findPatient() {
+			return new CountingBundleProvider();
+		}
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+	}
+
+}
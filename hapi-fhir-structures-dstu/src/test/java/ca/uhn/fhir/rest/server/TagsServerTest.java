@@ -10,6 +10,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -94,6 +95,24 @@ public class TagsServerTest {
 		assertEquals(tagList, ourLastTagList);
 	}
 
+	/**
+	 * Tag lists are only read as text, so binary encodings are rejected
+	 */
+	@Test
+	public void testAddTagsCbor() throws Exception {
+
+		HttpPost httpPost = new HttpPost("http://localhost:" + ourPort + "/Patient/111/_tags");
+		httpPost.setEntity(new ByteArrayEntity(new byte[] { (byte) 0xa0 }, ContentType.create(Constants.CT_CBOR)));
+		HttpResponse status = ourClient.execute(httpPost);
+
+		String responseContent = IOUtils.toString(status.getEntity().getContent());		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		ourLog.info("Response was:\n{}", responseContent);
+
+		assertEquals(415, status.getStatusLine().getStatusCode());
+		assertEquals(null, ourLastOutcome);
+	}
+
 
 	@Test
 	public void testGetAllTags() throws Exception {
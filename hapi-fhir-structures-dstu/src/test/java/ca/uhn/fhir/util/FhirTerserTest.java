@@ -3,13 +3,17 @@ package ca.uhn.fhir.util;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.nio.charset.Charset;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.dstu.composite.QuantityDt;
 import ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt;
+import ca.uhn.fhir.model.dstu.resource.DiagnosticReport;
 import ca.uhn.fhir.model.dstu.resource.Observation;
 import ca.uhn.fhir.model.dstu.resource.Patient;
 import ca.uhn.fhir.model.dstu.valueset.AdministrativeGenderCodesEnum;
@@ -19,6 +23,61 @@ public class FhirTerserTest {
 
 	private static FhirContext ourCtx = new FhirContext();
 
+	@Test
+	public void testCopyExamples() throws Exception {
+		String[] files = { "/contained-diagnosticreport.xml", "/patient-example-us-extensions.xml", "/observation-example-eeg.xml", "/questionnaire-example.xml", "/careplan-big-example.xml", "/patient-example-dicom.xml", "/example-patient-general.xml" };
+		FhirTerser t = ourCtx.newTerser();
+		for (String next : files) {
+			String string = IOUtils.toString(FhirTerserTest.class.getResourceAsStream(next), Charset.forName("UTF-8"));
+			IResource parsed = ourCtx.newXmlParser().parseResource(string);
+
+			IResource copy = t.copy(parsed);
+			assertNotSame(parsed, copy);
+			assertSame(parsed.getClass(), copy.getClass());
+			assertEquals(next, ourCtx.newXmlParser().encodeResourceToString(parsed), ourCtx.newXmlParser().encodeResourceToString(copy));
+		}
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		Patient p = new Patient();
+		p.setId("Patient/1/_history/2");
+		p.addName().addFamily("FAMILY");
+		p.addUndeclaredExtension(false, "http://foo", new StringDt("EXT"));
+
+		Patient copy = ourCtx.newTerser().copy(p);
+		assertEquals("Patient/1/_history/2", copy.getId().getValue());
+
+		copy.getNameFirstRep().getFamilyFirstRep().setValue("CHANGED");
+		copy.getUndeclaredExtensions().get(0).setValue(new StringDt("CHANGED"));
+		copy.addName().addFamily("ADDED");
+		copy.setId("Patient/3");
+
+		assertEquals("FAMILY", p.getNameFirstRep().getFamilyFirstRep().getValue());
+		assertEquals("EXT", ((StringDt) p.getUndeclaredExtensions().get(0).getValue()).getValue());
+		assertEquals(1, p.getName().size());
+		assertEquals("Patient/1/_history/2", p.getId().getValue());
+	}
+
+	@Test
+	public void testCopyPointsReferencesToCopiedContained() {
+		Patient pt = new Patient();
+		pt.setId("#1");
+		pt.addName().addFamily("FAMILY");
+
+		DiagnosticReport dr = new DiagnosticReport();
+		dr.getContained().getContainedResources().add(pt);
+		dr.getSubject().setResource(pt);
+		dr.getSubject().setReference("#1");
+
+		DiagnosticReport copy = ourCtx.newTerser().copy(dr);
+		IResource copiedContained = copy.getContained().getContainedResources().get(0);
+		assertNotSame(pt, copiedContained);
+		assertSame(copiedContained, copy.getSubject().getResource());
+		assertEquals("#1", copy.getSubject().getReference().getValue());
+		assertSame(pt, dr.getSubject().getResource());
+	}
+
 	@Test
 	public void testGetAllPopulatedChildElementsOfType() {
 
@@ -7,6 +7,9 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.sf.json.JSON;
 import net.sf.json.JSONSerializer;
@@ -18,6 +21,7 @@ import org.junit.Test;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.BundleEntry;
 import ca.uhn.fhir.model.api.ExtensionDt;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.dstu.resource.Binary;
@@ -162,6 +166,40 @@ public class JsonParserTest {
 		assertEquals(Patient.class, b.getEntries().get(0).getResource().getClass());
 	}
 	
+	/**
+	 * Entries are handed off as soon as they are parsed, so they can only be qualified with a base which comes before them
+	 */
+	@Test
+	public void testParseBundleWithEntryHandlerBaseAfterEntries() {
+		String entries = "\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\"}},{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"2\"}}]";
+		String base = "\"base\":\"http://example.com/base\"";
+
+		final List<BundleEntry> handled = new ArrayList<BundleEntry>();
+		IBundleEntryHandler handler = new IBundleEntryHandler() {
+			@Override
+			public void handleEntry(BundleEntry theEntry) {
+				handled.add(theEntry);
+			}
+		};
+
+		Bundle parsed = ourCtx.newJsonParser().parseBundle(null, new StringReader("{\"resourceType\":\"Bundle\"," + base + "," + entries + "}"), handler);
+		assertEquals(0, parsed.getEntries().size());
+		assertEquals(2, handled.size());
+		assertEquals("http://example.com/base/Patient/1", handled.get(0).getResource().getId().getValue());
+		assertEquals("http://example.com/base/Patient/2", handled.get(1).getResource().getId().getValue());
+
+		handled.clear();
+		parsed = ourCtx.newJsonParser().parseBundle(null, new StringReader("{\"resourceType\":\"Bundle\"," + entries + "," + base + "}"), handler);
+		assertEquals("http://example.com/base", parsed.getLinkBase().getValue());
+		assertEquals(2, handled.size());
+		assertEquals("Patient/1", handled.get(0).getResource().getId().getValue());
+		assertEquals("Patient/2", handled.get(1).getResource().getId().getValue());
+
+		// Without a handler the entries are retained, so they are qualified regardless of the order
+		parsed = ourCtx.newJsonParser().parseBundle("{\"resourceType\":\"Bundle\"," + entries + "," + base + "}");
+		assertEquals("http://example.com/base/Patient/1", parsed.getEntries().get(0).getResource().getId().getValue());
+	}
+
 	@Test
 	public void testParseAndEncodeBundle() throws Exception {
 		String content = IOUtils.toString(JsonParserTest.class.getResourceAsStream("/bundle-example.json"));
@@ -44,6 +44,7 @@ import ca.uhn.fhir.tinder.model.Composite;
 import ca.uhn.fhir.tinder.model.Extension;
 import ca.uhn.fhir.tinder.model.Resource;
 import ca.uhn.fhir.tinder.model.ResourceBlock;
+import ca.uhn.fhir.tinder.model.SearchParameter;
 import ca.uhn.fhir.tinder.model.SimpleChild;
 import ca.uhn.fhir.tinder.model.SimpleSetter.Parameter;
 
@@ -55,6 +56,7 @@ public abstract class BaseStructureParser {
 	private TreeSet<String> myImports = new TreeSet<String>();
 	private boolean myImportsResolved;
 	private Map<String, String> myLocallyDefinedClassNames = new HashMap<String, String>();
+	private TreeMap<String, String> myModelIndex = new TreeMap<String, String>();
 	private TreeMap<String, String> myNameToDatatypeClass = new TreeMap<String, String>();
 	private TreeMap<String, String> myNameToResourceClass = new TreeMap<String, String>();
 	private String myPackageBase;
@@ -78,6 +80,38 @@ public abstract class BaseStructureParser {
 		myResources.add(theResource);
 	}
 
+	/**
+	 * Records the generated fields of a structure (and of its nested block classes) so that the model scanner can find
+	 * them at runtime without examining every field of the class
+	 */
+	private void addToModelIndex(BaseRootType theResource, String theClassName) {
+		List<BaseElement> children = new ArrayList<BaseElement>();
+		if (myExtensions != null) {
+			children.addAll(myExtensions);
+		}
+		children.addAll(theResource.getChildren());
+
+		if (theResource instanceof Resource) {
+			myModelIndex.put("index.resource." + theClassName, toChildFieldList(children));
+			List<String> searchParamFields = new ArrayList<String>();
+			for (SearchParameter next : theResource.getSearchParameters()) {
+				searchParamFields.add(next.getConstantName());
+			}
+			myModelIndex.put("index.searchparams." + theClassName, StringUtils.join(searchParamFields, ','));
+		} else {
+			myModelIndex.put("index.datatype." + theClassName, toChildFieldList(children));
+		}
+
+		addToModelIndex(theResource.getResourceBlockChildren(), theClassName);
+	}
+
+	private void addToModelIndex(List<ResourceBlock> theBlocks, String theDeclaringClassName) {
+		for (ResourceBlock next : theBlocks) {
+			myModelIndex.put("index.block." + theDeclaringClassName + '$' + next.getClassName(), toChildFieldList(next.getChildren()));
+			addToModelIndex(next.getResourceBlockChildren(), theDeclaringClassName);
+		}
+	}
+
 	private void bindValueSets(BaseElement theResource, ValueSetGenerator theVsp) {
 		if (isNotBlank(theResource.getBinding())) {
 			String bindingClass = theVsp.getClassForValueSetIdAndMarkAsNeeded(theResource.getBinding());
@@ -107,6 +141,8 @@ public abstract class BaseStructureParser {
 		myNameToDatatypeClass.putAll(theStructureParser.myNameToDatatypeClass);
 		theStructureParser.myNameToResourceClass.putAll(myNameToResourceClass);
 		theStructureParser.myNameToDatatypeClass.putAll(myNameToDatatypeClass);
+		myModelIndex.putAll(theStructureParser.myModelIndex);
+		theStructureParser.myModelIndex.putAll(myModelIndex);
 	}
 
 	private ca.uhn.fhir.model.api.annotation.SimpleSetter.Parameter findAnnotation(Class<?> theBase, Annotation[] theAnnotations,
@@ -496,13 +532,17 @@ public abstract class BaseStructureParser {
 				throw new MojoFailureException("Failed to write structure", e);
 			}
 
+			String className;
 			if (next instanceof Resource) {
-				myNameToResourceClass.put(next.getElementName(), thePackageBase + ".resource." + elementName);
+				className = thePackageBase + ".resource." + elementName;
+				myNameToResourceClass.put(next.getElementName(), className);
 			} else if (next instanceof Composite) {
-				myNameToDatatypeClass.put(next.getElementName(), thePackageBase + ".composite." + elementName + "Dt");
+				className = thePackageBase + ".composite." + elementName + "Dt";
+				myNameToDatatypeClass.put(next.getElementName(), className);
 			} else {
 				throw new IllegalStateException(next.getClass().toString());
 			}
+			addToModelIndex(next, className);
 		}
 
 		if (theResourceOutputDirectory != null) {
@@ -515,6 +555,7 @@ public abstract class BaseStructureParser {
 				VelocityContext ctx = new VelocityContext();
 				ctx.put("nameToResourceClass", myNameToResourceClass);
 				ctx.put("nameToDatatypeClass", myNameToDatatypeClass);
+				ctx.put("modelIndex", myModelIndex);
 				ctx.put("version", myVersion);
 				ctx.put("versionEnumName", determineVersionEnum().name());
 				ctx.put("esc", new EscapeTool());
@@ -535,6 +576,17 @@ public abstract class BaseStructureParser {
 		}
 	}
 
+	private static String toChildFieldList(List<? extends BaseElement> theChildren) {
+		List<String> retVal = new ArrayList<String>();
+		for (BaseElement next : theChildren) {
+			if (!(next instanceof Child)) {
+				throw new IllegalStateException("Unexpected child type: " + next.getClass());
+			}
+			retVal.add(((Child) next).getVariableName());
+		}
+		return StringUtils.join(retVal, ',');
+	}
+
 	private FhirVersionEnum determineVersionEnum() throws MojoFailureException {
 		FhirVersionEnum versionEnum = null;
 		if ("dstu".equals(myVersion)) {